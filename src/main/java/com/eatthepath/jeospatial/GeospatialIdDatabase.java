@@ -0,0 +1,198 @@
+package com.eatthepath.jeospatial;
+
+/**
+ * <p>A {@code GeospatialIdDatabase} is a primitive counterpart to a
+ * {@link GeospatialPointDatabase}. Rather than storing point objects, it stores
+ * {@code long} identifiers alongside the coordinates of the locations they
+ * identify, and rather than returning lists of points, it writes the
+ * identifiers of matching points (and, where appropriate, their distances from
+ * the query point) into arrays provided by the caller. Neither building nor
+ * querying a {@code GeospatialIdDatabase} requires an object per point, which
+ * makes them well-suited to very large datasets.</p>
+ *
+ * <p>Query methods return the number of results found; results are written to
+ * the start of the given arrays, and the contents of the arrays beyond the
+ * returned number of results are undefined.</p>
+ *
+ * @author <a href="mailto:jon.chambers@gmail.com">Jon Chambers</a>
+ */
+public interface GeospatialIdDatabase {
+    /**
+     * Returns the number of points in this database.
+     *
+     * @return the number of points in this database
+     */
+    public int size();
+
+    /**
+     * Tests whether this database is empty.
+     *
+     * @return {@code true} if this database contains no points or
+     *         {@code false} otherwise
+     */
+    public boolean isEmpty();
+
+    /**
+     * Finds the nearest neighbor to the given query point. If multiple points
+     * have the same distance from the query point, which of the points is
+     * found is undefined.
+     *
+     * @param latitude
+     *            the latitude of the query point in degrees
+     * @param longitude
+     *            the longitude of the query point in degrees
+     * @param ids
+     *            an array of at least one element into which to write the
+     *            identifier of the nearest neighbor
+     * @param distances
+     *            an array of at least one element into which to write the
+     *            distance, in meters, from the query point to the nearest
+     *            neighbor
+     *
+     * @return 1 if a nearest neighbor was found or 0 if the database contains
+     *         no points
+     *
+     * @throws IllegalArgumentException
+     *             if either array has no elements
+     */
+    public int getNearestNeighbor(double latitude, double longitude, long[] ids, double[] distances);
+
+    /**
+     * Finds the nearest neighbor to the given query point so long as the
+     * nearest neighbor is within the given maximum distance.
+     *
+     * @param latitude
+     *            the latitude of the query point in degrees
+     * @param longitude
+     *            the longitude of the query point in degrees
+     * @param maxDistance
+     *            the maximum distance, in meters, from the query point to the
+     *            nearest neighbor
+     * @param ids
+     *            an array of at least one element into which to write the
+     *            identifier of the nearest neighbor
+     * @param distances
+     *            an array of at least one element into which to write the
+     *            distance, in meters, from the query point to the nearest
+     *            neighbor
+     *
+     * @return 1 if a nearest neighbor was found or 0 if no point lies within
+     *         the given distance of the query point
+     *
+     * @throws IllegalArgumentException
+     *             if either array has no elements
+     */
+    public int getNearestNeighbor(double latitude, double longitude, double maxDistance, long[] ids, double[] distances);
+
+    /**
+     * Finds up to {@code maxResults} nearest neighbors to the given query
+     * point. Identifiers and distances are written in order of increasing
+     * distance from the query point.
+     *
+     * @param latitude
+     *            the latitude of the query point in degrees
+     * @param longitude
+     *            the longitude of the query point in degrees
+     * @param maxResults
+     *            the maximum number of neighbors to find
+     * @param ids
+     *            an array of at least {@code maxResults} elements into which
+     *            to write the identifiers of the nearest neighbors
+     * @param distances
+     *            an array of at least {@code maxResults} elements into which
+     *            to write the distances, in meters, from the query point to
+     *            the nearest neighbors
+     *
+     * @return the number of neighbors found
+     *
+     * @throws IllegalArgumentException
+     *             if either array has fewer than {@code maxResults} elements
+     */
+    public int getNearestNeighbors(double latitude, double longitude, int maxResults, long[] ids, double[] distances);
+
+    /**
+     * Finds up to {@code maxResults} nearest neighbors to the given query
+     * point that lie within the given maximum distance. Identifiers and
+     * distances are written in order of increasing distance from the query
+     * point.
+     *
+     * @param latitude
+     *            the latitude of the query point in degrees
+     * @param longitude
+     *            the longitude of the query point in degrees
+     * @param maxResults
+     *            the maximum number of neighbors to find
+     * @param maxDistance
+     *            the maximum distance, in meters, from the query point to any
+     *            neighbor
+     * @param ids
+     *            an array of at least {@code maxResults} elements into which
+     *            to write the identifiers of the nearest neighbors
+     * @param distances
+     *            an array of at least {@code maxResults} elements into which
+     *            to write the distances, in meters, from the query point to
+     *            the nearest neighbors
+     *
+     * @return the number of neighbors found
+     *
+     * @throws IllegalArgumentException
+     *             if either array has fewer than {@code maxResults} elements
+     */
+    public int getNearestNeighbors(double latitude, double longitude, int maxResults, double maxDistance,
+            long[] ids, double[] distances);
+
+    /**
+     * Finds all points within the given distance of the query point.
+     * Identifiers and distances are written in order of increasing distance
+     * from the query point. If more points lie within range than fit in the
+     * given arrays, only the closest points are written, but the returned
+     * count still includes every point in range; callers may retry with larger
+     * arrays.
+     *
+     * @param latitude
+     *            the latitude of the query point in degrees
+     * @param longitude
+     *            the longitude of the query point in degrees
+     * @param maxDistance
+     *            the maximum distance, in meters, from the query point to any
+     *            result
+     * @param ids
+     *            the array into which to write the identifiers of points
+     *            within range
+     * @param distances
+     *            the array into which to write the distances, in meters, from
+     *            the query point to points within range
+     *
+     * @return the total number of points within range, which may exceed the
+     *         number of results written
+     */
+    public int getAllNeighborsWithinDistance(double latitude, double longitude, double maxDistance,
+            long[] ids, double[] distances);
+
+    /**
+     * Finds all points within the given bounding "box." A point is considered
+     * to be inside the box if its latitude falls between the given north and
+     * south limits (inclusive) and its longitude falls between the east and
+     * west limits (inclusive). The order of the identifiers written is not
+     * prescribed. If more points lie within the box than fit in the given
+     * array, only some of them are written, but the returned count still
+     * includes every point in the box.
+     *
+     * @param west the western limit of the bounding box in degrees
+     * @param east the eastern limit of the bounding box in degrees
+     * @param north the northern limit of the bounding box in degrees
+     * @param south the southern limit of the bounding box in degrees
+     * @param ids
+     *            the array into which to write the identifiers of points
+     *            within the bounding box
+     *
+     * @return the total number of points within the bounding box, which may
+     *         exceed the number of results written
+     *
+     * @throws IllegalArgumentException
+     *             if the north or south limits fall outside of the range -90 to
+     *             +90 (inclusive) or if the northern limit is south of the
+     *             southern limit (or vice versa)
+     */
+    public int getAllPointsInBoundingBox(double west, double east, double north, double south, long[] ids);
+}
@@ -1,6 +1,7 @@
 package com.eatthepath.jeospatial;
 
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -196,6 +197,29 @@ public interface GeospatialPointDatabase<E extends GeospatialPoint> extends Coll
      */
     public List<E> getNearestNeighbors(GeospatialPoint queryPoint, int maxResults, double maxDistance, SearchCriteria<E> searchCriteria);
     
+    /**
+     * <p>Returns an iterator over all of the points in the database in order of
+     * increasing distance from the given query point. If multiple points have
+     * the same distance from the query point, the order in which they are
+     * returned is undefined.</p>
+     * 
+     * <p>The database is searched lazily as the iterator advances, so each
+     * point costs only as much searching as it takes to find it; callers that
+     * don't know in advance how many neighbors they'll need (for example,
+     * callers presenting one page of neighbors at a time) can keep drawing
+     * points from a single iterator rather than repeating searches with ever
+     * larger result limits. Iterators don't support removal. The behavior of
+     * an iterator is undefined if the database is modified while the iterator
+     * is in use unless the database's documentation says otherwise.</p>
+     * 
+     * @param queryPoint
+     *            the point for which to find neighbors
+     * 
+     * @return an iterator over all of the points in the database in order of
+     *         increasing distance from the query point
+     */
+    public Iterator<E> getNeighborsByDistance(GeospatialPoint queryPoint);
+    
     /**
      * Returns a list of all points within a given distance to a query point.
      * 
@@ -232,6 +256,46 @@ public interface GeospatialPointDatabase<E extends GeospatialPoint> extends Coll
      */
     public List<E> getAllNeighborsWithinDistance(GeospatialPoint queryPoint, double maxDistance, SearchCriteria<E> searchCriteria);
     
+    /**
+     * Returns the number of points within a given distance to a query point.
+     * The result is always the same as the size of the list that
+     * {@link #getAllNeighborsWithinDistance(GeospatialPoint, double)} would
+     * return, but implementations may count points without visiting each of
+     * them.
+     * 
+     * @param queryPoint
+     *            the point for which to count neighbors
+     * @param maxDistance
+     *            the maximum allowable distance, in meters, from the query
+     *            point; points farther away than {@code maxDistance} will not
+     *            be counted
+     * 
+     * @return the number of points within the given distance to the query
+     *         point
+     */
+    public int countWithinDistance(GeospatialPoint queryPoint, double maxDistance);
+    
+    /**
+     * Passes each point within a given distance to a query point to the given
+     * visitor as the point is found. Points are visited in no particular
+     * order, and the search stops as soon as the visitor asks it to. The
+     * visitor must not modify this database.
+     * 
+     * @param queryPoint
+     *            the point for which to find neighbors
+     * @param maxDistance
+     *            the maximum allowable distance, in meters, from the query
+     *            point; points farther away than {@code maxDistance} will not
+     *            be visited
+     * @param visitor
+     *            the visitor to which to pass each point that is found, along
+     *            with its distance from the query point
+     * 
+     * @return {@code true} if every point within the given distance was
+     *         visited or {@code false} if the visitor stopped the search
+     */
+    public boolean forEachWithinDistance(GeospatialPoint queryPoint, double maxDistance, PointVisitor<E> visitor);
+    
     /**
      * Returns a list of all points in the database within the given bounding
      * "box." A point is considered to be inside the box if its latitude falls
@@ -351,4 +415,50 @@ public interface GeospatialPointDatabase<E extends GeospatialPoint> extends Coll
      */
     public List<E> getAllPointsInBoundingBox(double west, double east, double north, double south,
             SearchCriteria<E> otherCriteria, GeospatialPoint orderingPoint);
+    
+    /**
+     * Returns the number of points in the database within the given bounding
+     * "box." The result is always the same as the size of the list that
+     * {@link #getAllPointsInBoundingBox(double, double, double, double)} would
+     * return, but implementations may count points without visiting each of
+     * them.
+     * 
+     * @param west the western limit of the bounding box in degrees
+     * @param east the eastern limit of the bounding box in degrees
+     * @param north the northern limit of the bounding box in degrees
+     * @param south the southern limit of the bounding box in degrees
+     * 
+     * @return the number of points in the database within the given bounding
+     *         box
+     * 
+     * @throws IllegalArgumentException
+     *             if the north or south limits fall outside of the range -90 to
+     *             +90 (inclusive) or if the northern limit is south of the
+     *             southern limit (or vice versa)
+     */
+    public int countInBoundingBox(double west, double east, double north, double south);
+    
+    /**
+     * Passes each point in the database within the given bounding "box" to the
+     * given visitor as the point is found. The distance passed to the visitor
+     * with each point is the distance from the center of the box to the
+     * point. Points are visited in no particular order, and the search stops
+     * as soon as the visitor asks it to. The visitor must not modify this
+     * database.
+     * 
+     * @param west the western limit of the bounding box in degrees
+     * @param east the eastern limit of the bounding box in degrees
+     * @param north the northern limit of the bounding box in degrees
+     * @param south the southern limit of the bounding box in degrees
+     * @param visitor the visitor to which to pass each point that is found
+     * 
+     * @return {@code true} if every point in the bounding box was visited or
+     *         {@code false} if the visitor stopped the search
+     * 
+     * @throws IllegalArgumentException
+     *             if the north or south limits fall outside of the range -90 to
+     *             +90 (inclusive) or if the northern limit is south of the
+     *             southern limit (or vice versa)
+     */
+    public boolean forEachInBoundingBox(double west, double east, double north, double south, PointVisitor<E> visitor);
 }
@@ -0,0 +1,29 @@
+package com.eatthepath.jeospatial;
+
+/**
+ * A {@code PointVisitor} receives the points found by a streaming search of a
+ * {@link GeospatialPointDatabase} one at a time, as the database finds them.
+ * Unlike the list-returning search methods, streaming searches don't collect
+ * or sort their results, so a visitor sees points in no particular order; in
+ * exchange, a visitor may stop a search as soon as it has seen enough.
+ *
+ * @author <a href="mailto:jon.chambers@gmail.com">Jon Chambers</a>
+ *
+ * @see GeospatialPointDatabase#forEachWithinDistance(GeospatialPoint, double, PointVisitor)
+ * @see GeospatialPointDatabase#forEachInBoundingBox(double, double, double, double, PointVisitor)
+ */
+public interface PointVisitor<T extends GeospatialPoint> {
+    /**
+     * Visits a single point found by a search.
+     *
+     * @param point
+     *            the point that was found
+     * @param distance
+     *            the distance, in meters, from the search's query point to
+     *            the point that was found
+     *
+     * @return {@code true} if the search should continue or {@code false} if
+     *         it should stop without visiting any more points
+     */
+    public boolean visit(T point, double distance);
+}
@@ -53,8 +53,8 @@ public class BoundingBoxSearchCriteria<T extends GeospatialPoint> implements Sea
      *              {@code null}
      */
     public BoundingBoxSearchCriteria(double west, double east, double north, double south, SearchCriteria<T> otherCriteria) {
-        this.west = ((west + 180) % 360) - 180;
-        this.east = ((east + 180) % 360) - 180;
+        this.west = BoundingBoxSearchCriteria.normalizeLongitude(west);
+        this.east = BoundingBoxSearchCriteria.normalizeLongitude(east);
         
         if(north < -90 || north > 90) {
             throw new IllegalArgumentException("Northern bound must be between -90 and +90 degrees (inclusive).");
@@ -75,41 +75,22 @@ public class BoundingBoxSearchCriteria<T extends GeospatialPoint> implements Sea
     }
     
     /**
-     * Calculates the minimum eastward angle traveled from a line of longitude
-     * to a point. If the point is coincident with the line, this method returns
-     * 360 degrees.
+     * Normalizes a longitude to the range -180 (inclusive) to +180 (exclusive)
+     * degrees.
      * 
-     * @param longitude
-     *            the line of longitude at which to begin travel
-     * @param point
-     *            the point to which to travel
-     * 
-     * @return the eastward-traveling distance between the line and the point in
-     *         degrees
-     */
-    private double degreesEast(double longitude, T point) {
-        return point.getLongitude() > longitude ?
-                point.getLongitude() - longitude :
-                Math.abs(360 - (point.getLongitude() - longitude));
-    }
-    
-    /**
-     * Calculates the minimum westward angle traveled from a line of longitude
-     * to a point. If the point is coincident with the line, this method returns
-     * 360 degrees.
+     * @param longitude the longitude to normalize, in degrees
      * 
-     * @param longitude
-     *            the line of longitude at which to begin travel
-     * @param point
-     *            the point to which to travel
-     * 
-     * @return the westward-traveling distance between the line and the point in
-     *         degrees
+     * @return the equivalent longitude between -180 (inclusive) and +180
+     *         (exclusive) degrees
      */
-    private double degreesWest(double longitude, T point) {
-        return point.getLongitude() < longitude ?
-                longitude - point.getLongitude() :
-                Math.abs(360 - (longitude - point.getLongitude()));
+    public static double normalizeLongitude(double longitude) {
+        double normalized = (longitude + 180) % 360;
+        
+        if(normalized < 0) {
+            normalized += 360;
+        }
+        
+        return normalized - 180;
     }
     
     /**
@@ -126,29 +107,105 @@ public class BoundingBoxSearchCriteria<T extends GeospatialPoint> implements Sea
      */
     @Override
     public boolean matches(T point) {
+        if(!this.contains(point.getLatitude(), point.getLongitude())) {
+            return false;
+        }
+        
+        // The point's inside our bounding box. If we have other search
+        // criteria, apply them now.
+        if(this.otherCriteria != null) {
+            return this.otherCriteria.matches(point);
+        } else {
+            return true;
+        }
+    }
+    
+    /**
+     * Tests whether the point at the given coordinates falls within the bounds
+     * of the box given at construction time. Additional search criteria are
+     * not considered.
+     * 
+     * @param latitude
+     *            the latitude of the point to test, in degrees
+     * @param longitude
+     *            the longitude of the point to test, in degrees
+     * 
+     * @return {@code true} if the point is inside the bounding box or
+     *         {@code false} otherwise
+     */
+    public boolean contains(double latitude, double longitude) {
         // Checking for latitude bounds is easy.
-        if(point.getLatitude() > this.north || point.getLatitude() < this.south) {
+        if(latitude > this.north || latitude < this.south) {
             return false;
         }
         
-        // If the point is inside our bounding box, it will be shorter to get to
-        // the point by traveling east from our western boundary than by
-        // traveling east from the eastern boundary.
-        if(this.degreesEast(this.west, point) > this.degreesEast(this.east, point)) {
+        double normalizedLongitude = BoundingBoxSearchCriteria.normalizeLongitude(longitude);
+        
+        if(this.west < this.east) {
+            return normalizedLongitude >= this.west && normalizedLongitude <= this.east;
+        } else if(this.west > this.east) {
+            // The box spans the antimeridian.
+            return normalizedLongitude >= this.west || normalizedLongitude <= this.east;
+        } else {
+            // Coincident eastern and western limits span every longitude.
+            return true;
+        }
+    }
+    
+    /**
+     * Tests whether any part of the given rectangle falls within the bounds of
+     * the box given at construction time. The rectangle must not span the
+     * antimeridian; its longitudes must be
+     * {@linkplain BoundingBoxSearchCriteria#normalizeLongitude(double) normalized}
+     * and its western limit must not be east of its eastern limit.
+     * 
+     * @param west the western limit of the rectangle in degrees
+     * @param east the eastern limit of the rectangle in degrees
+     * @param north the northern limit of the rectangle in degrees
+     * @param south the southern limit of the rectangle in degrees
+     * 
+     * @return {@code true} if the rectangle and the bounding box overlap or
+     *         {@code false} otherwise
+     */
+    public boolean intersectsRectangle(double west, double east, double north, double south) {
+        if(south > this.north || north < this.south) {
             return false;
         }
         
-        // Similarly, it should be shorter to get to the point by traveling west
-        // from our eastern boundary than by traveling west from the western
-        // boundary.
-        if(this.degreesWest(this.east, point) > this.degreesWest(this.west, point)) {
+        if(this.west < this.east) {
+            return west <= this.east && east >= this.west;
+        } else if(this.west > this.east) {
+            return east >= this.west || west <= this.east;
+        } else {
+            return true;
+        }
+    }
+    
+    /**
+     * Tests whether the given rectangle falls entirely within the bounds of the
+     * box given at construction time, in which case every point inside the
+     * rectangle is also inside the box. The rectangle must not span the
+     * antimeridian; its longitudes must be
+     * {@linkplain BoundingBoxSearchCriteria#normalizeLongitude(double) normalized}
+     * and its western limit must not be east of its eastern limit.
+     * 
+     * @param west the western limit of the rectangle in degrees
+     * @param east the eastern limit of the rectangle in degrees
+     * @param north the northern limit of the rectangle in degrees
+     * @param south the southern limit of the rectangle in degrees
+     * 
+     * @return {@code true} if the rectangle is entirely inside the bounding box
+     *         or {@code false} otherwise
+     */
+    public boolean containsRectangle(double west, double east, double north, double south) {
+        if(north > this.north || south < this.south) {
             return false;
         }
         
-        // The point's inside our bounding box. If we have other search
-        // criteria, apply them now.
-        if(this.otherCriteria != null) {
-            return this.otherCriteria.matches(point);
+        if(this.west < this.east) {
+            return west >= this.west && east <= this.east;
+        } else if(this.west > this.east) {
+            return west >= this.west || east <= this.east;
         } else {
             return true;
         }
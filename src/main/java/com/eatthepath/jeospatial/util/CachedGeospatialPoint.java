@@ -0,0 +1,238 @@
+package com.eatthepath.jeospatial.util;
+
+import com.eatthepath.jeospatial.GeospatialPoint;
+
+/**
+ * <p>An immutable geospatial point that calculates the trigonometric terms it
+ * needs for distance calculations once, when it is constructed, rather than
+ * every time it measures the distance to another point. Cached points are
+ * well-suited to points that take part in many distance calculations, like the
+ * query point of a search or the center of a vp-tree node.</p>
+ *
+ * <p>Cached points calculate distances using the same Haversine Formula as
+ * {@link SimpleGeospatialPoint}, and distances measured by a cached point are
+ * exactly equal to those measured by a simple point at the same location. When
+ * both points in a distance calculation are cached points, no conversions to
+ * radians and no cosines need to be calculated at all.</p>
+ *
+ * @author <a href="mailto:jon.chambers@gmail.com">Jon Chambers</a>
+ */
+public final class CachedGeospatialPoint implements GeospatialPoint {
+    /**
+     * The relative amount by which lower bounds are shortened to make sure
+     * rounding errors in the Haversine Formula (which are largest for nearly
+     * antipodal points) never push an exact distance below its lower bound.
+     */
+    private static final double LOWER_BOUND_MARGIN = 1e-7;
+
+    private final double latitude;
+    private final double longitude;
+
+    private final double latitudeRadians;
+    private final double longitudeRadians;
+    private final double cosLatitude;
+
+    /**
+     * Constructs a new cached geospatial point at the given latitude and
+     * longitude coordinates.
+     *
+     * @param latitude the latitude of this point in degrees
+     * @param longitude the longitude of this point in degrees
+     *
+     * @throws IllegalArgumentException
+     *             if the given latitude is outside of the allowable range
+     */
+    public CachedGeospatialPoint(double latitude, double longitude) {
+        if(latitude < -90 || latitude > 90) {
+            throw new IllegalArgumentException("Latitude must be in the range -90 (inclusive) to +90 (inclusive).");
+        }
+
+        this.latitude = latitude;
+        this.longitude = ((longitude + 180) % 360) - 180;
+
+        this.latitudeRadians = Math.toRadians(this.latitude);
+        this.longitudeRadians = Math.toRadians(this.longitude);
+        this.cosLatitude = Math.cos(this.latitudeRadians);
+    }
+
+    /**
+     * Constructs a new cached geospatial point at the same coordinates as the
+     * given point.
+     *
+     * @param p the point whose location should be used for this point
+     */
+    public CachedGeospatialPoint(GeospatialPoint p) {
+        this(p.getLatitude(), p.getLongitude());
+    }
+
+    /**
+     * Returns a cached geospatial point at the same coordinates as the given
+     * point. If the given point is already a cached point, it is returned
+     * as-is; because cached points are immutable, there's no need to copy it.
+     *
+     * @param p the point whose location should be used for the returned point
+     *
+     * @return a cached geospatial point at the same coordinates as the given
+     *         point
+     */
+    public static CachedGeospatialPoint valueOf(GeospatialPoint p) {
+        if(p instanceof CachedGeospatialPoint) {
+            return (CachedGeospatialPoint)p;
+        }
+
+        return new CachedGeospatialPoint(p);
+    }
+
+    /**
+     * Returns the latitude of this point.
+     *
+     * @return the latitude of this point in degrees
+     */
+    @Override
+    public double getLatitude() {
+        return this.latitude;
+    }
+
+    /**
+     * Returns the longitude of this point.
+     *
+     * @return the longitude of this point in degrees
+     */
+    @Override
+    public double getLongitude() {
+        return this.longitude;
+    }
+
+    /**
+     * Returns the "great circle" distance to another geospatial point.
+     *
+     * @param otherPoint the other point to which to calculate distance
+     *
+     * @return the great circle distance, in meters, between the two points
+     */
+    @Override
+    public double getDistanceTo(GeospatialPoint otherPoint) {
+        if(otherPoint instanceof CachedGeospatialPoint) {
+            CachedGeospatialPoint other = (CachedGeospatialPoint)otherPoint;
+
+            return this.getDistanceTo(other.latitudeRadians, other.longitudeRadians, other.cosLatitude);
+        }
+
+        return this.getDistanceTo(otherPoint.getLatitude(), otherPoint.getLongitude());
+    }
+
+    /**
+     * Returns the "great circle" distance to another geospatial point.
+     *
+     * @param latitude
+     *            the latitude, in degrees, of the other point to which to
+     *            calculate distance
+     * @param longitude
+     *            the longitude, in degrees, of the other point to which to
+     *            calculate distance
+     *
+     * @return the great circle distance, in meters, between the two points
+     */
+    @Override
+    public double getDistanceTo(double latitude, double longitude) {
+        double lat2 = Math.toRadians(latitude);
+
+        return this.getDistanceTo(lat2, Math.toRadians(longitude), Math.cos(lat2));
+    }
+
+    /**
+     * <p>Returns a lower bound for the "great circle" distance to another
+     * geospatial point. The lower bound is the distance between this point and
+     * the other along a meridian (i.e. considering only the difference in
+     * latitude between the two points) and is much cheaper to calculate than
+     * the exact distance; callers looking for points within a given distance
+     * may safely reject any point whose lower bound is beyond that distance
+     * without calculating its exact distance.</p>
+     *
+     * @param otherPoint the other point to which to calculate a lower bound
+     *
+     * @return a distance, in meters, that is no longer than the great circle
+     *         distance between the two points
+     */
+    public double getLowerBoundDistanceTo(GeospatialPoint otherPoint) {
+        double lat2 = (otherPoint instanceof CachedGeospatialPoint) ?
+                ((CachedGeospatialPoint)otherPoint).latitudeRadians : Math.toRadians(otherPoint.getLatitude());
+
+        return Math.abs(lat2 - this.latitudeRadians) * GeospatialPoint.EARTH_RADIUS * (1 - LOWER_BOUND_MARGIN);
+    }
+
+    private double getDistanceTo(double lat2, double lon2, double cosLat2) {
+        double angle = 2 * Math.asin(Math.min(1, Math.sqrt(haversine(lat2 - this.latitudeRadians) +
+                this.cosLatitude * cosLat2 * haversine(lon2 - this.longitudeRadians))));
+
+        return angle * GeospatialPoint.EARTH_RADIUS;
+    }
+
+    /**
+     * Returns the haversine of the given angle.
+     *
+     * @param theta the angle, in radians, for which to calculate the haversine
+     *
+     * @return the haversine of the given angle
+     */
+    private static double haversine(double theta) {
+        double x = Math.sin(theta / 2);
+
+        return (x * x);
+    }
+
+    /**
+     * Returns a human-readable {@code String} representation of this point.
+     *
+     * @return a {@code String} representation of this point
+     */
+    @Override
+    public String toString() {
+        return "CachedGeospatialPoint [latitude=" + latitude + ", longitude="
+                + longitude + "]";
+    }
+
+    /**
+     * Generates a hash code value for this point. Cached points have the same
+     * hash code as simple points at the same location.
+     *
+     * @return a hash code value for this point
+     */
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        long temp;
+        temp = Double.doubleToLongBits(this.latitude);
+        result = prime * result + (int) (temp ^ (temp >>> 32));
+        temp = Double.doubleToLongBits(this.longitude);
+        result = prime * result + (int) (temp ^ (temp >>> 32));
+        return result;
+    }
+
+    /**
+     * Compares this point to another object. The other object is considered
+     * equal if it is not {@code null}, is a {@code GeospatialPoint}, and has
+     * the same latitude and longitude as this point.
+     *
+     * @return {@code true} if the other object is equal to this point or
+     *         {@code false} otherwise
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if(!(obj instanceof GeospatialPoint))
+            return false;
+        GeospatialPoint other = (GeospatialPoint) obj;
+        if (Double.doubleToLongBits(latitude) != Double
+                .doubleToLongBits(other.getLatitude()))
+            return false;
+        if (Double.doubleToLongBits(longitude) != Double
+                .doubleToLongBits(other.getLongitude()))
+            return false;
+        return true;
+    }
+}
@@ -36,7 +36,7 @@ import com.eatthepath.jeospatial.SearchCriteria;
 public class SearchResults<E extends GeospatialPoint> extends PriorityQueue<E> {
     private static final long serialVersionUID = 1L;
     
-    private final SimpleGeospatialPoint queryPoint;
+    private final CachedGeospatialPoint queryPoint;
     private final int maxSize;
     private final double maxDistance;
     private final SearchCriteria<E> criteria;
@@ -108,7 +108,7 @@ public class SearchResults<E extends GeospatialPoint> extends PriorityQueue<E> {
     public SearchResults(GeospatialPoint queryPoint, int maxSize, double maxDistance, SearchCriteria<E> criteria) {
         super(maxSize, java.util.Collections.reverseOrder(new GeospatialDistanceComparator<E>(queryPoint)));
         
-        this.queryPoint = new SimpleGeospatialPoint(queryPoint);
+        this.queryPoint = CachedGeospatialPoint.valueOf(queryPoint);
         this.maxSize = maxSize;
         this.maxDistance = maxDistance;
         this.criteria = criteria;
@@ -131,8 +131,9 @@ public class SearchResults<E extends GeospatialPoint> extends PriorityQueue<E> {
         // If we have room for this point, we should always add it as long as
         // it's not outside of our maximum range and meets our search criteria.
         if(this.size() < this.maxSize) {
-            // Is the point within range?
-            if(this.maxDistance == Double.POSITIVE_INFINITY || this.queryPoint.getDistanceTo(point) <= this.maxDistance) {
+            // Is the point within range? Try to rule it out with a cheap lower
+            // bound before calculating the exact distance.
+            if(this.maxDistance == Double.POSITIVE_INFINITY || this.isWithinDistance(point, this.maxDistance)) {
                 // Does it meet our criteria?
                 if(this.criteria == null || this.criteria.matches(point)) {                
                     return super.add(point);
@@ -147,7 +148,10 @@ public class SearchResults<E extends GeospatialPoint> extends PriorityQueue<E> {
             // already in the queue must already be within range, and the check
             // against the most distant point will implicitly check against the
             // maximum range.
-            if(this.queryPoint.getDistanceTo(point) < this.getLongestDistanceFromQueryPoint()) {
+            double longestDistance = this.getLongestDistanceFromQueryPoint();
+            
+            if(this.queryPoint.getLowerBoundDistanceTo(point) < longestDistance &&
+                    this.queryPoint.getDistanceTo(point) < longestDistance) {
                 // ...we do still need to check against our search criteria,
                 // though.
                 if(this.criteria == null || this.criteria.matches(point)) {
@@ -162,6 +166,22 @@ public class SearchResults<E extends GeospatialPoint> extends PriorityQueue<E> {
         return false;
     }
     
+    /**
+     * Checks whether the given point is within the given distance of the query
+     * point. A lower bound for the distance is checked first, and the exact
+     * distance is only calculated if the lower bound is within range.
+     * 
+     * @param point the point to check
+     * @param distance the distance, in meters, within which to check
+     * 
+     * @return {@code true} if the given point is no farther than the given
+     *         distance from the query point or {@code false} otherwise
+     */
+    private boolean isWithinDistance(E point, double distance) {
+        return this.queryPoint.getLowerBoundDistanceTo(point) <= distance &&
+                this.queryPoint.getDistanceTo(point) <= distance;
+    }
+    
     /**
      * Offers all of the points in the given collection to this result set.
      * 
@@ -208,6 +228,25 @@ public class SearchResults<E extends GeospatialPoint> extends PriorityQueue<E> {
         return this.queryPoint.getDistanceTo(this.peek());
     }
     
+    /**
+     * Returns the distance from the query point beyond which no offered point
+     * could be added to this result set. Until this result set is full, that's
+     * the maximum distance provided at construction time (if any); after that,
+     * it's the distance to the most distant point in this result set. Searches
+     * may safely skip any region of space farther from the query point than
+     * this distance.
+     * 
+     * @return the distance, in meters, beyond which offered points will be
+     *         rejected
+     */
+    public double getSearchRadius() {
+        if(this.size() < this.maxSize) {
+            return this.maxDistance;
+        }
+        
+        return this.getLongestDistanceFromQueryPoint();
+    }
+    
     /**
      * Returns a list of the points in this result set sorted in order of
      * increasing distance from the query point provided at construction time.
@@ -0,0 +1,97 @@
+package com.eatthepath.jeospatial.vptree;
+
+/**
+ * <p>Chooses how leaf scans measure squared chord distances from a query
+ * vector to the vectors in a {@link PackedUnitVectors} list.</p>
+ *
+ * <p>This is the Java 8 version of this class, which always uses the
+ * {@linkplain ScalarChordDistanceKernel scalar kernel}. The library is
+ * packaged as a multi-release jar; on Java 17 and newer, a replacement for
+ * this class (under {@code META-INF/versions/17}) uses a kernel built on the
+ * incubating Vector API instead whenever the {@code jdk.incubator.vector}
+ * module is present. Both kernels produce bit-for-bit identical results.</p>
+ *
+ * @author <a href="mailto:jon.chambers@gmail.com">Jon Chambers</a>
+ */
+final class ChordDistanceKernel {
+    private ChordDistanceKernel() {
+    }
+
+    /**
+     * Returns {@code true} if this kernel measures several vectors at once
+     * with the Vector API or {@code false} if it uses the scalar kernel.
+     *
+     * @return {@code true} if this kernel uses the Vector API
+     */
+    public static boolean isVectorized() {
+        return false;
+    }
+
+    /**
+     * Calculates the squared chord distance from the given query vector to
+     * each vector in the given range.
+     *
+     * @param qx the x component of the query vector
+     * @param qy the y component of the query vector
+     * @param qz the z component of the query vector
+     * @param x the x components of the vectors to which to measure
+     * @param y the y components of the vectors to which to measure
+     * @param z the z components of the vectors to which to measure
+     * @param fromIndex the index of the first vector (inclusive) to measure
+     * @param toIndex the index of the last vector (exclusive) to measure
+     * @param distances the array in which to store the squared chord distance
+     *            to the vector at each index
+     */
+    public static void getSquaredChordDistances(final double qx, final double qy, final double qz,
+            final double[] x, final double[] y, final double[] z, final int fromIndex, final int toIndex,
+            final double[] distances) {
+
+        ScalarChordDistanceKernel.getSquaredChordDistances(qx, qy, qz, x, y, z, fromIndex, toIndex, distances);
+    }
+
+    /**
+     * Calculates the squared chord distance from the given query vector to
+     * each vector in the given range of vectors with {@code float} components.
+     * Distances are calculated in {@code float} arithmetic.
+     *
+     * @param qx the x component of the query vector
+     * @param qy the y component of the query vector
+     * @param qz the z component of the query vector
+     * @param x the x components of the vectors to which to measure
+     * @param y the y components of the vectors to which to measure
+     * @param z the z components of the vectors to which to measure
+     * @param fromIndex the index of the first vector (inclusive) to measure
+     * @param toIndex the index of the last vector (exclusive) to measure
+     * @param distances the array in which to store the squared chord distance
+     *            to the vector at each index
+     */
+    public static void getSquaredChordDistances(final float qx, final float qy, final float qz,
+            final float[] x, final float[] y, final float[] z, final int fromIndex, final int toIndex,
+            final double[] distances) {
+
+        ScalarChordDistanceKernel.getSquaredChordDistances(qx, qy, qz, x, y, z, fromIndex, toIndex, distances);
+    }
+
+    /**
+     * Calculates the squared chord distance from the given query vector to
+     * each vector in the given range of vectors with fixed-point components
+     * (see {@link CoordinateEncoding#E7}).
+     *
+     * @param qx the x component of the query vector
+     * @param qy the y component of the query vector
+     * @param qz the z component of the query vector
+     * @param x the fixed-point x components of the vectors to which to measure
+     * @param y the fixed-point y components of the vectors to which to measure
+     * @param z the fixed-point z components of the vectors to which to measure
+     * @param fromIndex the index of the first vector (inclusive) to measure
+     * @param toIndex the index of the last vector (exclusive) to measure
+     * @param distances the array in which to store the squared chord distance
+     *            to the vector at each index
+     */
+    public static void getSquaredChordDistances(final double qx, final double qy, final double qz,
+            final int[] x, final int[] y, final int[] z, final int fromIndex, final int toIndex,
+            final double[] distances) {
+
+        ScalarChordDistanceKernel.getSquaredChordDistances(qx, qy, qz, x, y, z, fromIndex, toIndex, distances);
+    }
+}
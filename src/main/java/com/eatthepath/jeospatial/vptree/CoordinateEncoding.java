@@ -0,0 +1,110 @@
+package com.eatthepath.jeospatial.vptree;
+
+/**
+ * <p>Describes how a tree stores the {@linkplain UnitVector unit vectors} it
+ * uses to rule points out during searches. Compact encodings store each
+ * vector component in four bytes rather than eight, which halves the memory
+ * occupied by vectors and doubles the number of vectors a SIMD leaf scan can
+ * process at once.</p>
+ *
+ * <p>Compact encodings never change search results. Vectors are only used to
+ * rule points out, and every distance measured from a compact vector is
+ * padded by the largest error the encoding can introduce; any point that
+ * can't be ruled out is checked exactly, in {@code double} arithmetic, against
+ * its exact coordinates. A tree returns exactly the same results with any
+ * encoding, although compact trees may need to check slightly more points
+ * exactly.</p>
+ *
+ * @author <a href="mailto:jon.chambers@gmail.com">Jon Chambers</a>
+ */
+public enum CoordinateEncoding {
+    /**
+     * Vector components are stored as {@code double} values.
+     */
+    DOUBLE,
+
+    /**
+     * Vector components are stored as {@code float} values, which place a
+     * point to within about a meter anywhere on Earth.
+     */
+    FLOAT,
+
+    /**
+     * Vector components are stored as fixed-point {@code int} values, which
+     * place a point to within about a centimeter anywhere on Earth&mdash;about
+     * the same precision as latitudes and longitudes stored in units of
+     * 10<sup>-7</sup> degrees.
+     */
+    E7;
+
+    /**
+     * The number of fixed-point units in 1 for {@link CoordinateEncoding#E7}
+     * vector components. Unit vector components are never larger than 1 in
+     * magnitude, so 2<sup>30</sup> leaves room to spare in an {@code int}, and
+     * converting between fixed-point and {@code double} values involves no
+     * rounding beyond the original encoding.
+     */
+    static final double FIXED_POINT_SCALE = 1 << 30;
+
+    /**
+     * The size, in {@code double} terms, of one fixed-point unit.
+     */
+    static final double FIXED_POINT_UNIT = 1 / FIXED_POINT_SCALE;
+
+    /**
+     * The largest amount by which a chord distance measured from a vector with
+     * {@code float} components may differ from the exact chord distance. The
+     * query and stored vectors are each off by no more than
+     * &radic;3&middot;2<sup>-25</sup> (about 5.2&times;10<sup>-8</sup>) after
+     * rounding to {@code float}, and measuring the distance in {@code float}
+     * arithmetic adds a relative error of no more than about
+     * 6&middot;2<sup>-24</sup> to the squared distance, or about
+     * 3.6&times;10<sup>-7</sup> to a chord distance of at most 2.
+     */
+    private static final double FLOAT_CHORD_DISTANCE_ERROR = 5e-7;
+
+    /**
+     * The largest amount by which a chord distance measured from a vector with
+     * fixed-point components may differ from the exact chord distance. Each
+     * component is off by no more than half of a fixed-point unit, so the
+     * vector is off by no more than &radic;3&middot;2<sup>-31</sup>, or about
+     * 8.1&times;10<sup>-10</sup>; distances are measured in {@code double}
+     * arithmetic, which adds almost nothing.
+     */
+    private static final double FIXED_POINT_CHORD_DISTANCE_ERROR = 1e-9;
+
+    /**
+     * Returns the largest amount by which a chord distance measured from
+     * vectors stored with this encoding may differ from the exact chord
+     * distance.
+     *
+     * @return the largest possible error in a chord distance measured from
+     *         vectors stored with this encoding
+     */
+    double getChordDistanceError() {
+        switch(this) {
+            case FLOAT: {
+                return FLOAT_CHORD_DISTANCE_ERROR;
+            }
+
+            case E7: {
+                return FIXED_POINT_CHORD_DISTANCE_ERROR;
+            }
+
+            default: {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Encodes a unit vector component as a fixed-point value.
+     *
+     * @param component the component to encode
+     *
+     * @return the nearest fixed-point value to the given component
+     */
+    static int toFixedPoint(double component) {
+        return (int)Math.round(component * FIXED_POINT_SCALE);
+    }
+}
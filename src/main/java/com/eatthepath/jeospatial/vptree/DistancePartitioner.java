@@ -0,0 +1,387 @@
+package com.eatthepath.jeospatial.vptree;
+
+/**
+ * <p>Rearranges points according to precomputed distance keys. Vp-tree nodes
+ * use the {@code DistancePartitioner} to find the median distance from their
+ * center point to the points they're partitioning without fully sorting those
+ * points; selection runs in linear time, where a full sort would take
+ * O(n log n) time at every level of the tree.</p>
+ *
+ * <p>Selection is an introselect: it chooses pivots by median-of-three, which
+ * is cheap and works well for the distance distributions vp-trees see in
+ * practice, but if it goes through more partitioning rounds than a run of
+ * reasonable pivots would need, it switches to median-of-medians pivots for
+ * the rest of the range. Median-of-medians pivots are slower to find, but
+ * each one is guaranteed to discard a constant fraction of the range, so
+ * adversarial inputs can't drive selection to quadratic time.</p>
+ *
+ * <p>All methods in this class operate on a range of a point array and the
+ * same range of a parallel array of distance keys; {@code keys[i]} is always
+ * the key for {@code points[i]}. Whenever two keys are swapped, the
+ * corresponding points are swapped, too, so each key always stays with its
+ * point. Callers may optionally provide a third array of per-point
+ * {@linkplain UnitVector unit vectors}, which is rearranged in the same way.
+ * Points may be given either as objects or as primitive {@code long}
+ * identifiers.</p>
+ *
+ * @author <a href="mailto:jon.chambers@gmail.com">Jon Chambers</a>
+ */
+final class DistancePartitioner {
+    private DistancePartitioner() {}
+
+    /**
+     * <p>Rearranges a range of points such that the point with the
+     * {@code k}th-smallest key in the range is at index {@code k}, all points
+     * in the range with smaller or equal keys are before it and all points in
+     * the range with larger or equal keys are after it.</p>
+     *
+     * <p>Selection uses a three-way partitioning scheme, so ranges with large
+     * numbers of equal keys (i.e. coincident points) are handled gracefully,
+     * and runs in linear time in the worst case.</p>
+     *
+     * @param keys
+     *            the distance keys for the array of points
+     * @param points
+     *            the array that contains the range of points
+     * @param fromIndex
+     *            the start of the range to rearrange (inclusive)
+     * @param toIndex
+     *            the end of the range to rearrange (exclusive)
+     * @param k
+     *            the index of the key to select; must be within the range
+     */
+    static void select(final double[] keys, final Object[] points, final int fromIndex, final int toIndex, final int k) {
+        DistancePartitioner.select(keys, points, null, fromIndex, toIndex, k);
+    }
+
+    /**
+     * Rearranges a range of points (and their unit vectors) such that the
+     * point with the {@code k}th-smallest key in the range is at index
+     * {@code k}, all points in the range with smaller or equal keys are before
+     * it and all points in the range with larger or equal keys are after it.
+     *
+     * @param keys
+     *            the distance keys for the array of points
+     * @param points
+     *            the array that contains the range of points
+     * @param vectors
+     *            the unit vectors for the array of points; may be {@code null}
+     * @param fromIndex
+     *            the start of the range to rearrange (inclusive)
+     * @param toIndex
+     *            the end of the range to rearrange (exclusive)
+     * @param k
+     *            the index of the key to select; must be within the range
+     *
+     * @see DistancePartitioner#select(double[], Object[], int, int, int)
+     */
+    static void select(final double[] keys, final Object[] points, final double[] vectors,
+            final int fromIndex, final int toIndex, final int k) {
+
+        DistancePartitioner.select(keys, points, null, vectors, fromIndex, toIndex, k);
+    }
+
+    /**
+     * Rearranges a range of point identifiers (and their unit vectors) such
+     * that the identifier with the {@code k}th-smallest key in the range is at
+     * index {@code k}, all identifiers in the range with smaller or equal keys
+     * are before it and all identifiers in the range with larger or equal keys
+     * are after it.
+     *
+     * @param keys
+     *            the distance keys for the array of identifiers
+     * @param ids
+     *            the array that contains the range of identifiers
+     * @param vectors
+     *            the unit vectors for the array of identifiers; may be
+     *            {@code null}
+     * @param fromIndex
+     *            the start of the range to rearrange (inclusive)
+     * @param toIndex
+     *            the end of the range to rearrange (exclusive)
+     * @param k
+     *            the index of the key to select; must be within the range
+     *
+     * @see DistancePartitioner#select(double[], Object[], int, int, int)
+     */
+    static void select(final double[] keys, final long[] ids, final double[] vectors,
+            final int fromIndex, final int toIndex, final int k) {
+
+        DistancePartitioner.select(keys, null, ids, vectors, fromIndex, toIndex, k);
+    }
+
+    /**
+     * Rearranges a range of points exactly as
+     * {@link DistancePartitioner#select(double[], Object[], int, int, int)}
+     * does, but chooses every pivot by median-of-medians instead of only
+     * falling back to median-of-medians when median-of-three pivots perform
+     * poorly.
+     *
+     * @param keys
+     *            the distance keys for the array of points
+     * @param points
+     *            the array that contains the range of points
+     * @param fromIndex
+     *            the start of the range to rearrange (inclusive)
+     * @param toIndex
+     *            the end of the range to rearrange (exclusive)
+     * @param k
+     *            the index of the key to select; must be within the range
+     */
+    static void selectByMedianOfMedians(final double[] keys, final Object[] points,
+            final int fromIndex, final int toIndex, final int k) {
+
+        DistancePartitioner.select(keys, points, null, null, fromIndex, toIndex, k, 0);
+    }
+
+    private static void select(final double[] keys, final Object[] points, final long[] ids, final double[] vectors,
+            final int fromIndex, final int toIndex, final int k) {
+
+        // A run of reasonable median-of-three pivots should shrink the range
+        // to nothing in about log2(n) rounds; allow twice that before falling
+        // back to median-of-medians pivots.
+        final int depthLimit = 2 * (32 - Integer.numberOfLeadingZeros(toIndex - fromIndex));
+
+        DistancePartitioner.select(keys, points, ids, vectors, fromIndex, toIndex, k, depthLimit);
+    }
+
+    private static void select(final double[] keys, final Object[] points, final long[] ids, final double[] vectors,
+            int fromIndex, int toIndex, final int k, int depthLimit) {
+
+        while(toIndex - fromIndex > 1) {
+            final double pivot;
+
+            if(depthLimit > 0) {
+                depthLimit--;
+                pivot = DistancePartitioner.medianOfThree(
+                        keys[fromIndex], keys[(fromIndex + toIndex) >>> 1], keys[toIndex - 1]);
+            } else {
+                pivot = DistancePartitioner.medianOfMedians(keys, points, ids, vectors, fromIndex, toIndex);
+            }
+
+            // Arrange the range into keys less than the pivot
+            // [fromIndex, lessThan), keys equal to the pivot
+            // [lessThan, greaterThan) and keys greater than the pivot
+            // [greaterThan, toIndex).
+            int lessThan = fromIndex;
+            int greaterThan = toIndex;
+            int i = fromIndex;
+
+            while(i < greaterThan) {
+                if(keys[i] < pivot) {
+                    DistancePartitioner.swap(keys, points, ids, vectors, lessThan++, i++);
+                } else if(keys[i] > pivot) {
+                    DistancePartitioner.swap(keys, points, ids, vectors, i, --greaterThan);
+                } else {
+                    i++;
+                }
+            }
+
+            if(k < lessThan) {
+                toIndex = lessThan;
+            } else if(k >= greaterThan) {
+                fromIndex = greaterThan;
+            } else {
+                // The kth key is equal to the pivot, so it's already in place.
+                return;
+            }
+        }
+    }
+
+    /**
+     * Finds a pivot that is guaranteed to have roughly 30% of the keys in a
+     * range on either side of it. The median of each group of five keys is
+     * moved to the front of the range, and the pivot is the median of those
+     * medians (found, in turn, by selection). Points are rearranged along with
+     * their keys.
+     */
+    private static double medianOfMedians(final double[] keys, final Object[] points, final long[] ids,
+            final double[] vectors, final int fromIndex, final int toIndex) {
+
+        int medianCount = 0;
+
+        for(int groupStart = fromIndex; groupStart < toIndex; groupStart += 5) {
+            final int groupEnd = Math.min(groupStart + 5, toIndex);
+
+            // Insertion sort is the cheapest way to order five keys while
+            // keeping their points alongside them.
+            for(int i = groupStart + 1; i < groupEnd; i++) {
+                for(int j = i; j > groupStart && keys[j - 1] > keys[j]; j--) {
+                    DistancePartitioner.swap(keys, points, ids, vectors, j - 1, j);
+                }
+            }
+
+            DistancePartitioner.swap(keys, points, ids, vectors,
+                    fromIndex + medianCount++, (groupStart + groupEnd - 1) >>> 1);
+        }
+
+        final int medianIndex = fromIndex + (medianCount >>> 1);
+        DistancePartitioner.select(keys, points, ids, vectors, fromIndex, fromIndex + medianCount, medianIndex);
+
+        return keys[medianIndex];
+    }
+
+    /**
+     * Rearranges a range of points such that all points with keys less than or
+     * equal to the given threshold come before all points with keys greater
+     * than the threshold.
+     *
+     * @param keys
+     *            the distance keys for the array of points
+     * @param points
+     *            the array that contains the range of points
+     * @param fromIndex
+     *            the start of the range to rearrange (inclusive)
+     * @param toIndex
+     *            the end of the range to rearrange (exclusive)
+     * @param threshold
+     *            the threshold against which to compare keys
+     *
+     * @return the index of the first point with a key greater than the
+     *         threshold, or {@code toIndex} if no keys in the range were
+     *         greater than the threshold
+     */
+    static int partition(final double[] keys, final Object[] points,
+            final int fromIndex, final int toIndex, final double threshold) {
+
+        return DistancePartitioner.partition(keys, points, null, fromIndex, toIndex, threshold);
+    }
+
+    /**
+     * Rearranges a range of points (and their unit vectors) such that all
+     * points with keys less than or equal to the given threshold come before
+     * all points with keys greater than the threshold.
+     *
+     * @param keys
+     *            the distance keys for the array of points
+     * @param points
+     *            the array that contains the range of points
+     * @param vectors
+     *            the unit vectors for the array of points; may be {@code null}
+     * @param fromIndex
+     *            the start of the range to rearrange (inclusive)
+     * @param toIndex
+     *            the end of the range to rearrange (exclusive)
+     * @param threshold
+     *            the threshold against which to compare keys
+     *
+     * @return the index of the first point with a key greater than the
+     *         threshold, or {@code toIndex} if no keys in the range were
+     *         greater than the threshold
+     */
+    static int partition(final double[] keys, final Object[] points, final double[] vectors,
+            final int fromIndex, final int toIndex, final double threshold) {
+
+        return DistancePartitioner.partition(keys, points, null, vectors, fromIndex, toIndex, threshold);
+    }
+
+    /**
+     * Rearranges a range of point identifiers (and their unit vectors) such
+     * that all identifiers with keys less than or equal to the given threshold
+     * come before all identifiers with keys greater than the threshold.
+     *
+     * @param keys
+     *            the distance keys for the array of identifiers
+     * @param ids
+     *            the array that contains the range of identifiers
+     * @param vectors
+     *            the unit vectors for the array of identifiers; may be
+     *            {@code null}
+     * @param fromIndex
+     *            the start of the range to rearrange (inclusive)
+     * @param toIndex
+     *            the end of the range to rearrange (exclusive)
+     * @param threshold
+     *            the threshold against which to compare keys
+     *
+     * @return the index of the first identifier with a key greater than the
+     *         threshold, or {@code toIndex} if no keys in the range were
+     *         greater than the threshold
+     */
+    static int partition(final double[] keys, final long[] ids, final double[] vectors,
+            final int fromIndex, final int toIndex, final double threshold) {
+
+        return DistancePartitioner.partition(keys, null, ids, vectors, fromIndex, toIndex, threshold);
+    }
+
+    private static int partition(final double[] keys, final Object[] points, final long[] ids, final double[] vectors,
+            final int fromIndex, final int toIndex, final double threshold) {
+
+        int boundary = fromIndex;
+
+        for(int i = fromIndex; i < toIndex; i++) {
+            if(keys[i] <= threshold) {
+                DistancePartitioner.swap(keys, points, ids, vectors, boundary++, i);
+            }
+        }
+
+        return boundary;
+    }
+
+    /**
+     * Finds the largest key in a range that is strictly less than the given
+     * limit.
+     *
+     * @param keys
+     *            the distance keys to search
+     * @param fromIndex
+     *            the index at which to start searching (inclusive)
+     * @param toIndex
+     *            the index at which to stop searching (exclusive)
+     * @param limit
+     *            the (exclusive) upper limit for returned keys
+     *
+     * @return the largest key less than {@code limit}, or
+     *         {@link Double#NEGATIVE_INFINITY} if no keys are less than the
+     *         limit
+     */
+    static double maxBelow(final double[] keys, final int fromIndex, final int toIndex, final double limit) {
+        double max = Double.NEGATIVE_INFINITY;
+
+        for(int i = fromIndex; i < toIndex; i++) {
+            if(keys[i] < limit && keys[i] > max) {
+                max = keys[i];
+            }
+        }
+
+        return max;
+    }
+
+    private static double medianOfThree(final double a, final double b, final double c) {
+        if(a < b) {
+            if(b < c) { return b; }
+            return a < c ? c : a;
+        } else {
+            if(a < c) { return a; }
+            return b < c ? c : b;
+        }
+    }
+
+    private static void swap(final double[] keys, final Object[] points, final long[] ids, final double[] vectors,
+            final int i, final int j) {
+
+        if(i == j) { return; }
+
+        final double key = keys[i];
+        keys[i] = keys[j];
+        keys[j] = key;
+
+        if(points != null) {
+            final Object point = points[i];
+            points[i] = points[j];
+            points[j] = point;
+        } else {
+            final long id = ids[i];
+            ids[i] = ids[j];
+            ids[j] = id;
+        }
+
+        if(vectors != null) {
+            for(int c = 0; c < 3; c++) {
+                final double component = vectors[3 * i + c];
+                vectors[3 * i + c] = vectors[3 * j + c];
+                vectors[3 * j + c] = component;
+            }
+        }
+    }
+}
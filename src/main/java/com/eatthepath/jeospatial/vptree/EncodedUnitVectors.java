@@ -0,0 +1,195 @@
+package com.eatthepath.jeospatial.vptree;
+
+/**
+ * <p>A fixed-size array of {@linkplain UnitVector unit vectors} stored as
+ * interleaved components with the precision called for by a
+ * {@linkplain CoordinateEncoding coordinate encoding}:
+ * {@link CoordinateEncoding#DOUBLE} keeps {@code double} components,
+ * {@link CoordinateEncoding#FLOAT} keeps {@code float} components and
+ * {@link CoordinateEncoding#E7} keeps fixed-point {@code int} components.</p>
+ *
+ * <p>Squared chord distances measured to compact vectors are only
+ * approximate. Callers should only use them to rule points out, and should pad
+ * any chord distance against which they compare by
+ * {@link EncodedUnitVectors#getChordDistanceError()}.</p>
+ *
+ * @author <a href="mailto:jon.chambers@gmail.com">Jon Chambers</a>
+ */
+abstract class EncodedUnitVectors {
+    /**
+     * Stores the given vectors with the precision called for by the given
+     * encoding.
+     *
+     * @param encoding
+     *            the encoding that determines the precision of the stored
+     *            vectors
+     * @param vectors
+     *            an array of interleaved vector components (see
+     *            {@link UnitVector}); a {@code DOUBLE} encoding keeps the
+     *            given array rather than copying it
+     *
+     * @return a new array of encoded vectors
+     */
+    public static EncodedUnitVectors create(CoordinateEncoding encoding, double[] vectors) {
+        switch(encoding) {
+            case FLOAT: {
+                return new FloatUnitVectors(vectors);
+            }
+
+            case E7: {
+                return new FixedPointUnitVectors(vectors);
+            }
+
+            default: {
+                return new DoubleUnitVectors(vectors);
+            }
+        }
+    }
+
+    /**
+     * Returns the squared chord distance from the given vector to the stored
+     * vector at the given index, which may be off by as much as
+     * {@link EncodedUnitVectors#getChordDistanceError()} before squaring.
+     *
+     * @param queryVector the vector from which to measure
+     * @param index the index of the vector to which to measure
+     *
+     * @return the squared chord distance between the two vectors
+     */
+    public abstract double getSquaredChordDistance(UnitVector queryVector, int index);
+
+    /**
+     * Tests whether the stored vector at the given index is the vector that
+     * would be stored for the given vector. Points with identical coordinates
+     * always have identical stored vectors.
+     *
+     * @param index the index of the stored vector
+     * @param vector the vector to compare to the stored vector
+     *
+     * @return {@code true} if the given vector would be stored exactly as the
+     *         vector at the given index or {@code false} otherwise
+     */
+    public abstract boolean matches(int index, UnitVector vector);
+
+    /**
+     * Returns the largest amount by which a chord distance calculated from
+     * stored vectors may differ from the exact chord distance.
+     *
+     * @return the largest possible error in a chord distance calculated from
+     *         stored vectors
+     */
+    public abstract double getChordDistanceError();
+
+    /**
+     * Returns the estimated number of bytes occupied by these vectors.
+     *
+     * @return the estimated size of these vectors in bytes
+     *
+     * @see MemoryStats
+     */
+    public abstract long getEstimatedBytes();
+
+    private static final class DoubleUnitVectors extends EncodedUnitVectors {
+        private final double[] vectors;
+
+        public DoubleUnitVectors(double[] vectors) {
+            this.vectors = vectors;
+        }
+
+        @Override
+        public double getSquaredChordDistance(UnitVector queryVector, int index) {
+            return queryVector.getSquaredChordDistanceTo(this.vectors, index);
+        }
+
+        @Override
+        public boolean matches(int index, UnitVector vector) {
+            return this.vectors[3 * index] == vector.x && this.vectors[3 * index + 1] == vector.y &&
+                    this.vectors[3 * index + 2] == vector.z;
+        }
+
+        @Override
+        public double getChordDistanceError() {
+            return 0;
+        }
+
+        @Override
+        public long getEstimatedBytes() {
+            return MemoryStats.getObjectSize(1, 0) + MemoryStats.getArraySize(this.vectors.length, 8);
+        }
+    }
+
+    private static final class FloatUnitVectors extends EncodedUnitVectors {
+        private final float[] vectors;
+
+        public FloatUnitVectors(double[] vectors) {
+            this.vectors = new float[vectors.length];
+
+            for(int i = 0; i < vectors.length; i++) {
+                this.vectors[i] = (float)vectors[i];
+            }
+        }
+
+        @Override
+        public double getSquaredChordDistance(UnitVector queryVector, int index) {
+            double dx = queryVector.x - this.vectors[3 * index];
+            double dy = queryVector.y - this.vectors[3 * index + 1];
+            double dz = queryVector.z - this.vectors[3 * index + 2];
+
+            return dx * dx + dy * dy + dz * dz;
+        }
+
+        @Override
+        public boolean matches(int index, UnitVector vector) {
+            return this.vectors[3 * index] == (float)vector.x && this.vectors[3 * index + 1] == (float)vector.y &&
+                    this.vectors[3 * index + 2] == (float)vector.z;
+        }
+
+        @Override
+        public double getChordDistanceError() {
+            return CoordinateEncoding.FLOAT.getChordDistanceError();
+        }
+
+        @Override
+        public long getEstimatedBytes() {
+            return MemoryStats.getObjectSize(1, 0) + MemoryStats.getArraySize(this.vectors.length, 4);
+        }
+    }
+
+    private static final class FixedPointUnitVectors extends EncodedUnitVectors {
+        private final int[] vectors;
+
+        public FixedPointUnitVectors(double[] vectors) {
+            this.vectors = new int[vectors.length];
+
+            for(int i = 0; i < vectors.length; i++) {
+                this.vectors[i] = CoordinateEncoding.toFixedPoint(vectors[i]);
+            }
+        }
+
+        @Override
+        public double getSquaredChordDistance(UnitVector queryVector, int index) {
+            double dx = queryVector.x - this.vectors[3 * index] * CoordinateEncoding.FIXED_POINT_UNIT;
+            double dy = queryVector.y - this.vectors[3 * index + 1] * CoordinateEncoding.FIXED_POINT_UNIT;
+            double dz = queryVector.z - this.vectors[3 * index + 2] * CoordinateEncoding.FIXED_POINT_UNIT;
+
+            return dx * dx + dy * dy + dz * dz;
+        }
+
+        @Override
+        public boolean matches(int index, UnitVector vector) {
+            return this.vectors[3 * index] == CoordinateEncoding.toFixedPoint(vector.x) &&
+                    this.vectors[3 * index + 1] == CoordinateEncoding.toFixedPoint(vector.y) &&
+                    this.vectors[3 * index + 2] == CoordinateEncoding.toFixedPoint(vector.z);
+        }
+
+        @Override
+        public double getChordDistanceError() {
+            return CoordinateEncoding.E7.getChordDistanceError();
+        }
+
+        @Override
+        public long getEstimatedBytes() {
+            return MemoryStats.getObjectSize(1, 0) + MemoryStats.getArraySize(this.vectors.length, 4);
+        }
+    }
+}
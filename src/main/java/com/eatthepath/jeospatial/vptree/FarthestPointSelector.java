@@ -0,0 +1,40 @@
+package com.eatthepath.jeospatial.vptree;
+
+import com.eatthepath.jeospatial.GeospatialPoint;
+import com.eatthepath.jeospatial.util.CachedGeospatialPoint;
+
+/**
+ * A {@link VantagePointSelector} that chooses the point farthest from the
+ * first point in a range. Points chosen this way lie near the "edge" of the
+ * set of candidates, which tends to produce balanced partitions. Choosing a
+ * point requires one distance calculation for every point in the range.
+ * 
+ * @author <a href="mailto:jon.chambers@gmail.com">Jon Chambers</a>
+ */
+public class FarthestPointSelector implements VantagePointSelector {
+    /**
+     * Returns the index of the point in the given range that is farthest from
+     * the first point in the range.
+     * 
+     * @return the index of the point farthest from the first point in the
+     *         range
+     */
+    @Override
+    public int selectVantagePoint(GeospatialPoint[] points, int fromIndex, int toIndex) {
+        CachedGeospatialPoint origin = new CachedGeospatialPoint(points[fromIndex]);
+        
+        int farthestIndex = fromIndex;
+        double farthestDistance = 0;
+        
+        for(int i = fromIndex + 1; i < toIndex; i++) {
+            double distance = origin.getDistanceTo(points[i]);
+            
+            if(distance > farthestDistance) {
+                farthestIndex = i;
+                farthestDistance = distance;
+            }
+        }
+        
+        return farthestIndex;
+    }
+}
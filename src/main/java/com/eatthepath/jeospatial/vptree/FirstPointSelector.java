@@ -0,0 +1,22 @@
+package com.eatthepath.jeospatial.vptree;
+
+import com.eatthepath.jeospatial.GeospatialPoint;
+
+/**
+ * A {@link VantagePointSelector} that always chooses the first point in a
+ * range. This is the cheapest possible strategy and the default for vp-trees,
+ * but may produce lopsided trees when points are clustered.
+ * 
+ * @author <a href="mailto:jon.chambers@gmail.com">Jon Chambers</a>
+ */
+public class FirstPointSelector implements VantagePointSelector {
+    /**
+     * Returns {@code fromIndex}.
+     * 
+     * @return {@code fromIndex}
+     */
+    @Override
+    public int selectVantagePoint(GeospatialPoint[] points, int fromIndex, int toIndex) {
+        return fromIndex;
+    }
+}
@@ -0,0 +1,1160 @@
+package com.eatthepath.jeospatial.vptree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.eatthepath.jeospatial.GeospatialPoint;
+import com.eatthepath.jeospatial.GeospatialPointDatabase;
+import com.eatthepath.jeospatial.PointVisitor;
+import com.eatthepath.jeospatial.SearchCriteria;
+import com.eatthepath.jeospatial.util.BoundingBoxSearchCriteria;
+import com.eatthepath.jeospatial.util.CachedGeospatialPoint;
+import com.eatthepath.jeospatial.util.GeospatialDistanceComparator;
+
+/**
+ * <p>An immutable geospatial database that stores a vantage point tree in a
+ * handful of flat arrays rather than as a graph of node objects. A
+ * {@code FrozenVPTree} is built once (either from an existing {@link VPTree}
+ * or from a collection of points) and answers queries exactly as the tree from
+ * which it was built would, but can't be modified afterward; all of the
+ * {@code Collection} methods that would modify the tree throw
+ * {@link UnsupportedOperationException}.</p>
+ *
+ * <p>Nodes are identified by their index in a set of parallel primitive arrays
+ * that hold each node's center (as a {@linkplain UnitVector unit vector}),
+ * distance threshold, covering radius and the indices of its children. All of the points in
+ * the tree are stored in one contiguous array, ordered so that the points in
+ * each leaf node occupy a single range of that array; leaf nodes simply record
+ * the start and end of their range. Unit vectors for all of the points are
+ * stored in another contiguous array in the same order. Searches over a frozen
+ * tree touch far fewer objects (and far less scattered memory) than searches
+ * over a {@code VPTree}, which makes frozen trees a good choice for datasets
+ * that are built once and then queried many times.</p>
+ *
+ * <p>Unit vectors may be stored with a compact
+ * {@linkplain CoordinateEncoding encoding}, in which case their components
+ * are stored as {@code float} or fixed-point {@code int} values and vectors
+ * take half as much memory.
+ * Compact vectors are only used to rule points and subtrees out; distances
+ * to points that can't be ruled out are always calculated exactly from the
+ * point objects themselves, so a tree returns exactly the same results
+ * regardless of its encoding.</p>
+ *
+ * <p>Because they can't be modified, {@code FrozenVPTree} instances are
+ * thread-safe.</p>
+ *
+ * @author <a href="mailto:jon.chambers@gmail.com">Jon Chambers</a>
+ */
+public class FrozenVPTree<E extends GeospatialPoint> implements GeospatialPointDatabase<E> {
+    private static final int NO_CHILD = -1;
+
+    private final Object[] points;
+    private final EncodedUnitVectors pointVectors;
+
+    private final EncodedUnitVectors centerVectors;
+    private final double[] thresholds;
+    private final double[] coveringRadii;
+    private final double[] boundingRectangles;
+    private final int[] closerChildren;
+    private final int[] fartherChildren;
+    private final int[] fromIndices;
+    private final int[] toIndices;
+
+    private final CoordinateEncoding encoding;
+    private final double chordDistanceError;
+
+    private final int binSize;
+
+    /**
+     * Constructs a new frozen vp-tree that contains the given points using the
+     * default node capacity and vantage point selection strategy.
+     *
+     * @param points the points to include in the tree
+     */
+    public FrozenVPTree(Collection<E> points) {
+        this(new VPTree<E>(points));
+    }
+
+    /**
+     * Constructs a new frozen vp-tree that contains the given points and has
+     * the given node capacity.
+     *
+     * @param points the points to include in the tree
+     * @param nodeCapacity the largest number of points to store in each leaf
+     *            node
+     */
+    public FrozenVPTree(Collection<E> points, int nodeCapacity) {
+        this(new VPTree<E>(points, nodeCapacity));
+    }
+
+    /**
+     * Constructs a new frozen vp-tree that contains the given points, has the
+     * given node capacity and stores unit vectors with the given encoding.
+     *
+     * @param points the points to include in the tree
+     * @param nodeCapacity the largest number of points to store in each leaf
+     *            node
+     * @param encoding the encoding with which to store unit vectors
+     */
+    public FrozenVPTree(Collection<E> points, int nodeCapacity, CoordinateEncoding encoding) {
+        this(new VPTree<E>(points, nodeCapacity), encoding);
+    }
+
+    /**
+     * Constructs a new frozen vp-tree with the same structure and contents as
+     * the given vp-tree. The given tree is not modified, and later changes to
+     * the given tree are not reflected in the frozen tree. The given tree must
+     * not be modified while the frozen tree is being constructed.
+     *
+     * @param tree the tree to freeze
+     */
+    public FrozenVPTree(VPTree<E> tree) {
+        this(tree, CoordinateEncoding.DOUBLE);
+    }
+
+    /**
+     * Constructs a new frozen vp-tree with the same structure and contents as
+     * the given vp-tree that stores unit vectors with the given encoding. The
+     * given tree is not modified, and later changes to the given tree are not
+     * reflected in the frozen tree. The given tree must not be modified while
+     * the frozen tree is being constructed.
+     *
+     * @param tree the tree to freeze
+     * @param encoding the encoding with which to store unit vectors
+     */
+    public FrozenVPTree(VPTree<E> tree, CoordinateEncoding encoding) {
+        VPTree<E>.VPNode<E> root = tree.getRoot();
+
+        int nodeCount = FrozenVPTree.countNodes(root);
+
+        this.points = new Object[tree.size()];
+
+        this.thresholds = new double[nodeCount];
+        this.coveringRadii = new double[nodeCount];
+        this.boundingRectangles = new double[4 * nodeCount];
+        this.closerChildren = new int[nodeCount];
+        this.fartherChildren = new int[nodeCount];
+        this.fromIndices = new int[nodeCount];
+        this.toIndices = new int[nodeCount];
+
+        this.binSize = tree.getBinSize();
+
+        // Everything about the tree's structure is calculated from exact
+        // vectors; only then are the vectors stored with the given encoding.
+        double[] pointVectors = new double[3 * this.points.length];
+        double[] centerVectors = new double[3 * nodeCount];
+
+        this.storeNode(root, 0, 0, pointVectors, centerVectors);
+
+        this.encoding = encoding;
+        this.pointVectors = EncodedUnitVectors.create(encoding, pointVectors);
+        this.centerVectors = EncodedUnitVectors.create(encoding, centerVectors);
+        this.chordDistanceError = Math.max(this.pointVectors.getChordDistanceError(),
+                this.centerVectors.getChordDistanceError());
+    }
+
+    /**
+     * Returns the number of nodes in the subtree rooted at the given node.
+     */
+    private static int countNodes(VPTree<?>.VPNode<?> node) {
+        if(node.isLeafNode()) {
+            return 1;
+        }
+
+        return 1 + FrozenVPTree.countNodes(node.getCloserNode()) + FrozenVPTree.countNodes(node.getFartherNode());
+    }
+
+    /**
+     * Copies the given node and its descendants into this tree's arrays. Nodes
+     * are numbered in depth-first order.
+     *
+     * @param node
+     *            the node to copy
+     * @param nodeIndex
+     *            the index at which to store the given node
+     * @param pointIndex
+     *            the index in this tree's point array at which to store the
+     *            first of the given node's points
+     * @param pointVectors
+     *            the array in which to store the exact unit vectors of points
+     * @param centerVectors
+     *            the array in which to store the exact unit vectors of node
+     *            centers
+     *
+     * @return the index of the next unused node
+     */
+    private int storeNode(VPTree<E>.VPNode<E> node, int nodeIndex, int pointIndex, double[] pointVectors,
+            double[] centerVectors) {
+        if(node.isLeafNode()) {
+            this.closerChildren[nodeIndex] = NO_CHILD;
+            this.fartherChildren[nodeIndex] = NO_CHILD;
+            this.fromIndices[nodeIndex] = pointIndex;
+
+            for(E point : node.getPoints()) {
+                UnitVector vector = new UnitVector(point);
+
+                this.points[pointIndex] = point;
+                pointVectors[3 * pointIndex] = vector.x;
+                pointVectors[3 * pointIndex + 1] = vector.y;
+                pointVectors[3 * pointIndex + 2] = vector.z;
+
+                pointIndex++;
+            }
+
+            this.toIndices[nodeIndex] = pointIndex;
+
+            return nodeIndex + 1;
+        } else {
+            UnitVector centerVector = node.getCenterVector();
+
+            centerVectors[3 * nodeIndex] = centerVector.x;
+            centerVectors[3 * nodeIndex + 1] = centerVector.y;
+            centerVectors[3 * nodeIndex + 2] = centerVector.z;
+            this.thresholds[nodeIndex] = node.getSquaredThreshold();
+            this.fromIndices[nodeIndex] = pointIndex;
+
+            int closerIndex = nodeIndex + 1;
+            this.closerChildren[nodeIndex] = closerIndex;
+
+            int fartherIndex = this.storeNode(node.getCloserNode(), closerIndex, pointIndex, pointVectors, centerVectors);
+            this.fartherChildren[nodeIndex] = fartherIndex;
+
+            int nextIndex = this.storeNode(node.getFartherNode(), fartherIndex, this.toIndices[closerIndex],
+                    pointVectors, centerVectors);
+            this.toIndices[nodeIndex] = this.toIndices[fartherIndex];
+
+            // The source node's covering radius and bounding rectangle may be
+            // overestimates if points have been removed from it, so find the
+            // exact bounds.
+            double coveringRadius = 0;
+            double west = Double.POSITIVE_INFINITY;
+            double east = Double.NEGATIVE_INFINITY;
+            double north = Double.NEGATIVE_INFINITY;
+            double south = Double.POSITIVE_INFINITY;
+
+            for(int i = pointIndex; i < this.toIndices[nodeIndex]; i++) {
+                coveringRadius = Math.max(coveringRadius, centerVector.getSquaredChordDistanceTo(pointVectors, i));
+
+                GeospatialPoint point = (GeospatialPoint)this.points[i];
+                double longitude = BoundingBoxSearchCriteria.normalizeLongitude(point.getLongitude());
+
+                west = Math.min(west, longitude);
+                east = Math.max(east, longitude);
+                north = Math.max(north, point.getLatitude());
+                south = Math.min(south, point.getLatitude());
+            }
+
+            this.coveringRadii[nodeIndex] = coveringRadius;
+            this.boundingRectangles[4 * nodeIndex] = west;
+            this.boundingRectangles[4 * nodeIndex + 1] = east;
+            this.boundingRectangles[4 * nodeIndex + 2] = north;
+            this.boundingRectangles[4 * nodeIndex + 3] = south;
+
+            return nextIndex;
+        }
+    }
+
+    /**
+     * Returns the maximum number of points stored in each of this tree's leaf
+     * nodes.
+     *
+     * @return the node capacity of the tree from which this tree was built
+     */
+    public int getBinSize() {
+        return this.binSize;
+    }
+
+    /**
+     * Returns the encoding with which this tree stores unit vectors.
+     *
+     * @return the encoding with which this tree stores unit vectors
+     */
+    public CoordinateEncoding getCoordinateEncoding() {
+        return this.encoding;
+    }
+
+    /**
+     * Returns a snapshot of the shape of this tree and an estimate of the
+     * memory it occupies. Frozen trees store node centers as unit vectors, so
+     * they hold no center objects.
+     *
+     * @return memory statistics for this tree
+     */
+    public MemoryStats getMemoryStats() {
+        MemoryStats.Counter counter = new MemoryStats.Counter();
+        int nodeCount = this.thresholds.length;
+
+        counter.nodeCount = nodeCount;
+
+        for(int node = 0; node < nodeCount; node++) {
+            if(this.closerChildren[node] == NO_CHILD) {
+                counter.leafCount++;
+            }
+        }
+
+        counter.pointCapacity = this.points.length;
+
+        // Eleven references, a double and an int
+        counter.estimatedBytes = MemoryStats.getObjectSize(11, 12) +
+                MemoryStats.getReferenceArraySize(this.points.length) +
+                this.pointVectors.getEstimatedBytes() +
+                this.centerVectors.getEstimatedBytes() +
+                MemoryStats.getArraySize(this.boundingRectangles.length, 8) +
+                2 * MemoryStats.getArraySize(nodeCount, 8) +
+                4 * MemoryStats.getArraySize(nodeCount, 4);
+
+        return counter.toMemoryStats(this.points.length);
+    }
+
+    /**
+     * Tests whether the node at the given index is a leaf node.
+     */
+    private boolean isLeafNode(int node) {
+        return this.closerChildren[node] == NO_CHILD;
+    }
+
+    /**
+     * Returns the squared chord distance between the center of the given node
+     * and the given vector, which may be off by as much as this tree's chord
+     * distance error before squaring.
+     */
+    private double getSquaredChordDistanceToCenter(int node, UnitVector vector) {
+        return this.centerVectors.getSquaredChordDistance(vector, node);
+    }
+
+    /**
+     * Offers points close to the query point to the given heap, visiting
+     * subtrees in best-first order and pruning the search in exactly the same
+     * way as
+     * {@link VPTree.VPNode#getNearestNeighborsBestFirst(LeafScanner, NeighborCollector, NodeQueue)}.
+     * Every distance measured from stored vectors is padded by this tree's
+     * chord distance error, so compact vectors never rule out a point that
+     * belongs in the results.
+     *
+     * @param queryVector the unit vector for the query point
+     * @param results the heap to which to offer points
+     * @param queue an empty queue to use for pending subtrees
+     */
+    @SuppressWarnings("unchecked")
+    private void getNearestNeighbors(final UnitVector queryVector, final NeighborHeap<E> results,
+            final NodeQueue queue) {
+
+        final double error = this.chordDistanceError;
+
+        queue.add(null, 0, 0);
+
+        while(!queue.isEmpty()) {
+            double bound = queue.peekBound();
+            double searchRadius = UnitVector.toChordDistance(results.getSearchRadius());
+
+            if(bound > searchRadius) {
+                break;
+            }
+
+            int node = queue.peekIndex();
+            queue.remove();
+
+            if(this.isLeafNode(node)) {
+                double paddedSearchRadius = searchRadius + error;
+                double squaredSearchRadius = paddedSearchRadius * paddedSearchRadius;
+
+                for(int i = this.fromIndices[node]; i < this.toIndices[node]; i++) {
+                    if(this.pointVectors.getSquaredChordDistance(queryVector, i) <= squaredSearchRadius) {
+                        if(results.offer((E)this.points[i])) {
+                            // The search radius may have shrunk.
+                            paddedSearchRadius = UnitVector.toChordDistance(results.getSearchRadius()) + error;
+                            squaredSearchRadius = paddedSearchRadius * paddedSearchRadius;
+                        }
+                    }
+                }
+            } else {
+                double distanceToCenter = Math.sqrt(this.getSquaredChordDistanceToCenter(node, queryVector));
+                double threshold = Math.sqrt(this.thresholds[node]);
+
+                double closerBound = Math.max(bound, distanceToCenter - threshold - error);
+                double fartherBound = Math.max(bound, threshold - distanceToCenter - error);
+
+                if(closerBound <= searchRadius) {
+                    queue.add(null, this.closerChildren[node], closerBound);
+                }
+
+                if(fartherBound <= searchRadius) {
+                    queue.add(null, this.fartherChildren[node], fartherBound);
+                }
+            }
+        }
+
+        queue.clear();
+    }
+
+    /**
+     * Passes each point within the given range that matches the given search
+     * criteria (if any) to the given visitor, stopping as soon as the visitor
+     * asks to stop and pruning the search in exactly the same way as
+     * {@link VPTree.VPNode#forEachWithinRange(CachedGeospatialPoint, LeafScanner, double, double, SearchCriteria, PointVisitor)}.
+     * The given maximum chord distance must already be padded by this tree's
+     * chord distance error.
+     *
+     * @return {@code true} if the search ran to completion or {@code false}
+     *         if the visitor stopped it
+     */
+    @SuppressWarnings("unchecked")
+    private boolean forEachWithinRange(final int node, final CachedGeospatialPoint queryPoint,
+            final UnitVector queryVector, final double maxDistance, final double maxChordDistance,
+            final SearchCriteria<E> criteria, final PointVisitor<E> visitor) {
+
+        if(this.isLeafNode(node)) {
+            double squaredMaxChordDistance = maxChordDistance * maxChordDistance;
+
+            for(int i = this.fromIndices[node]; i < this.toIndices[node]; i++) {
+                if(this.pointVectors.getSquaredChordDistance(queryVector, i) > squaredMaxChordDistance) {
+                    continue;
+                }
+
+                E point = (E)this.points[i];
+                double distance = queryPoint.getDistanceTo(point);
+
+                if(distance <= maxDistance) {
+                    if(criteria == null || criteria.matches(point)) {
+                        if(!visitor.visit(point, distance)) {
+                            return false;
+                        }
+                    }
+                }
+            }
+
+            return true;
+        } else {
+            double distanceToQueryPoint = Math.sqrt(this.getSquaredChordDistanceToCenter(node, queryVector));
+            double threshold = Math.sqrt(this.thresholds[node]);
+
+            if(distanceToQueryPoint <= threshold + maxChordDistance) {
+                if(!this.forEachWithinRange(this.closerChildren[node], queryPoint, queryVector, maxDistance,
+                        maxChordDistance, criteria, visitor)) {
+                    return false;
+                }
+            }
+
+            if(distanceToQueryPoint + maxChordDistance > threshold) {
+                return this.forEachWithinRange(this.fartherChildren[node], queryPoint, queryVector, maxDistance,
+                        maxChordDistance, criteria, visitor);
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * Counts the points in the given subtree within the given range of a
+     * query point, skipping and accepting whole subtrees in exactly the same
+     * way as
+     * {@link VPTree.VPNode#countWithinRange(CachedGeospatialPoint, LeafScanner, double, double, double)}.
+     * The number of points in a subtree is simply the length of its range of
+     * the point array. The given maximum chord distance must already be padded
+     * outward, and the given inner chord distance inward, by this tree's chord
+     * distance error.
+     */
+    private int countWithinRange(final int node, final CachedGeospatialPoint queryPoint, final UnitVector queryVector,
+            final double maxDistance, final double maxChordDistance, final double innerChordDistance) {
+
+        if(this.isLeafNode(node)) {
+            double squaredMaxChordDistance = maxChordDistance * maxChordDistance;
+            double squaredInnerChordDistance = innerChordDistance > 0 ? innerChordDistance * innerChordDistance : -1;
+
+            int count = 0;
+
+            for(int i = this.fromIndices[node]; i < this.toIndices[node]; i++) {
+                double squaredDistance = this.pointVectors.getSquaredChordDistance(queryVector, i);
+
+                if(squaredDistance > squaredMaxChordDistance) {
+                    continue;
+                }
+
+                if(squaredDistance <= squaredInnerChordDistance ||
+                        queryPoint.getDistanceTo((GeospatialPoint)this.points[i]) <= maxDistance) {
+                    count++;
+                }
+            }
+
+            return count;
+        } else {
+            double distanceToQueryPoint = Math.sqrt(this.getSquaredChordDistanceToCenter(node, queryVector));
+            double coveringRadius = Math.sqrt(this.coveringRadii[node]);
+
+            if(distanceToQueryPoint - coveringRadius > maxChordDistance) {
+                return 0;
+            }
+
+            if(distanceToQueryPoint + coveringRadius <= innerChordDistance) {
+                return this.toIndices[node] - this.fromIndices[node];
+            }
+
+            double threshold = Math.sqrt(this.thresholds[node]);
+            int count = 0;
+
+            if(distanceToQueryPoint <= threshold + maxChordDistance) {
+                count += this.countWithinRange(this.closerChildren[node], queryPoint, queryVector, maxDistance,
+                        maxChordDistance, innerChordDistance);
+            }
+
+            if(distanceToQueryPoint + maxChordDistance > threshold) {
+                count += this.countWithinRange(this.fartherChildren[node], queryPoint, queryVector, maxDistance,
+                        maxChordDistance, innerChordDistance);
+            }
+
+            return count;
+        }
+    }
+
+    /**
+     * Passes the points in the given subtree that fall within the given
+     * bounding box and match the given search criteria to the given visitor,
+     * pruning and accepting whole subtrees by their bounding rectangles in
+     * exactly the same way as
+     * {@link VPTree.VPNode#forEachInBoundingBox(BoundingBoxSearchCriteria, boolean, SearchCriteria, CachedGeospatialPoint, PointVisitor)}.
+     */
+    @SuppressWarnings("unchecked")
+    private boolean forEachInBoundingBox(final int node, final BoundingBoxSearchCriteria<E> box, boolean contained,
+            final SearchCriteria<E> criteria, final CachedGeospatialPoint origin, final PointVisitor<E> visitor) {
+
+        if(this.isLeafNode(node)) {
+            for(int i = this.fromIndices[node]; i < this.toIndices[node]; i++) {
+                E point = (E)this.points[i];
+
+                if(!contained && !box.contains(point.getLatitude(), point.getLongitude())) {
+                    continue;
+                }
+
+                if(criteria == null || criteria.matches(point)) {
+                    double distance = origin != null ? origin.getDistanceTo(point) : Double.NaN;
+
+                    if(!visitor.visit(point, distance)) {
+                        return false;
+                    }
+                }
+            }
+
+            return true;
+        } else {
+            if(!contained) {
+                int r = 4 * node;
+
+                if(!box.intersectsRectangle(this.boundingRectangles[r], this.boundingRectangles[r + 1],
+                        this.boundingRectangles[r + 2], this.boundingRectangles[r + 3])) {
+                    return true;
+                }
+
+                contained = box.containsRectangle(this.boundingRectangles[r], this.boundingRectangles[r + 1],
+                        this.boundingRectangles[r + 2], this.boundingRectangles[r + 3]);
+            }
+
+            return this.forEachInBoundingBox(this.closerChildren[node], box, contained, criteria, origin, visitor) &&
+                    this.forEachInBoundingBox(this.fartherChildren[node], box, contained, criteria, origin, visitor);
+        }
+    }
+
+    /**
+     * Counts the points in the given subtree that fall within the given
+     * bounding box; subtrees whose bounding rectangles lie entirely inside the
+     * box contribute the lengths of their ranges of the point array.
+     */
+    private int countInBoundingBox(final int node, final BoundingBoxSearchCriteria<E> box) {
+        if(this.isLeafNode(node)) {
+            int count = 0;
+
+            for(int i = this.fromIndices[node]; i < this.toIndices[node]; i++) {
+                GeospatialPoint point = (GeospatialPoint)this.points[i];
+
+                if(box.contains(point.getLatitude(), point.getLongitude())) {
+                    count++;
+                }
+            }
+
+            return count;
+        } else {
+            int r = 4 * node;
+
+            if(!box.intersectsRectangle(this.boundingRectangles[r], this.boundingRectangles[r + 1],
+                    this.boundingRectangles[r + 2], this.boundingRectangles[r + 3])) {
+                return 0;
+            }
+
+            if(box.containsRectangle(this.boundingRectangles[r], this.boundingRectangles[r + 1],
+                    this.boundingRectangles[r + 2], this.boundingRectangles[r + 3])) {
+                return this.toIndices[node] - this.fromIndices[node];
+            }
+
+            return this.countInBoundingBox(this.closerChildren[node], box) +
+                    this.countInBoundingBox(this.fartherChildren[node], box);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.eatthepath.jeospatial.GeospatialPointDatabase#getNearestNeighbor(com.eatthepath.jeospatial.GeospatialPoint)
+     */
+    @Override
+    public E getNearestNeighbor(GeospatialPoint queryPoint) {
+        return this.getNearestNeighbor(queryPoint, Double.POSITIVE_INFINITY, null);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.eatthepath.jeospatial.GeospatialPointDatabase#getNearestNeighbor(com.eatthepath.jeospatial.GeospatialPoint, double)
+     */
+    @Override
+    public E getNearestNeighbor(GeospatialPoint queryPoint, double maxDistance) {
+        return this.getNearestNeighbor(queryPoint, maxDistance, null);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.eatthepath.jeospatial.GeospatialPointDatabase#getNearestNeighbor(com.eatthepath.jeospatial.GeospatialPoint, com.eatthepath.jeospatial.SearchCriteria)
+     */
+    @Override
+    public E getNearestNeighbor(GeospatialPoint queryPoint, SearchCriteria<E> searchCriteria) {
+        return this.getNearestNeighbor(queryPoint, Double.POSITIVE_INFINITY, searchCriteria);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.eatthepath.jeospatial.GeospatialPointDatabase#getNearestNeighbor(com.eatthepath.jeospatial.GeospatialPoint, double, com.eatthepath.jeospatial.SearchCriteria)
+     */
+    @Override
+    public E getNearestNeighbor(GeospatialPoint queryPoint, double maxDistance, SearchCriteria<E> searchCriteria) {
+        QueryContext context = QueryContext.acquire();
+
+        try {
+            return this.searchNearestNeighbors(queryPoint, 1, maxDistance, searchCriteria, context).pollNearest();
+        } finally {
+            context.release();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.eatthepath.jeospatial.GeospatialPointDatabase#getNearestNeighbors(com.eatthepath.jeospatial.GeospatialPoint, int)
+     */
+    @Override
+    public List<E> getNearestNeighbors(GeospatialPoint queryPoint, int maxResults) {
+        return this.getNearestNeighbors(queryPoint, maxResults, Double.POSITIVE_INFINITY, null);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.eatthepath.jeospatial.GeospatialPointDatabase#getNearestNeighbors(com.eatthepath.jeospatial.GeospatialPoint, int, com.eatthepath.jeospatial.SearchCriteria)
+     */
+    @Override
+    public List<E> getNearestNeighbors(GeospatialPoint queryPoint, int maxResults, SearchCriteria<E> searchCriteria) {
+        return this.getNearestNeighbors(queryPoint, maxResults, Double.POSITIVE_INFINITY, searchCriteria);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.eatthepath.jeospatial.GeospatialPointDatabase#getNearestNeighbors(com.eatthepath.jeospatial.GeospatialPoint, int, double)
+     */
+    @Override
+    public List<E> getNearestNeighbors(GeospatialPoint queryPoint, int maxResults, double maxDistance) {
+        return this.getNearestNeighbors(queryPoint, maxResults, maxDistance, null);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.eatthepath.jeospatial.GeospatialPointDatabase#getNearestNeighbors(com.eatthepath.jeospatial.GeospatialPoint, int, double, com.eatthepath.jeospatial.SearchCriteria)
+     */
+    @Override
+    public List<E> getNearestNeighbors(GeospatialPoint queryPoint, int maxResults, double maxDistance, SearchCriteria<E> searchCriteria) {
+        QueryContext context = QueryContext.acquire();
+
+        try {
+            return this.searchNearestNeighbors(queryPoint, maxResults, maxDistance, searchCriteria, context)
+                    .drainToSortedList();
+        } finally {
+            context.release();
+        }
+    }
+
+    /**
+     * Searches this tree for the points nearest to the given query point,
+     * using the given query context's working storage.
+     *
+     * @return the context's neighbor heap, populated with the search results
+     */
+    private NeighborHeap<E> searchNearestNeighbors(GeospatialPoint queryPoint, int maxResults, double maxDistance,
+            SearchCriteria<E> searchCriteria, QueryContext context) {
+
+        CachedGeospatialPoint cachedQueryPoint = CachedGeospatialPoint.valueOf(queryPoint);
+
+        NeighborHeap<E> heap = context.getHeap();
+        heap.reset(cachedQueryPoint, maxResults, maxDistance, searchCriteria);
+
+        this.getNearestNeighbors(new UnitVector(cachedQueryPoint), heap, context.getNodeQueue());
+
+        return heap;
+    }
+
+    /**
+     * Returns an iterator over all of the points in this tree in order of
+     * increasing distance from the given query point. The tree is searched
+     * lazily as the iterator advances, in exactly the same way as by
+     * {@link VPTree#getNeighborsByDistance(GeospatialPoint)}.
+     *
+     * @see com.eatthepath.jeospatial.GeospatialPointDatabase#getNeighborsByDistance(com.eatthepath.jeospatial.GeospatialPoint)
+     */
+    @Override
+    public Iterator<E> getNeighborsByDistance(GeospatialPoint queryPoint) {
+        return new NeighborIterator(queryPoint);
+    }
+
+    /**
+     * Iterates over the points in this tree in order of increasing distance
+     * from a query point. Nodes and points share a single queue: nodes and
+     * points keyed by lower bounds for their distances are identified by
+     * index, and points keyed by their exact distances are identified by
+     * object.
+     */
+    private class NeighborIterator implements Iterator<E> {
+        private final CachedGeospatialPoint queryPoint;
+        private final UnitVector queryVector;
+        private final NodeQueue queue;
+
+        public NeighborIterator(GeospatialPoint queryPoint) {
+            this.queryPoint = CachedGeospatialPoint.valueOf(queryPoint);
+            this.queryVector = new UnitVector(this.queryPoint);
+            this.queue = new NodeQueue();
+
+            this.queue.add(null, 0, NodeQueue.SUBTREE, 0);
+        }
+
+        @SuppressWarnings("unchecked")
+        private boolean advance() {
+            while(!this.queue.isEmpty()) {
+                int kind = this.queue.peekKind();
+
+                if(kind == NodeQueue.POINT) {
+                    return true;
+                }
+
+                int index = this.queue.peekIndex();
+                double bound = this.queue.peekBound();
+                this.queue.remove();
+
+                if(kind == NodeQueue.POINT_BOUND) {
+                    E point = (E)FrozenVPTree.this.points[index];
+                    this.queue.add(point, index, NodeQueue.POINT, this.queryPoint.getDistanceTo(point));
+                } else {
+                    this.expand(index, bound);
+                }
+            }
+
+            return false;
+        }
+
+        private void expand(int node, double bound) {
+            final double error = FrozenVPTree.this.chordDistanceError;
+
+            if(FrozenVPTree.this.isLeafNode(node)) {
+                for(int i = FrozenVPTree.this.fromIndices[node]; i < FrozenVPTree.this.toIndices[node]; i++) {
+                    double squaredDistance = FrozenVPTree.this.pointVectors.getSquaredChordDistance(this.queryVector, i);
+                    this.queue.add(null, i, NodeQueue.POINT_BOUND,
+                            UnitVector.toLowerBoundMeters(Math.sqrt(squaredDistance) - error));
+                }
+            } else {
+                double distanceToCenter =
+                        Math.sqrt(FrozenVPTree.this.getSquaredChordDistanceToCenter(node, this.queryVector));
+                double threshold = Math.sqrt(FrozenVPTree.this.thresholds[node]);
+
+                this.queue.add(null, FrozenVPTree.this.closerChildren[node], NodeQueue.SUBTREE,
+                        Math.max(bound, UnitVector.toLowerBoundMeters(distanceToCenter - threshold - error)));
+                this.queue.add(null, FrozenVPTree.this.fartherChildren[node], NodeQueue.SUBTREE,
+                        Math.max(bound, UnitVector.toLowerBoundMeters(threshold - distanceToCenter - error)));
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.advance();
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public E next() {
+            if(!this.advance()) {
+                throw new NoSuchElementException();
+            }
+
+            E next = (E)this.queue.peekNode();
+            this.queue.remove();
+
+            return next;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.eatthepath.jeospatial.GeospatialPointDatabase#getAllNeighborsWithinDistance(com.eatthepath.jeospatial.GeospatialPoint, double)
+     */
+    @Override
+    public List<E> getAllNeighborsWithinDistance(GeospatialPoint queryPoint, double maxDistance) {
+        return this.getAllNeighborsWithinDistance(queryPoint, maxDistance, null);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.eatthepath.jeospatial.GeospatialPointDatabase#getAllNeighborsWithinDistance(com.eatthepath.jeospatial.GeospatialPoint, double, com.eatthepath.jeospatial.SearchCriteria)
+     */
+    @Override
+    public List<E> getAllNeighborsWithinDistance(GeospatialPoint queryPoint, double maxDistance, SearchCriteria<E> searchCriteria) {
+        CachedGeospatialPoint cachedQueryPoint = CachedGeospatialPoint.valueOf(queryPoint);
+
+        final ArrayList<E> results = new ArrayList<E>(this.binSize);
+        this.forEachWithinRange(0, cachedQueryPoint, new UnitVector(queryPoint), maxDistance,
+                UnitVector.toChordDistance(maxDistance) + this.chordDistanceError, searchCriteria, new PointVisitor<E>() {
+                    @Override
+                    public boolean visit(E point, double distance) {
+                        results.add(point);
+                        return true;
+                    }
+                });
+
+        java.util.Collections.sort(results, new GeospatialDistanceComparator<E>(cachedQueryPoint));
+
+        return results;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.eatthepath.jeospatial.GeospatialPointDatabase#forEachWithinDistance(com.eatthepath.jeospatial.GeospatialPoint, double, com.eatthepath.jeospatial.PointVisitor)
+     */
+    @Override
+    public boolean forEachWithinDistance(GeospatialPoint queryPoint, double maxDistance, PointVisitor<E> visitor) {
+        return this.forEachWithinRange(0, CachedGeospatialPoint.valueOf(queryPoint), new UnitVector(queryPoint),
+                maxDistance, UnitVector.toChordDistance(maxDistance) + this.chordDistanceError, null, visitor);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.eatthepath.jeospatial.GeospatialPointDatabase#countWithinDistance(com.eatthepath.jeospatial.GeospatialPoint, double)
+     */
+    @Override
+    public int countWithinDistance(GeospatialPoint queryPoint, double maxDistance) {
+        return this.countWithinRange(0, CachedGeospatialPoint.valueOf(queryPoint), new UnitVector(queryPoint),
+                maxDistance, UnitVector.toChordDistance(maxDistance) + this.chordDistanceError,
+                UnitVector.toInnerChordDistance(maxDistance) - this.chordDistanceError);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.eatthepath.jeospatial.GeospatialPointDatabase#getAllPointsInBoundingBox(double, double, double, double)
+     */
+    @Override
+    public List<E> getAllPointsInBoundingBox(double west, double east, double north, double south) {
+        return this.getAllPointsInBoundingBox(west, east, north, south, null, null);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.eatthepath.jeospatial.GeospatialPointDatabase#getAllPointsInBoundingBox(double, double, double, double, com.eatthepath.jeospatial.GeospatialPoint)
+     */
+    @Override
+    public List<E> getAllPointsInBoundingBox(double west, double east, double north, double south,
+            GeospatialPoint orderingPoint) {
+        return this.getAllPointsInBoundingBox(west, east, north, south, null, orderingPoint);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.eatthepath.jeospatial.GeospatialPointDatabase#getAllPointsInBoundingBox(double, double, double, double, com.eatthepath.jeospatial.SearchCriteria)
+     */
+    @Override
+    public List<E> getAllPointsInBoundingBox(double west, double east, double north, double south,
+            SearchCriteria<E> otherCriteria) {
+        return this.getAllPointsInBoundingBox(west, east, north, south, otherCriteria, null);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.eatthepath.jeospatial.GeospatialPointDatabase#getAllPointsInBoundingBox(double, double, double, double, com.eatthepath.jeospatial.SearchCriteria, com.eatthepath.jeospatial.GeospatialPoint)
+     */
+    @Override
+    public List<E> getAllPointsInBoundingBox(double west, double east, double north, double south,
+            SearchCriteria<E> otherCriteria, GeospatialPoint orderingPoint) {
+
+        final ArrayList<E> pointsInBox = new ArrayList<E>();
+
+        this.forEachInBoundingBox(0, new BoundingBoxSearchCriteria<E>(west, east, north, south), false,
+                otherCriteria, null, new PointVisitor<E>() {
+                    @Override
+                    public boolean visit(E point, double distance) {
+                        pointsInBox.add(point);
+                        return true;
+                    }
+                });
+
+        if(orderingPoint != null) {
+            java.util.Collections.sort(pointsInBox, new GeospatialDistanceComparator<E>(orderingPoint));
+        }
+
+        return pointsInBox;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.eatthepath.jeospatial.GeospatialPointDatabase#countInBoundingBox(double, double, double, double)
+     */
+    @Override
+    public int countInBoundingBox(double west, double east, double north, double south) {
+        return this.countInBoundingBox(0, new BoundingBoxSearchCriteria<E>(west, east, north, south));
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.eatthepath.jeospatial.GeospatialPointDatabase#forEachInBoundingBox(double, double, double, double, com.eatthepath.jeospatial.PointVisitor)
+     */
+    @Override
+    public boolean forEachInBoundingBox(double west, double east, double north, double south, PointVisitor<E> visitor) {
+        BoundingBoxSearchCriteria<E> box = new BoundingBoxSearchCriteria<E>(west, east, north, south);
+        CachedGeospatialPoint centroid = VPTree.getBoundingBoxCentroid(west, east, north, south);
+
+        return this.forEachInBoundingBox(0, box, false, null, centroid, visitor);
+    }
+
+    /**
+     * Returns the number of points in this tree.
+     *
+     * @return the number of points in this tree
+     */
+    @Override
+    public int size() {
+        return this.points.length;
+    }
+
+    /**
+     * Tests whether this tree is empty.
+     *
+     * @return {@code true} if this tree contains no points or {@code false}
+     *         otherwise
+     */
+    @Override
+    public boolean isEmpty() {
+        return this.points.length == 0;
+    }
+
+    /**
+     * Tests whether this tree contains the given point. Membership tests
+     * execute in O(log n) time.
+     *
+     * @param o
+     *            the object to test for membership in this tree
+     *
+     * @return {@code true} if this tree contains the given point or
+     *         {@code false} otherwise
+     */
+    @Override
+    public boolean contains(Object o) {
+        if(!(o instanceof GeospatialPoint)) {
+            return false;
+        }
+
+        return this.contains(0, new UnitVector((GeospatialPoint)o), o);
+    }
+
+    /**
+     * Tests whether the given subtree contains the given point. With exact
+     * vectors, only one child of each node can hold the point; with compact
+     * vectors, a point close enough to a node's threshold might be in either
+     * child, so both are searched.
+     */
+    private boolean contains(final int node, final UnitVector vector, final Object o) {
+        if(this.isLeafNode(node)) {
+            for(int i = this.fromIndices[node]; i < this.toIndices[node]; i++) {
+                // Only points with exactly the same coordinates can be equal
+                if(this.pointVectors.matches(i, vector) && o.equals(this.points[i])) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        double squaredDistanceToCenter = this.getSquaredChordDistanceToCenter(node, vector);
+        boolean mayBeCloser, mayBeFarther;
+
+        if(this.chordDistanceError == 0) {
+            mayBeCloser = squaredDistanceToCenter <= this.thresholds[node];
+            mayBeFarther = !mayBeCloser;
+        } else {
+            double distanceToCenter = Math.sqrt(squaredDistanceToCenter);
+            double threshold = Math.sqrt(this.thresholds[node]);
+
+            mayBeCloser = distanceToCenter - this.chordDistanceError <= threshold;
+            mayBeFarther = distanceToCenter + this.chordDistanceError > threshold;
+        }
+
+        if(mayBeCloser && this.contains(this.closerChildren[node], vector, o)) {
+            return true;
+        }
+
+        return mayBeFarther && this.contains(this.fartherChildren[node], vector, o);
+    }
+
+    /**
+     * Tests whether this tree contains all of the points in the given
+     * collection.
+     *
+     * @param c
+     *            the collection of points to test for membership in this tree
+     *
+     * @return {@code true} if this tree contains all of the members of the
+     *         given collection or {@code false} otherwise
+     */
+    @Override
+    public boolean containsAll(Collection<?> c) {
+        for(Object o : c) {
+            if(!this.contains(o)) { return false; }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns an {@code Iterator} over all of the points contained in this
+     * tree. The order of iteration is not defined, and the {@code Iterator}
+     * returned by this method does not support the optional {@code remove}
+     * method.
+     *
+     * @return an {@code Iterator} over the points contained in this tree
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return this.index < FrozenVPTree.this.points.length;
+            }
+
+            @SuppressWarnings("unchecked")
+            @Override
+            public E next() {
+                if(!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                return (E)FrozenVPTree.this.points[this.index++];
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Returns an array containing all of the points in this tree. The order of
+     * the points in the array is not defined.
+     *
+     * @return an array containing all of the points in this tree
+     */
+    @Override
+    public Object[] toArray() {
+        return this.points.clone();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see java.util.Collection#toArray(T[])
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T[] toArray(T[] a) {
+        int size = this.points.length;
+
+        if(a.length < size) {
+            return (T[])Arrays.copyOf(this.points, size, a.getClass());
+        } else {
+            System.arraycopy(this.points, 0, a, 0, size);
+
+            if(a.length > size) { a[size] = null; }
+
+            return a;
+        }
+    }
+
+    /**
+     * Throws an {@code UnsupportedOperationException}; frozen trees can't be
+     * modified.
+     *
+     * @throws UnsupportedOperationException in all cases
+     */
+    @Override
+    public boolean add(E point) {
+        throw new UnsupportedOperationException("Frozen vp-trees cannot be modified.");
+    }
+
+    /**
+     * Throws an {@code UnsupportedOperationException}; frozen trees can't be
+     * modified.
+     *
+     * @throws UnsupportedOperationException in all cases
+     */
+    @Override
+    public boolean addAll(Collection<? extends E> points) {
+        throw new UnsupportedOperationException("Frozen vp-trees cannot be modified.");
+    }
+
+    /**
+     * Throws an {@code UnsupportedOperationException}; frozen trees can't be
+     * modified.
+     *
+     * @throws UnsupportedOperationException in all cases
+     */
+    @Override
+    public boolean remove(Object o) {
+        throw new UnsupportedOperationException("Frozen vp-trees cannot be modified.");
+    }
+
+    /**
+     * Throws an {@code UnsupportedOperationException}; frozen trees can't be
+     * modified.
+     *
+     * @throws UnsupportedOperationException in all cases
+     */
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        throw new UnsupportedOperationException("Frozen vp-trees cannot be modified.");
+    }
+
+    /**
+     * Throws an {@code UnsupportedOperationException}; frozen trees can't be
+     * modified.
+     *
+     * @throws UnsupportedOperationException in all cases
+     */
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        throw new UnsupportedOperationException("Frozen vp-trees cannot be modified.");
+    }
+
+    /**
+     * Throws an {@code UnsupportedOperationException}; frozen trees can't be
+     * modified.
+     *
+     * @throws UnsupportedOperationException in all cases
+     */
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("Frozen vp-trees cannot be modified.");
+    }
+}
@@ -0,0 +1,67 @@
+package com.eatthepath.jeospatial.vptree;
+
+/**
+ * <p>Maps latitude/longitude coordinates to positions along a Hilbert curve.
+ * Points that are close to each other on the ground tend to be close to each
+ * other along the curve, so sorting a batch of queries by their positions on
+ * the curve means consecutive queries tend to visit the same parts of a tree
+ * (and so find them already in the CPU's caches).</p>
+ *
+ * <p>Coordinates are treated as a flat 360&deg; by 180&deg; grid of
+ * 2<sup>16</sup> by 2<sup>16</sup> cells; the curve doesn't account for the
+ * poles or the antimeridian, which only makes the ordering a little less
+ * useful near them.</p>
+ *
+ * @author <a href="mailto:jon.chambers@gmail.com">Jon Chambers</a>
+ */
+final class HilbertCurve {
+    private static final int ORDER = 16;
+    private static final int SIDE = 1 << ORDER;
+
+    private HilbertCurve() {
+    }
+
+    /**
+     * Returns the position along the Hilbert curve of the cell containing the
+     * given coordinates.
+     *
+     * @param latitude the latitude of the point in degrees
+     * @param longitude the longitude of the point in degrees
+     *
+     * @return the position of the point along the curve, between zero
+     *         (inclusive) and 2<sup>32</sup> (exclusive)
+     */
+    public static long getIndex(double latitude, double longitude) {
+        int x = HilbertCurve.toCell((longitude + 180) / 360);
+        int y = HilbertCurve.toCell((latitude + 90) / 180);
+
+        long index = 0;
+
+        for(int s = SIDE >>> 1; s > 0; s >>>= 1) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+
+            index += (long)s * s * ((3 * rx) ^ ry);
+
+            // Rotate the quadrant so the curve's sub-curves line up
+            if(ry == 0) {
+                if(rx == 1) {
+                    x = SIDE - 1 - x;
+                    y = SIDE - 1 - y;
+                }
+
+                int t = x;
+                x = y;
+                y = t;
+            }
+        }
+
+        return index;
+    }
+
+    private static int toCell(double fraction) {
+        int cell = (int)(fraction * SIDE);
+
+        return Math.max(0, Math.min(SIDE - 1, cell));
+    }
+}
@@ -0,0 +1,765 @@
+package com.eatthepath.jeospatial.vptree;
+
+import java.util.Arrays;
+
+import com.eatthepath.jeospatial.GeospatialIdDatabase;
+import com.eatthepath.jeospatial.util.BoundingBoxSearchCriteria;
+import com.eatthepath.jeospatial.util.CachedGeospatialPoint;
+
+/**
+ * <p>An immutable vantage point tree that stores {@code long} identifiers and
+ * coordinates in primitive arrays rather than storing point objects. An
+ * {@code IdVPTree} is built once from parallel arrays of identifiers,
+ * latitudes and longitudes and can't be modified afterward.</p>
+ *
+ * <p>Like a {@link FrozenVPTree}, an {@code IdVPTree} identifies its nodes by
+ * index in a set of parallel arrays and stores the points in each leaf node
+ * in a single contiguous range. Each point costs one {@code long} identifier,
+ * its latitude and longitude, and its {@linkplain UnitVector unit vector};
+ * there are no per-point objects at all. The center of each node is simply the
+ * first point in its range, as with a {@link VPTree} built with the default
+ * {@link FirstPointSelector}.</p>
+ *
+ * <p>Unit vectors may be stored with a compact
+ * {@linkplain CoordinateEncoding encoding}, in which case each point costs 36
+ * bytes rather than 48: latitudes and longitudes are always stored exactly as
+ * {@code double} values, but unit vectors are stored with {@code float} or
+ * fixed-point {@code int} components. Compact unit vectors are only used to
+ * rule points out; points that can't be ruled out are checked exactly against
+ * the stored coordinates, so a compact tree returns exactly the same results
+ * as a {@link CoordinateEncoding#DOUBLE} tree.</p>
+ *
+ * <p>Distances reported by an {@code IdVPTree} are exactly the distances a
+ * {@link com.eatthepath.jeospatial.util.SimpleGeospatialPoint} would report
+ * for the stored coordinates. Because they can't be modified,
+ * {@code IdVPTree} instances are thread-safe.</p>
+ *
+ * @author <a href="mailto:jon.chambers@gmail.com">Jon Chambers</a>
+ */
+public class IdVPTree implements GeospatialIdDatabase {
+    private static final int NO_CHILD = -1;
+
+    private final long[] ids;
+    private final PackedCoordinates coordinates;
+    private final CoordinateEncoding encoding;
+
+    private double[] centerVectors;
+    private double[] thresholds;
+    private int[] closerChildren;
+    private int[] fartherChildren;
+    private int[] fromIndices;
+    private int[] toIndices;
+    private int nodeCount;
+
+    private final double[] boundingRectangles;
+
+    private final int binSize;
+
+    /**
+     * Constructs a new tree that contains the given points using the default
+     * node capacity.
+     *
+     * @param ids
+     *            the identifiers of the points to store in the tree
+     * @param latitudes
+     *            the latitudes, in degrees, of the points to store in the tree
+     * @param longitudes
+     *            the longitudes, in degrees, of the points to store in the tree
+     *
+     * @throws IllegalArgumentException
+     *             if the given arrays are not all the same length or if any
+     *             latitude is outside of the allowable range
+     */
+    public IdVPTree(long[] ids, double[] latitudes, double[] longitudes) {
+        this(ids, latitudes, longitudes, VPTree.DEFAULT_BIN_SIZE);
+    }
+
+    /**
+     * Constructs a new tree that contains the given points, has the given node
+     * capacity and stores unit vectors with {@code double} components.
+     *
+     * @param ids
+     *            the identifiers of the points to store in the tree
+     * @param latitudes
+     *            the latitudes, in degrees, of the points to store in the tree
+     * @param longitudes
+     *            the longitudes, in degrees, of the points to store in the tree
+     * @param nodeCapacity
+     *            the largest number of points to store in each leaf node
+     *
+     * @throws IllegalArgumentException
+     *             if the given arrays are not all the same length, if any
+     *             latitude is outside of the allowable range or if the node
+     *             capacity is not positive
+     */
+    public IdVPTree(long[] ids, double[] latitudes, double[] longitudes, int nodeCapacity) {
+        this(ids, latitudes, longitudes, nodeCapacity, CoordinateEncoding.DOUBLE);
+    }
+
+    /**
+     * Constructs a new tree that contains the given points, has the given node
+     * capacity and stores unit vectors with the given encoding. The encoding
+     * affects only the memory the tree occupies, not its results; see
+     * {@link CoordinateEncoding}. The given arrays are not modified, and the
+     * tree keeps no references to them.
+     *
+     * @param ids
+     *            the identifiers of the points to store in the tree
+     * @param latitudes
+     *            the latitudes, in degrees, of the points to store in the tree
+     * @param longitudes
+     *            the longitudes, in degrees, of the points to store in the tree
+     * @param nodeCapacity
+     *            the largest number of points to store in each leaf node
+     * @param encoding
+     *            the encoding with which to store unit vectors
+     *
+     * @throws IllegalArgumentException
+     *             if the given arrays are not all the same length, if any
+     *             latitude is outside of the allowable range or if the node
+     *             capacity is not positive
+     */
+    public IdVPTree(long[] ids, double[] latitudes, double[] longitudes, int nodeCapacity,
+            CoordinateEncoding encoding) {
+        if(latitudes.length != ids.length || longitudes.length != ids.length) {
+            throw new IllegalArgumentException("ID, latitude and longitude arrays must all be the same length.");
+        }
+
+        if(nodeCapacity < 1) {
+            throw new IllegalArgumentException("Node capacity must be greater than zero.");
+        }
+
+        this.binSize = nodeCapacity;
+        this.encoding = encoding;
+
+        final int size = ids.length;
+
+        // Build the tree by rearranging an array of indices into the given
+        // arrays; once the tree is built, we'll gather up identifiers and
+        // coordinates in their final order. The tree is built from exact
+        // vectors, which are only encoded once the tree is complete.
+        long[] order = new long[size];
+        double[] normalizedLongitudes = new double[size];
+        double[] vectors = new double[3 * size];
+
+        for(int i = 0; i < size; i++) {
+            if(latitudes[i] < -90 || latitudes[i] > 90) {
+                throw new IllegalArgumentException("Latitude must be in the range -90 (inclusive) to +90 (inclusive).");
+            }
+
+            normalizedLongitudes[i] = ((longitudes[i] + 180) % 360) - 180;
+
+            UnitVector vector = new UnitVector(latitudes[i], normalizedLongitudes[i]);
+
+            order[i] = i;
+            vectors[3 * i] = vector.x;
+            vectors[3 * i + 1] = vector.y;
+            vectors[3 * i + 2] = vector.z;
+        }
+
+        // Every split produces two non-empty children, so there can never be
+        // more than 2n - 1 nodes (or fewer than one).
+        int maxNodes = Math.max(1, 2 * size - 1);
+        int initialNodeCapacity = Math.min(maxNodes, Math.max(1, 4 * size / nodeCapacity));
+
+        this.centerVectors = new double[3 * initialNodeCapacity];
+        this.thresholds = new double[initialNodeCapacity];
+        this.closerChildren = new int[initialNodeCapacity];
+        this.fartherChildren = new int[initialNodeCapacity];
+        this.fromIndices = new int[initialNodeCapacity];
+        this.toIndices = new int[initialNodeCapacity];
+        this.nodeCount = 0;
+
+        this.buildNode(order, vectors, new double[size], 0, size);
+        this.trimNodeArrays();
+
+        this.ids = new long[size];
+
+        for(int i = 0; i < size; i++) {
+            this.ids[i] = ids[(int)order[i]];
+        }
+
+        this.coordinates = new PackedCoordinates(encoding, latitudes, normalizedLongitudes, vectors, order);
+
+        this.boundingRectangles = new double[4 * this.nodeCount];
+        this.findBoundingRectangles();
+    }
+
+    /**
+     * Finds the bounds of the latitudes and (normalized) longitudes of the
+     * points in each node's subtree. Children are always allocated after their
+     * parents, so visiting nodes in reverse order visits every node's children
+     * before the node itself.
+     */
+    private void findBoundingRectangles() {
+        for(int node = this.nodeCount - 1; node >= 0; node--) {
+            double west = Double.POSITIVE_INFINITY;
+            double east = Double.NEGATIVE_INFINITY;
+            double north = Double.NEGATIVE_INFINITY;
+            double south = Double.POSITIVE_INFINITY;
+
+            if(this.closerChildren[node] == NO_CHILD) {
+                for(int i = this.fromIndices[node]; i < this.toIndices[node]; i++) {
+                    double latitude = this.coordinates.getLatitude(i);
+                    double longitude = BoundingBoxSearchCriteria.normalizeLongitude(this.coordinates.getLongitude(i));
+
+                    west = Math.min(west, longitude);
+                    east = Math.max(east, longitude);
+                    north = Math.max(north, latitude);
+                    south = Math.min(south, latitude);
+                }
+            } else {
+                int closer = 4 * this.closerChildren[node];
+                int farther = 4 * this.fartherChildren[node];
+
+                west = Math.min(this.boundingRectangles[closer], this.boundingRectangles[farther]);
+                east = Math.max(this.boundingRectangles[closer + 1], this.boundingRectangles[farther + 1]);
+                north = Math.max(this.boundingRectangles[closer + 2], this.boundingRectangles[farther + 2]);
+                south = Math.min(this.boundingRectangles[closer + 3], this.boundingRectangles[farther + 3]);
+            }
+
+            this.boundingRectangles[4 * node] = west;
+            this.boundingRectangles[4 * node + 1] = east;
+            this.boundingRectangles[4 * node + 2] = north;
+            this.boundingRectangles[4 * node + 3] = south;
+        }
+    }
+
+    /**
+     * Builds a node (and, recursively, its children) from a range of points.
+     *
+     * @param order
+     *            the indices of the points in the arrays given at construction
+     *            time; rearranged as the tree is built
+     * @param vectors
+     *            the unit vectors for the points; rearranged along with
+     *            {@code order}
+     * @param distances
+     *            scratch space for distances from node centers
+     * @param fromIndex
+     *            the start of the range of points (inclusive)
+     * @param toIndex
+     *            the end of the range of points (exclusive)
+     *
+     * @return the index of the new node
+     */
+    private int buildNode(long[] order, double[] vectors, double[] distances, int fromIndex, int toIndex) {
+        int node = this.allocateNode();
+
+        this.fromIndices[node] = fromIndex;
+        this.toIndices[node] = toIndex;
+        this.closerChildren[node] = NO_CHILD;
+        this.fartherChildren[node] = NO_CHILD;
+
+        if(toIndex - fromIndex > this.binSize) {
+            int partitionIndex = this.split(node, order, vectors, distances, fromIndex, toIndex);
+
+            // If we couldn't split the range (i.e. all of the points are
+            // coincident), this node just has to be an overloaded leaf.
+            if(partitionIndex != -1) {
+                int closer = this.buildNode(order, vectors, distances, fromIndex, partitionIndex);
+                int farther = this.buildNode(order, vectors, distances, partitionIndex, toIndex);
+
+                this.closerChildren[node] = closer;
+                this.fartherChildren[node] = farther;
+            }
+        }
+
+        return node;
+    }
+
+    /**
+     * Chooses a center and distance threshold for a node and rearranges its
+     * range of points so all points within the threshold precede all points
+     * beyond it. This works exactly as {@code VPNode}'s partitioning does.
+     *
+     * @return the index of the first point beyond the node's threshold, or -1
+     *         if no viable threshold could be found
+     */
+    private int split(int node, long[] order, double[] vectors, double[] distances, int fromIndex, int toIndex) {
+        this.centerVectors[3 * node] = vectors[3 * fromIndex];
+        this.centerVectors[3 * node + 1] = vectors[3 * fromIndex + 1];
+        this.centerVectors[3 * node + 2] = vectors[3 * fromIndex + 2];
+
+        for(int i = fromIndex; i < toIndex; i++) {
+            double dx = this.centerVectors[3 * node] - vectors[3 * i];
+            double dy = this.centerVectors[3 * node + 1] - vectors[3 * i + 1];
+            double dz = this.centerVectors[3 * node + 2] - vectors[3 * i + 2];
+
+            distances[i] = dx * dx + dy * dy + dz * dz;
+        }
+
+        int medianIndex = (fromIndex + toIndex - 1) / 2;
+        DistancePartitioner.select(distances, order, vectors, fromIndex, toIndex, medianIndex);
+
+        double medianDistance = distances[medianIndex];
+
+        int partitionIndex = DistancePartitioner.partition(distances, order, vectors,
+                medianIndex + 1, toIndex, medianDistance);
+
+        if(partitionIndex < toIndex) {
+            this.thresholds[node] = medianDistance;
+            return partitionIndex;
+        }
+
+        // Nothing is farther away than the median distance, so move the
+        // threshold back to the next-closest distance (if there is one).
+        if(medianDistance != 0) {
+            double lesserDistance = DistancePartitioner.maxBelow(distances, fromIndex, medianIndex + 1, medianDistance);
+
+            if(lesserDistance != Double.NEGATIVE_INFINITY) {
+                this.thresholds[node] = lesserDistance;
+                return DistancePartitioner.partition(distances, order, vectors, fromIndex, medianIndex + 1, lesserDistance);
+            }
+        }
+
+        return -1;
+    }
+
+    private int allocateNode() {
+        if(this.nodeCount == this.thresholds.length) {
+            int newCapacity = this.thresholds.length + (this.thresholds.length >> 1) + 1;
+
+            this.centerVectors = Arrays.copyOf(this.centerVectors, 3 * newCapacity);
+            this.thresholds = Arrays.copyOf(this.thresholds, newCapacity);
+            this.closerChildren = Arrays.copyOf(this.closerChildren, newCapacity);
+            this.fartherChildren = Arrays.copyOf(this.fartherChildren, newCapacity);
+            this.fromIndices = Arrays.copyOf(this.fromIndices, newCapacity);
+            this.toIndices = Arrays.copyOf(this.toIndices, newCapacity);
+        }
+
+        return this.nodeCount++;
+    }
+
+    private void trimNodeArrays() {
+        this.centerVectors = Arrays.copyOf(this.centerVectors, 3 * this.nodeCount);
+        this.thresholds = Arrays.copyOf(this.thresholds, this.nodeCount);
+        this.closerChildren = Arrays.copyOf(this.closerChildren, this.nodeCount);
+        this.fartherChildren = Arrays.copyOf(this.fartherChildren, this.nodeCount);
+        this.fromIndices = Arrays.copyOf(this.fromIndices, this.nodeCount);
+        this.toIndices = Arrays.copyOf(this.toIndices, this.nodeCount);
+    }
+
+    /**
+     * Returns the maximum number of points stored in each of this tree's leaf
+     * nodes.
+     *
+     * @return the node capacity of this tree
+     */
+    public int getBinSize() {
+        return this.binSize;
+    }
+
+    /**
+     * Returns the encoding with which this tree stores unit vectors.
+     *
+     * @return the encoding with which this tree stores unit vectors
+     */
+    public CoordinateEncoding getCoordinateEncoding() {
+        return this.encoding;
+    }
+
+    /**
+     * Returns a snapshot of the shape of this tree and an estimate of the
+     * memory it occupies. Trees of identifiers hold no point or center
+     * objects, so the estimate covers everything the tree stores.
+     *
+     * @return memory statistics for this tree
+     */
+    public MemoryStats getMemoryStats() {
+        MemoryStats.Counter counter = new MemoryStats.Counter();
+
+        counter.nodeCount = this.nodeCount;
+
+        for(int node = 0; node < this.nodeCount; node++) {
+            if(this.closerChildren[node] == NO_CHILD) {
+                counter.leafCount++;
+            }
+        }
+
+        counter.pointCapacity = this.ids.length;
+
+        // Ten references and two ints
+        counter.estimatedBytes = MemoryStats.getObjectSize(10, 8) +
+                MemoryStats.getArraySize(this.ids.length, 8) +
+                this.coordinates.getEstimatedBytes() +
+                MemoryStats.getArraySize(this.centerVectors.length, 8) +
+                MemoryStats.getArraySize(this.boundingRectangles.length, 8) +
+                MemoryStats.getArraySize(this.nodeCount, 8) +
+                4 * MemoryStats.getArraySize(this.nodeCount, 4);
+
+        return counter.toMemoryStats(this.ids.length);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.eatthepath.jeospatial.GeospatialIdDatabase#size()
+     */
+    @Override
+    public int size() {
+        return this.ids.length;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.eatthepath.jeospatial.GeospatialIdDatabase#isEmpty()
+     */
+    @Override
+    public boolean isEmpty() {
+        return this.ids.length == 0;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.eatthepath.jeospatial.GeospatialIdDatabase#getNearestNeighbor(double, double, long[], double[])
+     */
+    @Override
+    public int getNearestNeighbor(double latitude, double longitude, long[] ids, double[] distances) {
+        return this.getNearestNeighbors(latitude, longitude, 1, Double.POSITIVE_INFINITY, ids, distances);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.eatthepath.jeospatial.GeospatialIdDatabase#getNearestNeighbor(double, double, double, long[], double[])
+     */
+    @Override
+    public int getNearestNeighbor(double latitude, double longitude, double maxDistance, long[] ids, double[] distances) {
+        return this.getNearestNeighbors(latitude, longitude, 1, maxDistance, ids, distances);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.eatthepath.jeospatial.GeospatialIdDatabase#getNearestNeighbors(double, double, int, long[], double[])
+     */
+    @Override
+    public int getNearestNeighbors(double latitude, double longitude, int maxResults, long[] ids, double[] distances) {
+        return this.getNearestNeighbors(latitude, longitude, maxResults, Double.POSITIVE_INFINITY, ids, distances);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.eatthepath.jeospatial.GeospatialIdDatabase#getNearestNeighbors(double, double, int, double, long[], double[])
+     */
+    @Override
+    public int getNearestNeighbors(double latitude, double longitude, int maxResults, double maxDistance,
+            long[] ids, double[] distances) {
+
+        if(ids.length < maxResults || distances.length < maxResults) {
+            throw new IllegalArgumentException("Result arrays must have room for at least maxResults results.");
+        }
+
+        if(maxResults < 1) {
+            return 0;
+        }
+
+        CachedGeospatialPoint queryPoint = new CachedGeospatialPoint(latitude, longitude);
+        Neighbors neighbors = new Neighbors(maxResults, maxDistance);
+
+        this.getNearestNeighbors(0, queryPoint, new UnitVector(queryPoint), neighbors);
+
+        return neighbors.drainTo(ids, distances);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.eatthepath.jeospatial.GeospatialIdDatabase#getAllNeighborsWithinDistance(double, double, double, long[], double[])
+     */
+    @Override
+    public int getAllNeighborsWithinDistance(double latitude, double longitude, double maxDistance,
+            long[] ids, double[] distances) {
+
+        CachedGeospatialPoint queryPoint = new CachedGeospatialPoint(latitude, longitude);
+        Neighbors neighbors = new Neighbors(Math.min(ids.length, distances.length), maxDistance);
+
+        int count = this.getAllWithinRange(0, queryPoint, new UnitVector(queryPoint), maxDistance,
+                UnitVector.toChordDistance(maxDistance), neighbors, 0);
+
+        neighbors.drainTo(ids, distances);
+
+        return count;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.eatthepath.jeospatial.GeospatialIdDatabase#getAllPointsInBoundingBox(double, double, double, double, long[])
+     */
+    @Override
+    public int getAllPointsInBoundingBox(double west, double east, double north, double south, long[] ids) {
+        BoundingBoxSearchCriteria<?> box = new BoundingBoxSearchCriteria<CachedGeospatialPoint>(west, east, north, south);
+
+        return this.getAllPointsInBoundingBox(0, box, false, ids, 0);
+    }
+
+    /**
+     * Finds all points inside the given bounding box and writes their
+     * identifiers, in no particular order, to the given array until it is
+     * full. Subtrees whose bounding rectangles lie entirely outside the box are
+     * skipped, and points in subtrees whose bounding rectangles lie entirely
+     * inside the box need no check of their own.
+     *
+     * @param contained
+     *            {@code true} if the given node's bounding rectangle is already
+     *            known to lie entirely inside the box
+     * @param count
+     *            the number of matching points found before searching the
+     *            given node
+     *
+     * @return the number of matching points found after searching the given
+     *         node
+     */
+    private int getAllPointsInBoundingBox(final int node, final BoundingBoxSearchCriteria<?> box, boolean contained,
+            final long[] ids, int count) {
+
+        if(!contained) {
+            int r = 4 * node;
+
+            if(!box.intersectsRectangle(this.boundingRectangles[r], this.boundingRectangles[r + 1],
+                    this.boundingRectangles[r + 2], this.boundingRectangles[r + 3])) {
+                return count;
+            }
+
+            contained = box.containsRectangle(this.boundingRectangles[r], this.boundingRectangles[r + 1],
+                    this.boundingRectangles[r + 2], this.boundingRectangles[r + 3]);
+        }
+
+        if(this.closerChildren[node] == NO_CHILD) {
+            for(int i = this.fromIndices[node]; i < this.toIndices[node]; i++) {
+                if(contained || box.contains(this.coordinates.getLatitude(i), this.coordinates.getLongitude(i))) {
+                    if(count < ids.length) {
+                        ids[count] = this.ids[i];
+                    }
+
+                    count++;
+                }
+            }
+
+            return count;
+        } else {
+            count = this.getAllPointsInBoundingBox(this.closerChildren[node], box, contained, ids, count);
+            return this.getAllPointsInBoundingBox(this.fartherChildren[node], box, contained, ids, count);
+        }
+    }
+
+    private double getSquaredChordDistanceToCenter(int node, UnitVector vector) {
+        double dx = this.centerVectors[3 * node] - vector.x;
+        double dy = this.centerVectors[3 * node + 1] - vector.y;
+        double dz = this.centerVectors[3 * node + 2] - vector.z;
+
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * Offers points close to the query point to the given set of neighbors,
+     * pruning the search in exactly the same way as a {@link VPTree} would.
+     */
+    private void getNearestNeighbors(final int node, final CachedGeospatialPoint queryPoint,
+            final UnitVector queryVector, final Neighbors neighbors) {
+
+        if(this.closerChildren[node] == NO_CHILD) {
+            final PackedCoordinates coordinates = this.coordinates;
+            final double error = coordinates.getChordDistanceError();
+
+            double searchRadius = UnitVector.toChordDistance(neighbors.getSearchRadius()) + error;
+            double squaredSearchRadius = searchRadius * searchRadius;
+
+            for(int i = this.fromIndices[node]; i < this.toIndices[node]; i++) {
+                if(coordinates.getSquaredChordDistance(queryVector, i) <= squaredSearchRadius) {
+                    double distance = queryPoint.getDistanceTo(coordinates.getLatitude(i), coordinates.getLongitude(i));
+
+                    if(neighbors.offer(this.ids[i], distance)) {
+                        // The search radius may have shrunk.
+                        searchRadius = UnitVector.toChordDistance(neighbors.getSearchRadius()) + error;
+                        squaredSearchRadius = searchRadius * searchRadius;
+                    }
+                }
+            }
+        } else {
+            double squaredDistanceToCenter = this.getSquaredChordDistanceToCenter(node, queryVector);
+            boolean searchedCloserFirst = squaredDistanceToCenter <= this.thresholds[node];
+
+            if(searchedCloserFirst) {
+                this.getNearestNeighbors(this.closerChildren[node], queryPoint, queryVector, neighbors);
+            } else {
+                this.getNearestNeighbors(this.fartherChildren[node], queryPoint, queryVector, neighbors);
+            }
+
+            double distanceToCenter = Math.sqrt(squaredDistanceToCenter);
+            double threshold = Math.sqrt(this.thresholds[node]);
+
+            if(searchedCloserFirst) {
+                if(UnitVector.toChordDistance(neighbors.getSearchRadius()) > threshold - distanceToCenter) {
+                    this.getNearestNeighbors(this.fartherChildren[node], queryPoint, queryVector, neighbors);
+                }
+            } else {
+                if(distanceToCenter - threshold <= UnitVector.toChordDistance(neighbors.getSearchRadius())) {
+                    this.getNearestNeighbors(this.closerChildren[node], queryPoint, queryVector, neighbors);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds all points within the given range and offers them to the given set
+     * of neighbors.
+     *
+     * @param count
+     *            the number of matching points found before searching the
+     *            given node
+     *
+     * @return the number of matching points found after searching the given
+     *         node
+     */
+    private int getAllWithinRange(final int node, final CachedGeospatialPoint queryPoint, final UnitVector queryVector,
+            final double maxDistance, final double maxChordDistance, final Neighbors neighbors, int count) {
+
+        if(this.closerChildren[node] == NO_CHILD) {
+            final PackedCoordinates coordinates = this.coordinates;
+            final double error = coordinates.getChordDistanceError();
+
+            final double outerChordDistance = maxChordDistance + error;
+            final double squaredOuterChordDistance = outerChordDistance * outerChordDistance;
+
+            for(int i = this.fromIndices[node]; i < this.toIndices[node]; i++) {
+                if(coordinates.getSquaredChordDistance(queryVector, i) > squaredOuterChordDistance) {
+                    continue;
+                }
+
+                double distance = queryPoint.getDistanceTo(coordinates.getLatitude(i), coordinates.getLongitude(i));
+
+                if(distance <= maxDistance) {
+                    neighbors.offer(this.ids[i], distance);
+                    count++;
+                }
+            }
+        } else {
+            double distanceToQueryPoint = Math.sqrt(this.getSquaredChordDistanceToCenter(node, queryVector));
+            double threshold = Math.sqrt(this.thresholds[node]);
+
+            if(distanceToQueryPoint <= threshold + maxChordDistance) {
+                count = this.getAllWithinRange(this.closerChildren[node], queryPoint, queryVector, maxDistance,
+                        maxChordDistance, neighbors, count);
+            }
+
+            if(distanceToQueryPoint + maxChordDistance > threshold) {
+                count = this.getAllWithinRange(this.fartherChildren[node], queryPoint, queryVector, maxDistance,
+                        maxChordDistance, neighbors, count);
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * A bounded max-heap of identifiers keyed by distance from a query point.
+     * Until it's full, a {@code Neighbors} heap accepts any point within its
+     * maximum distance; after that, it only accepts points closer than the
+     * most distant point it already holds, which it discards.
+     */
+    private static final class Neighbors {
+        private final long[] ids;
+        private final double[] distances;
+        private final double maxDistance;
+        private int size;
+
+        public Neighbors(int capacity, double maxDistance) {
+            this.ids = new long[capacity];
+            this.distances = new double[capacity];
+            this.maxDistance = maxDistance;
+            this.size = 0;
+        }
+
+        public double getSearchRadius() {
+            return this.size < this.ids.length ? this.maxDistance : this.distances[0];
+        }
+
+        public boolean offer(long id, double distance) {
+            if(this.size < this.ids.length) {
+                if(distance > this.maxDistance) {
+                    return false;
+                }
+
+                // Sift the new entry up from the bottom of the heap.
+                int i = this.size++;
+
+                while(i > 0) {
+                    int parent = (i - 1) >>> 1;
+
+                    if(this.distances[parent] >= distance) {
+                        break;
+                    }
+
+                    this.ids[i] = this.ids[parent];
+                    this.distances[i] = this.distances[parent];
+                    i = parent;
+                }
+
+                this.ids[i] = id;
+                this.distances[i] = distance;
+
+                return true;
+            } else if(this.size > 0 && distance < this.distances[0]) {
+                this.replaceRoot(id, distance, this.size);
+                return true;
+            }
+
+            return false;
+        }
+
+        private void replaceRoot(long id, double distance, int heapSize) {
+            // Sift the new entry down from the top of the heap.
+            int i = 0;
+
+            while(true) {
+                int child = 2 * i + 1;
+
+                if(child >= heapSize) {
+                    break;
+                }
+
+                if(child + 1 < heapSize && this.distances[child + 1] > this.distances[child]) {
+                    child++;
+                }
+
+                if(this.distances[child] <= distance) {
+                    break;
+                }
+
+                this.ids[i] = this.ids[child];
+                this.distances[i] = this.distances[child];
+                i = child;
+            }
+
+            this.ids[i] = id;
+            this.distances[i] = distance;
+        }
+
+        /**
+         * Writes the contents of this heap to the given arrays in order of
+         * increasing distance. This heap is emptied in the process.
+         *
+         * @return the number of entries written
+         */
+        public int drainTo(long[] ids, double[] distances) {
+            int count = this.size;
+
+            // Repeatedly move the most distant remaining entry to the end of
+            // the heap's range, then copy everything out in order.
+            for(int end = count - 1; end > 0; end--) {
+                long id = this.ids[end];
+                double distance = this.distances[end];
+
+                this.ids[end] = this.ids[0];
+                this.distances[end] = this.distances[0];
+
+                this.replaceRoot(id, distance, end);
+            }
+
+            System.arraycopy(this.ids, 0, ids, 0, count);
+            System.arraycopy(this.distances, 0, distances, 0, count);
+
+            this.size = 0;
+
+            return count;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.eatthepath.jeospatial.vptree;
+
+/**
+ * <p>Measures distances from a single query point to the points in the leaf
+ * nodes visited by a search. A {@code LeafScanner} owns a scratch array for
+ * distances that is reused for every leaf node in a search, so scanning a leaf
+ * allocates nothing.</p>
+ *
+ * <p>{@code LeafScanner} instances are not thread-safe; each search should
+ * use its own, though a scanner may be reused by later searches on the same
+ * thread (see {@link QueryContext}).</p>
+ *
+ * @author <a href="mailto:jon.chambers@gmail.com">Jon Chambers</a>
+ */
+final class LeafScanner {
+    private UnitVector queryVector;
+    private double[] distances;
+
+    /**
+     * Constructs a new leaf scanner for the given query point.
+     *
+     * @param queryVector
+     *            the unit vector for the query point
+     * @param expectedLeafSize
+     *            the number of points the scanner should expect to find in a
+     *            typical leaf node
+     */
+    public LeafScanner(UnitVector queryVector, int expectedLeafSize) {
+        this.queryVector = queryVector;
+        this.distances = new double[expectedLeafSize];
+    }
+
+    /**
+     * Returns the unit vector for this scanner's query point.
+     *
+     * @return the unit vector for this scanner's query point
+     */
+    public UnitVector getQueryVector() {
+        return this.queryVector;
+    }
+
+    /**
+     * Points this scanner at a new query point so it can be reused for
+     * another search.
+     *
+     * @param queryVector
+     *            the unit vector for the new query point
+     */
+    public void setQueryVector(UnitVector queryVector) {
+        this.queryVector = queryVector;
+    }
+
+    /**
+     * Calculates the squared chord distance from the query point to each of
+     * the given vectors.
+     *
+     * @param vectors
+     *            the vectors to which to measure
+     *
+     * @return an array whose first {@code vectors.size()} elements are the
+     *         squared chord distances from the query point to each vector; the
+     *         array is reused by subsequent calls to this method
+     */
+    public double[] getSquaredChordDistances(PackedUnitVectors vectors) {
+        if(this.distances.length < vectors.size()) {
+            this.distances = new double[vectors.size()];
+        }
+
+        vectors.getSquaredChordDistances(this.queryVector, this.distances);
+
+        return this.distances;
+    }
+}
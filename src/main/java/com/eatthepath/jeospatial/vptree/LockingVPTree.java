@@ -1,11 +1,16 @@
 package com.eatthepath.jeospatial.vptree;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import com.eatthepath.jeospatial.GeospatialPoint;
+import com.eatthepath.jeospatial.PointVisitor;
 import com.eatthepath.jeospatial.SearchCriteria;
 
 /**
@@ -17,13 +22,40 @@ import com.eatthepath.jeospatial.SearchCriteria;
  * internal read lock, while operations that could modify the tree's contents or
  * structure acquire the tree's internal write lock.</p>
  * 
+ * <p>{@code LockingVPTree} instances can also rebuild themselves from scratch
+ * in the background; see {@link LockingVPTree#rebuildInBackground(Executor)}.
+ * Queries and modifications continue against the existing tree while the new
+ * tree is built, and the new tree replaces the old one (with any modifications
+ * made in the meantime) in a single step.</p>
+ * 
  * @author <a href="mailto:jon.chambers@gmail.com">Jon Chambers</a>
  * 
  * @see ReentrantReadWriteLock
  */
 public class LockingVPTree<E extends GeospatialPoint> extends VPTree<E> {
+    /**
+     * A modification made to a tree while a replacement for its root node was
+     * being built.
+     */
+    private static class Mutation {
+        private enum Type { ADD, REMOVE, REMOVE_ALL, CLEAR }
+        
+        private final Type type;
+        private final Collection<?> points;
+        
+        public Mutation(Type type, Collection<?> points) {
+            this.type = type;
+            this.points = points;
+        }
+    }
+    
     private final ReentrantReadWriteLock lock;
     
+    // Both guarded by the write lock; non-null only while a background rebuild
+    // is in progress.
+    private CompletableFuture<Void> rebuild;
+    private ArrayList<Mutation> journal;
+    
     /**
      * Constructs a new, empty {@code LockingVPTree} with a default node
      * capacity and locking fairness policy.
@@ -83,6 +115,27 @@ public class LockingVPTree<E extends GeospatialPoint> extends VPTree<E> {
         this.lock = new ReentrantReadWriteLock(fair);
     }
     
+    /**
+     * Constructs a new, empty {@code LockingVPTree} with the given node
+     * capacity, strategy for choosing node centers and locking fairness policy.
+     * 
+     * @param nodeCapacity
+     *            the maximum number of points to store in a leaf node of the
+     *            tree
+     * @param vantagePointSelector
+     *            the strategy with which to choose the centers of new nodes
+     * @param fair
+     *            {@code true} if this tree's lock should use a fair ordering
+     *            policy or {@code false} otherwise
+     * 
+     * @see ReentrantReadWriteLock#ReentrantReadWriteLock(boolean)
+     */
+    public LockingVPTree(int nodeCapacity, VantagePointSelector vantagePointSelector, boolean fair) {
+        super(nodeCapacity, vantagePointSelector);
+        
+        this.lock = new ReentrantReadWriteLock(fair);
+    }
+    
     /**
      * Constructs a new {@code LockingVPTree} that contains (and indexes) all of
      * the points in the given collection with a default node capacity and
@@ -154,6 +207,68 @@ public class LockingVPTree<E extends GeospatialPoint> extends VPTree<E> {
         this.lock = new ReentrantReadWriteLock(fair);
     }
     
+    /**
+     * Constructs a new {@code LockingVPTree} that contains (and indexes) all of
+     * the points in the given collection with the given node capacity,
+     * strategy for choosing node centers and locking fairness policy.
+     * 
+     * @param points
+     *            the points to use to populate this tree
+     * @param nodeCapacity
+     *            the maximum number of points to store in a leaf node of the
+     *            tree
+     * @param vantagePointSelector
+     *            the strategy with which to choose the centers of new nodes
+     * @param fair
+     *            {@code true} if this tree's lock should use a fair ordering
+     *            policy or {@code false} otherwise
+     * 
+     * @see ReentrantReadWriteLock#ReentrantReadWriteLock(boolean)
+     */
+    public LockingVPTree(Collection<E> points, int nodeCapacity, VantagePointSelector vantagePointSelector, boolean fair) {
+        super(points, nodeCapacity, vantagePointSelector);
+        
+        this.lock = new ReentrantReadWriteLock(fair);
+    }
+    
+    /**
+     * Constructs a new {@code LockingVPTree} that contains (and indexes) the
+     * first {@code size} points in the given array. This constructor is
+     * intended for use by {@link VPTreeBuilder}.
+     * 
+     * @param points
+     *            an array whose first {@code size} elements are the points to
+     *            use to populate this tree; the array's contents are
+     *            rearranged during construction
+     * @param size
+     *            the number of points in the array
+     * @param nodeCapacity
+     *            the maximum number of points to store in a leaf node of the
+     *            tree
+     * @param vantagePointSelector
+     *            the strategy with which to choose the centers of new nodes
+     * @param encoding
+     *            the encoding with which leaf nodes store the unit vectors for
+     *            their points
+     * @param forkJoinPool
+     *            the pool in which to build the tree; may be {@code null}
+     * @param sequentialThreshold
+     *            the number of points at or below which branches of the tree
+     *            are built on a single thread
+     * @param fair
+     *            {@code true} if this tree's lock should use a fair ordering
+     *            policy or {@code false} otherwise
+     * 
+     * @see VPTree#VPTree(GeospatialPoint[], int, int, VantagePointSelector, CoordinateEncoding, ForkJoinPool, int)
+     */
+    LockingVPTree(GeospatialPoint[] points, int size, int nodeCapacity, VantagePointSelector vantagePointSelector,
+            CoordinateEncoding encoding, ForkJoinPool forkJoinPool, int sequentialThreshold, boolean fair) {
+        
+        super(points, size, nodeCapacity, vantagePointSelector, encoding, forkJoinPool, sequentialThreshold);
+        
+        this.lock = new ReentrantReadWriteLock(fair);
+    }
+    
     /**
      * Tests whether this tree's internal lock uses a "fair" locking policy.
      * 
@@ -166,6 +281,218 @@ public class LockingVPTree<E extends GeospatialPoint> extends VPTree<E> {
         return this.lock.isFair();
     }
     
+    /**
+     * Rebuilds this tree from its current contents in the background using
+     * the common {@code ForkJoinPool}.
+     * 
+     * @return a future that completes when the rebuilt tree has replaced this
+     *         tree's current structure
+     * 
+     * @see LockingVPTree#rebuildInBackground(Executor)
+     */
+    public CompletableFuture<Void> rebuildInBackground() {
+        return this.rebuildInBackground(ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * <p>Rebuilds this tree from its current contents in the background. A
+     * freshly-built tree is as well-balanced as a vp-tree built from a
+     * collection of points, which may not be the case for a tree that has
+     * changed substantially since it was built.</p>
+     * 
+     * <p>This tree's write lock is held only long enough to start recording
+     * modifications; it is then downgraded to a read lock while this tree's
+     * contents are copied, so queries may proceed during the copy (although
+     * modifications wait for it to finish). A new tree is built from the copy
+     * by the given executor without holding any locks. Meanwhile, queries run
+     * against the existing tree and modifications are applied to the existing
+     * tree as usual, but are also recorded. When the new tree is ready, this tree
+     * acquires its write lock, replaces its contents with the new tree and
+     * replays the recorded modifications against it. Callers never observe a
+     * partially-built tree.</p>
+     * 
+     * <p>Only one rebuild may be in progress at a time; if this method is
+     * called while a rebuild is already underway, it returns the future for
+     * the rebuild in progress.</p>
+     * 
+     * @param executor
+     *            the executor with which to build the new tree; if this tree
+     *            was constructed with a {@code ForkJoinPool}, the new tree is
+     *            built in parallel in that pool
+     * 
+     * @return a future that completes when the rebuilt tree has replaced this
+     *         tree's current structure, or completes exceptionally if the
+     *         rebuild failed (in which case this tree is left as it was)
+     */
+    public CompletableFuture<Void> rebuildInBackground(Executor executor) {
+        final GeospatialPoint[] points;
+        final CompletableFuture<Void> future;
+        
+        this.lock.writeLock().lock();
+        
+        try {
+            if(this.rebuild != null) {
+                return this.rebuild;
+            }
+            
+            future = new CompletableFuture<Void>();
+            
+            this.rebuild = future;
+            this.journal = new ArrayList<Mutation>();
+            
+            // Downgrade to a read lock before copying; no modification can
+            // slip in between starting the journal and copying the tree, but
+            // queries needn't wait for the copy.
+            this.lock.readLock().lock();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+        
+        try {
+            points = new GeospatialPoint[super.size()];
+            this.getRoot().addPointsToArray(points, 0);
+        } catch(RuntimeException | Error e) {
+            // A read lock can't be upgraded, so let it go before abandoning
+            // the rebuild.
+            this.lock.readLock().unlock();
+            this.abandonRebuild();
+            future.completeExceptionally(e);
+            throw e;
+        }
+        
+        this.lock.readLock().unlock();
+        
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        LockingVPTree.this.replaceRoot(LockingVPTree.this.buildRoot(points, points.length));
+                        future.complete(null);
+                    } catch(Throwable t) {
+                        LockingVPTree.this.abandonRebuild();
+                        future.completeExceptionally(t);
+                    }
+                }
+            });
+        } catch(RuntimeException e) {
+            // The executor wouldn't take the job; don't leave a rebuild
+            // hanging around that will never finish.
+            this.abandonRebuild();
+            future.completeExceptionally(e);
+        }
+        
+        return future;
+    }
+    
+    /**
+     * Installs a rebuilt root node and replays all modifications recorded
+     * since the rebuild began against it.
+     * 
+     * @param root the newly-built root node
+     */
+    @SuppressWarnings("unchecked")
+    private void replaceRoot(VPNode<E> root) {
+        this.lock.writeLock().lock();
+        
+        try {
+            ArrayList<Mutation> mutations = this.journal;
+            
+            this.journal = null;
+            this.rebuild = null;
+            
+            this.setRoot(root);
+            
+            for(Mutation mutation : mutations) {
+                switch(mutation.type) {
+                    case ADD: {
+                        super.addAll((Collection<? extends E>)mutation.points);
+                        break;
+                    }
+                    
+                    case REMOVE: {
+                        for(Object o : mutation.points) {
+                            super.remove(o);
+                        }
+                        
+                        break;
+                    }
+                    
+                    case REMOVE_ALL: {
+                        super.removeAll(mutation.points);
+                        break;
+                    }
+                    
+                    case CLEAR: {
+                        super.clear();
+                        break;
+                    }
+                }
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Stops recording modifications for a rebuild that will never finish.
+     */
+    private void abandonRebuild() {
+        this.lock.writeLock().lock();
+        
+        try {
+            this.journal = null;
+            this.rebuild = null;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Records a modification to this tree if a background rebuild is in
+     * progress. Callers must hold the write lock.
+     * 
+     * @param type
+     *            the kind of modification
+     * @param points
+     *            the points involved in the modification; copied if recorded
+     */
+    private void record(Mutation.Type type, Collection<?> points) {
+        if(this.journal != null) {
+            this.journal.add(new Mutation(type, points != null ? new ArrayList<Object>(points) : null));
+        }
+    }
+    
+    /*
+     * (non-Javadoc)
+     * @see com.eatthepath.jeospatial.vptree.VPTree#getImbalanceFactor()
+     */
+    @Override
+    public double getImbalanceFactor() {
+        this.lock.readLock().lock();
+        
+        try {
+            return super.getImbalanceFactor();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+    
+    /*
+     * (non-Javadoc)
+     * @see com.eatthepath.jeospatial.vptree.VPTree#setImbalanceFactor(double)
+     */
+    @Override
+    public void setImbalanceFactor(double imbalanceFactor) {
+        this.lock.writeLock().lock();
+        
+        try {
+            super.setImbalanceFactor(imbalanceFactor);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+    
     /*
      * (non-Javadoc)
      * @see com.eatthepath.jeospatial.vptree.VPTree#add(com.eatthepath.jeospatial.GeospatialPoint)
@@ -175,6 +502,7 @@ public class LockingVPTree<E extends GeospatialPoint> extends VPTree<E> {
         this.lock.writeLock().lock();
         
         try {
+            this.record(Mutation.Type.ADD, java.util.Collections.singletonList(point));
             return super.add(point);
         } finally {
             this.lock.writeLock().unlock();
@@ -190,12 +518,30 @@ public class LockingVPTree<E extends GeospatialPoint> extends VPTree<E> {
         this.lock.writeLock().lock();
         
         try {
+            this.record(Mutation.Type.ADD, points);
             return super.addAll(points);
         } finally {
             this.lock.writeLock().unlock();
         }
     }
     
+    /*
+     * (non-Javadoc)
+     * @see com.eatthepath.jeospatial.vptree.VPTree#compact()
+     */
+    @Override
+    public void compact() {
+        // Compacting doesn't change the contents of the tree, but it does
+        // replace the arrays that searches read.
+        this.lock.writeLock().lock();
+
+        try {
+            super.compact();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
     /*
      * (non-Javadoc)
      * @see com.eatthepath.jeospatial.vptree.VPTree#clear()
@@ -205,6 +551,7 @@ public class LockingVPTree<E extends GeospatialPoint> extends VPTree<E> {
         this.lock.writeLock().lock();
         
         try {
+            this.record(Mutation.Type.CLEAR, null);
             super.clear();
         } finally {
             this.lock.writeLock().unlock();
@@ -256,6 +603,59 @@ public class LockingVPTree<E extends GeospatialPoint> extends VPTree<E> {
         }
     }
     
+    /**
+     * Returns an iterator over all of the points in this tree in order of
+     * increasing distance from the given query point. The tree is searched
+     * lazily as the iterator advances, and each step of the search acquires
+     * this tree's read lock. Modifying the tree while the iterator is in use
+     * won't cause the iterator to fail, but points added or removed in the
+     * meantime may or may not be returned, and points moved when the tree
+     * rebalances itself may be returned more than once.
+     * 
+     * @see com.eatthepath.jeospatial.GeospatialPointDatabase#getNeighborsByDistance(com.eatthepath.jeospatial.GeospatialPoint)
+     */
+    @Override
+    public Iterator<E> getNeighborsByDistance(GeospatialPoint queryPoint) {
+        this.lock.readLock().lock();
+        
+        final Iterator<E> iterator;
+        
+        try {
+            iterator = super.getNeighborsByDistance(queryPoint);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        
+        return new Iterator<E>() {
+            @Override
+            public boolean hasNext() {
+                LockingVPTree.this.lock.readLock().lock();
+                
+                try {
+                    return iterator.hasNext();
+                } finally {
+                    LockingVPTree.this.lock.readLock().unlock();
+                }
+            }
+            
+            @Override
+            public E next() {
+                LockingVPTree.this.lock.readLock().lock();
+                
+                try {
+                    return iterator.next();
+                } finally {
+                    LockingVPTree.this.lock.readLock().unlock();
+                }
+            }
+            
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+    
     /*
      * (non-Javadoc)
      * @see com.eatthepath.jeospatial.vptree.VPTree#iterator()
@@ -280,7 +680,13 @@ public class LockingVPTree<E extends GeospatialPoint> extends VPTree<E> {
         this.lock.writeLock().lock();
         
         try {
-            return super.remove(o);
+            boolean pointRemoved = super.remove(o);
+            
+            if(pointRemoved) {
+                this.record(Mutation.Type.REMOVE, java.util.Collections.singletonList(o));
+            }
+            
+            return pointRemoved;
         } finally {
             this.lock.writeLock().unlock();
         }
@@ -295,7 +701,13 @@ public class LockingVPTree<E extends GeospatialPoint> extends VPTree<E> {
         this.lock.writeLock().lock();
         
         try {
-            return super.removeAll(c);
+            boolean anyChanged = super.removeAll(c);
+            
+            if(anyChanged) {
+                this.record(Mutation.Type.REMOVE_ALL, c);
+            }
+            
+            return anyChanged;
         } finally {
             this.lock.writeLock().unlock();
         }
@@ -316,6 +728,21 @@ public class LockingVPTree<E extends GeospatialPoint> extends VPTree<E> {
         }
     }
     
+    /*
+     * (non-Javadoc)
+     * @see com.eatthepath.jeospatial.vptree.VPTree#getMemoryStats()
+     */
+    @Override
+    public MemoryStats getMemoryStats() {
+        this.lock.readLock().lock();
+        
+        try {
+            return super.getMemoryStats();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+    
     /*
      * (non-Javadoc)
      * @see com.eatthepath.jeospatial.vptree.VPTree#size()
@@ -421,6 +848,23 @@ public class LockingVPTree<E extends GeospatialPoint> extends VPTree<E> {
         }
     }
     
+    /*
+     * (non-Javadoc)
+     * @see com.eatthepath.jeospatial.vptree.VPTree#getNearestNeighbors(com.eatthepath.jeospatial.GeospatialPoint[], int)
+     */
+    @Override
+    public List<List<E>> getNearestNeighbors(GeospatialPoint[] queryPoints, int maxResults) {
+        // The worker threads that answer the queries don't take the lock
+        // themselves, but holding it here keeps writers out until they're done.
+        this.lock.readLock().lock();
+        
+        try {
+            return super.getNearestNeighbors(queryPoints, maxResults);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+    
     /*
      * (non-Javadoc)
      * @see com.eatthepath.jeospatial.vptree.VPTree#getAllNeighborsWithinDistance(com.eatthepath.jeospatial.GeospatialPoint, double)
@@ -451,6 +895,86 @@ public class LockingVPTree<E extends GeospatialPoint> extends VPTree<E> {
         }
     }
     
+    /**
+     * Visits points under this tree's read lock; the visitor must not modify
+     * this tree.
+     * 
+     * @see com.eatthepath.jeospatial.vptree.VPTree#forEachWithinDistance(com.eatthepath.jeospatial.GeospatialPoint, double, com.eatthepath.jeospatial.PointVisitor)
+     */
+    @Override
+    public boolean forEachWithinDistance(GeospatialPoint queryPoint, double maxDistance, PointVisitor<E> visitor) {
+        this.lock.readLock().lock();
+        
+        try {
+            return super.forEachWithinDistance(queryPoint, maxDistance, visitor);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Visits points under this tree's read lock; the visitor must not modify
+     * this tree.
+     * 
+     * @see com.eatthepath.jeospatial.vptree.VPTree#forEachInBoundingBox(double, double, double, double, com.eatthepath.jeospatial.PointVisitor)
+     */
+    @Override
+    public boolean forEachInBoundingBox(double west, double east, double north, double south, PointVisitor<E> visitor) {
+        this.lock.readLock().lock();
+        
+        try {
+            return super.forEachInBoundingBox(west, east, north, south, visitor);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+    
+    /*
+     * (non-Javadoc)
+     * @see com.eatthepath.jeospatial.vptree.VPTree#countWithinDistance(com.eatthepath.jeospatial.GeospatialPoint, double)
+     */
+    @Override
+    public int countWithinDistance(GeospatialPoint queryPoint, double maxDistance) {
+        this.lock.readLock().lock();
+        
+        try {
+            return super.countWithinDistance(queryPoint, maxDistance);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+    
+    /*
+     * (non-Javadoc)
+     * @see com.eatthepath.jeospatial.vptree.VPTree#getAllPointsInBoundingBox(double, double, double, double, com.eatthepath.jeospatial.SearchCriteria, com.eatthepath.jeospatial.GeospatialPoint)
+     */
+    @Override
+    public List<E> getAllPointsInBoundingBox(double west, double east, double north, double south,
+            SearchCriteria<E> otherCriteria, GeospatialPoint orderingPoint) {
+        this.lock.readLock().lock();
+        
+        try {
+            return super.getAllPointsInBoundingBox(west, east, north, south, otherCriteria, orderingPoint);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+    
+    /*
+     * (non-Javadoc)
+     * @see com.eatthepath.jeospatial.vptree.VPTree#countInBoundingBox(double, double, double, double)
+     */
+    @Override
+    public int countInBoundingBox(double west, double east, double north, double south) {
+        this.lock.readLock().lock();
+        
+        try {
+            return super.countInBoundingBox(west, east, north, south);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+    
     /*
      * (non-Javadoc)
      * @see com.eatthepath.jeospatial.vptree.VPTree#getNearestNeighbor(com.eatthepath.jeospatial.GeospatialPoint)
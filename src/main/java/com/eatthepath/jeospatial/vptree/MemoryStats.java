@@ -0,0 +1,191 @@
+package com.eatthepath.jeospatial.vptree;
+
+/**
+ * <p>A snapshot of the shape of a vp-tree and an estimate of the memory it
+ * occupies. Memory statistics are gathered by walking a tree's nodes (but not
+ * its points), so they're cheap enough to gather periodically even for large
+ * trees.</p>
+ *
+ * <p>Byte counts are estimates. They assume a 64-bit HotSpot JVM with
+ * compressed object pointers (the default for heaps smaller than 32 GB): object
+ * headers take 12 bytes, array headers take 16 bytes, references take four
+ * bytes, and every object is padded to a multiple of eight bytes. Byte counts
+ * cover the tree's own nodes, arrays and center points, but not the points
+ * stored in the tree, which the tree can't measure;
+ * {@link MemoryStats#getEstimatedBytesIncludingPoints(long)} adds an estimate
+ * for those, too.</p>
+ *
+ * @author <a href="mailto:jon.chambers@gmail.com">Jon Chambers</a>
+ */
+public final class MemoryStats {
+    private static final int OBJECT_HEADER_BYTES = 12;
+    private static final int ARRAY_HEADER_BYTES = 16;
+    private static final int REFERENCE_BYTES = 4;
+    private static final int OBJECT_ALIGNMENT = 8;
+
+    private final int nodeCount;
+    private final int leafCount;
+    private final int pointCount;
+    private final long pointCapacity;
+    private final int centerCount;
+    private final long estimatedBytes;
+
+    MemoryStats(int nodeCount, int leafCount, int pointCount, long pointCapacity, int centerCount, long estimatedBytes) {
+        this.nodeCount = nodeCount;
+        this.leafCount = leafCount;
+        this.pointCount = pointCount;
+        this.pointCapacity = pointCapacity;
+        this.centerCount = centerCount;
+        this.estimatedBytes = estimatedBytes;
+    }
+
+    /**
+     * Returns the total number of nodes (including leaf nodes) in the tree.
+     *
+     * @return the number of nodes in the tree
+     */
+    public int getNodeCount() {
+        return this.nodeCount;
+    }
+
+    /**
+     * Returns the number of leaf nodes in the tree.
+     *
+     * @return the number of leaf nodes in the tree
+     */
+    public int getLeafCount() {
+        return this.leafCount;
+    }
+
+    /**
+     * Returns the number of points stored in the tree.
+     *
+     * @return the number of points stored in the tree
+     */
+    public int getPointCount() {
+        return this.pointCount;
+    }
+
+    /**
+     * Returns the total number of slots for points that the tree has
+     * allocated. The difference between the capacity and the number of points
+     * stored is spare capacity that the tree could reclaim by compacting its
+     * storage.
+     *
+     * @return the total number of slots for points allocated by the tree
+     *
+     * @see VPTree#compact()
+     */
+    public long getPointCapacity() {
+        return this.pointCapacity;
+    }
+
+    /**
+     * Returns the number of center point objects held by the tree's nodes.
+     * Trees that store node centers as primitive values rather than objects
+     * report zero.
+     *
+     * @return the number of center point objects held by the tree
+     */
+    public int getCenterCount() {
+        return this.centerCount;
+    }
+
+    /**
+     * Returns the estimated number of bytes occupied by the tree, not
+     * including the points stored in the tree.
+     *
+     * @return the estimated size of the tree in bytes
+     */
+    public long getEstimatedBytes() {
+        return this.estimatedBytes;
+    }
+
+    /**
+     * Returns the estimated number of bytes occupied by the tree and the
+     * points stored in it, assuming each point occupies the given number of
+     * bytes. A {@link com.eatthepath.jeospatial.util.SimpleGeospatialPoint},
+     * for example, occupies 32 bytes.
+     *
+     * @param bytesPerPoint
+     *            the number of bytes occupied by each point stored in the
+     *            tree
+     *
+     * @return the estimated size of the tree and its points in bytes
+     */
+    public long getEstimatedBytesIncludingPoints(long bytesPerPoint) {
+        return this.estimatedBytes + this.pointCount * bytesPerPoint;
+    }
+
+    /**
+     * Returns the estimated size of an object with the given fields.
+     *
+     * @param references
+     *            the number of reference fields in the object
+     * @param primitiveBytes
+     *            the total size of the object's primitive fields in bytes
+     *
+     * @return the estimated size of the object in bytes
+     */
+    static long getObjectSize(int references, int primitiveBytes) {
+        return align(OBJECT_HEADER_BYTES + (long)references * REFERENCE_BYTES + primitiveBytes);
+    }
+
+    /**
+     * Returns the estimated size of an array of references.
+     *
+     * @param length the length of the array
+     *
+     * @return the estimated size of the array in bytes
+     */
+    static long getReferenceArraySize(long length) {
+        return getArraySize(length, REFERENCE_BYTES);
+    }
+
+    /**
+     * Returns the estimated size of an array of primitive values.
+     *
+     * @param length
+     *            the length of the array
+     * @param elementBytes
+     *            the size of each element in bytes
+     *
+     * @return the estimated size of the array in bytes
+     */
+    static long getArraySize(long length, int elementBytes) {
+        return align(ARRAY_HEADER_BYTES + length * elementBytes);
+    }
+
+    private static long align(long bytes) {
+        return (bytes + OBJECT_ALIGNMENT - 1) / OBJECT_ALIGNMENT * OBJECT_ALIGNMENT;
+    }
+
+    /**
+     * Accumulates statistics as a tree's nodes are visited.
+     */
+    static final class Counter {
+        int nodeCount;
+        int leafCount;
+        long pointCapacity;
+        int centerCount;
+        long estimatedBytes;
+
+        MemoryStats toMemoryStats(int pointCount) {
+            return new MemoryStats(this.nodeCount, this.leafCount, pointCount, this.pointCapacity, this.centerCount,
+                    this.estimatedBytes);
+        }
+    }
+
+    /**
+     * Returns a human-readable {@code String} representation of these
+     * statistics.
+     *
+     * @return a {@code String} representation of these statistics
+     */
+    @Override
+    public String toString() {
+        return "MemoryStats [nodeCount=" + nodeCount + ", leafCount=" + leafCount + ", pointCount=" + pointCount
+                + ", pointCapacity=" + pointCapacity + ", centerCount=" + centerCount + ", estimatedBytes="
+                + estimatedBytes + "]";
+    }
+}
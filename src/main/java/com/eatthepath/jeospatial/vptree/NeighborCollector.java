@@ -0,0 +1,31 @@
+package com.eatthepath.jeospatial.vptree;
+
+import com.eatthepath.jeospatial.GeospatialPoint;
+
+/**
+ * Collects the candidate points offered by a nearest-neighbor search and tells
+ * the search how far from the query point it still needs to look.
+ *
+ * @author <a href="mailto:jon.chambers@gmail.com">Jon Chambers</a>
+ */
+interface NeighborCollector<E extends GeospatialPoint> {
+    /**
+     * Returns the distance from the query point beyond which no offered point
+     * could be accepted. Searches may safely skip any region of space farther
+     * from the query point than this distance.
+     *
+     * @return the distance, in meters, beyond which offered points will be
+     *         rejected
+     */
+    double getSearchRadius();
+
+    /**
+     * Offers a candidate point to this collector.
+     *
+     * @param point the point to offer
+     *
+     * @return {@code true} if the point was accepted (and so the search radius
+     *         may have shrunk) or {@code false} otherwise
+     */
+    boolean offer(E point);
+}
@@ -0,0 +1,276 @@
+package com.eatthepath.jeospatial.vptree;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.eatthepath.jeospatial.GeospatialPoint;
+import com.eatthepath.jeospatial.SearchCriteria;
+import com.eatthepath.jeospatial.util.CachedGeospatialPoint;
+
+/**
+ * <p>A bounded max-heap of candidate nearest neighbors. Unlike
+ * {@link com.eatthepath.jeospatial.util.SearchResults}, a neighbor heap
+ * calculates the distance from the query point to each candidate exactly once,
+ * when the candidate is offered, and stores it in a primitive array alongside
+ * the candidate itself; sifting entries through the heap and checking the
+ * search radius never calculate distances at all.</p>
+ *
+ * <p>Neighbor heaps are meant to be reused from one query to the next (see
+ * {@link QueryContext}). A heap's storage grows as needed and is retained
+ * between queries, so a heap that has already served a query of a given size
+ * won't allocate anything to serve another one.</p>
+ *
+ * @author <a href="mailto:jon.chambers@gmail.com">Jon Chambers</a>
+ */
+final class NeighborHeap<E extends GeospatialPoint> implements NeighborCollector<E> {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private Object[] points;
+    private double[] distances;
+    private int size;
+
+    private CachedGeospatialPoint queryPoint;
+    private int maxSize;
+    private double maxDistance;
+    private SearchCriteria<E> criteria;
+
+    /**
+     * Constructs a new, empty neighbor heap.
+     */
+    public NeighborHeap() {
+        this.points = new Object[DEFAULT_CAPACITY];
+        this.distances = new double[DEFAULT_CAPACITY];
+    }
+
+    /**
+     * Empties this heap and prepares it for a new query.
+     *
+     * @param queryPoint
+     *            the point to use as the origin of all distance calculations
+     * @param maxSize
+     *            the maximum number of points this heap may contain
+     * @param maxDistance
+     *            the maximum allowable distance from the query point; points
+     *            more distant than this threshold will always be rejected
+     * @param criteria
+     *            the search criteria to be met by all points in this heap, or
+     *            {@code null} if all points are acceptable
+     *
+     * @throws IllegalArgumentException
+     *             if {@code maxSize} is less than one
+     */
+    public void reset(CachedGeospatialPoint queryPoint, int maxSize, double maxDistance, SearchCriteria<E> criteria) {
+        if(maxSize < 1) {
+            throw new IllegalArgumentException("Maximum number of results must be greater than zero.");
+        }
+
+        this.clear();
+
+        this.queryPoint = queryPoint;
+        this.maxSize = maxSize;
+        this.maxDistance = maxDistance;
+        this.criteria = criteria;
+    }
+
+    /**
+     * Empties this heap and releases its references to points and search
+     * criteria. If this heap's storage has grown beyond the given capacity, it
+     * is shrunk back to its default capacity.
+     *
+     * @param maxRetainedCapacity
+     *            the largest capacity this heap may retain
+     */
+    public void release(int maxRetainedCapacity) {
+        this.clear();
+
+        this.queryPoint = null;
+        this.criteria = null;
+
+        if(this.points.length > maxRetainedCapacity) {
+            this.points = new Object[DEFAULT_CAPACITY];
+            this.distances = new double[DEFAULT_CAPACITY];
+        }
+    }
+
+    private void clear() {
+        java.util.Arrays.fill(this.points, 0, this.size, null);
+        this.size = 0;
+    }
+
+    /**
+     * Returns the number of points in this heap.
+     *
+     * @return the number of points in this heap
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the distance from the query point beyond which no offered point
+     * could be added to this heap. Until this heap is full, that's the maximum
+     * distance given when this heap was reset; after that, it's the distance
+     * to the most distant point in this heap.
+     *
+     * @return the distance, in meters, beyond which offered points will be
+     *         rejected
+     */
+    @Override
+    public double getSearchRadius() {
+        return this.size < this.maxSize ? this.maxDistance : this.distances[0];
+    }
+
+    /**
+     * Offers a point to this heap. The point is added only if it's within the
+     * current search radius and meets the search criteria (if any), in which
+     * case the most distant point in the heap is evicted if the heap is full.
+     *
+     * @param point the point to offer to this heap
+     *
+     * @return {@code true} if the point was added to this heap or
+     *         {@code false} otherwise
+     */
+    @Override
+    public boolean offer(E point) {
+        double searchRadius = this.getSearchRadius();
+        boolean full = this.size >= this.maxSize;
+
+        // Try to rule the point out with a cheap lower bound before
+        // calculating the exact distance. A full heap only accepts points
+        // strictly closer than its most distant point, while a heap with room
+        // to spare accepts anything within its maximum distance.
+        double lowerBound = this.queryPoint.getLowerBoundDistanceTo(point);
+
+        if(full ? lowerBound >= searchRadius : lowerBound > searchRadius) {
+            return false;
+        }
+
+        double distance = this.queryPoint.getDistanceTo(point);
+
+        if(full ? distance >= searchRadius : distance > searchRadius) {
+            return false;
+        }
+
+        if(this.criteria != null && !this.criteria.matches(point)) {
+            return false;
+        }
+
+        if(full) {
+            this.replaceRoot(point, distance, this.size);
+        } else {
+            this.siftUp(point, distance);
+        }
+
+        return true;
+    }
+
+    private void siftUp(Object point, double distance) {
+        if(this.size == this.points.length) {
+            int capacity = (int)Math.min((long)this.maxSize, 2L * this.points.length);
+
+            this.points = java.util.Arrays.copyOf(this.points, capacity);
+            this.distances = java.util.Arrays.copyOf(this.distances, capacity);
+        }
+
+        int i = this.size++;
+
+        while(i > 0) {
+            int parent = (i - 1) >>> 1;
+
+            if(this.distances[parent] >= distance) {
+                break;
+            }
+
+            this.points[i] = this.points[parent];
+            this.distances[i] = this.distances[parent];
+            i = parent;
+        }
+
+        this.points[i] = point;
+        this.distances[i] = distance;
+    }
+
+    private void replaceRoot(Object point, double distance, int heapSize) {
+        int i = 0;
+
+        while(true) {
+            int child = 2 * i + 1;
+
+            if(child >= heapSize) {
+                break;
+            }
+
+            if(child + 1 < heapSize && this.distances[child + 1] > this.distances[child]) {
+                child++;
+            }
+
+            if(this.distances[child] <= distance) {
+                break;
+            }
+
+            this.points[i] = this.points[child];
+            this.distances[i] = this.distances[child];
+            i = child;
+        }
+
+        this.points[i] = point;
+        this.distances[i] = distance;
+    }
+
+    /**
+     * Returns the point in this heap closest to the query point and empties
+     * the heap.
+     *
+     * @return the closest point in this heap, or {@code null} if this heap is
+     *         empty
+     */
+    @SuppressWarnings("unchecked")
+    public E pollNearest() {
+        E nearest = null;
+        double nearestDistance = Double.POSITIVE_INFINITY;
+
+        for(int i = 0; i < this.size; i++) {
+            if(nearest == null || this.distances[i] < nearestDistance) {
+                nearest = (E)this.points[i];
+                nearestDistance = this.distances[i];
+            }
+        }
+
+        this.clear();
+
+        return nearest;
+    }
+
+    /**
+     * Returns a list of the points in this heap sorted in order of increasing
+     * distance from the query point and empties the heap.
+     *
+     * @return a sorted list of the points in this heap
+     */
+    @SuppressWarnings("unchecked")
+    public List<E> drainToSortedList() {
+        int count = this.size;
+
+        // Repeatedly move the most distant remaining entry to the end of the
+        // heap's range; when we're done, the entries are in ascending order.
+        for(int end = count - 1; end > 0; end--) {
+            Object point = this.points[end];
+            double distance = this.distances[end];
+
+            this.points[end] = this.points[0];
+            this.distances[end] = this.distances[0];
+
+            this.replaceRoot(point, distance, end);
+        }
+
+        ArrayList<E> sortedList = new ArrayList<E>(count);
+
+        for(int i = 0; i < count; i++) {
+            sortedList.add((E)this.points[i]);
+        }
+
+        this.clear();
+
+        return sortedList;
+    }
+}
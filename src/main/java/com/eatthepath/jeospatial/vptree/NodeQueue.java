@@ -0,0 +1,256 @@
+package com.eatthepath.jeospatial.vptree;
+
+/**
+ * <p>A min-heap of pending subtrees for best-first searches, keyed by a lower
+ * bound for the chord distance from the query point to any point in each
+ * subtree. A subtree may be identified either by a node object or by a node
+ * index (for trees like {@link FrozenVPTree} that store their nodes in
+ * arrays); bounds and node indices are stored in primitive arrays, so adding
+ * and removing subtrees allocates nothing once the queue has grown to the
+ * size a search needs.</p>
+ *
+ * <p>Every entry also carries a kind. Best-first searches only ever queue
+ * subtrees, but searches that return points in order of distance (like
+ * {@link VPTree#getNeighborsByDistance(com.eatthepath.jeospatial.GeospatialPoint)})
+ * share one queue between subtrees and individual points; the kind of an
+ * entry tells them which they've found at the head of the queue.</p>
+ *
+ * <p>Node queues are reused from one query to the next (see
+ * {@link QueryContext}) and are not thread-safe.</p>
+ *
+ * @author <a href="mailto:jon.chambers@gmail.com">Jon Chambers</a>
+ */
+final class NodeQueue {
+    private static final int DEFAULT_CAPACITY = 32;
+
+    /**
+     * The kind of an entry that identifies a subtree.
+     */
+    public static final int SUBTREE = 0;
+
+    /**
+     * The kind of an entry that identifies a single point, keyed by a lower
+     * bound for its distance from the query point.
+     */
+    public static final int POINT_BOUND = 1;
+
+    /**
+     * The kind of an entry that identifies a single point, keyed by its exact
+     * distance from the query point.
+     */
+    public static final int POINT = 2;
+
+    private Object[] nodes;
+    private int[] indices;
+    private byte[] kinds;
+    private double[] bounds;
+    private int size;
+
+    /**
+     * Constructs a new, empty node queue.
+     */
+    public NodeQueue() {
+        this.nodes = new Object[DEFAULT_CAPACITY];
+        this.indices = new int[DEFAULT_CAPACITY];
+        this.kinds = new byte[DEFAULT_CAPACITY];
+        this.bounds = new double[DEFAULT_CAPACITY];
+    }
+
+    /**
+     * Returns {@code true} if this queue contains no subtrees.
+     *
+     * @return {@code true} if this queue is empty or {@code false} otherwise
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Returns the number of subtrees in this queue.
+     *
+     * @return the number of subtrees in this queue
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Adds a subtree to this queue.
+     *
+     * @param node
+     *            the root node of the subtree, or {@code null} if the subtree
+     *            is identified by index
+     * @param index
+     *            the index of the root node of the subtree, if the subtree is
+     *            identified by index
+     * @param bound
+     *            a lower bound for the chord distance from the query point to
+     *            any point in the subtree
+     */
+    public void add(Object node, int index, double bound) {
+        this.add(node, index, SUBTREE, bound);
+    }
+
+    /**
+     * Adds an entry of the given kind to this queue.
+     *
+     * @param node
+     *            the node or point identified by the entry, or {@code null} if
+     *            the entry is identified by index
+     * @param index
+     *            the index of the node or point identified by the entry, if
+     *            the entry is identified by index
+     * @param kind
+     *            the kind of the entry; one of {@link #SUBTREE},
+     *            {@link #POINT_BOUND}, or {@link #POINT}
+     * @param bound
+     *            the key by which the entry is ordered
+     */
+    public void add(Object node, int index, int kind, double bound) {
+        if(this.size == this.bounds.length) {
+            int capacity = 2 * this.bounds.length;
+
+            this.nodes = java.util.Arrays.copyOf(this.nodes, capacity);
+            this.indices = java.util.Arrays.copyOf(this.indices, capacity);
+            this.kinds = java.util.Arrays.copyOf(this.kinds, capacity);
+            this.bounds = java.util.Arrays.copyOf(this.bounds, capacity);
+        }
+
+        // Sift the new entry up from the bottom of the heap.
+        int i = this.size++;
+
+        while(i > 0) {
+            int parent = (i - 1) >>> 1;
+
+            if(this.bounds[parent] <= bound) {
+                break;
+            }
+
+            this.move(parent, i);
+            i = parent;
+        }
+
+        this.nodes[i] = node;
+        this.indices[i] = index;
+        this.kinds[i] = (byte)kind;
+        this.bounds[i] = bound;
+    }
+
+    /**
+     * Returns the lower bound for the subtree at the head of this queue, which
+     * is the smallest lower bound of any subtree in this queue.
+     *
+     * @return the lower bound for the subtree at the head of this queue
+     */
+    public double peekBound() {
+        return this.bounds[0];
+    }
+
+    /**
+     * Returns the root node of the subtree at the head of this queue.
+     *
+     * @return the root node of the subtree at the head of this queue
+     */
+    public Object peekNode() {
+        return this.nodes[0];
+    }
+
+    /**
+     * Returns the index of the root node of the subtree at the head of this
+     * queue.
+     *
+     * @return the index of the root node of the subtree at the head of this
+     *         queue
+     */
+    public int peekIndex() {
+        return this.indices[0];
+    }
+
+    /**
+     * Returns the kind of the entry at the head of this queue.
+     *
+     * @return the kind of the entry at the head of this queue; one of
+     *         {@link #SUBTREE}, {@link #POINT_BOUND}, or {@link #POINT}
+     */
+    public int peekKind() {
+        return this.kinds[0];
+    }
+
+    /**
+     * Removes the entry at the head of this queue.
+     */
+    public void remove() {
+        int last = --this.size;
+
+        Object node = this.nodes[last];
+        int index = this.indices[last];
+        int kind = this.kinds[last];
+        double bound = this.bounds[last];
+
+        this.nodes[last] = null;
+
+        if(last == 0) {
+            return;
+        }
+
+        // Sift the last entry down from the top of the heap.
+        int i = 0;
+
+        while(true) {
+            int child = 2 * i + 1;
+
+            if(child >= last) {
+                break;
+            }
+
+            if(child + 1 < last && this.bounds[child + 1] < this.bounds[child]) {
+                child++;
+            }
+
+            if(this.bounds[child] >= bound) {
+                break;
+            }
+
+            this.move(child, i);
+            i = child;
+        }
+
+        this.nodes[i] = node;
+        this.indices[i] = index;
+        this.kinds[i] = (byte)kind;
+        this.bounds[i] = bound;
+    }
+
+    /**
+     * Empties this queue.
+     */
+    public void clear() {
+        java.util.Arrays.fill(this.nodes, 0, this.size, null);
+        this.size = 0;
+    }
+
+    /**
+     * Empties this queue. If this queue's storage has grown beyond the given
+     * capacity, it is shrunk back to its default capacity.
+     *
+     * @param maxRetainedCapacity
+     *            the largest capacity this queue may retain
+     */
+    public void release(int maxRetainedCapacity) {
+        this.clear();
+
+        if(this.bounds.length > maxRetainedCapacity) {
+            this.nodes = new Object[DEFAULT_CAPACITY];
+            this.indices = new int[DEFAULT_CAPACITY];
+            this.kinds = new byte[DEFAULT_CAPACITY];
+            this.bounds = new double[DEFAULT_CAPACITY];
+        }
+    }
+
+    private void move(int from, int to) {
+        this.nodes[to] = this.nodes[from];
+        this.indices[to] = this.indices[from];
+        this.kinds[to] = this.kinds[from];
+        this.bounds[to] = this.bounds[from];
+    }
+}
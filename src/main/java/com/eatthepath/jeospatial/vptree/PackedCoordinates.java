@@ -0,0 +1,112 @@
+package com.eatthepath.jeospatial.vptree;
+
+/**
+ * <p>The coordinates and unit vectors of the points in an {@link IdVPTree},
+ * stored in primitive arrays. Latitudes and longitudes are always stored
+ * exactly, as {@code double} values; unit vectors are stored as
+ * {@link EncodedUnitVectors} with one of the available
+ * {@linkplain CoordinateEncoding coordinate encodings}.</p>
+ *
+ * <p>Squared chord distances calculated from compact unit vectors are only
+ * approximate and must only be used to filter candidates; callers should pad
+ * any chord distance against which they compare by
+ * {@link PackedCoordinates#getChordDistanceError()} and calculate exact
+ * distances from the stored latitude and longitude.</p>
+ *
+ * @author <a href="mailto:jon.chambers@gmail.com">Jon Chambers</a>
+ */
+final class PackedCoordinates {
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final EncodedUnitVectors vectors;
+
+    /**
+     * Gathers the coordinates of a set of points in the given order and stores
+     * their unit vectors with the given encoding.
+     *
+     * @param encoding
+     *            the encoding with which to store unit vectors
+     * @param latitudes
+     *            the latitudes of the points
+     * @param longitudes
+     *            the normalized longitudes of the points
+     * @param vectors
+     *            the interleaved unit vectors of the points, already in the
+     *            given order
+     * @param order
+     *            the index in {@code latitudes} and {@code longitudes} of the
+     *            point to store at each position
+     */
+    public PackedCoordinates(CoordinateEncoding encoding, double[] latitudes, double[] longitudes,
+            double[] vectors, long[] order) {
+
+        this.latitudes = new double[order.length];
+        this.longitudes = new double[order.length];
+
+        for(int i = 0; i < order.length; i++) {
+            this.latitudes[i] = latitudes[(int)order[i]];
+            this.longitudes[i] = longitudes[(int)order[i]];
+        }
+
+        this.vectors = EncodedUnitVectors.create(encoding, vectors);
+    }
+
+    /**
+     * Returns the latitude of the point at the given index.
+     *
+     * @param index the index of the point
+     *
+     * @return the latitude of the point in degrees
+     */
+    public double getLatitude(int index) {
+        return this.latitudes[index];
+    }
+
+    /**
+     * Returns the longitude of the point at the given index.
+     *
+     * @param index the index of the point
+     *
+     * @return the longitude of the point in degrees
+     */
+    public double getLongitude(int index) {
+        return this.longitudes[index];
+    }
+
+    /**
+     * Returns the squared chord distance from the given vector to the vector
+     * of the point at the given index, which may be off by as much as
+     * {@link PackedCoordinates#getChordDistanceError()} before squaring.
+     *
+     * @param queryVector the vector from which to measure
+     * @param index the index of the point to which to measure
+     *
+     * @return the squared chord distance between the two vectors
+     */
+    public double getSquaredChordDistance(UnitVector queryVector, int index) {
+        return this.vectors.getSquaredChordDistance(queryVector, index);
+    }
+
+    /**
+     * Returns the largest amount by which a chord distance calculated from
+     * stored vectors may differ from the exact chord distance.
+     *
+     * @return the largest possible error in a chord distance calculated from
+     *         stored vectors
+     */
+    public double getChordDistanceError() {
+        return this.vectors.getChordDistanceError();
+    }
+
+    /**
+     * Returns the estimated number of bytes occupied by these coordinates.
+     *
+     * @return the estimated size of these coordinates in bytes
+     *
+     * @see MemoryStats
+     */
+    public long getEstimatedBytes() {
+        return MemoryStats.getObjectSize(3, 0) + 2 * MemoryStats.getArraySize(this.latitudes.length, 8) +
+                this.vectors.getEstimatedBytes();
+    }
+}
@@ -0,0 +1,467 @@
+package com.eatthepath.jeospatial.vptree;
+
+import java.util.Arrays;
+
+/**
+ * <p>A growable list of {@linkplain UnitVector unit vectors} stored as three
+ * parallel arrays of primitive components. Leaf nodes of a vp-tree keep a
+ * {@code PackedUnitVectors} list in step with their list of points so that
+ * searches can measure the distance from a query point to every point in a
+ * leaf in a single pass over contiguous memory rather than by calling through
+ * the {@link com.eatthepath.jeospatial.GeospatialPoint} interface (and
+ * evaluating several trigonometric functions) for each point.</p>
+ *
+ * <p>Components are stored with the precision called for by a
+ * {@linkplain CoordinateEncoding coordinate encoding}:
+ * {@link CoordinateEncoding#DOUBLE} keeps {@code double} components,
+ * {@link CoordinateEncoding#FLOAT} keeps {@code float} components and
+ * {@link CoordinateEncoding#E7} keeps fixed-point {@code int} components.
+ * Squared chord distances measured to compact vectors are only approximate;
+ * callers should only use them to rule points out, and should pad any chord
+ * distance against which they compare by
+ * {@link PackedUnitVectors#getChordDistanceError()}.</p>
+ *
+ * <p>The distance kernel,
+ * {@link PackedUnitVectors#getSquaredChordDistances(UnitVector, double[])},
+ * hands the component arrays to a {@link ChordDistanceKernel}. The library is
+ * a multi-release jar: on Java 17 and newer, when the JVM is started with
+ * {@code --add-modules jdk.incubator.vector}, the kernel measures several
+ * vectors at once with the Vector API; otherwise, it falls back to a simple
+ * scalar loop. Both kernels produce bit-for-bit identical distances.</p>
+ *
+ * @author <a href="mailto:jon.chambers@gmail.com">Jon Chambers</a>
+ */
+abstract class PackedUnitVectors {
+    int size;
+
+    /**
+     * Constructs a new, empty list of vectors with room for the given number of
+     * vectors.
+     *
+     * @param encoding
+     *            the encoding with which to store vector components
+     * @param initialCapacity
+     *            the number of vectors for which to make room
+     *
+     * @return a new, empty list of vectors
+     */
+    public static PackedUnitVectors create(CoordinateEncoding encoding, int initialCapacity) {
+        switch(encoding) {
+            case FLOAT: {
+                return new FloatUnitVectors(initialCapacity);
+            }
+
+            case E7: {
+                return new FixedPointUnitVectors(initialCapacity);
+            }
+
+            default: {
+                return new DoubleUnitVectors(initialCapacity);
+            }
+        }
+    }
+
+    /**
+     * Constructs a new list of vectors from a range of vectors stored in an
+     * array of interleaved components.
+     *
+     * @param encoding
+     *            the encoding with which to store vector components
+     * @param vectors
+     *            an array of interleaved vector components (see
+     *            {@link UnitVector})
+     * @param fromIndex
+     *            the index of the first vector (inclusive) to copy
+     * @param toIndex
+     *            the index of the last vector (exclusive) to copy
+     *
+     * @return a new list of vectors
+     */
+    public static PackedUnitVectors create(CoordinateEncoding encoding, double[] vectors, int fromIndex, int toIndex) {
+        PackedUnitVectors packedVectors = PackedUnitVectors.create(encoding, toIndex - fromIndex);
+
+        for(int i = fromIndex; i < toIndex; i++) {
+            packedVectors.set(packedVectors.size++, vectors[3 * i], vectors[3 * i + 1], vectors[3 * i + 2]);
+        }
+
+        return packedVectors;
+    }
+
+    /**
+     * Returns the number of vectors in this list.
+     *
+     * @return the number of vectors in this list
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Appends a vector to the end of this list.
+     *
+     * @param vector the vector to append
+     */
+    public void add(UnitVector vector) {
+        if(this.size == this.getCapacity()) {
+            this.resize(Math.max(this.size + 1, this.size + (this.size >> 1)));
+        }
+
+        this.set(this.size++, vector.x, vector.y, vector.z);
+    }
+
+    /**
+     * Appends all of the vectors in another list to the end of this list.
+     *
+     * @param vectors
+     *            the vectors to append; must have been created with the same
+     *            encoding as this list
+     */
+    public void addAll(PackedUnitVectors vectors) {
+        if(this.size + vectors.size > this.getCapacity()) {
+            this.resize(Math.max(this.size + vectors.size, this.getCapacity() + (this.getCapacity() >> 1)));
+        }
+
+        this.copy(vectors, 0, this.size, vectors.size);
+        this.size += vectors.size;
+    }
+
+    /**
+     * Removes the vector at the given index, shifting any subsequent vectors
+     * toward the start of the list.
+     *
+     * @param index the index of the vector to remove
+     */
+    public void remove(int index) {
+        this.copy(this, index + 1, index, this.size - index - 1);
+        this.size--;
+    }
+
+    /**
+     * Trims the capacity of this list to its current size.
+     */
+    public void trimToSize() {
+        if(this.getCapacity() > this.size) {
+            this.resize(this.size);
+        }
+    }
+
+    /**
+     * Copies the vectors in this list to a new array of interleaved
+     * components (see {@link UnitVector}). Vectors stored with a compact
+     * encoding are copied as stored, not as they were before they were
+     * encoded.
+     *
+     * @return an array three times as long as this list that contains the
+     *         components of each vector in this list
+     */
+    public abstract double[] toInterleavedArray();
+
+    /**
+     * Returns the index of the first vector at or after the given index that
+     * is stored exactly as the given vector would be. Vectors for points with
+     * identical coordinates are always identical, so this is a cheap way to
+     * find candidate matches for a point without examining any point objects.
+     *
+     * @param vector
+     *            the vector for which to search
+     * @param fromIndex
+     *            the index (inclusive) at which to start searching
+     *
+     * @return the index of the first matching vector at or after
+     *         {@code fromIndex}, or -1 if no such vector exists
+     */
+    public abstract int indexOf(UnitVector vector, int fromIndex);
+
+    /**
+     * Calculates the squared chord distance from the given vector to every
+     * vector in this list. Each distance may be off by as much as
+     * {@link PackedUnitVectors#getChordDistanceError()} before squaring.
+     *
+     * @param queryVector
+     *            the vector from which to measure distances
+     * @param distances
+     *            an array at least as long as this list in which to store
+     *            squared chord distances; the distance to the vector at index
+     *            {@code i} in this list is stored at index {@code i}
+     */
+    public abstract void getSquaredChordDistances(UnitVector queryVector, double[] distances);
+
+    /**
+     * Returns the largest amount by which a chord distance measured to a
+     * vector in this list may differ from the exact chord distance.
+     *
+     * @return the largest possible error in a chord distance measured to a
+     *         vector in this list
+     */
+    public abstract double getChordDistanceError();
+
+    /**
+     * Returns the number of vectors this list can hold without growing.
+     *
+     * @return the capacity of this list
+     */
+    public abstract int getCapacity();
+
+    /**
+     * Returns the estimated number of bytes occupied by this list.
+     *
+     * @return the estimated size of this list in bytes
+     *
+     * @see MemoryStats
+     */
+    public abstract long getEstimatedBytes();
+
+    abstract void set(int index, double x, double y, double z);
+
+    abstract void resize(int capacity);
+
+    abstract void copy(PackedUnitVectors source, int sourceIndex, int destinationIndex, int length);
+
+    private static final class DoubleUnitVectors extends PackedUnitVectors {
+        private double[] x;
+        private double[] y;
+        private double[] z;
+
+        public DoubleUnitVectors(int initialCapacity) {
+            this.x = new double[initialCapacity];
+            this.y = new double[initialCapacity];
+            this.z = new double[initialCapacity];
+        }
+
+        @Override
+        public double[] toInterleavedArray() {
+            double[] vectors = new double[3 * this.size];
+
+            for(int i = 0; i < this.size; i++) {
+                vectors[3 * i] = this.x[i];
+                vectors[3 * i + 1] = this.y[i];
+                vectors[3 * i + 2] = this.z[i];
+            }
+
+            return vectors;
+        }
+
+        @Override
+        public int indexOf(UnitVector vector, int fromIndex) {
+            for(int i = fromIndex; i < this.size; i++) {
+                if(this.x[i] == vector.x && this.y[i] == vector.y && this.z[i] == vector.z) {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+
+        @Override
+        public void getSquaredChordDistances(UnitVector queryVector, double[] distances) {
+            ChordDistanceKernel.getSquaredChordDistances(queryVector.x, queryVector.y, queryVector.z,
+                    this.x, this.y, this.z, 0, this.size, distances);
+        }
+
+        @Override
+        public double getChordDistanceError() {
+            return 0;
+        }
+
+        @Override
+        public int getCapacity() {
+            return this.x.length;
+        }
+
+        @Override
+        public long getEstimatedBytes() {
+            return MemoryStats.getObjectSize(3, 4) + 3 * MemoryStats.getArraySize(this.x.length, 8);
+        }
+
+        @Override
+        void set(int index, double x, double y, double z) {
+            this.x[index] = x;
+            this.y[index] = y;
+            this.z[index] = z;
+        }
+
+        @Override
+        void resize(int capacity) {
+            this.x = Arrays.copyOf(this.x, capacity);
+            this.y = Arrays.copyOf(this.y, capacity);
+            this.z = Arrays.copyOf(this.z, capacity);
+        }
+
+        @Override
+        void copy(PackedUnitVectors source, int sourceIndex, int destinationIndex, int length) {
+            DoubleUnitVectors vectors = (DoubleUnitVectors)source;
+
+            System.arraycopy(vectors.x, sourceIndex, this.x, destinationIndex, length);
+            System.arraycopy(vectors.y, sourceIndex, this.y, destinationIndex, length);
+            System.arraycopy(vectors.z, sourceIndex, this.z, destinationIndex, length);
+        }
+    }
+
+    private static final class FloatUnitVectors extends PackedUnitVectors {
+        private float[] x;
+        private float[] y;
+        private float[] z;
+
+        public FloatUnitVectors(int initialCapacity) {
+            this.x = new float[initialCapacity];
+            this.y = new float[initialCapacity];
+            this.z = new float[initialCapacity];
+        }
+
+        @Override
+        public double[] toInterleavedArray() {
+            double[] vectors = new double[3 * this.size];
+
+            for(int i = 0; i < this.size; i++) {
+                vectors[3 * i] = this.x[i];
+                vectors[3 * i + 1] = this.y[i];
+                vectors[3 * i + 2] = this.z[i];
+            }
+
+            return vectors;
+        }
+
+        @Override
+        public int indexOf(UnitVector vector, int fromIndex) {
+            final float x = (float)vector.x;
+            final float y = (float)vector.y;
+            final float z = (float)vector.z;
+
+            for(int i = fromIndex; i < this.size; i++) {
+                if(this.x[i] == x && this.y[i] == y && this.z[i] == z) {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+
+        @Override
+        public void getSquaredChordDistances(UnitVector queryVector, double[] distances) {
+            ChordDistanceKernel.getSquaredChordDistances((float)queryVector.x, (float)queryVector.y,
+                    (float)queryVector.z, this.x, this.y, this.z, 0, this.size, distances);
+        }
+
+        @Override
+        public double getChordDistanceError() {
+            return CoordinateEncoding.FLOAT.getChordDistanceError();
+        }
+
+        @Override
+        public int getCapacity() {
+            return this.x.length;
+        }
+
+        @Override
+        public long getEstimatedBytes() {
+            return MemoryStats.getObjectSize(3, 4) + 3 * MemoryStats.getArraySize(this.x.length, 4);
+        }
+
+        @Override
+        void set(int index, double x, double y, double z) {
+            this.x[index] = (float)x;
+            this.y[index] = (float)y;
+            this.z[index] = (float)z;
+        }
+
+        @Override
+        void resize(int capacity) {
+            this.x = Arrays.copyOf(this.x, capacity);
+            this.y = Arrays.copyOf(this.y, capacity);
+            this.z = Arrays.copyOf(this.z, capacity);
+        }
+
+        @Override
+        void copy(PackedUnitVectors source, int sourceIndex, int destinationIndex, int length) {
+            FloatUnitVectors vectors = (FloatUnitVectors)source;
+
+            System.arraycopy(vectors.x, sourceIndex, this.x, destinationIndex, length);
+            System.arraycopy(vectors.y, sourceIndex, this.y, destinationIndex, length);
+            System.arraycopy(vectors.z, sourceIndex, this.z, destinationIndex, length);
+        }
+    }
+
+    private static final class FixedPointUnitVectors extends PackedUnitVectors {
+        private int[] x;
+        private int[] y;
+        private int[] z;
+
+        public FixedPointUnitVectors(int initialCapacity) {
+            this.x = new int[initialCapacity];
+            this.y = new int[initialCapacity];
+            this.z = new int[initialCapacity];
+        }
+
+        @Override
+        public double[] toInterleavedArray() {
+            double[] vectors = new double[3 * this.size];
+
+            for(int i = 0; i < this.size; i++) {
+                vectors[3 * i] = this.x[i] * CoordinateEncoding.FIXED_POINT_UNIT;
+                vectors[3 * i + 1] = this.y[i] * CoordinateEncoding.FIXED_POINT_UNIT;
+                vectors[3 * i + 2] = this.z[i] * CoordinateEncoding.FIXED_POINT_UNIT;
+            }
+
+            return vectors;
+        }
+
+        @Override
+        public int indexOf(UnitVector vector, int fromIndex) {
+            final int x = CoordinateEncoding.toFixedPoint(vector.x);
+            final int y = CoordinateEncoding.toFixedPoint(vector.y);
+            final int z = CoordinateEncoding.toFixedPoint(vector.z);
+
+            for(int i = fromIndex; i < this.size; i++) {
+                if(this.x[i] == x && this.y[i] == y && this.z[i] == z) {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+
+        @Override
+        public void getSquaredChordDistances(UnitVector queryVector, double[] distances) {
+            ChordDistanceKernel.getSquaredChordDistances(queryVector.x, queryVector.y, queryVector.z,
+                    this.x, this.y, this.z, 0, this.size, distances);
+        }
+
+        @Override
+        public double getChordDistanceError() {
+            return CoordinateEncoding.E7.getChordDistanceError();
+        }
+
+        @Override
+        public int getCapacity() {
+            return this.x.length;
+        }
+
+        @Override
+        public long getEstimatedBytes() {
+            return MemoryStats.getObjectSize(3, 4) + 3 * MemoryStats.getArraySize(this.x.length, 4);
+        }
+
+        @Override
+        void set(int index, double x, double y, double z) {
+            this.x[index] = CoordinateEncoding.toFixedPoint(x);
+            this.y[index] = CoordinateEncoding.toFixedPoint(y);
+            this.z[index] = CoordinateEncoding.toFixedPoint(z);
+        }
+
+        @Override
+        void resize(int capacity) {
+            this.x = Arrays.copyOf(this.x, capacity);
+            this.y = Arrays.copyOf(this.y, capacity);
+            this.z = Arrays.copyOf(this.z, capacity);
+        }
+
+        @Override
+        void copy(PackedUnitVectors source, int sourceIndex, int destinationIndex, int length) {
+            FixedPointUnitVectors vectors = (FixedPointUnitVectors)source;
+
+            System.arraycopy(vectors.x, sourceIndex, this.x, destinationIndex, length);
+            System.arraycopy(vectors.y, sourceIndex, this.y, destinationIndex, length);
+            System.arraycopy(vectors.z, sourceIndex, this.z, destinationIndex, length);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.eatthepath.jeospatial.vptree;
+
+import com.eatthepath.jeospatial.GeospatialPoint;
+
+/**
+ * <p>The reusable working storage for a nearest-neighbor search: a
+ * {@link NeighborHeap} for candidate results, a {@link NodeQueue} of subtrees
+ * waiting to be searched and a {@link LeafScanner} for measuring distances to
+ * the points in leaf nodes. Each thread keeps a query context of its own, so
+ * searches allocate next to nothing beyond the lists they return.</p>
+ *
+ * <p>A thread's query context is only lent out to one search at a time. If a
+ * search starts while another is already running on the same thread (for
+ * example, because a {@link com.eatthepath.jeospatial.SearchCriteria} queries
+ * a tree itself), the inner search gets a fresh context of its own.</p>
+ *
+ * @author <a href="mailto:jon.chambers@gmail.com">Jon Chambers</a>
+ */
+final class QueryContext {
+    /**
+     * The largest heap or queue capacity a query context will hold on to
+     * between searches; searches that need more than this still work, but the
+     * storage they need is released when they finish.
+     */
+    private static final int MAX_RETAINED_CAPACITY = 1024;
+
+    private static final ThreadLocal<QueryContext> CONTEXTS = new ThreadLocal<QueryContext>() {
+        @Override
+        protected QueryContext initialValue() {
+            return new QueryContext();
+        }
+    };
+
+    private final NeighborHeap<GeospatialPoint> heap = new NeighborHeap<GeospatialPoint>();
+    private final NodeQueue nodeQueue = new NodeQueue();
+    private LeafScanner scanner;
+
+    private boolean inUse = false;
+
+    private QueryContext() {
+    }
+
+    /**
+     * Returns a query context for the current thread. Callers must
+     * {@linkplain QueryContext#release() release} the context when they're
+     * done with it.
+     *
+     * @return a query context that isn't in use by any other search
+     */
+    public static QueryContext acquire() {
+        QueryContext context = CONTEXTS.get();
+
+        if(context.inUse) {
+            context = new QueryContext();
+        }
+
+        context.inUse = true;
+
+        return context;
+    }
+
+    /**
+     * Releases this context so it may be used by the next search on the same
+     * thread. References to points and search criteria held by the context
+     * are cleared so they don't outlive the search.
+     */
+    public void release() {
+        this.heap.release(MAX_RETAINED_CAPACITY);
+        this.nodeQueue.release(MAX_RETAINED_CAPACITY);
+        this.inUse = false;
+    }
+
+    /**
+     * Returns this context's neighbor heap.
+     *
+     * @return this context's neighbor heap
+     */
+    @SuppressWarnings("unchecked")
+    public <E extends GeospatialPoint> NeighborHeap<E> getHeap() {
+        return (NeighborHeap<E>)(NeighborHeap<?>)this.heap;
+    }
+
+    /**
+     * Returns this context's node queue, which is empty when the context is
+     * acquired.
+     *
+     * @return this context's node queue
+     */
+    public NodeQueue getNodeQueue() {
+        return this.nodeQueue;
+    }
+
+    /**
+     * Returns this context's leaf scanner, prepared to measure distances from
+     * the given query vector.
+     *
+     * @param queryVector
+     *            the unit vector for the query point
+     * @param expectedLeafSize
+     *            the number of points the scanner should expect to find in a
+     *            typical leaf node
+     *
+     * @return this context's leaf scanner
+     */
+    public LeafScanner getLeafScanner(UnitVector queryVector, int expectedLeafSize) {
+        if(this.scanner == null) {
+            this.scanner = new LeafScanner(queryVector, expectedLeafSize);
+        } else {
+            this.scanner.setQueryVector(queryVector);
+        }
+
+        return this.scanner;
+    }
+}
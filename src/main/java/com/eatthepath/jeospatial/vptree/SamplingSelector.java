@@ -0,0 +1,142 @@
+package com.eatthepath.jeospatial.vptree;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import com.eatthepath.jeospatial.GeospatialPoint;
+import com.eatthepath.jeospatial.util.CachedGeospatialPoint;
+
+/**
+ * <p>A {@link VantagePointSelector} that chooses vantage points by random
+ * sampling as described by Yianilos. A number of candidate points are drawn at
+ * random from the range; for each candidate, distances to a random sample of
+ * points from the range are calculated, and the candidate whose distances have
+ * the largest spread (the second moment about their median) is chosen. A large
+ * spread means that the candidate's distance threshold will cleanly separate
+ * "near" points from "far" points.</p>
+ * 
+ * <p>Sampling is driven by a pseudo-random number generator seeded from a
+ * fixed seed and the bounds of the range in question, so the same range of the
+ * same array always produces the same vantage point.</p>
+ * 
+ * @author <a href="mailto:jon.chambers@gmail.com">Jon Chambers</a>
+ * 
+ * @see <a href="http://pnylab.com/pny/papers/vptree/main.html">Yianilos, Peter
+ *      N. "Data Structures and Algorithms for Nearest Neighbor Search in
+ *      General Metric Spaces". Proceedings of the Fifth Annual ACM-SIAM
+ *      Symposium on Discrete Algorithms (SODA). 1993.</a>
+ */
+public class SamplingSelector implements VantagePointSelector {
+    /**
+     * The default number ({@value}) of candidate vantage points to consider.
+     */
+    public static final int DEFAULT_CANDIDATE_COUNT = 8;
+    
+    /**
+     * The default number ({@value}) of points to which distances from each
+     * candidate are measured.
+     */
+    public static final int DEFAULT_SAMPLE_SIZE = 32;
+    
+    private final int candidateCount;
+    private final int sampleSize;
+    private final long seed;
+    
+    /**
+     * Constructs a new sampling selector with the default number of candidates
+     * and sample size.
+     */
+    public SamplingSelector() {
+        this(DEFAULT_CANDIDATE_COUNT, DEFAULT_SAMPLE_SIZE, 0);
+    }
+    
+    /**
+     * Constructs a new sampling selector with the given number of candidates,
+     * sample size and random seed.
+     * 
+     * @param candidateCount
+     *            the number of candidate vantage points to consider for each
+     *            node
+     * @param sampleSize
+     *            the number of points to which distances from each candidate
+     *            are measured
+     * @param seed
+     *            the seed from which to derive random samples
+     */
+    public SamplingSelector(int candidateCount, int sampleSize, long seed) {
+        if(candidateCount < 1) {
+            throw new IllegalArgumentException("Candidate count must be greater than zero.");
+        }
+        
+        if(sampleSize < 1) {
+            throw new IllegalArgumentException("Sample size must be greater than zero.");
+        }
+        
+        this.candidateCount = candidateCount;
+        this.sampleSize = sampleSize;
+        this.seed = seed;
+    }
+    
+    /**
+     * Returns the index of the candidate point whose distances to a sample of
+     * other points in the range have the largest spread.
+     * 
+     * @return the index of the chosen vantage point
+     */
+    @Override
+    public int selectVantagePoint(GeospatialPoint[] points, int fromIndex, int toIndex) {
+        int size = toIndex - fromIndex;
+        
+        if(size < 3) {
+            // Any choice is as good as any other.
+            return fromIndex;
+        }
+        
+        Random random = new Random(this.seed + (31L * fromIndex) + toIndex);
+        double[] distances = new double[Math.min(this.sampleSize, size)];
+        
+        int bestIndex = fromIndex;
+        double bestSpread = -1;
+        
+        for(int i = 0; i < this.candidateCount; i++) {
+            int candidateIndex = fromIndex + random.nextInt(size);
+            CachedGeospatialPoint candidate = new CachedGeospatialPoint(points[candidateIndex]);
+            
+            for(int j = 0; j < distances.length; j++) {
+                distances[j] = candidate.getDistanceTo(points[fromIndex + random.nextInt(size)]);
+            }
+            
+            double spread = SamplingSelector.getSecondMomentAboutMedian(distances);
+            
+            if(spread > bestSpread) {
+                bestIndex = candidateIndex;
+                bestSpread = spread;
+            }
+        }
+        
+        return bestIndex;
+    }
+    
+    /**
+     * Calculates the second moment of a sample of distances about their
+     * median. Note that this method sorts the given array.
+     * 
+     * @param distances
+     *            the sample of distances
+     * 
+     * @return the mean squared difference between each distance and the median
+     *         distance
+     */
+    private static double getSecondMomentAboutMedian(double[] distances) {
+        Arrays.sort(distances);
+        double median = distances[distances.length / 2];
+        
+        double sum = 0;
+        
+        for(double distance : distances) {
+            sum += (distance - median) * (distance - median);
+        }
+        
+        return sum / distances.length;
+    }
+}
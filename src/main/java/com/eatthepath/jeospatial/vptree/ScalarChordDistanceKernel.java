@@ -0,0 +1,101 @@
+package com.eatthepath.jeospatial.vptree;
+
+/**
+ * Measures squared chord distances from a query vector to a range of vectors
+ * stored as parallel component arrays, one vector at a time. This is the
+ * kernel {@link ChordDistanceKernel} uses when no faster kernel is available,
+ * and the kernel faster kernels use for whatever is left over after they've
+ * processed as many vectors as they can at once.
+ *
+ * @author <a href="mailto:jon.chambers@gmail.com">Jon Chambers</a>
+ */
+final class ScalarChordDistanceKernel {
+    private ScalarChordDistanceKernel() {
+    }
+
+    /**
+     * Calculates the squared chord distance from the given query vector to
+     * each vector in the given range.
+     *
+     * @param qx the x component of the query vector
+     * @param qy the y component of the query vector
+     * @param qz the z component of the query vector
+     * @param x the x components of the vectors to which to measure
+     * @param y the y components of the vectors to which to measure
+     * @param z the z components of the vectors to which to measure
+     * @param fromIndex the index of the first vector (inclusive) to measure
+     * @param toIndex the index of the last vector (exclusive) to measure
+     * @param distances the array in which to store the squared chord distance
+     *            to the vector at each index
+     */
+    public static void getSquaredChordDistances(final double qx, final double qy, final double qz,
+            final double[] x, final double[] y, final double[] z, final int fromIndex, final int toIndex,
+            final double[] distances) {
+
+        for(int i = fromIndex; i < toIndex; i++) {
+            final double dx = x[i] - qx;
+            final double dy = y[i] - qy;
+            final double dz = z[i] - qz;
+
+            distances[i] = dx * dx + dy * dy + dz * dz;
+        }
+    }
+
+    /**
+     * Calculates the squared chord distance from the given query vector to
+     * each vector in the given range of vectors with {@code float} components.
+     * Distances are calculated in {@code float} arithmetic.
+     *
+     * @param qx the x component of the query vector
+     * @param qy the y component of the query vector
+     * @param qz the z component of the query vector
+     * @param x the x components of the vectors to which to measure
+     * @param y the y components of the vectors to which to measure
+     * @param z the z components of the vectors to which to measure
+     * @param fromIndex the index of the first vector (inclusive) to measure
+     * @param toIndex the index of the last vector (exclusive) to measure
+     * @param distances the array in which to store the squared chord distance
+     *            to the vector at each index
+     */
+    public static void getSquaredChordDistances(final float qx, final float qy, final float qz,
+            final float[] x, final float[] y, final float[] z, final int fromIndex, final int toIndex,
+            final double[] distances) {
+
+        for(int i = fromIndex; i < toIndex; i++) {
+            final float dx = x[i] - qx;
+            final float dy = y[i] - qy;
+            final float dz = z[i] - qz;
+
+            distances[i] = dx * dx + dy * dy + dz * dz;
+        }
+    }
+
+    /**
+     * Calculates the squared chord distance from the given query vector to
+     * each vector in the given range of vectors with fixed-point components
+     * (see {@link CoordinateEncoding#E7}).
+     *
+     * @param qx the x component of the query vector
+     * @param qy the y component of the query vector
+     * @param qz the z component of the query vector
+     * @param x the fixed-point x components of the vectors to which to measure
+     * @param y the fixed-point y components of the vectors to which to measure
+     * @param z the fixed-point z components of the vectors to which to measure
+     * @param fromIndex the index of the first vector (inclusive) to measure
+     * @param toIndex the index of the last vector (exclusive) to measure
+     * @param distances the array in which to store the squared chord distance
+     *            to the vector at each index
+     */
+    public static void getSquaredChordDistances(final double qx, final double qy, final double qz,
+            final int[] x, final int[] y, final int[] z, final int fromIndex, final int toIndex,
+            final double[] distances) {
+
+        for(int i = fromIndex; i < toIndex; i++) {
+            final double dx = x[i] * CoordinateEncoding.FIXED_POINT_UNIT - qx;
+            final double dy = y[i] * CoordinateEncoding.FIXED_POINT_UNIT - qy;
+            final double dz = z[i] * CoordinateEncoding.FIXED_POINT_UNIT - qz;
+
+            distances[i] = dx * dx + dy * dy + dz * dz;
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.eatthepath.jeospatial.vptree;
+
+import com.eatthepath.jeospatial.GeospatialPoint;
+
+/**
+ * <p>A point on the surface of the Earth expressed as a three-dimensional unit
+ * vector (i.e. Earth-centered, Earth-fixed coordinates on a unit sphere).</p>
+ *
+ * <p>The straight-line ("chord") distance between two unit vectors increases
+ * monotonically with the great-circle distance between the points they
+ * represent, so chord distances can stand in for great-circle distances
+ * whenever distances only need to be compared. Unlike great-circle distances,
+ * chord distances between vectors that have already been calculated need no
+ * trigonometry at all; squared chord distances don't even need a square root.
+ * Chord distance is a true metric, so the triangle inequality (upon which
+ * vp-tree searches depend) holds for chord distances, too.</p>
+ *
+ * <p>Vectors may also be stored in arrays, in which case the components of the
+ * vector for the point at index {@code i} are stored at indices {@code 3i},
+ * {@code 3i + 1} and {@code 3i + 2}.</p>
+ *
+ * @author <a href="mailto:jon.chambers@gmail.com">Jon Chambers</a>
+ */
+final class UnitVector {
+    /**
+     * The relative and absolute amounts by which chord distances converted
+     * from meters are padded to make sure rounding errors (which are on the
+     * order of the precision of a vector component, regardless of the distance
+     * between points) never cause a search to skip a point it should have
+     * considered. The absolute margin corresponds to well under a micrometer.
+     */
+    private static final double RELATIVE_CHORD_DISTANCE_MARGIN = 1e-12;
+    private static final double ABSOLUTE_CHORD_DISTANCE_MARGIN = 1e-14;
+
+    /**
+     * The relative amount by which "inner" chord distances are shortened. This
+     * is much larger than the margin for padded chord distances because it
+     * must also cover rounding errors in the Haversine Formula, which grow as
+     * points approach opposite sides of the Earth.
+     */
+    private static final double RELATIVE_INNER_CHORD_DISTANCE_MARGIN = 1e-9;
+
+    final double x;
+    final double y;
+    final double z;
+
+    /**
+     * Constructs a unit vector that represents the given point.
+     *
+     * @param point the point to represent as a unit vector
+     */
+    public UnitVector(GeospatialPoint point) {
+        this(point.getLatitude(), point.getLongitude());
+    }
+
+    /**
+     * Constructs a unit vector that represents the point at the given
+     * latitude and longitude.
+     *
+     * @param latitude the latitude of the point, in degrees
+     * @param longitude the longitude of the point, in degrees
+     */
+    public UnitVector(double latitude, double longitude) {
+        double lat = Math.toRadians(latitude);
+        double lon = Math.toRadians(longitude);
+        double cosLat = Math.cos(lat);
+
+        this.x = cosLat * Math.cos(lon);
+        this.y = cosLat * Math.sin(lon);
+        this.z = Math.sin(lat);
+    }
+
+    /**
+     * Calculates the unit vectors for a range of points and returns them in a
+     * new array with room for the vectors of all of the given points.
+     *
+     * @param points
+     *            the array of points for which to calculate unit vectors
+     * @param fromIndex
+     *            the index of the first point (inclusive) for which to
+     *            calculate a unit vector
+     * @param toIndex
+     *            the index of the last point (exclusive) for which to
+     *            calculate a unit vector
+     *
+     * @return an array of vector components three times as long as
+     *         {@code points}
+     */
+    public static double[] toUnitVectors(GeospatialPoint[] points, int fromIndex, int toIndex) {
+        double[] vectors = new double[3 * points.length];
+        UnitVector.toUnitVectors(points, fromIndex, toIndex, vectors);
+
+        return vectors;
+    }
+
+    /**
+     * Calculates the unit vectors for a range of points and stores their
+     * components at the corresponding positions in the given array.
+     *
+     * @param points
+     *            the array of points for which to calculate unit vectors
+     * @param fromIndex
+     *            the index of the first point (inclusive) for which to
+     *            calculate a unit vector
+     * @param toIndex
+     *            the index of the last point (exclusive) for which to
+     *            calculate a unit vector
+     * @param vectors
+     *            an array at least three times as long as {@code toIndex} in
+     *            which to store vector components
+     */
+    public static void toUnitVectors(GeospatialPoint[] points, int fromIndex, int toIndex, double[] vectors) {
+        for(int i = fromIndex; i < toIndex; i++) {
+            UnitVector vector = new UnitVector(points[i]);
+
+            vectors[3 * i] = vector.x;
+            vectors[3 * i + 1] = vector.y;
+            vectors[3 * i + 2] = vector.z;
+        }
+    }
+
+    /**
+     * Returns the square of the chord distance between this vector and the
+     * given vector.
+     *
+     * @param other the vector to which to measure
+     *
+     * @return the square of the chord distance between the two vectors
+     */
+    public double getSquaredChordDistanceTo(UnitVector other) {
+        double dx = this.x - other.x;
+        double dy = this.y - other.y;
+        double dz = this.z - other.z;
+
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * Returns the square of the chord distance between this vector and a vector
+     * stored in the given array.
+     *
+     * @param vectors
+     *            an array of vector components
+     * @param index
+     *            the index of the vector (not the index of its first
+     *            component) to which to measure
+     *
+     * @return the square of the chord distance between the two vectors
+     */
+    public double getSquaredChordDistanceTo(double[] vectors, int index) {
+        double dx = this.x - vectors[3 * index];
+        double dy = this.y - vectors[3 * index + 1];
+        double dz = this.z - vectors[3 * index + 2];
+
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * Returns the chord distance between this vector and the given vector.
+     *
+     * @param other the vector to which to measure
+     *
+     * @return the chord distance between the two vectors
+     */
+    public double getChordDistanceTo(UnitVector other) {
+        return Math.sqrt(this.getSquaredChordDistanceTo(other));
+    }
+
+    /**
+     * <p>Converts a great-circle distance in meters to a chord distance. The
+     * returned distance is padded very slightly so that it is never shorter
+     * than the exact chord distance; searches may safely use it to decide
+     * which parts of a tree to skip.</p>
+     *
+     * @param meters
+     *            the great-circle distance, in meters, to convert
+     *
+     * @return the chord distance between two points separated by the given
+     *         great-circle distance, or {@link Double#POSITIVE_INFINITY} if
+     *         the given distance is at least half way around the world
+     */
+    public static double toChordDistance(double meters) {
+        double angle = meters / GeospatialPoint.EARTH_RADIUS;
+
+        if(angle >= Math.PI) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        return 2 * Math.sin(angle / 2) * (1 + RELATIVE_CHORD_DISTANCE_MARGIN) + ABSOLUTE_CHORD_DISTANCE_MARGIN;
+    }
+
+    /**
+     * <p>Converts a great-circle distance in meters to a chord distance that is
+     * shortened very slightly, so that any two points whose exact chord
+     * distance is no longer than the returned distance are certain to have a
+     * great-circle distance (as calculated by the Haversine Formula) no longer
+     * than the given distance. Searches may use it to accept points without
+     * calculating their exact distances.</p>
+     *
+     * @param meters
+     *            the great-circle distance, in meters, to convert
+     *
+     * @return a chord distance no longer than the exact chord distance between
+     *         two points separated by the given great-circle distance, or
+     *         {@link Double#POSITIVE_INFINITY} if the given distance is at
+     *         least half way around the world
+     */
+    public static double toInnerChordDistance(double meters) {
+        double angle = meters / GeospatialPoint.EARTH_RADIUS;
+
+        if(angle >= Math.PI) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        return 2 * Math.sin(angle / 2) * (1 - RELATIVE_INNER_CHORD_DISTANCE_MARGIN) - ABSOLUTE_CHORD_DISTANCE_MARGIN;
+    }
+
+    /**
+     * <p>Converts a chord distance to a great-circle distance in meters that is
+     * shortened very slightly, so that any point whose chord distance (as
+     * calculated from unit vectors) from some other point is at least the
+     * given distance is certain to have a great-circle distance (as
+     * calculated by the Haversine Formula) no shorter than the returned
+     * distance. Searches may use it to turn a lower bound for chord distance
+     * into a lower bound for great-circle distance.</p>
+     *
+     * @param chordDistance
+     *            the chord distance to convert
+     *
+     * @return a great-circle distance, in meters, no longer than the
+     *         great-circle distance between any two points separated by at
+     *         least the given chord distance
+     */
+    public static double toLowerBoundMeters(double chordDistance) {
+        double shortened = (chordDistance - ABSOLUTE_CHORD_DISTANCE_MARGIN) * (1 - RELATIVE_INNER_CHORD_DISTANCE_MARGIN);
+
+        if(shortened <= 0) {
+            return 0;
+        }
+
+        return 2 * Math.asin(Math.min(1, shortened / 2)) * GeospatialPoint.EARTH_RADIUS;
+    }
+
+    /**
+     * Converts a squared chord distance to a great-circle distance in meters.
+     *
+     * @param squaredChordDistance
+     *            the squared chord distance to convert
+     *
+     * @return the great-circle distance, in meters, between two points
+     *         separated by the given squared chord distance
+     */
+    public static double toMeters(double squaredChordDistance) {
+        return 2 * Math.asin(Math.min(1, Math.sqrt(squaredChordDistance) / 2)) * GeospatialPoint.EARTH_RADIUS;
+    }
+}
@@ -1,22 +1,26 @@
 package com.eatthepath.jeospatial.vptree;
 
-import java.lang.reflect.Array;
 import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Deque;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import com.eatthepath.jeospatial.GeospatialPoint;
 import com.eatthepath.jeospatial.GeospatialPointDatabase;
+import com.eatthepath.jeospatial.PointVisitor;
 import com.eatthepath.jeospatial.SearchCriteria;
 import com.eatthepath.jeospatial.util.BoundingBoxSearchCriteria;
 import com.eatthepath.jeospatial.util.GeospatialDistanceComparator;
 import com.eatthepath.jeospatial.util.SearchResults;
-import com.eatthepath.jeospatial.util.SimpleGeospatialPoint;
+import com.eatthepath.jeospatial.util.CachedGeospatialPoint;
 
 /**
  * <p>A geospatial database that uses a vantage point tree as its storage
@@ -52,6 +56,24 @@ import com.eatthepath.jeospatial.util.SimpleGeospatialPoint;
  * <p>The default node capacity for a vp-tree is {@value DEFAULT_BIN_SIZE}
  * points.</p>
  * 
+ * <p>By default, the center of each node is simply the first of its points.
+ * Other strategies for choosing node centers (which may produce better-balanced
+ * trees for clustered data) may be provided at construction time as a
+ * {@link VantagePointSelector}.</p>
+ * 
+ * <p>Vp-trees built from an existing collection of points may optionally be
+ * built in parallel by providing a {@link ForkJoinPool} at construction time.
+ * Parallel construction produces exactly the same tree as sequential
+ * construction.</p>
+ * 
+ * <p>Adding and removing points never moves the thresholds of existing nodes,
+ * so trees that change substantially after construction can drift out of
+ * balance. Each node keeps track of how many points it holds; when an addition
+ * or removal leaves one child of a node holding too large a share of the
+ * node's points, the node is rebuilt as if from a collection of points. The
+ * share that triggers a rebuild is controlled by the tree's
+ * {@linkplain #setImbalanceFactor(double) imbalance factor}.</p>
+ * 
  * <p>Note that the {@code VPTree} class is <strong>not</strong> thread-safe;
  * because they forego any kind of synchronization or locking, {@code VPTree}
  * instances can achieve slightly higher search throughput than their
@@ -79,15 +101,45 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
      * points of their own.</p>
      */
     protected class VPNode<T extends GeospatialPoint> {
-        private SimpleGeospatialPoint center;
+        private CachedGeospatialPoint center;
+        private UnitVector centerVector;
+        
+        // The distance threshold is stored as a squared chord distance (see
+        // UnitVector) so points can be routed without any trigonometry.
         private double threshold;
         
+        // The squared chord distance from the center to the most distant
+        // point in this node's subtree (or an overestimate of it, since it
+        // doesn't shrink as points are removed); non-leaf nodes only
+        private double coveringRadius;
+        
+        // The bounds of the latitudes and (normalized) longitudes of the
+        // points in this node's subtree; like the covering radius, these may
+        // be overestimates after points are removed. Non-leaf nodes only.
+        private double west;
+        private double east;
+        private double north;
+        private double south;
+        
         private VPNode<T> closer;
         private VPNode<T> farther;
         
-        private ArrayList<T> points;
+        // Leaf nodes store their points in an array that grows as needed and
+        // may have spare capacity; see VPNode#compact().
+        private GeospatialPoint[] points;
+        private int pointCount;
         private final int binSize;
         
+        // Leaf nodes keep the unit vectors for their points in the same order
+        // as the points themselves so searches can scan them in bulk.
+        private PackedUnitVectors pointVectors;
+        
+        // The number of points in this node and all of its descendants, and
+        // the number of points added to or removed from this node and its
+        // descendants since this node was last built or partitioned
+        private int size;
+        private int modifications;
+        
         /**
          * Constructs a new, empty node with the given capacity.
          * 
@@ -95,7 +147,9 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
          */
         public VPNode(int binSize) {
             this.binSize = binSize;
-            this.points = new ArrayList<T>(0);
+            this.points = new GeospatialPoint[0];
+            this.pointCount = 0;
+            this.pointVectors = PackedUnitVectors.create(VPTree.this.encoding, 0);
             
             this.center = null;
         }
@@ -117,20 +171,73 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
          *            the largest number of points this node should hold
          */
         public VPNode(T[] points, int fromIndex, int toIndex, int binSize) {
+            this(points, new double[points.length], UnitVector.toUnitVectors(points, fromIndex, toIndex),
+                    fromIndex, toIndex, binSize);
+        }
+        
+        /**
+         * Constructs a new node that contains a subset of the given array of
+         * points, using the given array as scratch space for distance
+         * calculations. If the subset of points is larger than the given bin
+         * capacity, child nodes will be created recursively.
+         * 
+         * @param points
+         *            the array of points from which to build this node
+         * @param distances
+         *            an array at least as long as {@code points} in which to
+         *            store distances from points to node centers during
+         *            partitioning
+         * @param vectors
+         *            the unit vectors for the points in the given range (see
+         *            {@link UnitVector}); rearranged along with the points
+         * @param fromIndex
+         *            the starting index (inclusive) of the subset of the array
+         *            from which to build this node
+         * @param toIndex
+         *            the end index (exclusive) of the subset of the array from
+         *            which to build this node
+         * @param binSize
+         *            the largest number of points this node should hold
+         */
+        private VPNode(T[] points, double[] distances, double[] vectors, int fromIndex, int toIndex, int binSize) {
             this.binSize = binSize;
-            
-            if(toIndex - fromIndex <= binSize) {
+            this.build(points, distances, vectors, fromIndex, toIndex);
+        }
+        
+        /**
+         * Populates this node with a subset of the given array of points. If
+         * the subset of points is larger than this node's capacity, child nodes
+         * will be created recursively.
+         * 
+         * @param points
+         *            the array of points from which to build this node
+         * @param distances
+         *            an array at least as long as {@code points} in which to
+         *            store distances from points to node centers during
+         *            partitioning
+         * @param vectors
+         *            the unit vectors for the points in the given range;
+         *            rearranged along with the points
+         * @param fromIndex
+         *            the starting index (inclusive) of the subset of the array
+         *            from which to build this node
+         * @param toIndex
+         *            the end index (exclusive) of the subset of the array from
+         *            which to build this node
+         */
+        private void build(T[] points, double[] distances, double[] vectors, int fromIndex, int toIndex) {
+            if(toIndex - fromIndex <= this.binSize) {
                 // All done! This is a leaf node.
-                this.storePoints(points, fromIndex, toIndex);
+                this.storePoints(points, vectors, fromIndex, toIndex);
             } else {
                 // We have more points than we want to store in a single leaf
                 // node; try to partition the nodes.
                 try {
-                    this.partition(points, fromIndex, toIndex);
+                    this.partition(points, distances, vectors, fromIndex, toIndex);
                 } catch(PartitionException e) {
                     // Partitioning failed; this is most likely because all of
                     // the points we were given are coincident.
-                    this.storePoints(points, fromIndex, toIndex);
+                    this.storePoints(points, vectors, fromIndex, toIndex);
                 }
             }
         }
@@ -168,7 +275,7 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
          * @return a point that is coincident with this node's center point
          */
         public GeospatialPoint getCenter() {
-            return new SimpleGeospatialPoint(this.center);
+            return this.center;
         }
         
         /**
@@ -191,9 +298,51 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
                 throw new IllegalStateException("Leaf nodes do not have a distance threshold.");
             }
             
+            return UnitVector.toMeters(this.threshold);
+        }
+        
+        /**
+         * Returns the unit vector for this node's center point.
+         * 
+         * @return the unit vector for this node's center point, or {@code null}
+         *         if this node has no center point
+         */
+        UnitVector getCenterVector() {
+            return this.centerVector;
+        }
+        
+        /**
+         * Returns the distance threshold for this node as a squared chord
+         * distance (see {@link UnitVector}).
+         * 
+         * @return the squared chord distance threshold for this node
+         * 
+         * @throws IllegalStateException if this node is a leaf node
+         */
+        double getSquaredThreshold() {
+            if(this.isLeafNode()) {
+                throw new IllegalStateException("Leaf nodes do not have a distance threshold.");
+            }
+            
             return this.threshold;
         }
         
+        /**
+         * Sets (or clears) this node's center point.
+         * 
+         * @param center
+         *            the new center point for this node; may be {@code null}
+         */
+        private void setCenter(GeospatialPoint center) {
+            if(center != null) {
+                this.center = CachedGeospatialPoint.valueOf(center);
+                this.centerVector = new UnitVector(center);
+            } else {
+                this.center = null;
+                this.centerVector = null;
+            }
+        }
+        
         /**
          * <p>Adds all of the points in a collection to this node (if it is a
          * leaf node) or its children. If this node is a leaf node and the added
@@ -213,10 +362,35 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
          *         {@code true} if {@code points} is not empty
          */
         public boolean addAll(Collection<? extends T> points) {
+            return this.addAll(points, null);
+        }
+        
+        /**
+         * Adds all of the points in a collection to this node or its children,
+         * optionally gathering the nodes that fell out of balance as points
+         * were added.
+         * 
+         * @param points
+         *            the collection of points to add to this node or its
+         *            children
+         * @param unbalancedNodes
+         *            a {@code Set} that collects the highest unbalanced node on
+         *            the path to each added point; may be {@code null}
+         * 
+         * @return {@code true} if this node or its children were modified or
+         *         {@code false} otherwise
+         * 
+         * @see VPNode#isOutOfBalance()
+         */
+        private boolean addAll(Collection<? extends T> points, Set<VPNode<T>> unbalancedNodes) {
             HashSet<VPNode<T>> nodesAffected = new HashSet<VPNode<T>>();
             
             for(T point : points) {
-                this.add(point, true, nodesAffected);
+                VPNode<T> unbalancedNode = this.insert(point, new UnitVector(point), true, nodesAffected);
+                
+                if(unbalancedNode != null && unbalancedNodes != null) {
+                    unbalancedNodes.add(unbalancedNode);
+                }
             }
             
             // Resolve all of the deferred maintenance
@@ -228,10 +402,6 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
                         // Nothing to do here; this just means some nodes are
                         // bigger than they want to be.
                     }
-                } else {
-                    // We don't need to partition the node, but we may need to
-                    // trim it.
-                    node.points.trimToSize();
                 }
             }
             
@@ -267,14 +437,14 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
          *            the point to add to this node or one of its children
          * @param deferMaintenance
          *            if {@code true}, defer partitioning of overloaded nodes
-         *            and trimming of nodes with spare capacity until the caller
-         *            chooses to partition or trim them; if {@code false},
-         *            overloaded nodes are partitioned or trimmed immediately
+         *            until the caller chooses to partition them; if
+         *            {@code false}, overloaded nodes are partitioned
+         *            immediately
          * @param nodesAffected
          *            a {@code Set} that collects nodes that have received new
          *            points; this may be {@code null} if
          *            {@code deferMaintenance} is {@code false}. Callers must
-         *            use this set to partition or trim nodes later.
+         *            use this set to partition nodes later.
          * 
          * @return {@code true} if this node or any of its children were
          *         modified by the addition of the new point or {@code false}
@@ -282,37 +452,76 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
          *         modification
          */
         protected boolean add(T point, boolean deferMaintenance, Set<VPNode<T>> nodesAffected) {
+            this.insert(point, new UnitVector(point), deferMaintenance, nodesAffected);
+            
+            // There's no way to add a point and not modify the tree.
+            return true;
+        }
+        
+        /**
+         * Adds a point to this node if it is a leaf node or one of its children
+         * if not and reports the highest node along the way that is out of
+         * balance after the addition.
+         * 
+         * @param point
+         *            the point to add to this node or one of its children
+         * @param vector
+         *            the unit vector for the point to add
+         * @param deferMaintenance
+         *            if {@code true}, defer partitioning of overloaded nodes
+         *            until the caller chooses to partition them
+         * @param nodesAffected
+         *            a {@code Set} that collects nodes that have received new
+         *            points; this may be {@code null} if
+         *            {@code deferMaintenance} is {@code false}
+         * 
+         * @return the highest node on the path from this node to the new
+         *         point's leaf node that is out of balance, or {@code null} if
+         *         all of the nodes on the path are balanced
+         * 
+         * @see VPNode#add(GeospatialPoint, boolean, Set)
+         * @see VPNode#isOutOfBalance()
+         */
+        private VPNode<T> insert(T point, UnitVector vector, boolean deferMaintenance, Set<VPNode<T>> nodesAffected) {
+            this.size++;
+            this.modifications++;
+            
             if(this.isLeafNode()) {
-                this.points.add(point);
+                this.storePoint(point, vector);
                 
                 if(deferMaintenance) {
                     // We'll decide how to maintain this node later
                     nodesAffected.add(this);
-                } else {
-                    if(this.isOverloaded()) {
-                        try {
-                            this.partition();
-                        } catch(PartitionException e) {
-                            // Nothing to do here; just hold on to all of our
-                            // points.
-                        }                        
-                    } else {
-                        // If we didn't need to partition, we may have some
-                        // excess storage capacity. Trim our internal point
-                        // store to keep memory overhead to a minimum.
-                        this.points.trimToSize();
+                } else if(this.isOverloaded()) {
+                    try {
+                        this.partition();
+                    } catch(PartitionException e) {
+                        // Nothing to do here; just hold on to all of our
+                        // points.
                     }
                 }
+                
+                return null;
             } else {
-                if(this.center.getDistanceTo(point) <= this.threshold) {
-                    return this.closer.add(point);
+                VPNode<T> unbalancedNode;
+                double squaredDistanceToCenter = this.centerVector.getSquaredChordDistanceTo(vector);
+                
+                if(squaredDistanceToCenter > this.coveringRadius) {
+                    this.coveringRadius = squaredDistanceToCenter;
+                }
+                
+                this.extendBoundingRectangle(point);
+                
+                if(squaredDistanceToCenter <= this.threshold) {
+                    unbalancedNode = this.closer.insert(point, vector, deferMaintenance, nodesAffected);
                 } else {
-                    return this.farther.add(point);
+                    unbalancedNode = this.farther.insert(point, vector, deferMaintenance, nodesAffected);
                 }
+                
+                // We're on our way back up the tree, so anything we report
+                // here takes precedence over anything further down.
+                return this.isOutOfBalance() ? this : unbalancedNode;
             }
-            
-            // There's no way to add a point and not modify the tree.
-            return true;
         }
         
         /**
@@ -326,29 +535,70 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
          *         one of its children or {@code false} otherwise
          */
         public boolean contains(T point) {
+            return this.contains(point, new UnitVector(point));
+        }
+        
+        private boolean contains(T point, UnitVector vector) {
             if(this.isLeafNode()) {
-                return this.points.contains(point);
+                // Only points with exactly the same coordinates can be equal,
+                // so we only need to look at points whose vectors match.
+                for(int i = this.pointVectors.indexOf(vector, 0); i >= 0; i = this.pointVectors.indexOf(vector, i + 1)) {
+                    if(this.points[i].equals(point)) {
+                        return true;
+                    }
+                }
+                
+                return false;
             } else {
-                if(this.center.getDistanceTo(point) <= this.threshold) {
-                    return this.closer.contains(point);
+                if(this.centerVector.getSquaredChordDistanceTo(vector) <= this.threshold) {
+                    return this.closer.contains(point, vector);
                 } else {
-                    return this.farther.contains(point);
+                    return this.farther.contains(point, vector);
                 }
             }
         }
         
         /**
          * Returns the number of points contained in this node and its child
-         * nodes.
+         * nodes. The count is kept up to date as points are added and
+         * removed, so this executes in constant time.
          * 
          * @return the number of points in this node and its children
          */
         public int size() {
-            if(this.isLeafNode()) {
-                return this.points.size();
-            } else {
-                return this.closer.size() + this.farther.size();
+            return this.size;
+        }
+        
+        /**
+         * <p>Tests whether this node's children hold such uneven shares of its
+         * points that the node should be rebuilt. A node is out of balance if
+         * either of its children holds more than the tree's imbalance factor
+         * times the number of points in the node.</p>
+         * 
+         * <p>To keep the cost of rebuilding proportional to the work that
+         * caused the imbalance, nodes are only considered out of balance after
+         * enough points have been added to or removed from them since they were
+         * last built to plausibly unbalance a balanced node. Small nodes (those
+         * with fewer than four times the node capacity) are never considered
+         * out of balance.</p>
+         * 
+         * @return {@code true} if this node should be rebuilt or {@code false}
+         *         otherwise
+         * 
+         * @see VPTree#getImbalanceFactor()
+         */
+        protected boolean isOutOfBalance() {
+            if(this.isLeafNode() || this.size < 4 * this.binSize) {
+                return false;
+            }
+            
+            double imbalanceFactor = VPTree.this.imbalanceFactor;
+            
+            if(this.modifications < (1 - imbalanceFactor) * this.size) {
+                return false;
             }
+            
+            return Math.max(this.closer.size, this.farther.size) > imbalanceFactor * this.size;
         }
         
         /**
@@ -357,6 +607,8 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
          * 
          * @param points
          *            the array of points from which to store a subset
+         * @param vectors
+         *            the unit vectors for the points in the array
          * @param fromIndex
          *            the starting index (inclusive) of the subset of the array
          *            to store
@@ -364,16 +616,16 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
          *            the end index (exclusive) of the subset of the array to
          *            store
          */
-        private void storePoints(T[] points, int fromIndex, int toIndex) {
-            this.points = new ArrayList<T>(toIndex - fromIndex);
-            
-            for(int i = fromIndex; i < toIndex; i++) {
-                this.points.add(points[i]);
-            }
+        private void storePoints(T[] points, double[] vectors, int fromIndex, int toIndex) {
+            this.points = Arrays.copyOfRange(points, fromIndex, toIndex, GeospatialPoint[].class);
+            this.pointCount = toIndex - fromIndex;
+            this.pointVectors = PackedUnitVectors.create(VPTree.this.encoding, vectors, fromIndex, toIndex);
+            this.size = toIndex - fromIndex;
+            this.modifications = 0;
             
             // Always choose a center point if we don't already have one
-            if(this.center == null && !this.points.isEmpty()) {
-                this.center = new SimpleGeospatialPoint(this.points.get(0));
+            if(this.center == null && this.pointCount > 0) {
+                this.setCenter(points[VPTree.this.vantagePointSelector.selectVantagePoint(points, fromIndex, toIndex)]);
             }
             
             this.closer = null;
@@ -391,7 +643,63 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
             if(!this.isLeafNode()) {
                 throw new IllegalStateException("Cannot retrieve points from a non-leaf node.");
             }
-            return new ArrayList<T>(this.points);
+            ArrayList<T> points = new ArrayList<T>(this.pointCount);
+            
+            for(int i = 0; i < this.pointCount; i++) {
+                points.add(this.getPoint(i));
+            }
+            
+            return points;
+        }
+        
+        /**
+         * Appends a point to this leaf node's points, growing its storage if
+         * necessary. Storage grows geometrically, so the cost of copying points
+         * to larger arrays is spread across many additions.
+         * 
+         * @param point the point to append
+         * @param vector the unit vector for the point to append
+         */
+        private void storePoint(T point, UnitVector vector) {
+            if(this.pointCount == this.points.length) {
+                this.points = Arrays.copyOf(this.points, Math.max(this.pointCount + 1,
+                        this.pointCount + (this.pointCount >> 1)));
+            }
+            
+            this.points[this.pointCount++] = point;
+            this.pointVectors.add(vector);
+        }
+        
+        /**
+         * Returns the point stored at the given index in this leaf node.
+         * 
+         * @param index the index of the point to return
+         * 
+         * @return the point stored at the given index
+         */
+        @SuppressWarnings("unchecked")
+        private T getPoint(int index) {
+            return (T)this.points[index];
+        }
+        
+        /**
+         * Trims the storage of this node and all of its descendants to the
+         * number of points they actually hold. Leaf nodes grow their storage
+         * geometrically as points are added and never shrink it as points are
+         * removed, so nodes in trees that have been modified may have spare
+         * capacity.
+         */
+        public void compact() {
+            if(this.isLeafNode()) {
+                if(this.points.length > this.pointCount) {
+                    this.points = Arrays.copyOf(this.points, this.pointCount);
+                }
+                
+                this.pointVectors.trimToSize();
+            } else {
+                this.closer.compact();
+                this.farther.compact();
+            }
         }
         
         /**
@@ -411,10 +719,26 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
             }
             
             if(!this.isEmpty()) {
+                // Our point array can hold any mix of GeospatialPoint
+                // subclasses, so we can partition it in place; the vectors
+                // we already have save us from recalculating any of them
+                // unless they've been stored with a compact encoding, in which
+                // case thresholds need to be chosen from exact vectors so
+                // points are routed exactly as they would be when added.
                 @SuppressWarnings("unchecked")
-                T[] pointArray = this.points.toArray((T[])Array.newInstance(points.iterator().next().getClass(), 0));
+                T[] pointArray = (T[])this.points;
+                double[] vectors = VPTree.this.encoding == CoordinateEncoding.DOUBLE ?
+                        this.pointVectors.toInterleavedArray() :
+                        UnitVector.toUnitVectors(pointArray, 0, this.pointCount);
                 
-                this.partition(pointArray, 0, pointArray.length);
+                try {
+                    this.partition(pointArray, new double[this.pointCount], vectors, 0, this.pointCount);
+                } catch(PartitionException e) {
+                    // The points may have been rearranged before we gave up,
+                    // so our vectors need to be rearranged to match.
+                    this.pointVectors = PackedUnitVectors.create(VPTree.this.encoding, vectors, 0, this.pointCount);
+                    throw e;
+                }
             } else {
                 throw new PartitionException("Cannot partition an empty node.");
             }
@@ -423,7 +747,8 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
         /**
          * Attempts to partition the points in a subset of the given array into
          * two child nodes based on their distance from the center of this node.
-         * This method chooses a center point if none exists and chooses a
+         * This method chooses a center point using the tree's
+         * {@link VantagePointSelector} if none exists and chooses a
          * distance threshold to use as the criterion for node partitioning. The
          * threshold is chosen to be as close to the median distance of the
          * points in the sub-array as possible while still partitioning the
@@ -447,6 +772,89 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
          *             node's center point)
          */
         protected void partition(T[] points, int fromIndex, int toIndex) throws PartitionException {
+            this.partition(points, new double[points.length], UnitVector.toUnitVectors(points, fromIndex, toIndex),
+                    fromIndex, toIndex);
+        }
+        
+        /**
+         * Attempts to partition the points in a subset of the given array into
+         * two child nodes, using the given array as scratch space for distance
+         * calculations throughout the partitioning process (including any
+         * recursive partitioning of child nodes).
+         * 
+         * @param points
+         *            an array from which to partition a subset of points
+         * @param distances
+         *            an array at least as long as {@code points} in which to
+         *            store distances from points to node centers
+         * @param vectors
+         *            the unit vectors for the points in the given range;
+         *            rearranged along with the points
+         * @param fromIndex
+         *            the start index of the sub-array of points to partition
+         *            (inclusive)
+         * @param toIndex
+         *            the end index of the sub-array of points to partition
+         *            (exclusive)
+         * 
+         * @throws PartitionException
+         *             if the range specified by {@code fromIndex} and
+         *             {@code toIndex} includes fewer than two points or if no
+         *             viable distance threshold could be found
+         * 
+         * @see VPNode#partition(GeospatialPoint[], int, int)
+         */
+        private void partition(T[] points, double[] distances, double[] vectors, int fromIndex, int toIndex)
+                throws PartitionException {
+            
+            int partitionIndex = this.split(points, distances, vectors, fromIndex, toIndex);
+            
+            this.closer = new VPNode<T>(points, distances, vectors, fromIndex, partitionIndex, this.binSize);
+            this.farther = new VPNode<T>(points, distances, vectors, partitionIndex, toIndex, this.binSize);
+            
+            // We're definitely not a leaf node now, so clear out our internal
+            // point array (if we had one).
+            this.points = null;
+            this.pointCount = 0;
+            this.pointVectors = null;
+        }
+        
+        /**
+         * Chooses a center point (if none exists) and a distance threshold for
+         * this node and rearranges a subset of the given array such that all
+         * points within the threshold precede all points beyond the threshold.
+         * This method does not create child nodes; callers are responsible for
+         * building child nodes from the two sub-ranges of the array.
+         * 
+         * @param points
+         *            an array from which to partition a subset of points
+         * @param distances
+         *            an array at least as long as {@code points} in which to
+         *            store distances from points to this node's center; the
+         *            distances are rearranged along with the points
+         * @param vectors
+         *            the unit vectors for the points in the given range;
+         *            rearranged along with the points
+         * @param fromIndex
+         *            the start index of the sub-array of points to partition
+         *            (inclusive)
+         * @param toIndex
+         *            the end index of the sub-array of points to partition
+         *            (exclusive)
+         * 
+         * @return the index of the first point in the array beyond this node's
+         *         distance threshold; points from {@code fromIndex} up to (but
+         *         not including) the returned index belong in the "closer"
+         *         node and the rest belong in the "farther" node
+         * 
+         * @throws PartitionException
+         *             if the range specified by {@code fromIndex} and
+         *             {@code toIndex} includes fewer than two points or if no
+         *             viable distance threshold could be found
+         */
+        private int split(T[] points, double[] distances, double[] vectors, int fromIndex, int toIndex)
+                throws PartitionException {
+            
             // We can't partition fewer then two points.
             if(toIndex - fromIndex < 2) {
                 throw new PartitionException("Cannot partition fewer than two points.");
@@ -456,68 +864,58 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
             // median distance from our center to points in our set is a safe
             // bet.
             if(this.center == null) {
-                this.center = new SimpleGeospatialPoint(points[fromIndex]);
+                this.setCenter(points[VPTree.this.vantagePointSelector.selectVantagePoint(points, fromIndex, toIndex)]);
             }
-
-            // TODO Consider optimizing this whole approach to partitioning
-            java.util.Arrays.sort(points, fromIndex, toIndex,
-                    new GeospatialDistanceComparator<T>(this.center));
             
-            int medianIndex = (fromIndex + toIndex - 1) / 2;
-            double medianDistance = this.center.getDistanceTo(points[medianIndex]);
-            
-            // Since we're picking a definite median value from the list, we're
-            // guaranteed to have at least one point that is closer to or EQUAL TO
-            // (via identity) the threshold; what we want to do now is make sure
-            // there's at least one point that's farther away from the center
-            // than the threshold.
-            int partitionIndex = -1;
-            
-            for(int i = medianIndex + 1; i < toIndex; i++) {
-                if(this.center.getDistanceTo(points[i]) > medianDistance) {
-                    // We found at least one point farther away than the median
-                    // distance. That means we can use the median as our
-                    // distance threshold and everything after that point in the
-                    // sorted array as members of the "farther" node.
-                    partitionIndex = i;
-                    this.threshold = medianDistance;
-                    
-                    break;
-                }
+            // Calculate each point's distance from the center exactly once;
+            // the partitioner keeps the distances in step with the points as
+            // it rearranges them, so nothing needs to be recalculated while
+            // choosing a threshold. Squared chord distances order points
+            // exactly as great-circle distances would, but are much cheaper to
+            // calculate.
+            double coveringRadius = 0;
+            
+            for(int i = fromIndex; i < toIndex; i++) {
+                distances[i] = this.centerVector.getSquaredChordDistanceTo(vectors, i);
+                coveringRadius = Math.max(coveringRadius, distances[i]);
             }
             
-            // Did we find a point that's farther away than the median distance?
-            // If so, great!
-            //
-            // If not, we know that all points after the median point in the
-            // sorted array have the same distance from the center, and we need
-            // to try to move the threshold back until we find a point that's
-            // less distant than the median distance. If we find such a point,
-            // we'll use its distance from the center as our distance threshold.
-            // If the median distance is zero, though, and we've made it this
-            // far, we know there's nothing MORE distant than that and shouldn't
-            // spend time searching.
-            if(partitionIndex == -1) {
+            // Rather than sorting the whole range, just select the median;
+            // everything before it is no farther from the center than the
+            // median and everything after it is no closer.
+            int medianIndex = (fromIndex + toIndex - 1) / 2;
+            DistancePartitioner.select(distances, points, vectors, fromIndex, toIndex, medianIndex);
+            
+            double medianDistance = distances[medianIndex];
+            
+            // We're guaranteed to have at least one point that is closer to or
+            // EQUAL TO (via identity) the median distance; what we want to do
+            // now is make sure there's at least one point that's farther away
+            // from the center than the median. Gather up any points after the
+            // median that have exactly the median distance; if anything's left
+            // over, it's farther away and can go in the "farther" node.
+            int partitionIndex = DistancePartitioner.partition(distances, points, vectors,
+                    medianIndex + 1, toIndex, medianDistance);
+            
+            if(partitionIndex < toIndex) {
+                this.threshold = medianDistance;
+            } else {
+                // Nothing is farther away than the median distance, so we need
+                // to try to move the threshold back until we find a point
+                // that's less distant than the median. If we find such a
+                // point, we'll use its distance from the center as our distance
+                // threshold. If the median distance is zero, though, we know
+                // there's nothing closer than that and shouldn't spend time
+                // searching.
+                partitionIndex = -1;
+                
                 if(medianDistance != 0) {
-                    for(int i = medianIndex; i > fromIndex; i--) {
-                        if(this.center.getDistanceTo(points[i]) < medianDistance) {
-                            partitionIndex = i;
-                            this.threshold = this.center.getDistanceTo(points[i]);
-                            
-                            break;
-                        }
-                    }
+                    double lesserDistance = DistancePartitioner.maxBelow(distances, fromIndex, medianIndex + 1, medianDistance);
                     
-                    // Did we still fail to find anything? There's still one
-                    // special case that can save us. If we've made it here, we
-                    // know that everything except the center point has the same
-                    // non-zero distance from the center. We can and should
-                    // still partition by putting the center alone in the
-                    // "closer" node and everything else in the "farther" node.
-                    // This, of course, assumes there's more than one point to
-                    // work with.
-                    if(partitionIndex == -1) {
-                        partitionIndex = fromIndex + 1;
+                    if(lesserDistance != Double.NEGATIVE_INFINITY) {
+                        this.threshold = lesserDistance;
+                        partitionIndex = DistancePartitioner.partition(distances, points, vectors,
+                                fromIndex, medianIndex + 1, lesserDistance);
                     }
                 }
             }
@@ -528,13 +926,35 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
                     "No viable partition threshold found (all points have equal distance from center).");
             }
             
-            // Okay! Now actually use that partition index.
-            this.closer = new VPNode<T>(points, fromIndex, partitionIndex, this.binSize);
-            this.farther = new VPNode<T>(points, partitionIndex, toIndex, this.binSize);
+            this.coveringRadius = coveringRadius;
+            this.size = toIndex - fromIndex;
+            this.modifications = 0;
             
-            // We're definitely not a leaf node now, so clear out our internal
-            // point ArrayList (if we had one).
-            this.points = null;
+            this.west = Double.POSITIVE_INFINITY;
+            this.east = Double.NEGATIVE_INFINITY;
+            this.north = Double.NEGATIVE_INFINITY;
+            this.south = Double.POSITIVE_INFINITY;
+            
+            for(int i = fromIndex; i < toIndex; i++) {
+                this.extendBoundingRectangle(points[i]);
+            }
+            
+            return partitionIndex;
+        }
+        
+        /**
+         * Extends this node's bounding rectangle to include the given point.
+         * 
+         * @param point the point to include in this node's bounding rectangle
+         */
+        private void extendBoundingRectangle(GeospatialPoint point) {
+            double latitude = point.getLatitude();
+            double longitude = BoundingBoxSearchCriteria.normalizeLongitude(point.getLongitude());
+            
+            this.west = Math.min(this.west, longitude);
+            this.east = Math.max(this.east, longitude);
+            this.north = Math.max(this.north, latitude);
+            this.south = Math.min(this.south, latitude);
         }
         
         /**
@@ -548,17 +968,14 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
         }
         
         /**
-         * Tests whether this node and all of its children are empty.
+         * Tests whether this node and all of its children are empty. Like
+         * {@link VPNode#size()}, this executes in constant time.
          * 
          * @return {@code true} if this node and all of its children contain no
          *         points or {@code false} otherwise
          */
         public boolean isEmpty() {
-            if(this.isLeafNode()) {
-                return this.points.isEmpty();
-            } else {
-                return (this.closer.isEmpty() && this.farther.isEmpty());
-            }
+            return this.size == 0;
         }
         
         /**
@@ -575,7 +992,7 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
                 throw new IllegalStateException("Non-leaf nodes cannot be overloaded.");
             }
             
-            return this.points.size() > this.binSize;
+            return this.pointCount > this.binSize;
         }
 
         /**
@@ -589,38 +1006,60 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
          * @param results the result set to which to offer points
          */
         public void getNearestNeighbors(final GeospatialPoint queryPoint, final SearchResults<T> results) {
+            this.getNearestNeighbors(new LeafScanner(new UnitVector(queryPoint), this.binSize),
+                    new SearchResultsCollector<T>(results));
+        }
+        
+        /**
+         * Offers points close to the query point to the given collector. The
+         * query point is given as a unit vector; distances between the query
+         * point and node centers are compared as chord distances, and only
+         * points offered to the collector have their distances measured in
+         * meters.
+         * 
+         * @param scanner the leaf scanner for the query point
+         * @param results the collector to which to offer points
+         */
+        void getNearestNeighbors(final LeafScanner scanner, final NeighborCollector<T> results) {
             // If this is a leaf node, our job is easy. Offer all of our points
-            // to the result set and bail out.
+            // that could possibly make the cut to the result set and bail out.
             if(this.isLeafNode()) {
-                results.addAll(this.points);
+                this.offerPoints(scanner, results);
             } else {
                 // Descend through the tree recursively.
                 boolean searchedCloserFirst;
-                double distanceToCenter = this.center.getDistanceTo(queryPoint);
+                double squaredDistanceToCenter = this.centerVector.getSquaredChordDistanceTo(scanner.getQueryVector());
                 
-                if(distanceToCenter <= this.threshold) {
-                    this.closer.getNearestNeighbors(queryPoint, results);
+                if(squaredDistanceToCenter <= this.threshold) {
+                    this.closer.getNearestNeighbors(scanner, results);
                     searchedCloserFirst = true;
                 } else {
-                    this.farther.getNearestNeighbors(queryPoint, results);
+                    this.farther.getNearestNeighbors(scanner, results);
                     searchedCloserFirst = false;
                 }
                 
+                // Squared chord distances aren't a metric, but chord distances
+                // are, so we need to take square roots before applying the
+                // triangle inequality.
+                double distanceToCenter = Math.sqrt(squaredDistanceToCenter);
+                double threshold = Math.sqrt(this.threshold);
+                
                 // ...and now we're on our way back up. Decide if we need to search
                 // whichever child we didn't search on the way down.
                 if(searchedCloserFirst) {
                     // We've already searched the node that contains points
                     // within our threshold (which also implies that the query
                     // point is inside our threshold); we also want to search
-                    // the node beyond our threshold if the distance from the
-                    // query point to the most distant match is longer than the
-                    // distance from the query point to our threshold, since
-                    // there could be a point outside our threshold that's
-                    // closer than the most distant match.
-                    double distanceToThreshold = this.threshold - distanceToCenter;
+                    // the node beyond our threshold if the search radius (the
+                    // distance to the most distant match once we have enough
+                    // matches) is longer than the distance from the query
+                    // point to our threshold, since there could be a point
+                    // outside our threshold that's closer than the most distant
+                    // match.
+                    double distanceToThreshold = threshold - distanceToCenter;
                     
-                    if(results.getLongestDistanceFromQueryPoint() > distanceToThreshold) {
-                        this.farther.getNearestNeighbors(queryPoint, results);
+                    if(UnitVector.toChordDistance(results.getSearchRadius()) > distanceToThreshold) {
+                        this.farther.getNearestNeighbors(scanner, results);
                     }
                 } else {
                     // We've already searched the node that contains points
@@ -631,64 +1070,407 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
                     // query point to the most distant match, since there could
                     // be a point within our threshold that's closer than the
                     // most distant match.
-                    double distanceToThreshold = distanceToCenter - this.threshold;
+                    double distanceToThreshold = distanceToCenter - threshold;
                     
-                    if(distanceToThreshold <= results.getLongestDistanceFromQueryPoint()) {
-                        this.closer.getNearestNeighbors(queryPoint, results);
+                    if(distanceToThreshold <= UnitVector.toChordDistance(results.getSearchRadius())) {
+                        this.closer.getNearestNeighbors(scanner, results);
                     }
                 }
             }
         }
         
         /**
-         * Populates the given {@code ArrayList} with all points within the given
-         * range that match the given search criteria (if any). If this node is
-         * a leaf node, all points contained within the node that are within the
-         * given distance of the query point and match the search criteria are
-         * added to the {@code ArrayList}. If this node is not a leaf node, its
-         * children are searched recursively.
+         * <p>Offers points close to the query point to the given collector,
+         * visiting subtrees in best-first order. Rather than descending
+         * recursively, this search keeps a queue of subtrees that might
+         * contain acceptable points, ordered by a lower bound for the chord
+         * distance from the query point to any point in each subtree; for a
+         * node's closer child, that's the distance from the query point to the
+         * node's threshold if the query point is outside the threshold (and
+         * zero otherwise), and vice versa for its farther child. The search
+         * ends as soon as the closest remaining subtree is farther away than
+         * the collector's search radius.</p>
          * 
-         * @param queryPoint
-         *            the point for which to find nearby neighbors
-         * @param maxDistance
-         *            the maximum distance within which points should be added
-         *            to the result set
-         * @param criteria
-         *            the search criteria to apply to potential matches; if
-         *            {@code null}, only a point's distance from the query point
-         *            is considered when deciding to include it in the result
-         *            set
-         * @param results
-         *            the {@code ArrayList} to populate
+         * <p>Best-first searches visit leaf nodes in order of their
+         * proximity to the query point, so they tend to fill the collector
+         * with close points (and so shrink the search radius) sooner than a
+         * depth-first search, and visit fewer leaf nodes as a result. Because
+         * they don't recurse, they're also safe on arbitrarily deep trees.</p>
+         * 
+         * @param scanner the leaf scanner for the query point
+         * @param results the collector to which to offer points
+         * @param queue an empty queue to use for pending subtrees
+         */
+        @SuppressWarnings("unchecked")
+        void getNearestNeighborsBestFirst(final LeafScanner scanner, final NeighborCollector<T> results,
+                final NodeQueue queue) {
+            
+            queue.add(this, 0, 0);
+            
+            while(!queue.isEmpty()) {
+                double bound = queue.peekBound();
+                double searchRadius = UnitVector.toChordDistance(results.getSearchRadius());
+                
+                if(bound > searchRadius) {
+                    // Every remaining subtree is at least this far away.
+                    break;
+                }
+                
+                VPNode<T> node = (VPNode<T>)queue.peekNode();
+                queue.remove();
+                
+                if(node.isLeafNode()) {
+                    node.offerPoints(scanner, results);
+                } else {
+                    double distanceToCenter =
+                            Math.sqrt(node.centerVector.getSquaredChordDistanceTo(scanner.getQueryVector()));
+                    double threshold = Math.sqrt(node.threshold);
+                    
+                    double closerBound = Math.max(bound, distanceToCenter - threshold);
+                    double fartherBound = Math.max(bound, threshold - distanceToCenter);
+                    
+                    if(closerBound <= searchRadius) {
+                        queue.add(node.closer, 0, closerBound);
+                    }
+                    
+                    if(fartherBound <= searchRadius) {
+                        queue.add(node.farther, 0, fartherBound);
+                    }
+                }
+            }
+            
+            queue.clear();
+        }
+        
+        /**
+         * Offers the points in this leaf node to the given collector. The
+         * distances from the query point to all of this node's points are
+         * calculated in a single pass over this node's unit vectors, and only
+         * points that fall within the collector's search radius (and so might
+         * actually be accepted) are offered.
+         * 
+         * @param scanner the leaf scanner for the query point
+         * @param results the collector to which to offer points
+         */
+        private void offerPoints(final LeafScanner scanner, final NeighborCollector<T> results) {
+            double[] squaredDistances = scanner.getSquaredChordDistances(this.pointVectors);
+            double error = this.pointVectors.getChordDistanceError();
+            
+            double searchRadius = UnitVector.toChordDistance(results.getSearchRadius()) + error;
+            double squaredSearchRadius = searchRadius * searchRadius;
+            
+            for(int i = 0; i < this.pointCount; i++) {
+                if(squaredDistances[i] <= squaredSearchRadius) {
+                    if(results.offer(this.getPoint(i))) {
+                        // The search radius may have shrunk.
+                        searchRadius = UnitVector.toChordDistance(results.getSearchRadius()) + error;
+                        squaredSearchRadius = searchRadius * searchRadius;
+                    }
+                }
+            }
+        }
+        
+        /**
+         * Populates the given {@code ArrayList} with all points within the given
+         * range that match the given search criteria (if any). If this node is
+         * a leaf node, all points contained within the node that are within the
+         * given distance of the query point and match the search criteria are
+         * added to the {@code ArrayList}. If this node is not a leaf node, its
+         * children are searched recursively.
+         * 
+         * @param queryPoint
+         *            the point for which to find nearby neighbors
+         * @param maxDistance
+         *            the maximum distance within which points should be added
+         *            to the result set
+         * @param criteria
+         *            the search criteria to apply to potential matches; if
+         *            {@code null}, only a point's distance from the query point
+         *            is considered when deciding to include it in the result
+         *            set
+         * @param results
+         *            the {@code ArrayList} to populate
+         */
+        public void getAllWithinRange(final GeospatialPoint queryPoint, final double maxDistance, final SearchCriteria<T> criteria, final ArrayList<T> results) {
+            this.forEachWithinRange(CachedGeospatialPoint.valueOf(queryPoint),
+                    new LeafScanner(new UnitVector(queryPoint), this.binSize), maxDistance,
+                    UnitVector.toChordDistance(maxDistance), criteria, new PointVisitor<T>() {
+                        @Override
+                        public boolean visit(T point, double distance) {
+                            results.add(point);
+                            return true;
+                        }
+                    });
+        }
+        
+        /**
+         * Passes each point in this node and its children that is within the
+         * given range and matches the given search criteria (if any) to the
+         * given visitor, stopping as soon as the visitor asks to stop. If this
+         * node is not a leaf node, its children are searched recursively.
+         * 
+         * @param queryPoint
+         *            the point for which to find nearby neighbors
+         * @param scanner
+         *            a leaf scanner prepared to measure distances from the
+         *            query point
+         * @param maxDistance
+         *            the maximum distance, in meters, from the query point to
+         *            any visited point
+         * @param maxChordDistance
+         *            the maximum distance from the query point as a padded
+         *            chord distance (see {@link UnitVector#toChordDistance(double)})
+         * @param criteria
+         *            the search criteria to apply to potential matches; may be
+         *            {@code null}
+         * @param visitor
+         *            the visitor to which to pass each matching point
+         * 
+         * @return {@code true} if the search ran to completion or
+         *         {@code false} if the visitor stopped it
          */
-        public void getAllWithinRange(final SimpleGeospatialPoint queryPoint, final double maxDistance, final SearchCriteria<T> criteria, final ArrayList<T> results) {
-            // If this is a leaf node, just add all of our points to the list if
-            // they fall within range and meet the search criteria (if any).
+        boolean forEachWithinRange(final CachedGeospatialPoint queryPoint, final LeafScanner scanner,
+                final double maxDistance, final double maxChordDistance, final SearchCriteria<T> criteria,
+                final PointVisitor<T> visitor) {
+            
+            // If this is a leaf node, just visit each of our points that falls
+            // within range and meets the search criteria (if any).
             if(this.isLeafNode()) {
-                for(T point : this.points) {
-                    if(queryPoint.getDistanceTo(point) <= maxDistance) {
+                // Most points in a leaf are usually out of range; rule out as
+                // many as we can using only our unit vectors before we bother
+                // looking at the points themselves.
+                double[] squaredDistances = scanner.getSquaredChordDistances(this.pointVectors);
+                double paddedChordDistance = maxChordDistance + this.pointVectors.getChordDistanceError();
+                double squaredMaxChordDistance = paddedChordDistance * paddedChordDistance;
+                
+                for(int i = 0; i < this.pointCount; i++) {
+                    if(squaredDistances[i] > squaredMaxChordDistance) {
+                        continue;
+                    }
+                    
+                    T point = this.getPoint(i);
+                    double distance = queryPoint.getDistanceTo(point);
+                    
+                    if(distance <= maxDistance) {
                         if(criteria == null || criteria.matches(point)) {
-                            results.add(point);
+                            if(!visitor.visit(point, distance)) {
+                                return false;
+                            }
                         }
                     }
                 }
+                
+                return true;
             } else {
                 // We want to search whichever of our nodes intersect with the
                 // query region, which remains static throughout an
-                // "all within range" search.
-                double distanceToQueryPoint = this.center.getDistanceTo(queryPoint);
+                // "all within range" search. As with nearest-neighbor searches,
+                // we compare chord distances here.
+                double distanceToQueryPoint = this.centerVector.getChordDistanceTo(scanner.getQueryVector());
+                double threshold = Math.sqrt(this.threshold);
                 
                 // Does any part of the query region fall within our threshold?
-                if(distanceToQueryPoint <= this.threshold + maxDistance) {
-                    this.closer.getAllWithinRange(queryPoint, maxDistance, criteria, results);
+                if(distanceToQueryPoint <= threshold + maxChordDistance) {
+                    if(!this.closer.forEachWithinRange(queryPoint, scanner, maxDistance, maxChordDistance, criteria, visitor)) {
+                        return false;
+                    }
                 }
                 
                 // Does any part of the query region fall outside of our
                 // threshold? Or, put differently, does our region fail to
                 // completely enclose the query region?
-                if(distanceToQueryPoint + maxDistance > this.threshold) {
-                    this.farther.getAllWithinRange(queryPoint, maxDistance, criteria, results);
+                if(distanceToQueryPoint + maxChordDistance > threshold) {
+                    return this.farther.forEachWithinRange(queryPoint, scanner, maxDistance, maxChordDistance, criteria, visitor);
+                }
+                
+                return true;
+            }
+        }
+
+        /**
+         * <p>Counts the points in this node and its children that are within
+         * the given range of a query point.</p>
+         * 
+         * <p>Subtrees that lie entirely outside of the query range are skipped
+         * and subtrees that lie entirely inside of the query range contribute
+         * their cached sizes; in both cases, the decision is made using only
+         * the subtree's covering radius, and none of the points in the subtree
+         * are visited.</p>
+         * 
+         * @param queryPoint
+         *            the point from which to measure distances
+         * @param scanner
+         *            a leaf scanner prepared to measure distances from the
+         *            query point
+         * @param maxDistance
+         *            the maximum distance, in meters, from the query point to
+         *            any counted point
+         * @param maxChordDistance
+         *            the maximum distance from the query point as a padded
+         *            chord distance (see {@link UnitVector#toChordDistance(double)})
+         * @param innerChordDistance
+         *            the maximum distance from the query point as a shortened
+         *            chord distance (see {@link UnitVector#toInnerChordDistance(double)})
+         * 
+         * @return the number of points in this node and its children within
+         *         the query range
+         */
+        int countWithinRange(final CachedGeospatialPoint queryPoint, final LeafScanner scanner,
+                final double maxDistance, final double maxChordDistance, final double innerChordDistance) {
+            
+            if(this.isLeafNode()) {
+                double[] squaredDistances = scanner.getSquaredChordDistances(this.pointVectors);
+                double error = this.pointVectors.getChordDistanceError();
+                double paddedChordDistance = maxChordDistance + error;
+                double squaredMaxChordDistance = paddedChordDistance * paddedChordDistance;
+                double shortenedChordDistance = innerChordDistance - error;
+                double squaredInnerChordDistance = shortenedChordDistance > 0 ?
+                        shortenedChordDistance * shortenedChordDistance : -1;
+                
+                int count = 0;
+                
+                for(int i = 0; i < this.pointCount; i++) {
+                    if(squaredDistances[i] > squaredMaxChordDistance) {
+                        continue;
+                    }
+                    
+                    if(squaredDistances[i] <= squaredInnerChordDistance ||
+                            queryPoint.getDistanceTo(this.getPoint(i)) <= maxDistance) {
+                        count++;
+                    }
+                }
+                
+                return count;
+            } else {
+                double distanceToQueryPoint = this.centerVector.getChordDistanceTo(scanner.getQueryVector());
+                double coveringRadius = Math.sqrt(this.coveringRadius);
+                
+                // Is our whole subtree out of range?
+                if(distanceToQueryPoint - coveringRadius > maxChordDistance) {
+                    return 0;
+                }
+                
+                // Is our whole subtree in range? If so, we already know how
+                // many points it holds.
+                if(distanceToQueryPoint + coveringRadius <= innerChordDistance) {
+                    return this.size;
+                }
+                
+                double threshold = Math.sqrt(this.threshold);
+                int count = 0;
+                
+                if(distanceToQueryPoint <= threshold + maxChordDistance) {
+                    count += this.closer.countWithinRange(queryPoint, scanner, maxDistance, maxChordDistance,
+                            innerChordDistance);
+                }
+                
+                if(distanceToQueryPoint + maxChordDistance > threshold) {
+                    count += this.farther.countWithinRange(queryPoint, scanner, maxDistance, maxChordDistance,
+                            innerChordDistance);
+                }
+                
+                return count;
+            }
+        }
+        
+        /**
+         * <p>Passes each point in this node and its children that falls within
+         * the given bounding box and matches the given search criteria (if any)
+         * to the given visitor, stopping as soon as the visitor asks to
+         * stop.</p>
+         * 
+         * <p>Subtrees whose bounding rectangles miss the box entirely are
+         * skipped. Once a subtree's bounding rectangle is found to lie entirely
+         * inside the box, all of its points are visited without testing them
+         * against the box individually.</p>
+         * 
+         * @param box
+         *            the bounding box in which to find points
+         * @param contained
+         *            {@code true} if this node is already known to lie
+         *            entirely inside the box or {@code false} otherwise
+         * @param criteria
+         *            additional search criteria to apply to points inside the
+         *            box; may be {@code null}
+         * @param origin
+         *            the point from which to measure the distances passed to
+         *            the visitor, or {@code null} if the visitor doesn't need
+         *            distances (in which case it receives {@link Double#NaN})
+         * @param visitor
+         *            the visitor to which to pass each matching point
+         * 
+         * @return {@code true} if the search ran to completion or
+         *         {@code false} if the visitor stopped it
+         */
+        boolean forEachInBoundingBox(final BoundingBoxSearchCriteria<T> box, boolean contained,
+                final SearchCriteria<T> criteria, final CachedGeospatialPoint origin, final PointVisitor<T> visitor) {
+            
+            if(this.isLeafNode()) {
+                for(int i = 0; i < this.pointCount; i++) {
+                    T point = this.getPoint(i);
+                    
+                    if(!contained && !box.contains(point.getLatitude(), point.getLongitude())) {
+                        continue;
+                    }
+                    
+                    if(criteria == null || criteria.matches(point)) {
+                        double distance = origin != null ? origin.getDistanceTo(point) : Double.NaN;
+                        
+                        if(!visitor.visit(point, distance)) {
+                            return false;
+                        }
+                    }
                 }
+                
+                return true;
+            } else {
+                if(!contained) {
+                    if(!box.intersectsRectangle(this.west, this.east, this.north, this.south)) {
+                        return true;
+                    }
+                    
+                    contained = box.containsRectangle(this.west, this.east, this.north, this.south);
+                }
+                
+                return this.closer.forEachInBoundingBox(box, contained, criteria, origin, visitor) &&
+                        this.farther.forEachInBoundingBox(box, contained, criteria, origin, visitor);
+            }
+        }
+        
+        /**
+         * Counts the points in this node and its children that fall within the
+         * given bounding box. Subtrees whose bounding rectangles lie entirely
+         * inside the box contribute their cached sizes without having any of
+         * their points visited.
+         * 
+         * @param box the bounding box in which to count points
+         * 
+         * @return the number of points in this node and its children that fall
+         *         within the box
+         */
+        int countInBoundingBox(final BoundingBoxSearchCriteria<T> box) {
+            if(this.isLeafNode()) {
+                int count = 0;
+                
+                for(int i = 0; i < this.pointCount; i++) {
+                    T point = this.getPoint(i);
+                    
+                    if(box.contains(point.getLatitude(), point.getLongitude())) {
+                        count++;
+                    }
+                }
+                
+                return count;
+            } else {
+                if(!box.intersectsRectangle(this.west, this.east, this.north, this.south)) {
+                    return 0;
+                }
+                
+                if(box.containsRectangle(this.west, this.east, this.north, this.south)) {
+                    return this.size;
+                }
+                
+                return this.closer.countInBoundingBox(box) + this.farther.countInBoundingBox(box);
             }
         }
         
@@ -725,9 +1507,9 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
             if(this.isLeafNode()) {
                 if(this.isEmpty()) { return 0; }
                 
-                System.arraycopy(this.points.toArray(), 0, array, offset, this.points.size());
+                System.arraycopy(this.points, 0, array, offset, this.pointCount);
                 
-                return this.points.size();
+                return this.pointCount;
             } else {
                 int nAddedFromCloser = this.closer.addPointsToArray(array, offset);
                 int nAddedFromFarther = this.farther.addPointsToArray(array, offset + nAddedFromCloser);
@@ -749,16 +1531,20 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
          *            point
          */
         public void findNodeContainingPoint(final GeospatialPoint p, final Deque<VPNode<T>> stack) {
+            this.findNodeContainingPoint(new UnitVector(p), stack);
+        }
+        
+        private void findNodeContainingPoint(final UnitVector vector, final Deque<VPNode<T>> stack) {
             // First things first; add ourselves to the stack.
             stack.push(this);
             
             // If this is a leaf node, we don't need to do anything else. If
             // it's not a leaf node, recurse!
             if(!this.isLeafNode()) {
-                if(this.center.getDistanceTo(p) <= this.threshold) {
-                    this.closer.findNodeContainingPoint(p, stack);
+                if(this.centerVector.getSquaredChordDistanceTo(vector) <= this.threshold) {
+                    this.closer.findNodeContainingPoint(vector, stack);
                 } else {
-                    this.farther.findNodeContainingPoint(p, stack);
+                    this.farther.findNodeContainingPoint(vector, stack);
                 }
             }
         }
@@ -777,9 +1563,25 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
          */
         public boolean remove(T point) {
             if(this.isLeafNode()) {
-                boolean pointRemoved = this.points.remove(point);
+                int index = -1;
+                
+                for(int i = 0; i < this.pointCount; i++) {
+                    if(point.equals(this.points[i])) {
+                        index = i;
+                        break;
+                    }
+                }
                 
-                if(pointRemoved) { this.points.trimToSize(); }
+                boolean pointRemoved = index >= 0;
+                
+                if(pointRemoved) {
+                    System.arraycopy(this.points, index + 1, this.points, index, this.pointCount - index - 1);
+                    this.points[--this.pointCount] = null;
+                    this.pointVectors.remove(index);
+                    
+                    this.size--;
+                    this.modifications++;
+                }
                 
                 return pointRemoved;
             } else {
@@ -799,7 +1601,8 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
                 throw new IllegalStateException("Leaf nodes have no children.");
             }
             
-            this.points = new ArrayList<T>(this.size());
+            this.points = new GeospatialPoint[this.size()];
+            this.pointVectors = PackedUnitVectors.create(VPTree.this.encoding, this.size());
             
             if(!this.closer.isLeafNode()) {
                 this.closer.absorbChildren();
@@ -809,13 +1612,47 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
                 this.farther.absorbChildren();
             }
             
-            this.points.addAll(this.closer.getPoints());
-            this.points.addAll(this.farther.getPoints());
+            this.pointCount = this.closer.addPointsToArray(this.points, 0);
+            this.pointCount += this.farther.addPointsToArray(this.points, this.pointCount);
+            
+            this.pointVectors.addAll(this.closer.pointVectors);
+            this.pointVectors.addAll(this.farther.pointVectors);
             
             this.closer = null;
             this.farther = null;
         }
         
+        /**
+         * Adds the shape and estimated size of this node and its descendants
+         * to the given memory statistics counter.
+         * 
+         * @param counter the counter to which to add this node's statistics
+         */
+        void gatherMemoryStats(MemoryStats.Counter counter) {
+            counter.nodeCount++;
+            
+            // Seven references (counting the one to the enclosing tree), six
+            // doubles and four ints
+            counter.estimatedBytes += MemoryStats.getObjectSize(7, 64);
+            
+            if(this.center != null) {
+                // A CachedGeospatialPoint holds five doubles; a UnitVector
+                // holds three.
+                counter.centerCount++;
+                counter.estimatedBytes += MemoryStats.getObjectSize(0, 40) + MemoryStats.getObjectSize(0, 24);
+            }
+            
+            if(this.isLeafNode()) {
+                counter.leafCount++;
+                counter.pointCapacity += this.points.length;
+                counter.estimatedBytes += MemoryStats.getReferenceArraySize(this.points.length) +
+                        this.pointVectors.getEstimatedBytes();
+            } else {
+                this.closer.gatherMemoryStats(counter);
+                this.farther.gatherMemoryStats(counter);
+            }
+        }
+        
         /**
          * Populates the given {@code List} with all of the leaf nodes that are
          * descendants of this node.
@@ -855,74 +1692,670 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
     }
     
     /**
-     * The default node capacity ({@value} points) for nodes in this tree.
+     * <p>A {@code NodeBuilder} populates a node from a subset of an array of
+     * points as part of a {@link ForkJoinPool} task. After partitioning its
+     * node, a {@code NodeBuilder} builds the node's children in parallel; the
+     * two children draw from disjoint ranges of the point array (and of the
+     * shared array of distances), so they can safely be built at the same
+     * time.</p>
+     * 
+     * <p>Ranges no larger than the tree's sequential threshold are built on
+     * the current thread exactly as they would be by the sequential
+     * construction process, so trees built in parallel are identical to trees
+     * built sequentially from the same array.</p>
+     */
+    private class NodeBuilder extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        
+        private final VPNode<E> node;
+        private final E[] points;
+        private final double[] distances;
+        private final double[] vectors;
+        private final int fromIndex;
+        private final int toIndex;
+        
+        public NodeBuilder(VPNode<E> node, E[] points, double[] distances, double[] vectors, int fromIndex, int toIndex) {
+            this.node = node;
+            this.points = points;
+            this.distances = distances;
+            this.vectors = vectors;
+            this.fromIndex = fromIndex;
+            this.toIndex = toIndex;
+        }
+        
+        @Override
+        protected void compute() {
+            int size = this.toIndex - this.fromIndex;
+            
+            if(size <= VPTree.this.sequentialThreshold || size <= this.node.binSize) {
+                // Not worth splitting up any further.
+                this.node.build(this.points, this.distances, this.vectors, this.fromIndex, this.toIndex);
+                return;
+            }
+            
+            int partitionIndex;
+            
+            try {
+                partitionIndex = this.node.split(this.points, this.distances, this.vectors, this.fromIndex, this.toIndex);
+            } catch(PartitionException e) {
+                // Partitioning failed; this is most likely because all of the
+                // points we were given are coincident.
+                this.node.storePoints(this.points, this.vectors, this.fromIndex, this.toIndex);
+                return;
+            }
+            
+            this.node.closer = new VPNode<E>(this.node.binSize);
+            this.node.farther = new VPNode<E>(this.node.binSize);
+            this.node.points = null;
+            this.node.pointCount = 0;
+            this.node.pointVectors = null;
+            
+            invokeAll(new NodeBuilder(this.node.closer, this.points, this.distances, this.vectors,
+                            this.fromIndex, partitionIndex),
+                    new NodeBuilder(this.node.farther, this.points, this.distances, this.vectors,
+                            partitionIndex, this.toIndex));
+        }
+    }
+    
+    /**
+     * <p>A {@code BatchSearch} answers a range of the queries in a batch of
+     * nearest-neighbor queries as part of a {@link ForkJoinPool} task. Queries
+     * are taken in the order given by an array of sort keys, each of which
+     * holds a query's position along a {@linkplain HilbertCurve Hilbert curve}
+     * in its high bits and the query's index in its low bits; contiguous
+     * ranges of that array hold queries that are close to one another, so each
+     * task tends to work within a small part of the tree.</p>
+     * 
+     * <p>Ranges no larger than {@link VPTree#BATCH_CHUNK_SIZE} are answered on
+     * the current thread, one after another, using a single
+     * {@link QueryContext}.</p>
+     */
+    private class BatchSearch extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        
+        private final long[] order;
+        private final GeospatialPoint[] queryPoints;
+        private final int maxResults;
+        private final Object[] results;
+        private final int fromIndex;
+        private final int toIndex;
+        
+        public BatchSearch(long[] order, GeospatialPoint[] queryPoints, int maxResults, Object[] results,
+                int fromIndex, int toIndex) {
+            
+            this.order = order;
+            this.queryPoints = queryPoints;
+            this.maxResults = maxResults;
+            this.results = results;
+            this.fromIndex = fromIndex;
+            this.toIndex = toIndex;
+        }
+        
+        @Override
+        protected void compute() {
+            if(this.toIndex - this.fromIndex <= BATCH_CHUNK_SIZE) {
+                QueryContext context = QueryContext.acquire();
+                
+                try {
+                    for(int i = this.fromIndex; i < this.toIndex; i++) {
+                        int query = (int)(this.order[i] & Integer.MAX_VALUE);
+                        
+                        this.results[query] = VPTree.this.searchNearestNeighbors(this.queryPoints[query],
+                                this.maxResults, Double.POSITIVE_INFINITY, null, context).drainToSortedList();
+                    }
+                } finally {
+                    context.release();
+                }
+                
+                return;
+            }
+            
+            int middle = (this.fromIndex + this.toIndex) >>> 1;
+            
+            invokeAll(new BatchSearch(this.order, this.queryPoints, this.maxResults, this.results, this.fromIndex, middle),
+                    new BatchSearch(this.order, this.queryPoints, this.maxResults, this.results, middle, this.toIndex));
+        }
+    }
+    
+    /**
+     * Adapts a {@link SearchResults} instance to the {@link NeighborCollector}
+     * interface so callers that manage their own result sets can search nodes
+     * directly.
+     */
+    private static class SearchResultsCollector<T extends GeospatialPoint> implements NeighborCollector<T> {
+        private final SearchResults<T> results;
+        
+        public SearchResultsCollector(SearchResults<T> results) {
+            this.results = results;
+        }
+        
+        @Override
+        public double getSearchRadius() {
+            return this.results.getSearchRadius();
+        }
+        
+        @Override
+        public boolean offer(T point) {
+            return this.results.add(point);
+        }
+    }
+    
+    /**
+     * <p>Iterates over the points in this tree in order of increasing distance
+     * from a query point, searching the tree lazily. Pending nodes and points
+     * share a single queue ordered by a lower bound for their distance from
+     * the query point in meters. Nodes are keyed by a lower bound derived
+     * from their thresholds, just as in a best-first search; when a leaf node
+     * reaches the head of the queue, its points are added keyed by lower
+     * bounds derived from their chord distances, and a point's exact distance
+     * is only calculated when the point itself reaches the head of the queue.
+     * An exact distance at the head of the queue is no longer than any other
+     * point's distance, so that point is next.</p>
+     */
+    private class NeighborIterator implements Iterator<E> {
+        private final CachedGeospatialPoint queryPoint;
+        private final LeafScanner scanner;
+        private final NodeQueue queue;
+        
+        public NeighborIterator(GeospatialPoint queryPoint) {
+            this.queryPoint = CachedGeospatialPoint.valueOf(queryPoint);
+            this.scanner = new LeafScanner(new UnitVector(this.queryPoint), VPTree.this.binSize);
+            this.queue = new NodeQueue();
+            
+            this.queue.add(VPTree.this.root, 0, NodeQueue.SUBTREE, 0);
+        }
+        
+        /**
+         * Searches the tree until the head of the queue is a point whose exact
+         * distance is known.
+         * 
+         * @return {@code true} if another point was found or {@code false} if
+         *         all points have been returned
+         */
+        @SuppressWarnings("unchecked")
+        private boolean advance() {
+            while(!this.queue.isEmpty()) {
+                int kind = this.queue.peekKind();
+                
+                if(kind == NodeQueue.POINT) {
+                    return true;
+                }
+                
+                Object entry = this.queue.peekNode();
+                double bound = this.queue.peekBound();
+                this.queue.remove();
+                
+                if(kind == NodeQueue.POINT_BOUND) {
+                    E point = (E)entry;
+                    this.queue.add(point, 0, NodeQueue.POINT, this.queryPoint.getDistanceTo(point));
+                } else {
+                    this.expand((VPNode<E>)entry, bound);
+                }
+            }
+            
+            return false;
+        }
+        
+        private void expand(VPNode<E> node, double bound) {
+            if(node.isLeafNode()) {
+                double[] squaredDistances = this.scanner.getSquaredChordDistances(node.pointVectors);
+                double error = node.pointVectors.getChordDistanceError();
+                
+                for(int i = 0; i < node.pointCount; i++) {
+                    this.queue.add(node.getPoint(i), i, NodeQueue.POINT_BOUND,
+                            UnitVector.toLowerBoundMeters(Math.sqrt(squaredDistances[i]) - error));
+                }
+            } else {
+                double distanceToCenter =
+                        Math.sqrt(node.centerVector.getSquaredChordDistanceTo(this.scanner.getQueryVector()));
+                double threshold = Math.sqrt(node.threshold);
+                
+                this.queue.add(node.closer, 0, NodeQueue.SUBTREE,
+                        Math.max(bound, UnitVector.toLowerBoundMeters(distanceToCenter - threshold)));
+                this.queue.add(node.farther, 0, NodeQueue.SUBTREE,
+                        Math.max(bound, UnitVector.toLowerBoundMeters(threshold - distanceToCenter)));
+            }
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return this.advance();
+        }
+        
+        @Override
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if(!this.advance()) {
+                throw new NoSuchElementException();
+            }
+            
+            E next = (E)this.queue.peekNode();
+            this.queue.remove();
+            
+            return next;
+        }
+        
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+    
+    /**
+     * The default node capacity ({@value} points) for nodes in this tree.
+     */
+    public static final int DEFAULT_BIN_SIZE = 32;
+    
+    /**
+     * The default size ({@value} points) below which parallel tree
+     * construction stops dividing work among threads and builds the remainder
+     * of a branch on a single thread.
+     */
+    public static final int DEFAULT_SEQUENTIAL_THRESHOLD = 8192;
+    
+    /**
+     * The number of queries ({@value}) in a batch of nearest-neighbor queries
+     * below which work is no longer divided among threads.
+     * 
+     * @see VPTree#getNearestNeighbors(GeospatialPoint[], int)
+     */
+    private static final int BATCH_CHUNK_SIZE = 256;
+    
+    /**
+     * The default imbalance factor ({@value}) for this tree.
+     * 
+     * @see VPTree#setImbalanceFactor(double)
+     */
+    public static final double DEFAULT_IMBALANCE_FACTOR = 0.75;
+    
+    private final int binSize;
+    private final VantagePointSelector vantagePointSelector;
+    private final CoordinateEncoding encoding;
+    
+    private final ForkJoinPool forkJoinPool;
+    private final int sequentialThreshold;
+    
+    private double imbalanceFactor = DEFAULT_IMBALANCE_FACTOR;
+    
+    private VPNode<E> root;
+    
+    /**
+     * Constructs a new, empty vp-tree with a default node capacity.
+     */
+    public VPTree() {
+        this(DEFAULT_BIN_SIZE);
+    }
+    
+    /**
+     * Constructs a new, empty vp-tree with the specified node capacity.
+     * 
+     * @param nodeCapacity
+     *            the maximum number of points to store in a leaf node of the
+     *            tree
+     */
+    public VPTree(int nodeCapacity) {
+        this(nodeCapacity, new FirstPointSelector());
+    }
+    
+    /**
+     * Constructs a new, empty vp-tree with the specified node capacity and
+     * strategy for choosing node centers.
+     * 
+     * @param nodeCapacity
+     *            the maximum number of points to store in a leaf node of the
+     *            tree
+     * @param vantagePointSelector
+     *            the strategy with which to choose the centers of new nodes
+     */
+    public VPTree(int nodeCapacity, VantagePointSelector vantagePointSelector) {
+        if(nodeCapacity < 1) {
+            throw new IllegalArgumentException("Node capacity must be greater than zero.");
+        }
+        
+        if(vantagePointSelector == null) {
+            throw new IllegalArgumentException("Vantage point selector must not be null.");
+        }
+        
+        this.binSize = nodeCapacity;
+        this.vantagePointSelector = vantagePointSelector;
+        this.encoding = CoordinateEncoding.DOUBLE;
+        this.root = new VPNode<E>(this.binSize);
+        
+        this.forkJoinPool = null;
+        this.sequentialThreshold = DEFAULT_SEQUENTIAL_THRESHOLD;
+    }
+    
+    /**
+     * Constructs a new vp-tree that contains (and indexes) all of the points in
+     * the given collection. Nodes of the tree are created with a default
+     * capacity.
+     * 
+     * @param points
+     *            the points to use to populate this tree
+     */
+    public VPTree(Collection<E> points) {
+        this(points, DEFAULT_BIN_SIZE);
+    }
+    
+    /**
+     * Constructs a new vp-tree that contains (and indexes) all of the points in
+     * the given collection and has leaf nodes with the given point capacity.
+     * 
+     * @param points
+     *            the points to use to populate this tree
+     * @param nodeCapacity
+     *            the largest number of points any leaf node of the tree should
+     *            contain
+     */
+    public VPTree(Collection<E> points, int nodeCapacity) {
+        this(points, nodeCapacity, new FirstPointSelector());
+    }
+    
+    /**
+     * Constructs a new vp-tree that contains (and indexes) all of the points in
+     * the given collection and has leaf nodes with the given point capacity.
+     * The tree is built in parallel using the given {@code ForkJoinPool}; work
+     * is divided among threads until branches contain fewer than
+     * {@value #DEFAULT_SEQUENTIAL_THRESHOLD} points.
+     * 
+     * @param points
+     *            the points to use to populate this tree
+     * @param nodeCapacity
+     *            the largest number of points any leaf node of the tree should
+     *            contain
+     * @param forkJoinPool
+     *            the pool in which to build the tree; may be {@code null}, in
+     *            which case the tree is built on the calling thread
+     */
+    public VPTree(Collection<E> points, int nodeCapacity, ForkJoinPool forkJoinPool) {
+        this(points, nodeCapacity, forkJoinPool, DEFAULT_SEQUENTIAL_THRESHOLD);
+    }
+    
+    /**
+     * Constructs a new vp-tree that contains (and indexes) all of the points in
+     * the given collection and has leaf nodes with the given point capacity.
+     * The tree is built in parallel using the given {@code ForkJoinPool}; work
+     * is divided among threads until branches contain no more than
+     * {@code sequentialThreshold} points, at which point the rest of the
+     * branch is built on a single thread. Trees built in parallel are
+     * identical to trees built sequentially from the same collection.
+     * 
+     * @param points
+     *            the points to use to populate this tree
+     * @param nodeCapacity
+     *            the largest number of points any leaf node of the tree should
+     *            contain
+     * @param forkJoinPool
+     *            the pool in which to build the tree; may be {@code null}, in
+     *            which case the tree is built on the calling thread
+     * @param sequentialThreshold
+     *            the number of points at or below which branches of the tree
+     *            are built on a single thread
+     */
+    public VPTree(Collection<E> points, int nodeCapacity, ForkJoinPool forkJoinPool, int sequentialThreshold) {
+        this(points, nodeCapacity, new FirstPointSelector(), forkJoinPool, sequentialThreshold);
+    }
+    
+    /**
+     * Constructs a new vp-tree that contains (and indexes) all of the points in
+     * the given collection, has leaf nodes with the given point capacity and
+     * chooses node centers with the given strategy.
+     * 
+     * @param points
+     *            the points to use to populate this tree
+     * @param nodeCapacity
+     *            the largest number of points any leaf node of the tree should
+     *            contain
+     * @param vantagePointSelector
+     *            the strategy with which to choose the centers of new nodes
+     */
+    public VPTree(Collection<E> points, int nodeCapacity, VantagePointSelector vantagePointSelector) {
+        this(points, nodeCapacity, vantagePointSelector, null, DEFAULT_SEQUENTIAL_THRESHOLD);
+    }
+    
+    /**
+     * Constructs a new vp-tree that contains (and indexes) all of the points in
+     * the given collection, has leaf nodes with the given point capacity and
+     * chooses node centers with the given strategy. The tree is built in
+     * parallel using the given {@code ForkJoinPool}; work is divided among
+     * threads until branches contain no more than {@code sequentialThreshold}
+     * points.
+     * 
+     * @param points
+     *            the points to use to populate this tree
+     * @param nodeCapacity
+     *            the largest number of points any leaf node of the tree should
+     *            contain
+     * @param vantagePointSelector
+     *            the strategy with which to choose the centers of new nodes
+     * @param forkJoinPool
+     *            the pool in which to build the tree; may be {@code null}, in
+     *            which case the tree is built on the calling thread
+     * @param sequentialThreshold
+     *            the number of points at or below which branches of the tree
+     *            are built on a single thread
+     */
+    public VPTree(Collection<E> points, int nodeCapacity, VantagePointSelector vantagePointSelector,
+            ForkJoinPool forkJoinPool, int sequentialThreshold) {
+        
+        this(points.toArray(new GeospatialPoint[points.size()]), points.size(),
+                nodeCapacity, vantagePointSelector, CoordinateEncoding.DOUBLE, forkJoinPool, sequentialThreshold);
+    }
+    
+    /**
+     * <p>Constructs a new vp-tree that contains (and indexes) the first
+     * {@code size} points in the given array. The array is used as working
+     * space while the tree is built and its contents are rearranged in the
+     * process; the tree does not retain a reference to the array after
+     * construction.</p>
+     * 
+     * <p>This constructor is intended for use by {@link VPTreeBuilder}.</p>
+     * 
+     * @param points
+     *            an array whose first {@code size} elements are the points to
+     *            use to populate this tree
+     * @param size
+     *            the number of points in the array
+     * @param nodeCapacity
+     *            the largest number of points any leaf node of the tree should
+     *            contain
+     * @param vantagePointSelector
+     *            the strategy with which to choose the centers of new nodes
+     * @param encoding
+     *            the encoding with which leaf nodes store the unit vectors for
+     *            their points
+     * @param forkJoinPool
+     *            the pool in which to build the tree; may be {@code null}, in
+     *            which case the tree is built on the calling thread
+     * @param sequentialThreshold
+     *            the number of points at or below which branches of the tree
+     *            are built on a single thread
+     */
+    VPTree(GeospatialPoint[] points, int size, int nodeCapacity, VantagePointSelector vantagePointSelector,
+            CoordinateEncoding encoding, ForkJoinPool forkJoinPool, int sequentialThreshold) {
+        
+        if(nodeCapacity < 1) {
+            throw new IllegalArgumentException("Node capacity must be greater than zero.");
+        }
+        
+        if(vantagePointSelector == null) {
+            throw new IllegalArgumentException("Vantage point selector must not be null.");
+        }
+        
+        if(encoding == null) {
+            throw new IllegalArgumentException("Coordinate encoding must not be null.");
+        }
+        
+        if(sequentialThreshold < 1) {
+            throw new IllegalArgumentException("Sequential threshold must be greater than zero.");
+        }
+        
+        this.binSize = nodeCapacity;
+        this.vantagePointSelector = vantagePointSelector;
+        this.encoding = encoding;
+        this.forkJoinPool = forkJoinPool;
+        this.sequentialThreshold = sequentialThreshold;
+        
+        this.root = this.buildRoot(points, size);
+    }
+    
+    /**
+     * <p>Builds a new root node (and its children, as needed) from the first
+     * {@code size} points in the given array using this tree's node capacity,
+     * vantage point selector and (if any) {@code ForkJoinPool}. The new node is
+     * not attached to this tree; callers may install it with
+     * {@link VPTree#setRoot(VPNode)}.</p>
+     * 
+     * <p>Building a root node reads only this tree's immutable configuration,
+     * so it is safe to build a root node on one thread while other threads use
+     * the tree.</p>
+     * 
+     * @param points
+     *            an array whose first {@code size} elements are the points from
+     *            which to build the node; the array's contents are rearranged
+     *            in the process
+     * @param size
+     *            the number of points in the array
+     * 
+     * @return a new root node that contains the given points
+     */
+    protected VPNode<E> buildRoot(GeospatialPoint[] points, int size) {
+        if(size > 0) {
+            // The array may hold any mix of GeospatialPoint subclasses; since
+            // E[] is a GeospatialPoint[] once erased, this is safe.
+            @SuppressWarnings("unchecked")
+            E[] pointArray = (E[])points;
+            
+            return this.buildNode(pointArray, 0, size);
+        } else {
+            return new VPNode<E>(this.binSize);
+        }
+    }
+    
+    /**
+     * Builds a new node (and its children, as needed) from a subset of the
+     * given array of points. If this tree has a {@code ForkJoinPool}, the node
+     * is built in parallel.
+     * 
+     * @param points
+     *            the array of points from which to build the node
+     * @param fromIndex
+     *            the starting index (inclusive) of the subset of the array
+     *            from which to build the node
+     * @param toIndex
+     *            the end index (exclusive) of the subset of the array from
+     *            which to build the node
+     * 
+     * @return the newly-built node
      */
-    public static final int DEFAULT_BIN_SIZE = 32;
-    
-    private final int binSize;
-    
-    private VPNode<E> root;
+    private VPNode<E> buildNode(E[] points, int fromIndex, int toIndex) {
+        VPNode<E> node = new VPNode<E>(this.binSize);
+        this.populateNode(node, points, fromIndex, toIndex);
+        
+        return node;
+    }
     
     /**
-     * Constructs a new, empty vp-tree with a default node capacity.
+     * Populates an empty node (and its children, as needed) from a subset of
+     * the given array of points. If this tree has a {@code ForkJoinPool}, the
+     * node is populated in parallel.
+     * 
+     * @param node
+     *            the node to populate; must not have a center point, children
+     *            or points of its own
+     * @param points
+     *            the array of points from which to build the node
+     * @param fromIndex
+     *            the starting index (inclusive) of the subset of the array
+     *            from which to build the node
+     * @param toIndex
+     *            the end index (exclusive) of the subset of the array from
+     *            which to build the node
      */
-    public VPTree() {
-        this(DEFAULT_BIN_SIZE);
+    private void populateNode(VPNode<E> node, E[] points, int fromIndex, int toIndex) {
+        // Distances from points to node centers are calculated once per level
+        // of the tree and stored alongside the points; a single scratch array
+        // serves the whole build since each node works on its own range. Unit
+        // vectors for each point are calculated just once for the whole build
+        // and travel with the points, too.
+        double[] distances = new double[toIndex];
+        double[] vectors = UnitVector.toUnitVectors(points, fromIndex, toIndex);
+        
+        if(this.forkJoinPool != null && toIndex - fromIndex > this.sequentialThreshold) {
+            this.forkJoinPool.invoke(new NodeBuilder(node, points, distances, vectors, fromIndex, toIndex));
+        } else {
+            node.build(points, distances, vectors, fromIndex, toIndex);
+        }
     }
     
     /**
-     * Constructs a new, empty vp-tree with the specified node capacity.
+     * Rebuilds the given node and all of its descendants from scratch using
+     * the bulk construction process. The node keeps its place in the tree,
+     * but chooses a new center and threshold; its old descendants are
+     * discarded.
      * 
-     * @param nodeCapacity
-     *            the maximum number of points to store in a leaf node of the
-     *            tree
+     * @param node the node to rebuild
      */
-    public VPTree(int nodeCapacity) {
-        if(nodeCapacity < 1) {
-            throw new IllegalArgumentException("Node capacity must be greater than zero.");
-        }
+    private void rebuildNode(VPNode<E> node) {
+        // As in the bulk-loading constructor, the array needs to be able to
+        // hold any mix of GeospatialPoint subclasses.
+        @SuppressWarnings("unchecked")
+        E[] points = (E[])new GeospatialPoint[node.size()];
+        node.addPointsToArray(points, 0);
         
-        this.binSize = nodeCapacity;
-        this.root = new VPNode<E>(this.binSize);
+        // Every point in this node's branch is routed here by the node's
+        // ancestors, so any of them will do as the node's new center.
+        node.setCenter(null);
+        node.closer = null;
+        node.farther = null;
+        node.points = null;
+        node.pointCount = 0;
+        node.pointVectors = null;
+        
+        this.populateNode(node, points, 0, points.length);
     }
     
     /**
-     * Constructs a new vp-tree that contains (and indexes) all of the points in
-     * the given collection. Nodes of the tree are created with a default
-     * capacity.
+     * Rebuilds any of the given nodes that are still part of this tree and
+     * still out of balance. Larger nodes are rebuilt first; rebuilding a node
+     * discards its old descendants, so any of those that also appear among the
+     * given nodes are skipped.
      * 
-     * @param points
-     *            the points to use to populate this tree
+     * @param unbalancedNodes the nodes to consider for rebuilding
      */
-    public VPTree(Collection<E> points) {
-        this(points, DEFAULT_BIN_SIZE);
+    private void rebalance(Collection<VPNode<E>> unbalancedNodes) {
+        if(unbalancedNodes.isEmpty()) { return; }
+        
+        ArrayList<VPNode<E>> nodes = new ArrayList<VPNode<E>>(unbalancedNodes);
+        
+        java.util.Collections.sort(nodes, new java.util.Comparator<VPNode<E>>() {
+            @Override
+            public int compare(VPNode<E> a, VPNode<E> b) {
+                return b.size() - a.size();
+            }
+        });
+        
+        for(VPNode<E> node : nodes) {
+            if(node.isOutOfBalance() && this.isAttached(node)) {
+                this.rebuildNode(node);
+            }
+        }
     }
     
     /**
-     * Constructs a new vp-tree that contains (and indexes) all of the points in
-     * the given collection and has leaf nodes with the given point capacity.
+     * Tests whether the given (non-leaf) node is still reachable from the root
+     * of this tree.
      * 
-     * @param points
-     *            the points to use to populate this tree
-     * @param nodeCapacity
-     *            the largest number of points any leaf node of the tree should
-     *            contain
+     * @param node the node to find
+     * 
+     * @return {@code true} if the node is part of this tree or {@code false}
+     *         if it has been discarded
      */
-    public VPTree(Collection<E> points, int nodeCapacity) {
-        if(nodeCapacity < 1) {
-            throw new IllegalArgumentException("Node capacity must be greater than zero.");
-        }
-        
-        this.binSize = nodeCapacity;
+    private boolean isAttached(VPNode<E> node) {
+        ArrayDeque<VPNode<E>> stack = new ArrayDeque<VPNode<E>>();
+        this.root.findNodeContainingPoint(node.getCenter(), stack);
         
-        if(!points.isEmpty()) {
-            @SuppressWarnings("unchecked")
-            E[] pointArray = points.toArray((E[])Array.newInstance(points.iterator().next().getClass(), 0));
-            
-            this.root = new VPNode<E>(pointArray, 0, pointArray.length, this.binSize);
-        } else {
-            this.root = new VPNode<E>(this.binSize);
-        }
+        return stack.contains(node);
     }
     
     /**
@@ -935,6 +2368,19 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
         return this.root;
     }
     
+    /**
+     * Replaces this tree's root node (and, by extension, all of its contents).
+     * 
+     * @param root
+     *            the new root node for this tree; must have been built by this
+     *            tree
+     * 
+     * @see VPTree#buildRoot(GeospatialPoint[], int)
+     */
+    protected void setRoot(VPNode<E> root) {
+        this.root = root;
+    }
+    
     /**
      * Returns the maximum number of points any leaf node of this tree should
      * contain.
@@ -945,6 +2391,69 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
         return this.binSize;
     }
     
+    /**
+     * Returns the strategy this tree uses to choose the centers of new nodes.
+     * 
+     * @return this tree's vantage point selector
+     */
+    public VantagePointSelector getVantagePointSelector() {
+        return this.vantagePointSelector;
+    }
+    
+    /**
+     * Returns the encoding with which this tree's leaf nodes store the unit
+     * vectors they use to rule points out during searches. Leaf nodes always
+     * keep references to the points themselves, so the encoding affects only
+     * memory and never search results.
+     * 
+     * @return the encoding of this tree's unit vectors
+     * 
+     * @see VPTreeBuilder#setCoordinateEncoding(CoordinateEncoding)
+     */
+    public CoordinateEncoding getCoordinateEncoding() {
+        return this.encoding;
+    }
+    
+    /**
+     * Returns the largest share of a node's points that either of its children
+     * may hold before the node is rebuilt.
+     * 
+     * @return this tree's imbalance factor
+     * 
+     * @see VPTree#setImbalanceFactor(double)
+     */
+    public double getImbalanceFactor() {
+        return this.imbalanceFactor;
+    }
+    
+    /**
+     * <p>Sets the largest share of a node's points that either of its
+     * children may hold before the node is rebuilt. Vp-trees built from a
+     * collection of points start out balanced, but adding and removing points
+     * never moves node thresholds, so trees that change substantially over
+     * their lifetimes drift out of balance; when an addition or removal leaves
+     * a child node holding more than this fraction of its parent's points, the
+     * highest such parent on the path to the added or removed point is rebuilt
+     * with the same process used to build trees from collections of
+     * points.</p>
+     * 
+     * <p>Smaller factors keep the tree closer to perfect balance at the cost
+     * of more frequent rebuilding. An imbalance factor of 1 disables
+     * rebalancing entirely. The default imbalance factor is
+     * {@value #DEFAULT_IMBALANCE_FACTOR}.</p>
+     * 
+     * @param imbalanceFactor
+     *            the new imbalance factor; must be greater than 0.5 and no
+     *            greater than 1
+     */
+    public void setImbalanceFactor(double imbalanceFactor) {
+        if(!(imbalanceFactor > 0.5 && imbalanceFactor <= 1)) {
+            throw new IllegalArgumentException("Imbalance factor must be greater than 0.5 and no greater than 1.");
+        }
+        
+        this.imbalanceFactor = imbalanceFactor;
+    }
+    
     /**
      * Adds a single point to this vp-tree. Addition of a point executes in
      * O(log n) time in the best case (where n is the number of points in the
@@ -959,7 +2468,13 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
      */
     @Override
     public boolean add(E point) {
-        return this.root.add(point);
+        VPNode<E> unbalancedNode = this.root.insert(point, new UnitVector(point), false, null);
+        
+        if(unbalancedNode != null) {
+            this.rebuildNode(unbalancedNode);
+        }
+        
+        return true;
     }
     
     /**
@@ -973,7 +2488,28 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
      */
     @Override
     public boolean addAll(Collection<? extends E> points) {
-        return this.root.addAll(points);
+        HashSet<VPNode<E>> unbalancedNodes = new HashSet<VPNode<E>>();
+        boolean modified = this.root.addAll(points, unbalancedNodes);
+        
+        this.rebalance(unbalancedNodes);
+        
+        return modified;
+    }
+    
+    /**
+     * <p>Trims the storage of every node in this tree to the number of points
+     * it actually holds.</p>
+     * 
+     * <p>To keep the cost of adding points low, leaf nodes grow their storage
+     * in increasingly large steps and don't give up storage as points are
+     * removed. Trees that have been modified may have some spare capacity as a
+     * result; callers that are done modifying a tree (or expect to leave it
+     * alone for a while) may call this method to reclaim that memory. Trees
+     * built from collections of points have no spare capacity to begin
+     * with.</p>
+     */
+    public void compact() {
+        this.root.compact();
     }
     
     /**
@@ -1067,7 +2603,12 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
             @SuppressWarnings("unchecked")
             E point = (E)o;
             
-            return this.remove(point, false, null);
+            HashSet<VPNode<E>> unbalancedNodes = new HashSet<VPNode<E>>();
+            boolean pointRemoved = this.remove(point, false, null, unbalancedNodes);
+            
+            this.rebalance(unbalancedNodes);
+            
+            return pointRemoved;
         } catch(ClassCastException e) {
             // The object we were given wasn't the kind of thing we're storing,
             // so we definitely can't remove it.
@@ -1098,6 +2639,33 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
      *         otherwise
      */
     protected boolean remove(E point, boolean deferPruning, Set<VPNode<E>> nodesToPrune) {
+        return this.remove(point, deferPruning, nodesToPrune, null);
+    }
+    
+    /**
+     * Removes a point from this tree, optionally defers pruning of nodes left
+     * empty and optionally gathers the highest node that fell out of balance
+     * as a result of the removal.
+     * 
+     * @param point
+     *            the point to remove
+     * @param deferPruning
+     *            if {@code true} and the removal of the given point would leave
+     *            a node empty, pruning of the empty node is deferred until a
+     *            time chosen by the caller
+     * @param nodesToPrune
+     *            a {@code Set} to be populated with nodes left empty by the
+     *            removal of points; this may be {@code null} if
+     *            {@code deferPruning} is {@code false}
+     * @param unbalancedNodes
+     *            a {@code Set} to be populated with the highest node left out
+     *            of balance by the removal of the point; may be {@code null}
+     * 
+     * @return {@code true} if the tree was modified by removing this point
+     *         (i.e. if the point was present in the tree) or {@code false}
+     *         otherwise
+     */
+    private boolean remove(E point, boolean deferPruning, Set<VPNode<E>> nodesToPrune, Set<VPNode<E>> unbalancedNodes) {
         ArrayDeque<VPNode<E>> stack = new ArrayDeque<VPNode<E>>();
         this.root.findNodeContainingPoint(point, stack);
         
@@ -1105,6 +2673,27 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
         
         boolean pointRemoved = node.remove(point);
         
+        if(pointRemoved) {
+            // Everything left on the stack is an ancestor of the leaf node
+            // that held the point. Walk down from the root so we find the
+            // highest unbalanced node first.
+            VPNode<E> unbalancedNode = null;
+            
+            for(Iterator<VPNode<E>> ancestors = stack.descendingIterator(); ancestors.hasNext();) {
+                VPNode<E> ancestor = ancestors.next();
+                ancestor.size--;
+                ancestor.modifications++;
+                
+                if(unbalancedNode == null && ancestor.isOutOfBalance()) {
+                    unbalancedNode = ancestor;
+                }
+            }
+            
+            if(unbalancedNode != null && unbalancedNodes != null) {
+                unbalancedNodes.add(unbalancedNode);
+            }
+        }
+        
         if(node.isEmpty()) {
             if(deferPruning) {
                 nodesToPrune.add(node);
@@ -1130,6 +2719,7 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
     public boolean removeAll(Collection<?> c) {
         boolean anyChanged = false;
         HashSet<VPNode<E>> nodesToPrune = new HashSet<VPNode<E>>();
+        HashSet<VPNode<E>> unbalancedNodes = new HashSet<VPNode<E>>();
         
         for(Object o : c) {
             try {
@@ -1141,7 +2731,7 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
                 // common with the specified collection." Make sure we remove
                 // all instances of each point in the collection of points to
                 // remove.
-                while(this.remove(point, true, nodesToPrune)) {
+                while(this.remove(point, true, nodesToPrune, unbalancedNodes)) {
                     anyChanged = true;
                 }
             } catch(ClassCastException e) {
@@ -1180,6 +2770,8 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
             }
         }
         
+        this.rebalance(unbalancedNodes);
+        
         return anyChanged;
     }
     
@@ -1247,7 +2839,23 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
     }
     
     /**
-     * Returns the total number of points stored in this vp-tree.
+     * Returns a snapshot of the shape of this tree and an estimate of the
+     * memory it occupies. Gathering statistics visits every node in the tree
+     * but none of its points.
+     * 
+     * @return memory statistics for this tree
+     */
+    public MemoryStats getMemoryStats() {
+        MemoryStats.Counter counter = new MemoryStats.Counter();
+        this.root.gatherMemoryStats(counter);
+        
+        return counter.toMemoryStats(this.root.size());
+    }
+    
+    /**
+     * Returns the total number of points stored in this vp-tree. Every node
+     * keeps a running count of the points in its subtree, so this executes in
+     * constant time.
      * 
      * @return the number of points stored in this vp-tree
      */
@@ -1294,15 +2902,17 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
     public <T> T[] toArray(T[] a) {
         int size = this.size();
         
-        if(a.length < this.size()) {
-            return (T[])java.util.Arrays.copyOf(this.toArray(), size, a.getClass());
-        } else {
-            System.arraycopy(this.toArray(), 0, a, 0, size);
-            
-            if(a.length > size) { a[size] = null; }
-            
-            return a;
+        if(a.length < size) {
+            a = (T[])java.lang.reflect.Array.newInstance(a.getClass().getComponentType(), size);
         }
+        
+        // Copy points straight into the destination array rather than into an
+        // intermediate array of our own.
+        this.root.addPointsToArray(a, 0);
+        
+        if(a.length > size) { a[size] = null; }
+        
+        return a;
     }
 
     /*
@@ -1311,10 +2921,7 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
      */
     @Override
     public List<E> getNearestNeighbors(GeospatialPoint queryPoint, int maxResults) {
-        SearchResults<E> results = new SearchResults<E>(queryPoint, maxResults);
-        this.root.getNearestNeighbors(queryPoint, results);
-        
-        return results.toSortedList();
+        return this.getNearestNeighbors(queryPoint, maxResults, Double.POSITIVE_INFINITY, null);
     }
 
     /*
@@ -1323,10 +2930,7 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
      */
     @Override
     public List<E> getNearestNeighbors(GeospatialPoint queryPoint, int maxResults, double maxDistance) {
-        SearchResults<E> results = new SearchResults<E>(queryPoint, maxResults, maxDistance);
-        this.root.getNearestNeighbors(queryPoint, results);
-        
-        return results.toSortedList();
+        return this.getNearestNeighbors(queryPoint, maxResults, maxDistance, null);
     }
 
     /*
@@ -1335,10 +2939,7 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
      */
     @Override
     public List<E> getNearestNeighbors(GeospatialPoint queryPoint, int maxResults, SearchCriteria<E> searchCriteria) {
-        SearchResults<E> results = new SearchResults<E>(queryPoint, maxResults, searchCriteria);
-        this.root.getNearestNeighbors(queryPoint, results);
-        
-        return results.toSortedList();
+        return this.getNearestNeighbors(queryPoint, maxResults, Double.POSITIVE_INFINITY, searchCriteria);
     }
 
     /*
@@ -1347,12 +2948,105 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
      */
     @Override
     public List<E> getNearestNeighbors(GeospatialPoint queryPoint, int maxResults, double maxDistance, SearchCriteria<E> searchCriteria) {
-        SearchResults<E> results = new SearchResults<E>(queryPoint, maxResults, maxDistance, searchCriteria);
-        this.root.getNearestNeighbors(queryPoint, results);
+        QueryContext context = QueryContext.acquire();
         
-        return results.toSortedList();
+        try {
+            NeighborHeap<E> heap = this.searchNearestNeighbors(queryPoint, maxResults, maxDistance, searchCriteria, context);
+            return heap.drainToSortedList();
+        } finally {
+            context.release();
+        }
     }
 
+    /**
+     * <p>Finds the nearest neighbors to each of a batch of query points. The
+     * results are exactly the same as those of calling
+     * {@link VPTree#getNearestNeighbors(GeospatialPoint, int)} once for each
+     * query point, but large batches are answered much more quickly: queries
+     * are reordered so that queries close to each other on the ground are
+     * answered one after another (and so find the parts of the tree they need
+     * already in the CPU's caches), and are divided among the threads of this
+     * tree's {@code ForkJoinPool} or, if this tree wasn't constructed with
+     * one, the {@linkplain ForkJoinPool#commonPool() common pool}.</p>
+     * 
+     * @param queryPoints
+     *            the points for which to find neighbors
+     * @param maxResults
+     *            the maximum number of neighbors to find for each query point
+     * 
+     * @return a list with one entry for each query point, in the same order as
+     *         the query points, each of which is a list of the nearest
+     *         neighbors to that query point sorted by increasing distance from
+     *         the query point
+     */
+    public List<List<E>> getNearestNeighbors(GeospatialPoint[] queryPoints, int maxResults) {
+        if(maxResults < 1) {
+            throw new IllegalArgumentException("Maximum number of results must be greater than zero.");
+        }
+        
+        long[] order = new long[queryPoints.length];
+        
+        for(int i = 0; i < queryPoints.length; i++) {
+            long position = HilbertCurve.getIndex(queryPoints[i].getLatitude(), queryPoints[i].getLongitude());
+            order[i] = (position << 31) | i;
+        }
+        
+        Arrays.sort(order);
+        
+        Object[] results = new Object[queryPoints.length];
+        BatchSearch search = new BatchSearch(order, queryPoints, maxResults, results, 0, queryPoints.length);
+        
+        if(queryPoints.length <= BATCH_CHUNK_SIZE) {
+            // Not worth handing off to another thread.
+            search.compute();
+        } else {
+            ForkJoinPool pool = this.forkJoinPool != null ? this.forkJoinPool : ForkJoinPool.commonPool();
+            pool.invoke(search);
+        }
+        
+        @SuppressWarnings("unchecked")
+        List<List<E>> resultList = (List<List<E>>)(List<?>)Arrays.asList(results);
+        
+        return resultList;
+    }
+    
+    /**
+     * Finds the nearest neighbors to each of a batch of query points given as
+     * arrays of coordinates. Queries are answered exactly as by
+     * {@link VPTree#getNearestNeighbors(GeospatialPoint[], int)}.
+     * 
+     * @param latitudes
+     *            the latitudes, in degrees, of the points for which to find
+     *            neighbors
+     * @param longitudes
+     *            the longitudes, in degrees, of the points for which to find
+     *            neighbors
+     * @param maxResults
+     *            the maximum number of neighbors to find for each query point
+     * 
+     * @return a list with one entry for each query point, in the same order as
+     *         the query points, each of which is a list of the nearest
+     *         neighbors to that query point sorted by increasing distance from
+     *         the query point
+     * 
+     * @throws IllegalArgumentException
+     *             if the latitude and longitude arrays have different lengths
+     *             or if any latitude is outside of the allowable range
+     */
+    public List<List<E>> getNearestNeighbors(double[] latitudes, double[] longitudes, int maxResults) {
+        if(latitudes.length != longitudes.length) {
+            throw new IllegalArgumentException("Latitude and longitude arrays must be the same length.");
+        }
+        
+        GeospatialPoint[] queryPoints = new GeospatialPoint[latitudes.length];
+        
+        for(int i = 0; i < queryPoints.length; i++) {
+            queryPoints[i] = new CachedGeospatialPoint(latitudes[i], longitudes[i]);
+        }
+        
+        return this.getNearestNeighbors(queryPoints, maxResults);
+    }
+    
     /*
      * (non-Javadoc)
      * @see com.eatthepath.jeospatial.GeospatialPointDatabase#getAllNeighborsWithinDistance(com.eatthepath.jeospatial.GeospatialPoint, double)
@@ -1368,13 +3062,66 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
      */
     @Override
     public List<E> getAllNeighborsWithinDistance(GeospatialPoint queryPoint, double maxDistance, SearchCriteria<E> searchCriteria) {
+        CachedGeospatialPoint cachedQueryPoint = CachedGeospatialPoint.valueOf(queryPoint);
+        
         ArrayList<E> results = new ArrayList<E>(this.binSize);
-        this.root.getAllWithinRange(new SimpleGeospatialPoint(queryPoint), maxDistance, searchCriteria, results);
+        this.root.getAllWithinRange(cachedQueryPoint, maxDistance, searchCriteria, results);
         
-        java.util.Collections.sort(results, new GeospatialDistanceComparator<E>(queryPoint));
+        java.util.Collections.sort(results, new GeospatialDistanceComparator<E>(cachedQueryPoint));
         
         return results;
     }
+    
+    
+    /*
+     * (non-Javadoc)
+     * @see com.eatthepath.jeospatial.GeospatialPointDatabase#forEachWithinDistance(com.eatthepath.jeospatial.GeospatialPoint, double, com.eatthepath.jeospatial.PointVisitor)
+     */
+    @Override
+    public boolean forEachWithinDistance(GeospatialPoint queryPoint, double maxDistance, PointVisitor<E> visitor) {
+        return this.forEachWithinRange(CachedGeospatialPoint.valueOf(queryPoint), maxDistance, null, visitor);
+    }
+    
+    /**
+     * Passes each point in this tree within the given range of a query point
+     * that also matches the given search criteria (if any) to the given
+     * visitor.
+     * 
+     * @see VPNode#forEachWithinRange(CachedGeospatialPoint, LeafScanner, double, double, SearchCriteria, PointVisitor)
+     */
+    private boolean forEachWithinRange(CachedGeospatialPoint queryPoint, double maxDistance,
+            SearchCriteria<E> criteria, PointVisitor<E> visitor) {
+        
+        QueryContext context = QueryContext.acquire();
+        
+        try {
+            LeafScanner scanner = context.getLeafScanner(new UnitVector(queryPoint), this.binSize);
+            
+            return this.root.forEachWithinRange(queryPoint, scanner, maxDistance,
+                    UnitVector.toChordDistance(maxDistance), criteria, visitor);
+        } finally {
+            context.release();
+        }
+    }
+    
+    /*
+     * (non-Javadoc)
+     * @see com.eatthepath.jeospatial.GeospatialPointDatabase#countWithinDistance(com.eatthepath.jeospatial.GeospatialPoint, double)
+     */
+    @Override
+    public int countWithinDistance(GeospatialPoint queryPoint, double maxDistance) {
+        CachedGeospatialPoint cachedQueryPoint = CachedGeospatialPoint.valueOf(queryPoint);
+        QueryContext context = QueryContext.acquire();
+        
+        try {
+            LeafScanner scanner = context.getLeafScanner(new UnitVector(cachedQueryPoint), this.binSize);
+            
+            return this.root.countWithinRange(cachedQueryPoint, scanner, maxDistance,
+                    UnitVector.toChordDistance(maxDistance), UnitVector.toInnerChordDistance(maxDistance));
+        } finally {
+            context.release();
+        }
+    }
 
     /*
      * (non-Javadoc)
@@ -1382,10 +3129,7 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
      */
     @Override
     public E getNearestNeighbor(GeospatialPoint queryPoint) {
-        SearchResults<E> results = new SearchResults<E>(queryPoint, 1);
-        this.root.getNearestNeighbors(queryPoint, results);
-        
-        return results.peek();
+        return this.getNearestNeighbor(queryPoint, Double.POSITIVE_INFINITY, null);
     }
 
     /*
@@ -1394,10 +3138,7 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
      */
     @Override
     public E getNearestNeighbor(GeospatialPoint queryPoint, double maxDistance) {
-        SearchResults<E> results = new SearchResults<E>(queryPoint, 1, maxDistance);
-        this.root.getNearestNeighbors(queryPoint, results);
-        
-        return results.peek();
+        return this.getNearestNeighbor(queryPoint, maxDistance, null);
     }
 
     /*
@@ -1406,10 +3147,7 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
      */
     @Override
     public E getNearestNeighbor(GeospatialPoint queryPoint, SearchCriteria<E> searchCriteria) {
-        SearchResults<E> results = new SearchResults<E>(queryPoint, 1, searchCriteria);
-        this.root.getNearestNeighbors(queryPoint, results);
-        
-        return results.peek();
+        return this.getNearestNeighbor(queryPoint, Double.POSITIVE_INFINITY, searchCriteria);
     }
 
     /*
@@ -1418,12 +3156,55 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
      */
     @Override
     public E getNearestNeighbor(GeospatialPoint queryPoint, double maxDistance, SearchCriteria<E> searchCriteria) {
-        SearchResults<E> results = new SearchResults<E>(queryPoint, 1, maxDistance, searchCriteria);
-        this.root.getNearestNeighbors(queryPoint, results);
+        QueryContext context = QueryContext.acquire();
+        
+        try {
+            NeighborHeap<E> heap = this.searchNearestNeighbors(queryPoint, 1, maxDistance, searchCriteria, context);
+            return heap.pollNearest();
+        } finally {
+            context.release();
+        }
+    }
+    
+    /**
+     * Searches this tree for the points nearest to the given query point,
+     * using the given query context's working storage.
+     * 
+     * @param queryPoint the point for which to find nearby neighbors
+     * @param maxResults the maximum number of neighbors to find
+     * @param maxDistance the maximum distance, in meters, to any neighbor
+     * @param searchCriteria the criteria neighbors must meet, or {@code null}
+     * @param context the query context to use for the search
+     * 
+     * @return the context's neighbor heap, populated with the search results
+     */
+    private NeighborHeap<E> searchNearestNeighbors(GeospatialPoint queryPoint, int maxResults, double maxDistance,
+            SearchCriteria<E> searchCriteria, QueryContext context) {
+        
+        CachedGeospatialPoint cachedQueryPoint = CachedGeospatialPoint.valueOf(queryPoint);
         
-        return results.peek();
+        NeighborHeap<E> heap = context.getHeap();
+        heap.reset(cachedQueryPoint, maxResults, maxDistance, searchCriteria);
+        
+        this.root.getNearestNeighborsBestFirst(context.getLeafScanner(new UnitVector(cachedQueryPoint), this.binSize),
+                heap, context.getNodeQueue());
+        
+        return heap;
     }
 
+    /**
+     * Returns an iterator over all of the points in this tree in order of
+     * increasing distance from the given query point. The tree is searched
+     * lazily as the iterator advances. The behavior of the returned iterator
+     * is not defined if the tree is modified after the iterator is returned.
+     * 
+     * @see com.eatthepath.jeospatial.GeospatialPointDatabase#getNeighborsByDistance(com.eatthepath.jeospatial.GeospatialPoint)
+     */
+    @Override
+    public Iterator<E> getNeighborsByDistance(GeospatialPoint queryPoint) {
+        return new NeighborIterator(queryPoint);
+    }
+    
     /*
      * (non-Javadoc)
      * @see com.eatthepath.jeospatial.GeospatialPointDatabase#getAllPointsInBoundingBox(double, double, double, double)
@@ -1460,29 +3241,17 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
     @Override
     public List<E> getAllPointsInBoundingBox(double west, double east, double north, double south,
             SearchCriteria<E> otherCriteria, GeospatialPoint orderingPoint) {
-        // First, figure out the minimum search radius guaranteed to cover all
-        // of the points in the bounding box. Things are easier if the bounding
-        // box covers less than a hemisphere (the most common case), so start
-        // by calculating the search radius assuming a within-hemisphere box.
-        SimpleGeospatialPoint centroid = new SimpleGeospatialPoint(
-                (north + south) / 2.0,
-                west + (this.getDegreesEast(west, east) / 2.0));
         
-        // The minimum search radius will be the longer of the distance from the
-        // centroid of the region to the corner closest to the equator or -- if
-        // the region crosses the equator -- the distance from the centroid to
-        // the intersection of the equator and the east or west bounds of the
-        // region. 
-        double searchRadius = Math.max(centroid.getDistanceTo(south, west), centroid.getDistanceTo(north, west));
+        final ArrayList<E> pointsInBox = new ArrayList<E>();
         
-        if(north > 0 && south < 0) {
-            searchRadius = Math.max(searchRadius, centroid.getDistanceTo(0, west));
-        }
-        
-        BoundingBoxSearchCriteria<E> criteria =
-                new BoundingBoxSearchCriteria<E>(west, east, north, south, otherCriteria);
-        
-        List<E> pointsInBox = this.getAllNeighborsWithinDistance(centroid, searchRadius, criteria);
+        this.root.forEachInBoundingBox(new BoundingBoxSearchCriteria<E>(west, east, north, south), false,
+                otherCriteria, null, new PointVisitor<E>() {
+                    @Override
+                    public boolean visit(E point, double distance) {
+                        pointsInBox.add(point);
+                        return true;
+                    }
+                });
         
         if(orderingPoint != null) {
             java.util.Collections.sort(pointsInBox, new GeospatialDistanceComparator<E>(orderingPoint));
@@ -1491,19 +3260,61 @@ public class VPTree<E extends GeospatialPoint> implements GeospatialPointDatabas
         return pointsInBox;
     }
     
+    /*
+     * (non-Javadoc)
+     * @see com.eatthepath.jeospatial.GeospatialPointDatabase#countInBoundingBox(double, double, double, double)
+     */
+    @Override
+    public int countInBoundingBox(double west, double east, double north, double south) {
+        return this.root.countInBoundingBox(new BoundingBoxSearchCriteria<E>(west, east, north, south));
+    }
+    
+    /*
+     * (non-Javadoc)
+     * @see com.eatthepath.jeospatial.GeospatialPointDatabase#forEachInBoundingBox(double, double, double, double, com.eatthepath.jeospatial.PointVisitor)
+     */
+    @Override
+    public boolean forEachInBoundingBox(double west, double east, double north, double south, PointVisitor<E> visitor) {
+        BoundingBoxSearchCriteria<E> box = new BoundingBoxSearchCriteria<E>(west, east, north, south);
+        CachedGeospatialPoint centroid = VPTree.getBoundingBoxCentroid(west, east, north, south);
+        
+        return this.root.forEachInBoundingBox(box, false, null, centroid, visitor);
+    }
+    
+    /**
+     * Returns the point from which to search for points in the given bounding
+     * box. Things are easier if the bounding box covers less than a hemisphere
+     * (the most common case), so the centroid is calculated assuming a
+     * within-hemisphere box.
+     * 
+     * @param west the western limit of the bounding box in degrees
+     * @param east the eastern limit of the bounding box in degrees
+     * @param north the northern limit of the bounding box in degrees
+     * @param south the southern limit of the bounding box in degrees
+     * 
+     * @return the centroid of the given bounding box
+     */
+    static CachedGeospatialPoint getBoundingBoxCentroid(double west, double east, double north, double south) {
+        return new CachedGeospatialPoint((north + south) / 2.0, west + (VPTree.getDegreesEast(west, east) / 2.0));
+    }
+    
     /**
-     * Returns the angle, in degrees, between two lines of longitude.
+     * Returns the angle, in degrees, spanned by travelling east from one line
+     * of longitude to another. Identical lines of longitude are considered to
+     * span the whole globe, just as they do for a
+     * {@link BoundingBoxSearchCriteria}.
      * 
      * @param west
-     *            the westmost line of longitude normalized to -180 (inclusive)
-     *            to +180 (exclusive)
+     *            the westmost line of longitude in degrees
      * @param east
-     *            the eastmost line of longitude normalized to -180 (inclusive)
-     *            to +180 (exclusive)
+     *            the eastmost line of longitude in degrees
      * 
      * @return the angle, in degrees, between the two lines of longitude
      */
-    private double getDegreesEast(double west, double east) {
-        return east >= west ? east - west : Math.abs(360 - (east - west));
+    private static double getDegreesEast(double west, double east) {
+        west = BoundingBoxSearchCriteria.normalizeLongitude(west);
+        east = BoundingBoxSearchCriteria.normalizeLongitude(east);
+        
+        return east > west ? east - west : 360 + east - west;
     }
 }
@@ -0,0 +1,308 @@
+package com.eatthepath.jeospatial.vptree;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import com.eatthepath.jeospatial.GeospatialPoint;
+
+/**
+ * <p>A {@code VPTreeBuilder} collects points from any source and builds a
+ * {@link VPTree} (or {@link LockingVPTree}) from them in bulk. Unlike the
+ * {@link VPTree#VPTree(java.util.Collection)} family of constructors, a
+ * builder doesn't require callers to gather points into a
+ * {@link java.util.Collection} first; points may be added one at a time or
+ * drawn from an {@link Iterator}, {@link Spliterator} or {@link Stream}.</p>
+ * 
+ * <p>Points are accumulated in a single growable array that is handed directly
+ * to the tree's construction process, so no intermediate copies of the point
+ * set are made. Callers that know (or can estimate) how many points they'll be
+ * adding should provide a size hint to avoid growing the array.</p>
+ * 
+ * <p>Points may be of any mix of {@link GeospatialPoint} implementations. A
+ * builder is emptied when it builds a tree, at which point it may be reused.
+ * Builders are not thread-safe.</p>
+ * 
+ * @author <a href="mailto:jon.chambers@gmail.com">Jon Chambers</a>
+ */
+public class VPTreeBuilder<E extends GeospatialPoint> {
+    private static final int DEFAULT_INITIAL_CAPACITY = 16;
+    
+    private GeospatialPoint[] points;
+    private int size;
+    
+    private int nodeCapacity = VPTree.DEFAULT_BIN_SIZE;
+    private VantagePointSelector vantagePointSelector = new FirstPointSelector();
+    private CoordinateEncoding encoding = CoordinateEncoding.DOUBLE;
+    
+    private ForkJoinPool forkJoinPool = null;
+    private int sequentialThreshold = VPTree.DEFAULT_SEQUENTIAL_THRESHOLD;
+    
+    private double imbalanceFactor = VPTree.DEFAULT_IMBALANCE_FACTOR;
+    
+    /**
+     * Constructs a new, empty builder.
+     */
+    public VPTreeBuilder() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+    
+    /**
+     * Constructs a new, empty builder with room for the given number of points.
+     * 
+     * @param expectedSize
+     *            the number of points the caller expects to add to this
+     *            builder
+     */
+    public VPTreeBuilder(int expectedSize) {
+        if(expectedSize < 0) {
+            throw new IllegalArgumentException("Expected size must not be negative.");
+        }
+        
+        this.points = new GeospatialPoint[expectedSize];
+        this.size = 0;
+    }
+    
+    /**
+     * Sets the maximum number of points to store in a leaf node of trees built
+     * by this builder.
+     * 
+     * @param nodeCapacity
+     *            the largest number of points any leaf node should contain
+     * 
+     * @return a reference to this builder
+     */
+    public VPTreeBuilder<E> setNodeCapacity(int nodeCapacity) {
+        if(nodeCapacity < 1) {
+            throw new IllegalArgumentException("Node capacity must be greater than zero.");
+        }
+        
+        this.nodeCapacity = nodeCapacity;
+        return this;
+    }
+    
+    /**
+     * Sets the strategy with which trees built by this builder choose the
+     * centers of new nodes.
+     * 
+     * @param vantagePointSelector
+     *            the strategy with which to choose node centers
+     * 
+     * @return a reference to this builder
+     */
+    public VPTreeBuilder<E> setVantagePointSelector(VantagePointSelector vantagePointSelector) {
+        if(vantagePointSelector == null) {
+            throw new IllegalArgumentException("Vantage point selector must not be null.");
+        }
+        
+        this.vantagePointSelector = vantagePointSelector;
+        return this;
+    }
+    
+    /**
+     * Sets the encoding with which the leaf nodes of trees built by this
+     * builder store the unit vectors they use to rule points out during
+     * searches. Compact encodings reduce the memory occupied by leaf nodes
+     * from 24 bytes per point to 12 and never change search results; see
+     * {@link CoordinateEncoding}.
+     * 
+     * @param encoding
+     *            the encoding with which to store unit vectors
+     * 
+     * @return a reference to this builder
+     */
+    public VPTreeBuilder<E> setCoordinateEncoding(CoordinateEncoding encoding) {
+        if(encoding == null) {
+            throw new IllegalArgumentException("Coordinate encoding must not be null.");
+        }
+        
+        this.encoding = encoding;
+        return this;
+    }
+    
+    /**
+     * Sets the pool in which trees should be built in parallel.
+     * 
+     * @param forkJoinPool
+     *            the pool in which to build trees; may be {@code null}, in
+     *            which case trees are built on the calling thread
+     * @param sequentialThreshold
+     *            the number of points at or below which branches of the tree
+     *            are built on a single thread
+     * 
+     * @return a reference to this builder
+     */
+    public VPTreeBuilder<E> setForkJoinPool(ForkJoinPool forkJoinPool, int sequentialThreshold) {
+        if(sequentialThreshold < 1) {
+            throw new IllegalArgumentException("Sequential threshold must be greater than zero.");
+        }
+        
+        this.forkJoinPool = forkJoinPool;
+        this.sequentialThreshold = sequentialThreshold;
+        return this;
+    }
+    
+    /**
+     * Sets the imbalance factor for trees built by this builder.
+     * 
+     * @param imbalanceFactor
+     *            the largest share of a node's points that either of its
+     *            children may hold before the node is rebuilt; must be greater
+     *            than 0.5 and no greater than 1
+     * 
+     * @return a reference to this builder
+     * 
+     * @see VPTree#setImbalanceFactor(double)
+     */
+    public VPTreeBuilder<E> setImbalanceFactor(double imbalanceFactor) {
+        if(!(imbalanceFactor > 0.5 && imbalanceFactor <= 1)) {
+            throw new IllegalArgumentException("Imbalance factor must be greater than 0.5 and no greater than 1.");
+        }
+        
+        this.imbalanceFactor = imbalanceFactor;
+        return this;
+    }
+    
+    /**
+     * Adds a single point to this builder.
+     * 
+     * @param point
+     *            the point to add
+     * 
+     * @return a reference to this builder
+     */
+    public VPTreeBuilder<E> add(E point) {
+        if(point == null) {
+            throw new NullPointerException("Points must not be null.");
+        }
+        
+        this.ensureCapacity(this.size + 1);
+        this.points[this.size++] = point;
+        
+        return this;
+    }
+    
+    /**
+     * Adds all of the points from the given iterator to this builder.
+     * 
+     * @param iterator
+     *            the iterator from which to draw points
+     * 
+     * @return a reference to this builder
+     */
+    public VPTreeBuilder<E> addAll(Iterator<? extends E> iterator) {
+        while(iterator.hasNext()) {
+            this.add(iterator.next());
+        }
+        
+        return this;
+    }
+    
+    /**
+     * Adds all of the points from the given spliterator to this builder. If the
+     * spliterator knows exactly how many points it holds, this builder makes
+     * room for all of them at once.
+     * 
+     * @param spliterator
+     *            the spliterator from which to draw points
+     * 
+     * @return a reference to this builder
+     */
+    public VPTreeBuilder<E> addAll(Spliterator<? extends E> spliterator) {
+        long exactSize = spliterator.getExactSizeIfKnown();
+        
+        if(exactSize > 0 && this.size + exactSize <= Integer.MAX_VALUE) {
+            this.ensureCapacity(this.size + (int)exactSize);
+        }
+        
+        spliterator.forEachRemaining(new Consumer<E>() {
+            @Override
+            public void accept(E point) {
+                VPTreeBuilder.this.add(point);
+            }
+        });
+        
+        return this;
+    }
+    
+    /**
+     * Adds all of the points from the given stream to this builder. This is a
+     * terminal operation for the stream.
+     * 
+     * @param stream
+     *            the stream from which to draw points
+     * 
+     * @return a reference to this builder
+     */
+    public VPTreeBuilder<E> addAll(Stream<? extends E> stream) {
+        return this.addAll(stream.spliterator());
+    }
+    
+    /**
+     * Returns the number of points added to this builder since it was created
+     * or last built a tree.
+     * 
+     * @return the number of points in this builder
+     */
+    public int size() {
+        return this.size;
+    }
+    
+    /**
+     * Builds a new {@link VPTree} that contains all of the points added to this
+     * builder. This builder is emptied in the process.
+     * 
+     * @return a new vp-tree containing all of the points added to this builder
+     */
+    public VPTree<E> build() {
+        try {
+            VPTree<E> tree = new VPTree<E>(this.points, this.size, this.nodeCapacity, this.vantagePointSelector,
+                    this.encoding, this.forkJoinPool, this.sequentialThreshold);
+            
+            tree.setImbalanceFactor(this.imbalanceFactor);
+            return tree;
+        } finally {
+            this.reset();
+        }
+    }
+    
+    /**
+     * Builds a new {@link LockingVPTree} that contains all of the points added
+     * to this builder. This builder is emptied in the process.
+     * 
+     * @param fair
+     *            {@code true} if the tree's lock should use a fair ordering
+     *            policy or {@code false} otherwise
+     * 
+     * @return a new locking vp-tree containing all of the points added to this
+     *         builder
+     */
+    public LockingVPTree<E> buildLockingTree(boolean fair) {
+        try {
+            LockingVPTree<E> tree = new LockingVPTree<E>(this.points, this.size, this.nodeCapacity,
+                    this.vantagePointSelector, this.encoding, this.forkJoinPool, this.sequentialThreshold, fair);
+            
+            tree.setImbalanceFactor(this.imbalanceFactor);
+            return tree;
+        } finally {
+            this.reset();
+        }
+    }
+    
+    private void ensureCapacity(int minCapacity) {
+        if(minCapacity > this.points.length) {
+            int newCapacity = Math.max(minCapacity, this.points.length + (this.points.length >> 1));
+            this.points = Arrays.copyOf(this.points, Math.max(newCapacity, DEFAULT_INITIAL_CAPACITY));
+        }
+    }
+    
+    private void reset() {
+        // Let go of the old array (and the points in it) entirely so the tree
+        // doesn't have to share the heap with a stale copy of its contents.
+        this.points = new GeospatialPoint[DEFAULT_INITIAL_CAPACITY];
+        this.size = 0;
+    }
+}
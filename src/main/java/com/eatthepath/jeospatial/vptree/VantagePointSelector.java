@@ -0,0 +1,39 @@
+package com.eatthepath.jeospatial.vptree;
+
+import com.eatthepath.jeospatial.GeospatialPoint;
+
+/**
+ * <p>A {@code VantagePointSelector} chooses the center (or "vantage point") of
+ * a vp-tree node from among the points that will be stored in that node and
+ * its children. The choice of vantage points has a large effect on the shape
+ * of a vp-tree; vantage points near the edges of a set of points tend to divide
+ * the set more evenly than vantage points near its middle, which leads to
+ * shallower trees and fewer node visits at query time.</p>
+ * 
+ * <p>Selectors may be called concurrently when a tree is built in parallel and
+ * must therefore be thread-safe. Selectors should also be deterministic (i.e.
+ * always choose the same point from the same range of the same array) so that
+ * trees built in parallel are identical to trees built sequentially.</p>
+ * 
+ * @author <a href="mailto:jon.chambers@gmail.com">Jon Chambers</a>
+ * 
+ * @see VPTree#VPTree(java.util.Collection, int, VantagePointSelector)
+ */
+public interface VantagePointSelector {
+    /**
+     * Chooses a vantage point from a range of the given array. Implementations
+     * must not modify the array.
+     * 
+     * @param points
+     *            the array from which to choose a vantage point
+     * @param fromIndex
+     *            the start index of the range of candidate points (inclusive)
+     * @param toIndex
+     *            the end index of the range of candidate points (exclusive);
+     *            the range is guaranteed to contain at least one point
+     * 
+     * @return the index of the chosen vantage point, which must be between
+     *         {@code fromIndex} (inclusive) and {@code toIndex} (exclusive)
+     */
+    public int selectVantagePoint(GeospatialPoint[] points, int fromIndex, int toIndex);
+}
@@ -0,0 +1,171 @@
+package com.eatthepath.jeospatial.vptree;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * <p>Measures squared chord distances from a query vector to a range of vectors
+ * stored as parallel component arrays, as many vectors at a time as the
+ * platform's preferred vector shape holds {@code double} lanes (for example,
+ * four with AVX2 or eight with AVX-512), or {@code float} lanes for vectors
+ * with {@code float} components. Vectors left over at the end of the range
+ * are measured by the {@linkplain ScalarChordDistanceKernel scalar
+ * kernel}.</p>
+ *
+ * <p>Each lane performs exactly the same operations in exactly the same order
+ * as the scalar kernel (with no fused multiply-adds), so the two kernels
+ * produce bit-for-bit identical results and searches prune identically with
+ * either one.</p>
+ *
+ * <p>This class refers to the incubating {@code jdk.incubator.vector} module
+ * and must only be used if that module is present; see
+ * {@link ChordDistanceKernel}.</p>
+ *
+ * @author <a href="mailto:jon.chambers@gmail.com">Jon Chambers</a>
+ */
+final class VectorChordDistanceKernel {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> FLOAT_SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    // Fixed-point components are widened to doubles lane for lane, so they're loaded from a shape half as wide
+    private static final VectorSpecies<Integer> FIXED_POINT_SPECIES =
+            VectorSpecies.of(int.class, VectorShape.forBitSize(SPECIES.vectorBitSize() / 2));
+
+    private VectorChordDistanceKernel() {
+    }
+
+    /**
+     * Returns the number of vectors this kernel measures at once.
+     *
+     * @return the number of {@code double} lanes in the preferred vector shape
+     */
+    public static int getLaneCount() {
+        return SPECIES.length();
+    }
+
+    /**
+     * Calculates the squared chord distance from the given query vector to
+     * each vector in the given range.
+     *
+     * @param qx the x component of the query vector
+     * @param qy the y component of the query vector
+     * @param qz the z component of the query vector
+     * @param x the x components of the vectors to which to measure
+     * @param y the y components of the vectors to which to measure
+     * @param z the z components of the vectors to which to measure
+     * @param fromIndex the index of the first vector (inclusive) to measure
+     * @param toIndex the index of the last vector (exclusive) to measure
+     * @param distances the array in which to store the squared chord distance
+     *            to the vector at each index
+     */
+    public static void getSquaredChordDistances(final double qx, final double qy, final double qz,
+            final double[] x, final double[] y, final double[] z, final int fromIndex, final int toIndex,
+            final double[] distances) {
+
+        final DoubleVector vqx = DoubleVector.broadcast(SPECIES, qx);
+        final DoubleVector vqy = DoubleVector.broadcast(SPECIES, qy);
+        final DoubleVector vqz = DoubleVector.broadcast(SPECIES, qz);
+
+        final int upperBound = fromIndex + SPECIES.loopBound(toIndex - fromIndex);
+        int i = fromIndex;
+
+        for(; i < upperBound; i += SPECIES.length()) {
+            final DoubleVector dx = DoubleVector.fromArray(SPECIES, x, i).sub(vqx);
+            final DoubleVector dy = DoubleVector.fromArray(SPECIES, y, i).sub(vqy);
+            final DoubleVector dz = DoubleVector.fromArray(SPECIES, z, i).sub(vqz);
+
+            dx.mul(dx).add(dy.mul(dy)).add(dz.mul(dz)).intoArray(distances, i);
+        }
+
+        ScalarChordDistanceKernel.getSquaredChordDistances(qx, qy, qz, x, y, z, i, toIndex, distances);
+    }
+
+    /**
+     * Calculates the squared chord distance from the given query vector to
+     * each vector in the given range of vectors with {@code float} components.
+     * Distances are calculated in {@code float} arithmetic.
+     *
+     * @param qx the x component of the query vector
+     * @param qy the y component of the query vector
+     * @param qz the z component of the query vector
+     * @param x the x components of the vectors to which to measure
+     * @param y the y components of the vectors to which to measure
+     * @param z the z components of the vectors to which to measure
+     * @param fromIndex the index of the first vector (inclusive) to measure
+     * @param toIndex the index of the last vector (exclusive) to measure
+     * @param distances the array in which to store the squared chord distance
+     *            to the vector at each index
+     */
+    public static void getSquaredChordDistances(final float qx, final float qy, final float qz,
+            final float[] x, final float[] y, final float[] z, final int fromIndex, final int toIndex,
+            final double[] distances) {
+
+        final FloatVector vqx = FloatVector.broadcast(FLOAT_SPECIES, qx);
+        final FloatVector vqy = FloatVector.broadcast(FLOAT_SPECIES, qy);
+        final FloatVector vqz = FloatVector.broadcast(FLOAT_SPECIES, qz);
+
+        final int halfLength = FLOAT_SPECIES.length() / 2;
+        final int upperBound = fromIndex + FLOAT_SPECIES.loopBound(toIndex - fromIndex);
+        int i = fromIndex;
+
+        for(; i < upperBound; i += FLOAT_SPECIES.length()) {
+            final FloatVector dx = FloatVector.fromArray(FLOAT_SPECIES, x, i).sub(vqx);
+            final FloatVector dy = FloatVector.fromArray(FLOAT_SPECIES, y, i).sub(vqy);
+            final FloatVector dz = FloatVector.fromArray(FLOAT_SPECIES, z, i).sub(vqz);
+
+            final FloatVector squaredDistances = dx.mul(dx).add(dy.mul(dy)).add(dz.mul(dz));
+
+            ((DoubleVector)squaredDistances.convert(VectorOperators.F2D, 0)).intoArray(distances, i);
+            ((DoubleVector)squaredDistances.convert(VectorOperators.F2D, 1)).intoArray(distances, i + halfLength);
+        }
+
+        ScalarChordDistanceKernel.getSquaredChordDistances(qx, qy, qz, x, y, z, i, toIndex, distances);
+    }
+
+    /**
+     * Calculates the squared chord distance from the given query vector to
+     * each vector in the given range of vectors with fixed-point components
+     * (see {@link CoordinateEncoding#E7}).
+     *
+     * @param qx the x component of the query vector
+     * @param qy the y component of the query vector
+     * @param qz the z component of the query vector
+     * @param x the fixed-point x components of the vectors to which to measure
+     * @param y the fixed-point y components of the vectors to which to measure
+     * @param z the fixed-point z components of the vectors to which to measure
+     * @param fromIndex the index of the first vector (inclusive) to measure
+     * @param toIndex the index of the last vector (exclusive) to measure
+     * @param distances the array in which to store the squared chord distance
+     *            to the vector at each index
+     */
+    public static void getSquaredChordDistances(final double qx, final double qy, final double qz,
+            final int[] x, final int[] y, final int[] z, final int fromIndex, final int toIndex,
+            final double[] distances) {
+
+        final DoubleVector vqx = DoubleVector.broadcast(SPECIES, qx);
+        final DoubleVector vqy = DoubleVector.broadcast(SPECIES, qy);
+        final DoubleVector vqz = DoubleVector.broadcast(SPECIES, qz);
+
+        final int upperBound = fromIndex + SPECIES.loopBound(toIndex - fromIndex);
+        int i = fromIndex;
+
+        for(; i < upperBound; i += SPECIES.length()) {
+            final DoubleVector dx = toDoubleVector(x, i).sub(vqx);
+            final DoubleVector dy = toDoubleVector(y, i).sub(vqy);
+            final DoubleVector dz = toDoubleVector(z, i).sub(vqz);
+
+            dx.mul(dx).add(dy.mul(dy)).add(dz.mul(dz)).intoArray(distances, i);
+        }
+
+        ScalarChordDistanceKernel.getSquaredChordDistances(qx, qy, qz, x, y, z, i, toIndex, distances);
+    }
+
+    private static DoubleVector toDoubleVector(final int[] components, final int index) {
+        return ((DoubleVector)IntVector.fromArray(FIXED_POINT_SPECIES, components, index)
+                .convertShape(VectorOperators.I2D, SPECIES, 0)).mul(CoordinateEncoding.FIXED_POINT_UNIT);
+    }
+}
@@ -186,6 +186,31 @@ public abstract class GeospatialPointDatabaseTest {
         assertEquals(expectedResults, nearestNeighbors);
     }
     
+    @Test
+    public void testGetNeighborsByDistance() {
+        GeospatialPointDatabase<SimpleGeospatialPoint> database = this.createEmptyDatabase();
+        SimpleGeospatialPoint somerville = new SimpleGeospatialPoint(42.387597, -71.099497);
+        
+        assertFalse(database.getNeighborsByDistance(somerville).hasNext());
+        
+        database.addAll(GeospatialPointDatabaseTest.cities.values());
+        
+        ArrayList<SimpleGeospatialPoint> expectedResults =
+                new ArrayList<SimpleGeospatialPoint>(GeospatialPointDatabaseTest.cities.values());
+        
+        java.util.Collections.sort(expectedResults,
+                new GeospatialDistanceComparator<SimpleGeospatialPoint>(somerville));
+        
+        Iterator<SimpleGeospatialPoint> i = database.getNeighborsByDistance(somerville);
+        ArrayList<SimpleGeospatialPoint> iteratedPoints = new ArrayList<SimpleGeospatialPoint>();
+        
+        while(i.hasNext()) {
+            iteratedPoints.add(i.next());
+        }
+        
+        assertEquals(expectedResults, iteratedPoints);
+    }
+    
     @Test
     public void testGetAllNeighborsWithinDistanceGeospatialPointDouble() {
         GeospatialPointDatabase<SimpleGeospatialPoint> database = this.createEmptyDatabase();
@@ -237,6 +262,92 @@ public abstract class GeospatialPointDatabaseTest {
         assertEquals(expectedResults, nearestNeighbors);
     }
     
+    @Test
+    public void testCountWithinDistance() {
+        GeospatialPointDatabase<SimpleGeospatialPoint> database = this.createEmptyDatabase();
+        database.addAll(GeospatialPointDatabaseTest.cities.values());
+        
+        SimpleGeospatialPoint somerville = new SimpleGeospatialPoint(42.387597, -71.099497);
+        
+        assertEquals(3, database.countWithinDistance(somerville, 1000 * 1000));
+        assertEquals(0, database.countWithinDistance(somerville, 1000));
+        assertEquals(GeospatialPointDatabaseTest.cities.size(), database.countWithinDistance(somerville, 20000 * 1000));
+    }
+    
+    @Test
+    public void testCountInBoundingBox() {
+        GeospatialPointDatabase<SimpleGeospatialPoint> database = this.createEmptyDatabase();
+        database.addAll(GeospatialPointDatabaseTest.cities.values());
+        
+        assertEquals(4, database.countInBoundingBox(-90, -70, 43, 40));
+        assertEquals(0, database.countInBoundingBox(0, 10, 10, 0));
+        assertEquals(GeospatialPointDatabaseTest.cities.size(), database.countInBoundingBox(-130, -60, 50, 30));
+    }
+    
+    @Test
+    public void testForEachWithinDistance() {
+        GeospatialPointDatabase<SimpleGeospatialPoint> database = this.createEmptyDatabase();
+        database.addAll(GeospatialPointDatabaseTest.cities.values());
+        
+        final SimpleGeospatialPoint somerville = new SimpleGeospatialPoint(42.387597, -71.099497);
+        final ArrayList<SimpleGeospatialPoint> visitedPoints = new ArrayList<SimpleGeospatialPoint>();
+        
+        PointVisitor<SimpleGeospatialPoint> visitor = new PointVisitor<SimpleGeospatialPoint>() {
+            @Override
+            public boolean visit(SimpleGeospatialPoint point, double distance) {
+                assertEquals(somerville.getDistanceTo(point), distance, 0);
+                visitedPoints.add(point);
+                
+                return true;
+            }
+        };
+        
+        assertTrue(database.forEachWithinDistance(somerville, 1000 * 1000, visitor));
+        
+        List<SimpleGeospatialPoint> expectedResults = database.getAllNeighborsWithinDistance(somerville, 1000 * 1000);
+        
+        assertEquals(expectedResults.size(), visitedPoints.size());
+        assertTrue(visitedPoints.containsAll(expectedResults));
+        
+        // Visitors should be able to stop searches early
+        visitedPoints.clear();
+        
+        assertFalse(database.forEachWithinDistance(somerville, 10000 * 1000, new PointVisitor<SimpleGeospatialPoint>() {
+            @Override
+            public boolean visit(SimpleGeospatialPoint point, double distance) {
+                visitedPoints.add(point);
+                return visitedPoints.size() < 2;
+            }
+        }));
+        
+        assertEquals(2, visitedPoints.size());
+    }
+    
+    @Test
+    public void testForEachInBoundingBox() {
+        GeospatialPointDatabase<SimpleGeospatialPoint> database = this.createEmptyDatabase();
+        database.addAll(GeospatialPointDatabaseTest.cities.values());
+        
+        final ArrayList<SimpleGeospatialPoint> visitedPoints = new ArrayList<SimpleGeospatialPoint>();
+        
+        assertTrue(database.forEachInBoundingBox(-90, -70, 43, 40, new PointVisitor<SimpleGeospatialPoint>() {
+            @Override
+            public boolean visit(SimpleGeospatialPoint point, double distance) {
+                visitedPoints.add(point);
+                return true;
+            }
+        }));
+        
+        ArrayList<SimpleGeospatialPoint> expectedResults = new ArrayList<SimpleGeospatialPoint>();
+        expectedResults.add(GeospatialPointDatabaseTest.cities.get("Boston"));
+        expectedResults.add(GeospatialPointDatabaseTest.cities.get("New York"));
+        expectedResults.add(GeospatialPointDatabaseTest.cities.get("Chicago"));
+        expectedResults.add(GeospatialPointDatabaseTest.cities.get("Detroit"));
+        
+        assertEquals(expectedResults.size(), visitedPoints.size());
+        assertTrue(visitedPoints.containsAll(expectedResults));
+    }
+    
     @Test
     public void testGetAllPointsInBoundingBox() {
         GeospatialPointDatabase<SimpleGeospatialPoint> database = this.createEmptyDatabase();
@@ -254,6 +365,29 @@ public abstract class GeospatialPointDatabaseTest {
         assertTrue(pointsInBox.containsAll(expectedResults));
     }
     
+    @Test
+    public void testGetAllPointsInBoundingBoxAcrossAntimeridian() {
+        GeospatialPointDatabase<SimpleGeospatialPoint> database = this.createEmptyDatabase();
+        database.addAll(GeospatialPointDatabaseTest.cities.values());
+        
+        SimpleGeospatialPoint suva = new SimpleGeospatialPoint(-18.141600, 178.441900);
+        SimpleGeospatialPoint apia = new SimpleGeospatialPoint(-13.833333, -171.766667);
+        SimpleGeospatialPoint honolulu = new SimpleGeospatialPoint(21.306944, -157.858333);
+        
+        database.add(suva);
+        database.add(apia);
+        database.add(honolulu);
+        
+        List<SimpleGeospatialPoint> pointsInBox = database.getAllPointsInBoundingBox(170, -170, 0, -30);
+        
+        assertEquals(2, pointsInBox.size());
+        assertTrue(pointsInBox.contains(suva));
+        assertTrue(pointsInBox.contains(apia));
+        
+        assertEquals(2, database.countInBoundingBox(170, -170, 0, -30));
+        assertEquals(0, database.countInBoundingBox(170, -170, 60, 30));
+    }
+    
     @Test
     public void testGetAllPointsInBoundingBoxOrderingPoint() {
         GeospatialPointDatabase<SimpleGeospatialPoint> database = this.createEmptyDatabase();
@@ -0,0 +1,85 @@
+package com.eatthepath.jeospatial;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import com.eatthepath.jeospatial.util.SimpleGeospatialPoint;
+import com.eatthepath.jeospatial.vptree.MemoryStats;
+import com.eatthepath.jeospatial.vptree.VPTree;
+
+/**
+ * A crude benchmark that measures how quickly points can be added to a vp-tree
+ * one at a time and how much memory is allocated per insertion. Points are
+ * pre-generated so the measurements only cover the tree itself. Allocation
+ * measurements depend on the JVM's {@code com.sun.management} extensions and
+ * are skipped if they're not available.
+ *
+ * @author <a href="mailto:jon.chambers@gmail.com">Jon Chambers</a>
+ */
+public class InsertBenchmarkApp {
+    private static final int POINT_COUNT = 500000;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        // Simulate a stream of GPS fixes from around the Boston area.
+        SimpleGeospatialPoint[] points = new SimpleGeospatialPoint[POINT_COUNT];
+        Random r = new Random(17);
+
+        for(int i = 0; i < points.length; i++) {
+            points[i] = new SimpleGeospatialPoint(42d + r.nextDouble(), -72d + r.nextDouble() * 1.5);
+        }
+
+        for(int round = 1; round <= ROUNDS; round++) {
+            VPTree<SimpleGeospatialPoint> tree = new VPTree<SimpleGeospatialPoint>();
+
+            long allocatedBefore = getAllocatedBytes();
+            long start = System.nanoTime();
+
+            for(SimpleGeospatialPoint point : points) {
+                tree.add(point);
+            }
+
+            long end = System.nanoTime();
+            long allocatedAfter = getAllocatedBytes();
+
+            double seconds = (end - start) / 1e9;
+
+            System.out.format("Round %d: inserted %d points in %.1f milliseconds (%.0f inserts/second)",
+                    round, points.length, seconds * 1000, points.length / seconds);
+
+            if(allocatedBefore >= 0 && allocatedAfter >= 0) {
+                System.out.format("; allocated %.1f bytes per insert", (allocatedAfter - allocatedBefore) / (double)points.length);
+            }
+
+            System.out.println();
+
+            MemoryStats stats = tree.getMemoryStats();
+
+            start = System.nanoTime();
+            tree.compact();
+            end = System.nanoTime();
+
+            System.out.format("\tCompacted tree in %.1f milliseconds; %d of %d point slots used, %d -> %d bytes.%n",
+                    (end - start) / 1e6, stats.getPointCount(), stats.getPointCapacity(), stats.getEstimatedBytes(),
+                    tree.getMemoryStats().getEstimatedBytes());
+        }
+    }
+
+    /**
+     * Returns the number of bytes allocated by the current thread so far, or
+     * -1 if the JVM can't say.
+     */
+    private static long getAllocatedBytes() {
+        java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+        if(threadBean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunThreadBean = (com.sun.management.ThreadMXBean)threadBean;
+
+            if(sunThreadBean.isThreadAllocatedMemorySupported() && sunThreadBean.isThreadAllocatedMemoryEnabled()) {
+                return sunThreadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+
+        return -1;
+    }
+}
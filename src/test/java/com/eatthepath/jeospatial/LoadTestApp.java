@@ -9,8 +9,12 @@ import java.util.ArrayList;
 import com.eatthepath.jeospatial.example.ZipCode;
 import com.eatthepath.jeospatial.util.GeospatialDistanceComparator;
 import com.eatthepath.jeospatial.util.SimpleGeospatialPoint;
+import com.eatthepath.jeospatial.vptree.FarthestPointSelector;
+import com.eatthepath.jeospatial.vptree.FirstPointSelector;
 import com.eatthepath.jeospatial.vptree.LockingVPTree;
+import com.eatthepath.jeospatial.vptree.SamplingSelector;
 import com.eatthepath.jeospatial.vptree.VPTree;
+import com.eatthepath.jeospatial.vptree.VantagePointSelector;
 
 /**
  * A crude test app that loads a bunch of zip codes, builds a vp-tree and
@@ -74,12 +78,45 @@ public class LoadTestApp {
         end = System.currentTimeMillis();
         
         System.out.format("Performed %d vp-tree searches in %d milliseconds.%n", testPoints.length, end - start);
+        
+        // Answering the same queries as a batch lets the tree reorder them by
+        // location and spread them across all of our cores.
+        start = System.currentTimeMillis();
+        zipCodeTree.getNearestNeighbors(testPoints, 10);
+        end = System.currentTimeMillis();
+        
+        System.out.format("Performed %d vp-tree searches as a batch in %d milliseconds.%n", testPoints.length, end - start);
+        
         System.out.println("Ten closest zip codes by vp-tree search approach:");
         
         for(ZipCode z : zipCodeTree.getNearestNeighbors(anasTacqueria, 10)) {
             System.out.format("\t%.1f meters - %s%n", anasTacqueria.getDistanceTo(z), z);
         }
         
+        // Different strategies for choosing node centers produce differently
+        // shaped trees; see how they compare.
+        VantagePointSelector[] selectors = new VantagePointSelector[] {
+                new FirstPointSelector(), new SamplingSelector(), new FarthestPointSelector() };
+        
+        for(VantagePointSelector selector : selectors) {
+            start = System.currentTimeMillis();
+            VPTree<ZipCode> selectorTree = new VPTree<ZipCode>(zipCodes, 20, selector);
+            end = System.currentTimeMillis();
+            
+            long buildTime = end - start;
+            
+            start = System.currentTimeMillis();
+            
+            for(SimpleGeospatialPoint p : testPoints) {
+                selectorTree.getNearestNeighbors(p, 10);
+            }
+            
+            end = System.currentTimeMillis();
+            
+            System.out.format("%s: built vp-tree in %d milliseconds and performed %d searches in %d milliseconds.%n",
+                    selector.getClass().getSimpleName(), buildTime, testPoints.length, end - start);
+        }
+        
         // Let's see how performance compares with a thread-safe locking tree.
         LockingVPTree<ZipCode> lockingZipCodeTree = new LockingVPTree<ZipCode>(zipCodes, 20);
         
@@ -43,4 +43,87 @@ public class BoundingBoxSearchCriteriaTest {
         assertFalse(criteria.matches(new SimpleGeospatialPoint(20, 0)));
         assertFalse(criteria.matches(new SimpleGeospatialPoint(0, 20)));
     }
+    
+    @Test
+    public void testContains() {
+        BoundingBoxSearchCriteria<SimpleGeospatialPoint> criteria =
+                new BoundingBoxSearchCriteria<SimpleGeospatialPoint>(-10, 10, 10, -10);
+        
+        assertTrue(criteria.contains(0, 0));
+        assertTrue(criteria.contains(0, 370));
+        assertFalse(criteria.contains(0, 20));
+        assertFalse(criteria.contains(20, 0));
+        
+        // Boxes may span the antimeridian
+        criteria = new BoundingBoxSearchCriteria<SimpleGeospatialPoint>(170, -170, 10, -10);
+        
+        assertTrue(criteria.contains(0, 175));
+        assertTrue(criteria.contains(0, -175));
+        assertTrue(criteria.contains(0, 180));
+        assertTrue(criteria.contains(0, -180));
+        assertFalse(criteria.contains(0, 0));
+        assertFalse(criteria.contains(0, 160));
+        assertFalse(criteria.contains(20, 175));
+        
+        // Boxes with the same eastern and western limits go all the way around
+        criteria = new BoundingBoxSearchCriteria<SimpleGeospatialPoint>(180, -180, 10, -10);
+        
+        assertTrue(criteria.contains(0, 0));
+        assertTrue(criteria.contains(0, 179));
+        assertFalse(criteria.contains(20, 0));
+    }
+    
+    @Test
+    public void testIntersectsRectangle() {
+        BoundingBoxSearchCriteria<SimpleGeospatialPoint> criteria =
+                new BoundingBoxSearchCriteria<SimpleGeospatialPoint>(-10, 10, 10, -10);
+        
+        assertTrue(criteria.intersectsRectangle(-20, -5, 20, 5));
+        assertTrue(criteria.intersectsRectangle(-5, 5, 5, -5));
+        assertTrue(criteria.intersectsRectangle(-20, 20, 20, -20));
+        assertTrue(criteria.intersectsRectangle(10, 20, -10, -20));
+        assertFalse(criteria.intersectsRectangle(11, 20, 5, -5));
+        assertFalse(criteria.intersectsRectangle(-5, 5, 20, 11));
+        
+        criteria = new BoundingBoxSearchCriteria<SimpleGeospatialPoint>(170, -170, 10, -10);
+        
+        assertTrue(criteria.intersectsRectangle(160, 175, 5, -5));
+        assertTrue(criteria.intersectsRectangle(-180, -175, 5, -5));
+        assertTrue(criteria.intersectsRectangle(-180, 179, 5, -5));
+        assertFalse(criteria.intersectsRectangle(-160, 160, 5, -5));
+        assertFalse(criteria.intersectsRectangle(175, 179, 20, 11));
+    }
+    
+    @Test
+    public void testContainsRectangle() {
+        BoundingBoxSearchCriteria<SimpleGeospatialPoint> criteria =
+                new BoundingBoxSearchCriteria<SimpleGeospatialPoint>(-10, 10, 10, -10);
+        
+        assertTrue(criteria.containsRectangle(-5, 5, 5, -5));
+        assertTrue(criteria.containsRectangle(-10, 10, 10, -10));
+        assertFalse(criteria.containsRectangle(-20, -5, 5, -5));
+        assertFalse(criteria.containsRectangle(-5, 5, 20, -5));
+        
+        criteria = new BoundingBoxSearchCriteria<SimpleGeospatialPoint>(170, -170, 10, -10);
+        
+        assertTrue(criteria.containsRectangle(175, 179, 5, -5));
+        assertTrue(criteria.containsRectangle(-180, -175, 5, -5));
+        assertFalse(criteria.containsRectangle(-180, 179, 5, -5));
+        assertFalse(criteria.containsRectangle(160, 175, 5, -5));
+        
+        criteria = new BoundingBoxSearchCriteria<SimpleGeospatialPoint>(0, 0, 10, -10);
+        
+        assertTrue(criteria.containsRectangle(-180, 179, 5, -5));
+        assertFalse(criteria.containsRectangle(-180, 179, 20, -5));
+    }
+    
+    @Test
+    public void testNormalizeLongitude() {
+        assertEquals(0, BoundingBoxSearchCriteria.normalizeLongitude(0), 0);
+        assertEquals(-180, BoundingBoxSearchCriteria.normalizeLongitude(180), 0);
+        assertEquals(-180, BoundingBoxSearchCriteria.normalizeLongitude(-180), 0);
+        assertEquals(-170, BoundingBoxSearchCriteria.normalizeLongitude(190), 1e-9);
+        assertEquals(170, BoundingBoxSearchCriteria.normalizeLongitude(-190), 1e-9);
+        assertEquals(10, BoundingBoxSearchCriteria.normalizeLongitude(730), 1e-9);
+    }
 }
@@ -0,0 +1,91 @@
+package com.eatthepath.jeospatial.util;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.eatthepath.jeospatial.GeospatialPointTest;
+
+/**
+ * Test suite for the CachedGeospatialPoint class.
+ * 
+ * @author <a href="mailto:jon.chambers@gmail.com">Jon Chambers</a>
+ */
+public class CachedGeospatialPointTest extends GeospatialPointTest {
+    @Override
+    public CachedGeospatialPoint getPoint(double latitude, double longitude) {
+        return new CachedGeospatialPoint(latitude, longitude);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testLatitudeOutOfRange() {
+        new CachedGeospatialPoint(120, 0);
+    }
+    
+    @Test
+    public void testLongitudeNormalization() {
+        assertEquals(-180, new CachedGeospatialPoint(0, 180).getLongitude(), 0);
+        assertEquals(-120, new CachedGeospatialPoint(0, 240).getLongitude(), 0);
+        assertEquals(0, new CachedGeospatialPoint(0, 360).getLongitude(), 0);
+    }
+    
+    @Test
+    public void testValueOf() {
+        CachedGeospatialPoint cached = new CachedGeospatialPoint(10, 20);
+        assertSame(cached, CachedGeospatialPoint.valueOf(cached));
+        
+        SimpleGeospatialPoint simple = new SimpleGeospatialPoint(10, 20);
+        assertEquals(simple, CachedGeospatialPoint.valueOf(simple));
+    }
+    
+    @Test
+    public void testEquals() {
+        CachedGeospatialPoint a = new CachedGeospatialPoint(10, 20);
+        
+        assertEquals(a, new SimpleGeospatialPoint(10, 20));
+        assertEquals(new SimpleGeospatialPoint(10, 20), a);
+        assertEquals(new SimpleGeospatialPoint(10, 20).hashCode(), a.hashCode());
+        assertFalse(a.equals(new CachedGeospatialPoint(20, 10)));
+    }
+    
+    @Test
+    public void testDistanceMatchesSimpleGeospatialPoint() {
+        Random random = new Random(23);
+        
+        for(int i = 0; i < 1000; i++) {
+            SimpleGeospatialPoint a = RandomPoints.getRandomPoint(random);
+            SimpleGeospatialPoint b = RandomPoints.getRandomPoint(random);
+            
+            double expected = a.getDistanceTo(b);
+            CachedGeospatialPoint cached = new CachedGeospatialPoint(a);
+            
+            // Distances should match exactly, not just approximately
+            assertEquals(expected, cached.getDistanceTo(b), 0);
+            assertEquals(expected, cached.getDistanceTo(new CachedGeospatialPoint(b)), 0);
+        }
+    }
+    
+    @Test
+    public void testGetLowerBoundDistanceTo() {
+        Random random = new Random(29);
+        
+        for(int i = 0; i < 1000; i++) {
+            CachedGeospatialPoint a = new CachedGeospatialPoint(RandomPoints.getRandomPoint(random));
+            SimpleGeospatialPoint b = RandomPoints.getRandomPoint(random);
+            
+            assertTrue(a.getLowerBoundDistanceTo(b) <= a.getDistanceTo(b));
+            assertEquals(a.getLowerBoundDistanceTo(b), a.getLowerBoundDistanceTo(new CachedGeospatialPoint(b)), 0);
+        }
+        
+        // Points on the same meridian are the worst case for the bound
+        CachedGeospatialPoint northPole = new CachedGeospatialPoint(90, 0);
+        CachedGeospatialPoint southPole = new CachedGeospatialPoint(-90, 0);
+        CachedGeospatialPoint boston = new CachedGeospatialPoint(42.3631, -71.0064);
+        
+        assertTrue(northPole.getLowerBoundDistanceTo(southPole) <= northPole.getDistanceTo(southPole));
+        assertTrue(boston.getLowerBoundDistanceTo(new CachedGeospatialPoint(42.3632, -71.0064)) <=
+                boston.getDistanceTo(new CachedGeospatialPoint(42.3632, -71.0064)));
+    }
+}
@@ -0,0 +1,45 @@
+package com.eatthepath.jeospatial.util;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Generates points scattered uniformly in latitude and longitude for tests.
+ * Every point draws its latitude and then its longitude from the given source
+ * of randomness, so tests that share a seed share their points.
+ * 
+ * @author <a href="mailto:jon.chambers@gmail.com">Jon Chambers</a>
+ */
+public final class RandomPoints {
+    private RandomPoints() {
+    }
+    
+    /**
+     * Returns a new point with a random latitude and longitude.
+     * 
+     * @param random the source of randomness from which to draw coordinates
+     * 
+     * @return a new random point
+     */
+    public static SimpleGeospatialPoint getRandomPoint(Random random) {
+        return new SimpleGeospatialPoint(random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180);
+    }
+    
+    /**
+     * Returns a list of new points with random latitudes and longitudes.
+     * 
+     * @param random the source of randomness from which to draw coordinates
+     * @param count the number of points to generate
+     * 
+     * @return a list of {@code count} new random points
+     */
+    public static ArrayList<SimpleGeospatialPoint> getRandomPoints(Random random, int count) {
+        ArrayList<SimpleGeospatialPoint> points = new ArrayList<SimpleGeospatialPoint>(count);
+        
+        for(int i = 0; i < count; i++) {
+            points.add(RandomPoints.getRandomPoint(random));
+        }
+        
+        return points;
+    }
+}
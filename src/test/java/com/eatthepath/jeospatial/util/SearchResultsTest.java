@@ -140,6 +140,24 @@ public class SearchResultsTest {
                 results.getLongestDistanceFromQueryPoint(), 0);
     }
     
+    @Test
+    public void testGetSearchRadius() {
+        SimpleGeospatialPoint somerville = new SimpleGeospatialPoint(42.387597, -71.099497);
+        
+        SearchResults<SimpleGeospatialPoint> results = new SearchResults<SimpleGeospatialPoint>(somerville, 2);
+        assertEquals(Double.POSITIVE_INFINITY, results.getSearchRadius(), 0);
+        
+        // A result set that isn't full yet should still accept distant points
+        results.add(SearchResultsTest.cities.get("Boston"));
+        assertEquals(Double.POSITIVE_INFINITY, results.getSearchRadius(), 0);
+        
+        results.add(SearchResultsTest.cities.get("New York"));
+        assertEquals(somerville.getDistanceTo(SearchResultsTest.cities.get("New York")), results.getSearchRadius(), 0);
+        
+        results = new SearchResults<SimpleGeospatialPoint>(somerville, 2, 1000);
+        assertEquals(1000, results.getSearchRadius(), 0);
+    }
+    
     @Test
     public void testToSortedList() {
         SimpleGeospatialPoint somerville = new SimpleGeospatialPoint(42.387597, -71.099497);
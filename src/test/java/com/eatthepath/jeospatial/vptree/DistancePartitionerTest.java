@@ -0,0 +1,159 @@
+package com.eatthepath.jeospatial.vptree;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test suite for the {@link DistancePartitioner} class.
+ *
+ * @author <a href="mailto:jon.chambers@gmail.com">Jon Chambers</a>
+ */
+public class DistancePartitionerTest {
+    @Test
+    public void testSelect() {
+        Random random = new Random(17);
+
+        for(int trial = 0; trial < 100; trial++) {
+            int length = 1 + random.nextInt(50);
+            double[] keys = new double[length + 2];
+            Object[] points = new Object[length + 2];
+
+            for(int i = 1; i <= length; i++) {
+                // Use a small range of values so we get plenty of duplicates
+                keys[i] = random.nextInt(10);
+                points[i] = Double.valueOf(keys[i]);
+            }
+
+            int k = 1 + random.nextInt(length);
+            double[] sortedKeys = java.util.Arrays.copyOfRange(keys, 1, length + 1);
+            java.util.Arrays.sort(sortedKeys);
+
+            DistancePartitioner.select(keys, points, 1, length + 1, k);
+
+            assertEquals(sortedKeys[k - 1], keys[k], 0);
+
+            for(int i = 1; i <= length; i++) {
+                // Keys and points must stay together
+                assertEquals(keys[i], (Double)points[i], 0);
+
+                if(i < k) { assertTrue(keys[i] <= keys[k]); }
+                if(i > k) { assertTrue(keys[i] >= keys[k]); }
+            }
+
+            // Points outside of the range should be left alone
+            assertNull(points[0]);
+            assertNull(points[length + 1]);
+        }
+    }
+
+    @Test
+    public void testSelectByMedianOfMedians() {
+        Random random = new Random(19);
+
+        for(int trial = 0; trial < 100; trial++) {
+            int length = 1 + random.nextInt(200);
+            double[] keys = new double[length];
+            Object[] points = new Object[length];
+
+            for(int i = 0; i < length; i++) {
+                // Mix ranges with many duplicates and ranges of distinct keys
+                keys[i] = trial % 2 == 0 ? random.nextInt(10) : random.nextDouble();
+                points[i] = Double.valueOf(keys[i]);
+            }
+
+            int k = random.nextInt(length);
+            double[] sortedKeys = keys.clone();
+            java.util.Arrays.sort(sortedKeys);
+
+            DistancePartitioner.selectByMedianOfMedians(keys, points, 0, length, k);
+
+            assertEquals(sortedKeys[k], keys[k], 0);
+
+            for(int i = 0; i < length; i++) {
+                assertEquals(keys[i], (Double)points[i], 0);
+
+                if(i < k) { assertTrue(keys[i] <= keys[k]); }
+                if(i > k) { assertTrue(keys[i] >= keys[k]); }
+            }
+        }
+    }
+
+    @Test
+    public void testSelectOrderedKeys() {
+        int length = 10000;
+        double[] keys = new double[length];
+        Object[] points = new Object[length];
+
+        // Ordered and organ-pipe keys are classic trouble spots for simple
+        // pivot rules.
+        for(int i = 0; i < length; i++) {
+            keys[i] = i < length / 2 ? i : length - i;
+            points[i] = Double.valueOf(keys[i]);
+        }
+
+        double[] sortedKeys = keys.clone();
+        java.util.Arrays.sort(sortedKeys);
+
+        DistancePartitioner.select(keys, points, 0, length, length / 2);
+
+        assertEquals(sortedKeys[length / 2], keys[length / 2], 0);
+
+        for(int i = 0; i < length; i++) {
+            assertEquals(keys[i], (Double)points[i], 0);
+        }
+    }
+
+    @Test
+    public void testPartition() {
+        double[] keys = new double[] { 5, 1, 4, 2, 3, 2 };
+        Object[] points = new Object[keys.length];
+
+        for(int i = 0; i < keys.length; i++) {
+            points[i] = Double.valueOf(keys[i]);
+        }
+
+        assertEquals(4, DistancePartitioner.partition(keys, points, 0, keys.length, 3));
+
+        for(int i = 0; i < keys.length; i++) {
+            assertEquals(keys[i], (Double)points[i], 0);
+            assertEquals(i < 4, keys[i] <= 3);
+        }
+    }
+
+    @Test
+    public void testPartitionWithVectors() {
+        double[] keys = new double[] { 5, 1, 4, 2, 3, 2 };
+        Object[] points = new Object[keys.length];
+        double[] vectors = new double[3 * keys.length];
+
+        for(int i = 0; i < keys.length; i++) {
+            points[i] = Double.valueOf(keys[i]);
+
+            for(int c = 0; c < 3; c++) {
+                vectors[3 * i + c] = keys[i] * 10 + c;
+            }
+        }
+
+        DistancePartitioner.select(keys, points, vectors, 0, keys.length, 2);
+        DistancePartitioner.partition(keys, points, vectors, 0, keys.length, 3);
+
+        // Vectors must stay with their keys, too
+        for(int i = 0; i < keys.length; i++) {
+            for(int c = 0; c < 3; c++) {
+                assertEquals(keys[i] * 10 + c, vectors[3 * i + c], 0);
+            }
+        }
+    }
+
+    @Test
+    public void testMaxBelow() {
+        double[] keys = new double[] { 5, 1, 4, 2, 3, 5 };
+
+        assertEquals(4, DistancePartitioner.maxBelow(keys, 0, keys.length, 5), 0);
+        assertEquals(2, DistancePartitioner.maxBelow(keys, 0, 4, 4), 0);
+        assertEquals(Double.NEGATIVE_INFINITY, DistancePartitioner.maxBelow(keys, 0, keys.length, 1), 0);
+    }
+}
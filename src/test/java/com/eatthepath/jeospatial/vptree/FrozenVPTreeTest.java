@@ -0,0 +1,199 @@
+package com.eatthepath.jeospatial.vptree;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.eatthepath.jeospatial.PointVisitor;
+import com.eatthepath.jeospatial.util.RandomPoints;
+import com.eatthepath.jeospatial.util.SimpleGeospatialPoint;
+
+/**
+ * Test suite for the FrozenVPTree class.
+ * 
+ * @author <a href="mailto:jon.chambers@gmail.com">Jon Chambers</a>
+ */
+public class FrozenVPTreeTest {
+    @Test
+    public void testFrozenVPTreeMatchesVPTree() {
+        Random random = new Random(13);
+        ArrayList<SimpleGeospatialPoint> points = RandomPoints.getRandomPoints(random, 5000);
+        
+        VPTree<SimpleGeospatialPoint> tree = new VPTree<SimpleGeospatialPoint>(points, 8);
+        FrozenVPTree<SimpleGeospatialPoint> frozenTree = new FrozenVPTree<SimpleGeospatialPoint>(tree);
+        
+        assertEquals(tree.size(), frozenTree.size());
+        assertEquals(tree.getBinSize(), frozenTree.getBinSize());
+        
+        for(int i = 0; i < 100; i++) {
+            SimpleGeospatialPoint queryPoint = RandomPoints.getRandomPoint(random);
+            
+            assertEquals(tree.getNearestNeighbor(queryPoint), frozenTree.getNearestNeighbor(queryPoint));
+            assertEquals(tree.getNearestNeighbors(queryPoint, 10), frozenTree.getNearestNeighbors(queryPoint, 10));
+            assertEquals(tree.getNearestNeighbors(queryPoint, 10, 500 * 1000),
+                    frozenTree.getNearestNeighbors(queryPoint, 10, 500 * 1000));
+            assertEquals(tree.getAllNeighborsWithinDistance(queryPoint, 500 * 1000),
+                    frozenTree.getAllNeighborsWithinDistance(queryPoint, 500 * 1000));
+            assertEquals(tree.countWithinDistance(queryPoint, 2000 * 1000),
+                    frozenTree.countWithinDistance(queryPoint, 2000 * 1000));
+            
+            Iterator<SimpleGeospatialPoint> neighbors = tree.getNeighborsByDistance(queryPoint);
+            Iterator<SimpleGeospatialPoint> frozenNeighbors = frozenTree.getNeighborsByDistance(queryPoint);
+            
+            for(int j = 0; j < 25; j++) {
+                assertEquals(queryPoint.getDistanceTo(neighbors.next()),
+                        queryPoint.getDistanceTo(frozenNeighbors.next()), 0);
+            }
+        }
+        
+        assertEquals(new HashSet<SimpleGeospatialPoint>(tree.getAllPointsInBoundingBox(-80, -60, 50, 30)),
+                new HashSet<SimpleGeospatialPoint>(frozenTree.getAllPointsInBoundingBox(-80, -60, 50, 30)));
+        assertEquals(tree.countInBoundingBox(-80, -60, 50, 30), frozenTree.countInBoundingBox(-80, -60, 50, 30));
+        
+        final HashSet<SimpleGeospatialPoint> visitedPoints = new HashSet<SimpleGeospatialPoint>();
+        
+        assertTrue(frozenTree.forEachInBoundingBox(-80, -60, 50, 30, new PointVisitor<SimpleGeospatialPoint>() {
+            @Override
+            public boolean visit(SimpleGeospatialPoint point, double distance) {
+                return visitedPoints.add(point);
+            }
+        }));
+        
+        assertEquals(new HashSet<SimpleGeospatialPoint>(tree.getAllPointsInBoundingBox(-80, -60, 50, 30)), visitedPoints);
+        assertEquals(tree.countInBoundingBox(-150, 20, 70, -40), frozenTree.countInBoundingBox(-150, 20, 70, -40));
+        
+        // Boxes may span the antimeridian
+        assertEquals(new HashSet<SimpleGeospatialPoint>(tree.getAllPointsInBoundingBox(120, -150, 60, -20)),
+                new HashSet<SimpleGeospatialPoint>(frozenTree.getAllPointsInBoundingBox(120, -150, 60, -20)));
+        assertEquals(tree.countInBoundingBox(120, -150, 60, -20), frozenTree.countInBoundingBox(120, -150, 60, -20));
+    }
+    
+    @Test
+    public void testCompactEncodings() {
+        Random random = new Random(59);
+        ArrayList<SimpleGeospatialPoint> points = RandomPoints.getRandomPoints(random, 3000);
+        
+        // Points a hair apart are much closer together than float vectors can
+        // tell apart, so only exact refinement can rank them correctly
+        for(int i = 0; i < 1000; i++) {
+            SimpleGeospatialPoint point = points.get(i);
+            points.add(new SimpleGeospatialPoint(point.getLatitude(), point.getLongitude() + 1e-7));
+        }
+        
+        VPTree<SimpleGeospatialPoint> tree = new VPTree<SimpleGeospatialPoint>(points, 8);
+        FrozenVPTree<SimpleGeospatialPoint> expectedTree = new FrozenVPTree<SimpleGeospatialPoint>(tree);
+        
+        assertEquals(CoordinateEncoding.DOUBLE, expectedTree.getCoordinateEncoding());
+        
+        for(CoordinateEncoding encoding : new CoordinateEncoding[] { CoordinateEncoding.FLOAT, CoordinateEncoding.E7 }) {
+            FrozenVPTree<SimpleGeospatialPoint> compactTree = new FrozenVPTree<SimpleGeospatialPoint>(tree, encoding);
+            
+            assertEquals(encoding, compactTree.getCoordinateEncoding());
+            assertTrue(compactTree.getMemoryStats().getEstimatedBytes() <
+                    expectedTree.getMemoryStats().getEstimatedBytes());
+            assertTrue(compactTree.containsAll(points));
+            assertFalse(compactTree.contains(new SimpleGeospatialPoint(0.5, 0.5)));
+            
+            for(int i = 0; i < 100; i++) {
+                // Query from right next to a stored point, and put another
+                // stored point exactly on the edge of the search radius
+                SimpleGeospatialPoint nearPoint = points.get(random.nextInt(points.size()));
+                SimpleGeospatialPoint queryPoint =
+                        new SimpleGeospatialPoint(nearPoint.getLatitude() + 1e-6, nearPoint.getLongitude());
+                
+                double maxDistance = queryPoint.getDistanceTo(points.get(random.nextInt(points.size())));
+                
+                assertEquals(expectedTree.getNearestNeighbors(queryPoint, 10),
+                        compactTree.getNearestNeighbors(queryPoint, 10));
+                assertEquals(expectedTree.getNearestNeighbors(queryPoint, 10, maxDistance),
+                        compactTree.getNearestNeighbors(queryPoint, 10, maxDistance));
+                assertEquals(expectedTree.getAllNeighborsWithinDistance(queryPoint, maxDistance),
+                        compactTree.getAllNeighborsWithinDistance(queryPoint, maxDistance));
+                assertEquals(expectedTree.countWithinDistance(queryPoint, maxDistance),
+                        compactTree.countWithinDistance(queryPoint, maxDistance));
+                
+                Iterator<SimpleGeospatialPoint> expectedNeighbors = expectedTree.getNeighborsByDistance(queryPoint);
+                Iterator<SimpleGeospatialPoint> neighbors = compactTree.getNeighborsByDistance(queryPoint);
+                
+                for(int j = 0; j < 25; j++) {
+                    assertEquals(queryPoint.getDistanceTo(expectedNeighbors.next()),
+                            queryPoint.getDistanceTo(neighbors.next()), 0);
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void testGetMemoryStats() {
+        ArrayList<SimpleGeospatialPoint> points = RandomPoints.getRandomPoints(new Random(23), 1000);
+        
+        VPTree<SimpleGeospatialPoint> tree = new VPTree<SimpleGeospatialPoint>(points, 8);
+        FrozenVPTree<SimpleGeospatialPoint> frozenTree = new FrozenVPTree<SimpleGeospatialPoint>(tree);
+        
+        MemoryStats treeStats = tree.getMemoryStats();
+        MemoryStats frozenStats = frozenTree.getMemoryStats();
+        
+        assertEquals(treeStats.getNodeCount(), frozenStats.getNodeCount());
+        assertEquals(treeStats.getLeafCount(), frozenStats.getLeafCount());
+        assertEquals(points.size(), frozenStats.getPointCount());
+        assertEquals(points.size(), frozenStats.getPointCapacity());
+        assertEquals(0, frozenStats.getCenterCount());
+        assertTrue(frozenStats.getEstimatedBytes() < treeStats.getEstimatedBytes());
+    }
+    
+    @Test
+    public void testFrozenVPTreeCollection() {
+        ArrayList<SimpleGeospatialPoint> points = RandomPoints.getRandomPoints(new Random(17), 1000);
+        FrozenVPTree<SimpleGeospatialPoint> frozenTree = new FrozenVPTree<SimpleGeospatialPoint>(points, 4);
+        
+        assertEquals(points.size(), frozenTree.size());
+        assertTrue(frozenTree.containsAll(points));
+        assertFalse(frozenTree.contains(new SimpleGeospatialPoint(0.5, 0.5)));
+        assertFalse(frozenTree.contains("Not a point"));
+        
+        HashSet<SimpleGeospatialPoint> iteratedPoints = new HashSet<SimpleGeospatialPoint>();
+        
+        for(SimpleGeospatialPoint point : frozenTree) {
+            iteratedPoints.add(point);
+        }
+        
+        assertEquals(new HashSet<SimpleGeospatialPoint>(points), iteratedPoints);
+        assertEquals(points.size(), frozenTree.toArray(new SimpleGeospatialPoint[0]).length);
+    }
+    
+    @Test
+    public void testEmptyFrozenVPTree() {
+        FrozenVPTree<SimpleGeospatialPoint> frozenTree =
+                new FrozenVPTree<SimpleGeospatialPoint>(new ArrayList<SimpleGeospatialPoint>());
+        
+        assertTrue(frozenTree.isEmpty());
+        assertNull(frozenTree.getNearestNeighbor(new SimpleGeospatialPoint(0, 0)));
+        assertTrue(frozenTree.getAllNeighborsWithinDistance(new SimpleGeospatialPoint(0, 0), 1000).isEmpty());
+        assertEquals(0, frozenTree.countWithinDistance(new SimpleGeospatialPoint(0, 0), 1000));
+        assertFalse(frozenTree.iterator().hasNext());
+        assertFalse(frozenTree.getNeighborsByDistance(new SimpleGeospatialPoint(0, 0)).hasNext());
+    }
+    
+    @Test(expected = UnsupportedOperationException.class)
+    public void testAdd() {
+        ArrayList<SimpleGeospatialPoint> points = RandomPoints.getRandomPoints(new Random(19), 10);
+        new FrozenVPTree<SimpleGeospatialPoint>(points).add(new SimpleGeospatialPoint(0, 0));
+    }
+    
+    @Test(expected = UnsupportedOperationException.class)
+    public void testRemove() {
+        ArrayList<SimpleGeospatialPoint> points = RandomPoints.getRandomPoints(new Random(19), 10);
+        new FrozenVPTree<SimpleGeospatialPoint>(points).remove(points.get(0));
+    }
+    
+    @Test(expected = UnsupportedOperationException.class)
+    public void testClear() {
+        ArrayList<SimpleGeospatialPoint> points = RandomPoints.getRandomPoints(new Random(19), 10);
+        new FrozenVPTree<SimpleGeospatialPoint>(points).clear();
+    }
+}
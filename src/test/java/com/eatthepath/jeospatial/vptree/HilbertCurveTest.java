@@ -0,0 +1,44 @@
+package com.eatthepath.jeospatial.vptree;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class HilbertCurveTest {
+    private static final int SIDE = 1 << 16;
+
+    @Test
+    public void testGetIndex() {
+        // The first 4^k positions along the curve should fill the 2^k by 2^k
+        // block of cells in the southwest corner, and each cell should be
+        // adjacent to the next.
+        int[] xs = new int[64];
+        int[] ys = new int[64];
+
+        for(int x = 0; x < 8; x++) {
+            for(int y = 0; y < 8; y++) {
+                double longitude = -180 + (x + 0.5) * 360 / SIDE;
+                double latitude = -90 + (y + 0.5) * 180 / SIDE;
+
+                long index = HilbertCurve.getIndex(latitude, longitude);
+
+                assertTrue(index < 64);
+
+                xs[(int)index] = x;
+                ys[(int)index] = y;
+            }
+        }
+
+        for(int i = 1; i < 64; i++) {
+            assertEquals(1, Math.abs(xs[i] - xs[i - 1]) + Math.abs(ys[i] - ys[i - 1]));
+        }
+    }
+
+    @Test
+    public void testGetIndexRange() {
+        assertEquals(0, HilbertCurve.getIndex(-90, -180));
+        assertTrue(HilbertCurve.getIndex(90, 180) < (1L << 32));
+        assertTrue(HilbertCurve.getIndex(90, 179.999999) < (1L << 32));
+        assertTrue(HilbertCurve.getIndex(-90, 0) >= 0);
+    }
+}
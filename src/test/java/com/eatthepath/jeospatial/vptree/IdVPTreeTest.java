@@ -0,0 +1,268 @@
+package com.eatthepath.jeospatial.vptree;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.eatthepath.jeospatial.util.RandomPoints;
+import com.eatthepath.jeospatial.util.SimpleGeospatialPoint;
+
+/**
+ * Test suite for the IdVPTree class.
+ * 
+ * @author <a href="mailto:jon.chambers@gmail.com">Jon Chambers</a>
+ */
+public class IdVPTreeTest {
+    private static final int POINT_COUNT = 5000;
+    
+    private final long[] ids = new long[POINT_COUNT];
+    private final double[] latitudes = new double[POINT_COUNT];
+    private final double[] longitudes = new double[POINT_COUNT];
+    private final ArrayList<SimpleGeospatialPoint> points = new ArrayList<SimpleGeospatialPoint>(POINT_COUNT);
+    
+    public IdVPTreeTest() {
+        Random random = new Random(31);
+        
+        for(int i = 0; i < POINT_COUNT; i++) {
+            SimpleGeospatialPoint point = RandomPoints.getRandomPoint(random);
+            
+            this.ids[i] = 1000L * i;
+            this.latitudes[i] = point.getLatitude();
+            this.longitudes[i] = point.getLongitude();
+            
+            this.points.add(point);
+        }
+    }
+    
+    private SimpleGeospatialPoint getPoint(long id) {
+        return this.points.get((int)(id / 1000));
+    }
+    
+    @Test
+    public void testGetNearestNeighbors() {
+        IdVPTree idTree = new IdVPTree(this.ids, this.latitudes, this.longitudes, 8);
+        VPTree<SimpleGeospatialPoint> tree = new VPTree<SimpleGeospatialPoint>(this.points, 8);
+        
+        Random random = new Random(37);
+        long[] resultIds = new long[10];
+        double[] resultDistances = new double[10];
+        
+        for(int i = 0; i < 100; i++) {
+            SimpleGeospatialPoint queryPoint = RandomPoints.getRandomPoint(random);
+            
+            List<SimpleGeospatialPoint> expected = tree.getNearestNeighbors(queryPoint, 10);
+            
+            assertEquals(10, idTree.getNearestNeighbors(queryPoint.getLatitude(), queryPoint.getLongitude(), 10,
+                    resultIds, resultDistances));
+            
+            for(int j = 0; j < 10; j++) {
+                assertEquals(expected.get(j), this.getPoint(resultIds[j]));
+                assertEquals(queryPoint.getDistanceTo(expected.get(j)), resultDistances[j], 0);
+            }
+            
+            assertEquals(1, idTree.getNearestNeighbor(queryPoint.getLatitude(), queryPoint.getLongitude(),
+                    resultIds, resultDistances));
+            assertEquals(expected.get(0), this.getPoint(resultIds[0]));
+        }
+    }
+    
+    @Test
+    public void testGetNearestNeighborsMaxDistance() {
+        IdVPTree idTree = new IdVPTree(this.ids, this.latitudes, this.longitudes);
+        VPTree<SimpleGeospatialPoint> tree = new VPTree<SimpleGeospatialPoint>(this.points);
+        
+        SimpleGeospatialPoint queryPoint = new SimpleGeospatialPoint(42.3631, -71.0064);
+        long[] resultIds = new long[50];
+        double[] resultDistances = new double[50];
+        
+        List<SimpleGeospatialPoint> expected = tree.getNearestNeighbors(queryPoint, 50, 500 * 1000);
+        
+        assertEquals(expected.size(), idTree.getNearestNeighbors(queryPoint.getLatitude(), queryPoint.getLongitude(),
+                50, 500 * 1000, resultIds, resultDistances));
+        
+        assertEquals(0, idTree.getNearestNeighbor(0, 0, 1, resultIds, resultDistances));
+    }
+    
+    @Test
+    public void testGetAllNeighborsWithinDistance() {
+        IdVPTree idTree = new IdVPTree(this.ids, this.latitudes, this.longitudes, 8);
+        VPTree<SimpleGeospatialPoint> tree = new VPTree<SimpleGeospatialPoint>(this.points, 8);
+        
+        SimpleGeospatialPoint queryPoint = new SimpleGeospatialPoint(10, 20);
+        List<SimpleGeospatialPoint> expected = tree.getAllNeighborsWithinDistance(queryPoint, 2000 * 1000);
+        
+        assertTrue(expected.size() > 10);
+        
+        long[] resultIds = new long[expected.size()];
+        double[] resultDistances = new double[expected.size()];
+        
+        assertEquals(expected.size(), idTree.getAllNeighborsWithinDistance(10, 20, 2000 * 1000, resultIds, resultDistances));
+        
+        for(int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), this.getPoint(resultIds[i]));
+        }
+        
+        // Results that don't fit should still be counted, and the closest
+        // results should be the ones that are written
+        long[] shortIds = new long[10];
+        double[] shortDistances = new double[10];
+        
+        assertEquals(expected.size(), idTree.getAllNeighborsWithinDistance(10, 20, 2000 * 1000, shortIds, shortDistances));
+        
+        for(int i = 0; i < 10; i++) {
+            assertEquals(resultIds[i], shortIds[i]);
+        }
+    }
+    
+    @Test
+    public void testGetAllPointsInBoundingBox() {
+        IdVPTree idTree = new IdVPTree(this.ids, this.latitudes, this.longitudes, 8);
+        VPTree<SimpleGeospatialPoint> tree = new VPTree<SimpleGeospatialPoint>(this.points, 8);
+        
+        // An ordinary box, a box that crosses the antimeridian, a box around
+        // a pole and a box that covers the whole globe
+        double[][] boxes = new double[][] {
+            { -100, -60, 40, 10 },
+            { 170, -170, 20, -20 },
+            { -180, 180, 90, 70 },
+            { 0, 0, 90, -90 },
+        };
+        
+        long[] resultIds = new long[POINT_COUNT];
+        
+        for(double[] box : boxes) {
+            HashSet<SimpleGeospatialPoint> expected =
+                    new HashSet<SimpleGeospatialPoint>(tree.getAllPointsInBoundingBox(box[0], box[1], box[2], box[3]));
+            
+            int count = idTree.getAllPointsInBoundingBox(box[0], box[1], box[2], box[3], resultIds);
+            
+            HashSet<SimpleGeospatialPoint> found = new HashSet<SimpleGeospatialPoint>();
+            
+            for(int i = 0; i < count; i++) {
+                found.add(this.getPoint(resultIds[i]));
+            }
+            
+            assertFalse(expected.isEmpty());
+            assertEquals(expected, found);
+        }
+    }
+    
+    @Test
+    public void testCompactEncodings() {
+        // Compact trees only store their unit vectors compactly and refine
+        // against exact coordinates, so they should return exactly the same
+        // results as a tree that stores doubles for any coordinates at all
+        IdVPTree expectedTree = new IdVPTree(this.ids, this.latitudes, this.longitudes, 8);
+        
+        for(CoordinateEncoding encoding : new CoordinateEncoding[] { CoordinateEncoding.FLOAT, CoordinateEncoding.E7 }) {
+            IdVPTree compactTree = new IdVPTree(this.ids, this.latitudes, this.longitudes, 8, encoding);
+            
+            assertEquals(encoding, compactTree.getCoordinateEncoding());
+            
+            Random random = new Random(41);
+            
+            long[] expectedIds = new long[POINT_COUNT];
+            double[] expectedDistances = new double[POINT_COUNT];
+            long[] resultIds = new long[POINT_COUNT];
+            double[] resultDistances = new double[POINT_COUNT];
+            
+            for(int i = 0; i < 50; i++) {
+                SimpleGeospatialPoint queryPoint = RandomPoints.getRandomPoint(random);
+                double latitude = queryPoint.getLatitude();
+                double longitude = queryPoint.getLongitude();
+                
+                int expectedCount = expectedTree.getNearestNeighbors(latitude, longitude, 10, expectedIds, expectedDistances);
+                assertEquals(expectedCount, compactTree.getNearestNeighbors(latitude, longitude, 10, resultIds, resultDistances));
+                this.assertResultsEqual(expectedCount, expectedIds, expectedDistances, resultIds, resultDistances);
+                
+                expectedCount = expectedTree.getAllNeighborsWithinDistance(latitude, longitude, 1000 * 1000,
+                        expectedIds, expectedDistances);
+                assertEquals(expectedCount, compactTree.getAllNeighborsWithinDistance(latitude, longitude, 1000 * 1000,
+                        resultIds, resultDistances));
+                this.assertResultsEqual(expectedCount, expectedIds, expectedDistances, resultIds, resultDistances);
+                
+                double west = longitude - 10;
+                double south = Math.max(-90, latitude - 10);
+                
+                expectedCount = expectedTree.getAllPointsInBoundingBox(west, west + 20, south + 10, south, expectedIds);
+                assertEquals(expectedCount, compactTree.getAllPointsInBoundingBox(west, west + 20, south + 10, south, resultIds));
+                
+                HashSet<Long> expectedInBox = new HashSet<Long>();
+                HashSet<Long> foundInBox = new HashSet<Long>();
+                
+                for(int j = 0; j < expectedCount; j++) {
+                    expectedInBox.add(expectedIds[j]);
+                    foundInBox.add(resultIds[j]);
+                }
+                
+                assertEquals(expectedInBox, foundInBox);
+            }
+        }
+    }
+    
+    @Test
+    public void testGetMemoryStats() {
+        MemoryStats doubleStats = new IdVPTree(this.ids, this.latitudes, this.longitudes, 8).getMemoryStats();
+        MemoryStats e7Stats =
+                new IdVPTree(this.ids, this.latitudes, this.longitudes, 8, CoordinateEncoding.E7).getMemoryStats();
+        
+        assertEquals(POINT_COUNT, doubleStats.getPointCount());
+        assertEquals(POINT_COUNT, doubleStats.getPointCapacity());
+        assertEquals(0, doubleStats.getCenterCount());
+        assertEquals(doubleStats.getNodeCount(), e7Stats.getNodeCount());
+        
+        // Unit vectors take 24 bytes per point with doubles and 12 with a
+        // compact encoding; everything else is the same.
+        assertEquals(12L * POINT_COUNT, doubleStats.getEstimatedBytes() - e7Stats.getEstimatedBytes(), 64);
+    }
+    
+    private void assertResultsEqual(int count, long[] expectedIds, double[] expectedDistances,
+            long[] resultIds, double[] resultDistances) {
+        
+        for(int i = 0; i < count; i++) {
+            assertEquals(expectedIds[i], resultIds[i]);
+            assertEquals(expectedDistances[i], resultDistances[i], 0);
+        }
+    }
+    
+    @Test
+    public void testCoincidentPoints() {
+        long[] coincidentIds = new long[100];
+        double[] coincidentLatitudes = new double[100];
+        double[] coincidentLongitudes = new double[100];
+        
+        for(int i = 0; i < 100; i++) {
+            coincidentIds[i] = i;
+            coincidentLatitudes[i] = 12;
+            coincidentLongitudes[i] = 34;
+        }
+        
+        IdVPTree idTree = new IdVPTree(coincidentIds, coincidentLatitudes, coincidentLongitudes, 4);
+        
+        assertEquals(100, idTree.size());
+        assertEquals(100, idTree.getAllNeighborsWithinDistance(12, 34, 1, new long[0], new double[0]));
+    }
+    
+    @Test
+    public void testEmptyTree() {
+        IdVPTree idTree = new IdVPTree(new long[0], new double[0], new double[0]);
+        
+        assertTrue(idTree.isEmpty());
+        assertEquals(0, idTree.getNearestNeighbor(0, 0, new long[1], new double[1]));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testMismatchedArrays() {
+        new IdVPTree(new long[2], new double[2], new double[3]);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testResultArraysTooShort() {
+        new IdVPTree(this.ids, this.latitudes, this.longitudes).getNearestNeighbors(0, 0, 10, new long[5], new double[5]);
+    }
+}
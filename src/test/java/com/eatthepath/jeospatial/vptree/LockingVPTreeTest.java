@@ -2,7 +2,11 @@ package com.eatthepath.jeospatial.vptree;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -182,4 +186,96 @@ public class LockingVPTreeTest extends GeospatialPointDatabaseTest {
         
         assertEquals(LockingVPTreeTest.sortedZipCodes.subList(0, 100), getter.getNearestNeighbors());
     }
+    
+    @Test
+    public void testRebuildInBackground() {
+        // Build a lopsided tree by adding points in order of distance from a
+        // single point.
+        LockingVPTree<ZipCode> tree = new LockingVPTree<ZipCode>(8, new FirstPointSelector(), false);
+        tree.setImbalanceFactor(1);
+        tree.addAll(LockingVPTreeTest.sortedZipCodes);
+        
+        VPTree<ZipCode>.VPNode<ZipCode> originalRoot = tree.getRoot();
+        
+        // Hold on to the rebuild job so we can make changes while it's "in
+        // progress."
+        final ArrayList<Runnable> jobs = new ArrayList<Runnable>();
+        
+        Executor executor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                jobs.add(command);
+            }
+        };
+        
+        CompletableFuture<Void> future = tree.rebuildInBackground(executor);
+        
+        assertFalse(future.isDone());
+        assertSame(future, tree.rebuildInBackground(executor));
+        assertEquals(1, jobs.size());
+        
+        List<ZipCode> removedOneByOne = LockingVPTreeTest.sortedZipCodes.subList(0, 50);
+        List<ZipCode> removedInBulk = LockingVPTreeTest.sortedZipCodes.subList(50, 100);
+        List<ZipCode> readded = LockingVPTreeTest.sortedZipCodes.subList(10, 20);
+        
+        for(ZipCode zipCode : removedOneByOne) {
+            assertTrue(tree.remove(zipCode));
+        }
+        
+        tree.removeAll(removedInBulk);
+        tree.addAll(readded);
+        
+        ArrayList<ZipCode> expected = new ArrayList<ZipCode>(LockingVPTreeTest.sortedZipCodes.subList(100,
+                LockingVPTreeTest.sortedZipCodes.size()));
+        expected.addAll(readded);
+        
+        java.util.Collections.sort(expected, new GeospatialDistanceComparator<SimpleGeospatialPoint>(somerville));
+        
+        // Queries should keep working against the old tree in the meantime
+        assertSame(originalRoot, tree.getRoot());
+        assertEquals(expected.subList(0, 20), tree.getNearestNeighbors(somerville, 20));
+        
+        jobs.get(0).run();
+        
+        assertTrue(future.isDone());
+        assertFalse(future.isCompletedExceptionally());
+        assertNotSame(originalRoot, tree.getRoot());
+        
+        assertEquals(expected.size(), tree.size());
+        assertEquals(new HashSet<ZipCode>(expected), new HashSet<ZipCode>(tree));
+        assertEquals(expected.subList(0, 20), tree.getNearestNeighbors(somerville, 20));
+        
+        // Once a rebuild has finished, we should be able to start another one
+        CompletableFuture<Void> nextFuture = tree.rebuildInBackground(executor);
+        assertNotSame(future, nextFuture);
+        assertEquals(2, jobs.size());
+        
+        // Clearing the tree mid-rebuild should stick
+        tree.clear();
+        tree.add(LockingVPTreeTest.sortedZipCodes.get(0));
+        
+        jobs.get(1).run();
+        
+        assertTrue(nextFuture.isDone());
+        assertEquals(1, tree.size());
+        assertTrue(tree.contains(LockingVPTreeTest.sortedZipCodes.get(0)));
+    }
+    
+    @Test
+    public void testRebuildInBackgroundRejected() {
+        LockingVPTree<ZipCode> tree = new LockingVPTree<ZipCode>(LockingVPTreeTest.unsortedZipCodes);
+        
+        CompletableFuture<Void> future = tree.rebuildInBackground(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                throw new java.util.concurrent.RejectedExecutionException();
+            }
+        });
+        
+        assertTrue(future.isCompletedExceptionally());
+        
+        // A failed rebuild shouldn't get in the way of the next one
+        assertNotSame(future, tree.rebuildInBackground());
+        assertEquals(LockingVPTreeTest.unsortedZipCodes.size(), tree.size());
+    }
 }
@@ -0,0 +1,145 @@
+package com.eatthepath.jeospatial.vptree;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.eatthepath.jeospatial.SearchCriteria;
+import com.eatthepath.jeospatial.util.CachedGeospatialPoint;
+import com.eatthepath.jeospatial.util.GeospatialDistanceComparator;
+import com.eatthepath.jeospatial.util.SimpleGeospatialPoint;
+
+public class NeighborHeapTest {
+    private static Hashtable<String, SimpleGeospatialPoint> cities;
+
+    private static final CachedGeospatialPoint SOMERVILLE = new CachedGeospatialPoint(42.387597, -71.099497);
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        NeighborHeapTest.cities = new Hashtable<String, SimpleGeospatialPoint>();
+
+        cities.put("Boston", new SimpleGeospatialPoint(42.338947, -70.919635));
+        cities.put("New York", new SimpleGeospatialPoint(40.780751, -73.977182));
+        cities.put("San Francisco", new SimpleGeospatialPoint(37.766529, -122.39577));
+        cities.put("Los Angeles", new SimpleGeospatialPoint(34.048411, -118.34015));
+        cities.put("Dallas", new SimpleGeospatialPoint(32.787629, -96.79941));
+        cities.put("Chicago", new SimpleGeospatialPoint(41.904667, -87.62504));
+        cities.put("Memphis", new SimpleGeospatialPoint(35.169255, -89.990415));
+        cities.put("Las Vegas", new SimpleGeospatialPoint(36.145303, -115.18358));
+        cities.put("Detroit", new SimpleGeospatialPoint(42.348937, -83.08994));
+    }
+
+    @Test
+    public void testOffer() {
+        NeighborHeap<SimpleGeospatialPoint> heap = new NeighborHeap<SimpleGeospatialPoint>();
+        heap.reset(SOMERVILLE, 3, Double.POSITIVE_INFINITY, null);
+
+        assertTrue(heap.offer(cities.get("Chicago")));
+        assertTrue(heap.offer(cities.get("Detroit")));
+        assertTrue(heap.offer(cities.get("Memphis")));
+
+        // The heap is full and Los Angeles is farther away than anything in it
+        assertFalse(heap.offer(cities.get("Los Angeles")));
+
+        // ...but Boston is closer than Memphis
+        assertTrue(heap.offer(cities.get("Boston")));
+        assertEquals(3, heap.size());
+
+        List<SimpleGeospatialPoint> expected = new ArrayList<SimpleGeospatialPoint>();
+        expected.add(cities.get("Boston"));
+        expected.add(cities.get("Detroit"));
+        expected.add(cities.get("Chicago"));
+
+        assertEquals(expected, heap.drainToSortedList());
+        assertEquals(0, heap.size());
+
+        heap.reset(SOMERVILLE, 8, 1000 * 1000, null);
+
+        assertTrue(heap.offer(cities.get("Boston")));
+        assertFalse(heap.offer(cities.get("Las Vegas")));
+
+        SearchCriteria<SimpleGeospatialPoint> criteria = new SearchCriteria<SimpleGeospatialPoint>() {
+            @Override
+            public boolean matches(SimpleGeospatialPoint point) {
+                return !cities.get("Boston").equals(point);
+            }
+        };
+
+        heap.reset(SOMERVILLE, 8, 1000 * 1000, criteria);
+
+        assertTrue(heap.offer(cities.get("New York")));
+        assertFalse(heap.offer(cities.get("Boston")));
+        assertFalse(heap.offer(cities.get("San Francisco")));
+        assertEquals(1, heap.size());
+    }
+
+    @Test
+    public void testGetSearchRadius() {
+        NeighborHeap<SimpleGeospatialPoint> heap = new NeighborHeap<SimpleGeospatialPoint>();
+        heap.reset(SOMERVILLE, 2, Double.POSITIVE_INFINITY, null);
+
+        assertEquals(Double.POSITIVE_INFINITY, heap.getSearchRadius(), 0);
+
+        heap.offer(cities.get("Boston"));
+        assertEquals(Double.POSITIVE_INFINITY, heap.getSearchRadius(), 0);
+
+        heap.offer(cities.get("New York"));
+        assertEquals(SOMERVILLE.getDistanceTo(cities.get("New York")), heap.getSearchRadius(), 0);
+
+        heap.reset(SOMERVILLE, 2, 1000, null);
+        assertEquals(1000, heap.getSearchRadius(), 0);
+    }
+
+    @Test
+    public void testDrainToSortedList() {
+        NeighborHeap<SimpleGeospatialPoint> heap = new NeighborHeap<SimpleGeospatialPoint>();
+
+        List<SimpleGeospatialPoint> expected = new ArrayList<SimpleGeospatialPoint>(cities.values());
+        java.util.Collections.sort(expected, new GeospatialDistanceComparator<SimpleGeospatialPoint>(SOMERVILLE));
+
+        // Reuse the same heap for queries of several sizes, including some
+        // that need more than the heap's initial capacity.
+        for(int maxSize = 1; maxSize <= 40; maxSize++) {
+            heap.reset(SOMERVILLE, maxSize, Double.POSITIVE_INFINITY, null);
+
+            for(int i = 0; i < 4; i++) {
+                for(SimpleGeospatialPoint city : cities.values()) {
+                    heap.offer(city);
+                }
+            }
+
+            List<SimpleGeospatialPoint> sortedResults = heap.drainToSortedList();
+
+            assertEquals(Math.min(maxSize, 4 * cities.size()), sortedResults.size());
+
+            for(int i = 0; i < sortedResults.size(); i++) {
+                assertEquals(expected.get(i / 4), sortedResults.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testPollNearest() {
+        NeighborHeap<SimpleGeospatialPoint> heap = new NeighborHeap<SimpleGeospatialPoint>();
+        heap.reset(SOMERVILLE, 4, Double.POSITIVE_INFINITY, null);
+
+        assertNull(heap.pollNearest());
+
+        for(SimpleGeospatialPoint city : cities.values()) {
+            heap.offer(city);
+        }
+
+        assertEquals(cities.get("Boston"), heap.pollNearest());
+        assertEquals(0, heap.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testResetWithNoResults() {
+        new NeighborHeap<SimpleGeospatialPoint>().reset(SOMERVILLE, 0, Double.POSITIVE_INFINITY, null);
+    }
+}
@@ -0,0 +1,73 @@
+package com.eatthepath.jeospatial.vptree;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class NodeQueueTest {
+    @Test
+    public void testAddAndRemove() {
+        NodeQueue queue = new NodeQueue();
+        assertTrue(queue.isEmpty());
+
+        Random random = new Random(31);
+        double[] bounds = new double[100];
+
+        for(int i = 0; i < bounds.length; i++) {
+            bounds[i] = random.nextDouble();
+            queue.add(null, i, bounds[i]);
+        }
+
+        assertEquals(bounds.length, queue.size());
+
+        double[] sortedBounds = bounds.clone();
+        Arrays.sort(sortedBounds);
+
+        for(double expectedBound : sortedBounds) {
+            assertEquals(expectedBound, queue.peekBound(), 0);
+            assertEquals(expectedBound, bounds[queue.peekIndex()], 0);
+
+            queue.remove();
+        }
+
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testPeekNode() {
+        NodeQueue queue = new NodeQueue();
+
+        queue.add("far", 0, 2);
+        queue.add("near", 0, 1);
+
+        assertEquals("near", queue.peekNode());
+        queue.remove();
+        assertEquals("far", queue.peekNode());
+
+        queue.clear();
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testPeekKind() {
+        NodeQueue queue = new NodeQueue();
+
+        queue.add("subtree", 0, 3);
+        queue.add("bound", 7, NodeQueue.POINT_BOUND, 2);
+        queue.add("point", 4, NodeQueue.POINT, 1);
+
+        assertEquals(NodeQueue.POINT, queue.peekKind());
+        assertEquals(4, queue.peekIndex());
+        queue.remove();
+
+        assertEquals(NodeQueue.POINT_BOUND, queue.peekKind());
+        assertEquals(7, queue.peekIndex());
+        queue.remove();
+
+        assertEquals(NodeQueue.SUBTREE, queue.peekKind());
+        assertEquals("subtree", queue.peekNode());
+    }
+}
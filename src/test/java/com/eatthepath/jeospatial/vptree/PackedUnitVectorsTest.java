@@ -0,0 +1,130 @@
+package com.eatthepath.jeospatial.vptree;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Test suite for the {@link PackedUnitVectors} class.
+ *
+ * @author <a href="mailto:jon.chambers@gmail.com">Jon Chambers</a>
+ */
+public class PackedUnitVectorsTest {
+    private static final UnitVector[] VECTORS = new UnitVector[] {
+        new UnitVector(42.3583, -71.0603),
+        new UnitVector(40.7142, -74.0064),
+        new UnitVector(35.6833, 139.7667),
+        new UnitVector(-33.8683, 151.2111),
+        new UnitVector(51.5, -0.1167),
+    };
+
+    @Test
+    public void testAdd() {
+        PackedUnitVectors vectors = PackedUnitVectors.create(CoordinateEncoding.DOUBLE, 0);
+
+        for(UnitVector vector : VECTORS) {
+            vectors.add(vector);
+        }
+
+        assertEquals(VECTORS.length, vectors.size());
+        this.assertDistancesMatch(VECTORS, vectors);
+    }
+
+    @Test
+    public void testAddAll() {
+        PackedUnitVectors first = PackedUnitVectors.create(CoordinateEncoding.DOUBLE, 0);
+        PackedUnitVectors second = PackedUnitVectors.create(CoordinateEncoding.DOUBLE, 0);
+
+        first.add(VECTORS[0]);
+        first.add(VECTORS[1]);
+
+        for(int i = 2; i < VECTORS.length; i++) {
+            second.add(VECTORS[i]);
+        }
+
+        first.addAll(second);
+
+        assertEquals(VECTORS.length, first.size());
+        this.assertDistancesMatch(VECTORS, first);
+    }
+
+    @Test
+    public void testRemove() {
+        PackedUnitVectors vectors = PackedUnitVectors.create(CoordinateEncoding.DOUBLE, VECTORS.length);
+
+        for(UnitVector vector : VECTORS) {
+            vectors.add(vector);
+        }
+
+        vectors.remove(1);
+        vectors.trimToSize();
+
+        assertEquals(VECTORS.length - 1, vectors.size());
+        this.assertDistancesMatch(new UnitVector[] { VECTORS[0], VECTORS[2], VECTORS[3], VECTORS[4] }, vectors);
+    }
+
+    @Test
+    public void testFromInterleavedArray() {
+        double[] components = new double[3 * VECTORS.length];
+
+        for(int i = 0; i < VECTORS.length; i++) {
+            components[3 * i] = VECTORS[i].x;
+            components[3 * i + 1] = VECTORS[i].y;
+            components[3 * i + 2] = VECTORS[i].z;
+        }
+
+        PackedUnitVectors vectors = PackedUnitVectors.create(CoordinateEncoding.DOUBLE, components, 1, 4);
+
+        assertEquals(3, vectors.size());
+        this.assertDistancesMatch(new UnitVector[] { VECTORS[1], VECTORS[2], VECTORS[3] }, vectors);
+    }
+
+    @Test
+    public void testCompactEncodings() {
+        PackedUnitVectors doubleVectors = PackedUnitVectors.create(CoordinateEncoding.DOUBLE, VECTORS.length);
+
+        for(UnitVector vector : VECTORS) {
+            doubleVectors.add(vector);
+        }
+
+        for(CoordinateEncoding encoding : new CoordinateEncoding[] { CoordinateEncoding.FLOAT, CoordinateEncoding.E7 }) {
+            PackedUnitVectors vectors = PackedUnitVectors.create(encoding, 0);
+
+            for(UnitVector vector : VECTORS) {
+                vectors.add(vector);
+            }
+
+            vectors.remove(1);
+            vectors.addAll(PackedUnitVectors.create(encoding, doubleVectors.toInterleavedArray(), 1, 2));
+            vectors.trimToSize();
+
+            UnitVector[] expected = new UnitVector[] { VECTORS[0], VECTORS[2], VECTORS[3], VECTORS[4], VECTORS[1] };
+
+            assertEquals(expected.length, vectors.size());
+            assertEquals(encoding.getChordDistanceError(), vectors.getChordDistanceError(), 0);
+            assertTrue(vectors.getEstimatedBytes() < doubleVectors.getEstimatedBytes());
+
+            UnitVector queryVector = new UnitVector(48.8567, 2.3508);
+            double[] distances = new double[vectors.size()];
+
+            vectors.getSquaredChordDistances(queryVector, distances);
+
+            for(int i = 0; i < expected.length; i++) {
+                assertEquals(i, vectors.indexOf(expected[i], 0));
+                assertEquals(queryVector.getChordDistanceTo(expected[i]), Math.sqrt(distances[i]),
+                        vectors.getChordDistanceError());
+            }
+        }
+    }
+
+    private void assertDistancesMatch(UnitVector[] expected, PackedUnitVectors vectors) {
+        UnitVector queryVector = new UnitVector(48.8567, 2.3508);
+        double[] distances = new double[vectors.size()];
+
+        vectors.getSquaredChordDistances(queryVector, distances);
+
+        for(int i = 0; i < expected.length; i++) {
+            assertEquals(queryVector.getSquaredChordDistanceTo(expected[i]), distances[i], 0);
+        }
+    }
+}
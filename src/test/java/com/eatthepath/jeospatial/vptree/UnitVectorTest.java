@@ -0,0 +1,80 @@
+package com.eatthepath.jeospatial.vptree;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.eatthepath.jeospatial.GeospatialPoint;
+import com.eatthepath.jeospatial.util.RandomPoints;
+import com.eatthepath.jeospatial.util.SimpleGeospatialPoint;
+
+/**
+ * Test suite for the {@link UnitVector} class.
+ *
+ * @author <a href="mailto:jon.chambers@gmail.com">Jon Chambers</a>
+ */
+public class UnitVectorTest {
+    @Test
+    public void testUnitVector() {
+        UnitVector northPole = new UnitVector(90, 0);
+        UnitVector southPole = new UnitVector(-90, 0);
+        UnitVector origin = new UnitVector(0, 0);
+
+        assertEquals(4, northPole.getSquaredChordDistanceTo(southPole), 1e-12);
+        assertEquals(2, northPole.getSquaredChordDistanceTo(origin), 1e-12);
+        assertEquals(0, origin.getSquaredChordDistanceTo(new UnitVector(0, 360)), 1e-12);
+    }
+
+    @Test
+    public void testToUnitVectors() {
+        GeospatialPoint[] points = new GeospatialPoint[] {
+                new SimpleGeospatialPoint(42.338947, -70.919635),
+                new SimpleGeospatialPoint(40.780751, -73.977182),
+                new SimpleGeospatialPoint(34.050000, -118.250000) };
+
+        double[] vectors = UnitVector.toUnitVectors(points, 1, 3);
+
+        assertEquals(9, vectors.length);
+        assertEquals(0, vectors[0], 0);
+
+        for(int i = 1; i < points.length; i++) {
+            assertEquals(0, new UnitVector(points[i]).getSquaredChordDistanceTo(vectors, i), 0);
+        }
+    }
+
+    @Test
+    public void testChordDistancesOrderLikeGreatCircleDistances() {
+        Random random = new Random(5);
+        SimpleGeospatialPoint origin = new SimpleGeospatialPoint(42.387597, -71.099497);
+        UnitVector originVector = new UnitVector(origin);
+
+        for(int i = 0; i < 1000; i++) {
+            SimpleGeospatialPoint a = RandomPoints.getRandomPoint(random);
+            SimpleGeospatialPoint b = RandomPoints.getRandomPoint(random);
+
+            double metersToA = origin.getDistanceTo(a);
+            double metersToB = origin.getDistanceTo(b);
+
+            double squaredChordToA = originVector.getSquaredChordDistanceTo(new UnitVector(a));
+            double squaredChordToB = originVector.getSquaredChordDistanceTo(new UnitVector(b));
+
+            assertEquals(metersToA < metersToB, squaredChordToA < squaredChordToB);
+
+            // Conversions should agree with the great-circle distance to well
+            // under a millimeter...
+            assertEquals(metersToA, UnitVector.toMeters(squaredChordToA), 1e-3);
+
+            // ...and converted search radii should never be too short
+            assertTrue(UnitVector.toChordDistance(metersToA) >= Math.sqrt(squaredChordToA));
+        }
+    }
+
+    @Test
+    public void testToChordDistance() {
+        assertEquals(2, UnitVector.toChordDistance(Math.PI * GeospatialPoint.EARTH_RADIUS * 0.99999999), 1e-6);
+        assertEquals(Double.POSITIVE_INFINITY, UnitVector.toChordDistance(Math.PI * GeospatialPoint.EARTH_RADIUS), 0);
+        assertEquals(Double.POSITIVE_INFINITY, UnitVector.toChordDistance(Double.POSITIVE_INFINITY), 0);
+    }
+}
@@ -294,6 +294,28 @@ public class VPNodeTest {
         assertFalse(this.testNode.getFartherNode().isEmpty());
     }
     
+    @Test
+    public void testPartitionKeepsPointsReachable() throws PartitionException {
+        // Build a node from a set of points with lots of coincident members
+        // and make sure every point can still be found by following the
+        // distance thresholds down through the tree.
+        java.util.Random random = new java.util.Random(42);
+        SimpleGeospatialPoint[] points = new SimpleGeospatialPoint[500];
+        
+        for(int i = 0; i < points.length; i++) {
+            points[i] = new SimpleGeospatialPoint(random.nextInt(10), random.nextInt(10));
+        }
+        
+        VPTree<SimpleGeospatialPoint>.VPNode<SimpleGeospatialPoint> node =
+                this.tree.new VPNode<SimpleGeospatialPoint>(points.clone(), 0, points.length, 4);
+        
+        assertEquals(points.length, node.size());
+        
+        for(SimpleGeospatialPoint p : points) {
+            assertTrue(node.contains(p));
+        }
+    }
+    
     @Test
     public void testIsLeafNodeIsEmpty() {
         VPTree<SimpleGeospatialPoint>.VPNode<SimpleGeospatialPoint> node =
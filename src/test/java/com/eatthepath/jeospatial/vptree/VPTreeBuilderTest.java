@@ -0,0 +1,150 @@
+package com.eatthepath.jeospatial.vptree;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.eatthepath.jeospatial.GeospatialPoint;
+import com.eatthepath.jeospatial.util.RandomPoints;
+import com.eatthepath.jeospatial.util.SimpleGeospatialPoint;
+
+/**
+ * Test suite for the {@link VPTreeBuilder} class.
+ * 
+ * @author <a href="mailto:jon.chambers@gmail.com">Jon Chambers</a>
+ */
+public class VPTreeBuilderTest {
+    private static ArrayList<SimpleGeospatialPoint> points;
+    
+    private static class LabeledPoint extends SimpleGeospatialPoint {
+        public LabeledPoint(double latitude, double longitude) {
+            super(latitude, longitude);
+        }
+    }
+    
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        Random random = new Random(5);
+        VPTreeBuilderTest.points = RandomPoints.getRandomPoints(random, 1000);
+    }
+    
+    @Test
+    public void testAddAllIterator() {
+        VPTreeBuilder<SimpleGeospatialPoint> builder = new VPTreeBuilder<SimpleGeospatialPoint>();
+        builder.setNodeCapacity(7).addAll(points.iterator());
+        
+        assertEquals(points.size(), builder.size());
+        
+        VPTree<SimpleGeospatialPoint> tree = builder.build();
+        
+        assertEquals(7, tree.getBinSize());
+        assertEquals(points.size(), tree.size());
+        assertTrue(tree.containsAll(points));
+        
+        // Building a tree should empty the builder
+        assertEquals(0, builder.size());
+        assertTrue(builder.build().isEmpty());
+    }
+    
+    @Test
+    public void testAddAllSpliterator() {
+        VPTree<SimpleGeospatialPoint> tree = new VPTreeBuilder<SimpleGeospatialPoint>(points.size())
+                .addAll(points.spliterator()).build();
+        
+        assertEquals(points.size(), tree.size());
+        assertTrue(tree.containsAll(points));
+    }
+    
+    @Test
+    public void testAddAllStream() {
+        LockingVPTree<SimpleGeospatialPoint> tree = new VPTreeBuilder<SimpleGeospatialPoint>()
+                .setVantagePointSelector(new SamplingSelector())
+                .addAll(points.stream()).buildLockingTree(true);
+        
+        assertTrue(tree.isFair());
+        assertEquals(points.size(), tree.size());
+        assertTrue(tree.containsAll(points));
+    }
+    
+    @Test
+    public void testMixedPointTypes() {
+        // Mixing GeospatialPoint implementations shouldn't cause trouble
+        // regardless of which kind of point comes first.
+        VPTreeBuilder<GeospatialPoint> builder = new VPTreeBuilder<GeospatialPoint>().setNodeCapacity(2);
+        
+        builder.add(new LabeledPoint(42.338947, -70.919635));
+        builder.add(new SimpleGeospatialPoint(40.780751, -73.977182));
+        builder.add(new SimpleGeospatialPoint(37.766529, -122.39577));
+        builder.add(new LabeledPoint(34.048411, -118.34015));
+        
+        VPTree<GeospatialPoint> tree = builder.build();
+        
+        assertEquals(4, tree.size());
+        assertEquals(new LabeledPoint(42.338947, -70.919635),
+                tree.getNearestNeighbor(new SimpleGeospatialPoint(42, -71)));
+        
+        tree.add(new LabeledPoint(41.904667, -87.62504));
+        tree.add(new SimpleGeospatialPoint(32.787629, -96.79941));
+        
+        assertEquals(6, tree.size());
+    }
+    
+    @Test
+    public void testSetCoordinateEncoding() {
+        // Leaf nodes only use their vectors to rule points out, so trees with
+        // compact vectors should return exactly the same results as a tree
+        // with double vectors, even after points have been added and removed
+        VPTree<SimpleGeospatialPoint> expectedTree = new VPTreeBuilder<SimpleGeospatialPoint>()
+                .setNodeCapacity(8).addAll(points.iterator()).build();
+        
+        assertEquals(CoordinateEncoding.DOUBLE, expectedTree.getCoordinateEncoding());
+        
+        for(CoordinateEncoding encoding : new CoordinateEncoding[] { CoordinateEncoding.FLOAT, CoordinateEncoding.E7 }) {
+            VPTree<SimpleGeospatialPoint> tree = new VPTreeBuilder<SimpleGeospatialPoint>()
+                    .setNodeCapacity(8).setCoordinateEncoding(encoding).addAll(points.iterator()).build();
+            
+            assertEquals(encoding, tree.getCoordinateEncoding());
+            assertTrue(tree.getMemoryStats().getEstimatedBytes() < expectedTree.getMemoryStats().getEstimatedBytes());
+            
+            Random random = new Random(7);
+            
+            for(int i = 0; i < 200; i++) {
+                SimpleGeospatialPoint point = RandomPoints.getRandomPoint(random);
+                
+                assertTrue(tree.add(point));
+                assertTrue(tree.remove(points.get(i)));
+                assertTrue(tree.contains(point));
+                
+                if(encoding == CoordinateEncoding.FLOAT) {
+                    expectedTree.add(point);
+                    expectedTree.remove(points.get(i));
+                }
+            }
+            
+            for(int i = 0; i < 50; i++) {
+                SimpleGeospatialPoint queryPoint = RandomPoints.getRandomPoint(random);
+                
+                assertEquals(expectedTree.getNearestNeighbors(queryPoint, 10), tree.getNearestNeighbors(queryPoint, 10));
+                
+                assertEquals(new HashSet<SimpleGeospatialPoint>(expectedTree.getAllNeighborsWithinDistance(queryPoint, 1000 * 1000)),
+                        new HashSet<SimpleGeospatialPoint>(tree.getAllNeighborsWithinDistance(queryPoint, 1000 * 1000)));
+                
+                assertEquals(expectedTree.countWithinDistance(queryPoint, 1000 * 1000),
+                        tree.countWithinDistance(queryPoint, 1000 * 1000));
+                
+                Iterator<SimpleGeospatialPoint> expectedNeighbors = expectedTree.getNeighborsByDistance(queryPoint);
+                Iterator<SimpleGeospatialPoint> neighbors = tree.getNeighborsByDistance(queryPoint);
+                
+                for(int j = 0; j < 20; j++) {
+                    assertEquals(expectedNeighbors.next(), neighbors.next());
+                }
+            }
+        }
+    }
+}
@@ -2,12 +2,21 @@ package com.eatthepath.jeospatial.vptree;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import org.junit.Test;
 
 import com.eatthepath.jeospatial.GeospatialPointDatabase;
 import com.eatthepath.jeospatial.GeospatialPointDatabaseTest;
+import com.eatthepath.jeospatial.SearchCriteria;
+import com.eatthepath.jeospatial.util.BoundingBoxSearchCriteria;
+import com.eatthepath.jeospatial.util.GeospatialDistanceComparator;
+import com.eatthepath.jeospatial.util.SearchResults;
+import com.eatthepath.jeospatial.util.RandomPoints;
 import com.eatthepath.jeospatial.util.SimpleGeospatialPoint;
 
 /**
@@ -60,6 +69,502 @@ public class VPTreeTest extends GeospatialPointDatabaseTest {
         assertEquals(7, tree.getBinSize());
     }
     
+    @Test
+    public void testVPTreeCollectionOfEIntForkJoinPool() {
+        // Trees built in parallel should be identical to trees built on a
+        // single thread.
+        Random random = new Random(7);
+        ArrayList<SimpleGeospatialPoint> points = RandomPoints.getRandomPoints(random, 20000);
+        
+        ForkJoinPool pool = new ForkJoinPool(4);
+        
+        try {
+            VPTree<SimpleGeospatialPoint> sequentialTree = new VPTree<SimpleGeospatialPoint>(points, 8);
+            VPTree<SimpleGeospatialPoint> parallelTree = new VPTree<SimpleGeospatialPoint>(points, 8, pool, 100);
+            
+            assertEquals(points.size(), parallelTree.size());
+            assertTrue(parallelTree.containsAll(points));
+            
+            this.assertNodesEqual(sequentialTree.getRoot(), parallelTree.getRoot());
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    @Test
+    public void testVPTreeCollectionOfEIntVantagePointSelector() {
+        Random random = new Random(3);
+        ArrayList<SimpleGeospatialPoint> points = new ArrayList<SimpleGeospatialPoint>();
+        
+        for(int i = 0; i < 2000; i++) {
+            points.add(new SimpleGeospatialPoint(random.nextDouble() * 20 + 30, random.nextDouble() * 20 - 100));
+        }
+        
+        SimpleGeospatialPoint queryPoint = new SimpleGeospatialPoint(40, -90);
+        ArrayList<SimpleGeospatialPoint> expected = new ArrayList<SimpleGeospatialPoint>(points);
+        java.util.Collections.sort(expected, new GeospatialDistanceComparator<SimpleGeospatialPoint>(queryPoint));
+        
+        VantagePointSelector[] selectors = new VantagePointSelector[] {
+                new FirstPointSelector(), new SamplingSelector(), new FarthestPointSelector() };
+        
+        for(VantagePointSelector selector : selectors) {
+            VPTree<SimpleGeospatialPoint> tree = new VPTree<SimpleGeospatialPoint>(points, 8, selector);
+            
+            assertSame(selector, tree.getVantagePointSelector());
+            assertEquals(points.size(), tree.size());
+            assertTrue(tree.containsAll(points));
+            assertEquals(expected.subList(0, 10), tree.getNearestNeighbors(queryPoint, 10));
+        }
+    }
+    
+    @Test
+    public void testAddRebalancesTree() {
+        // Points added in order along a meridian are the worst case for a tree
+        // that only ever splits leaves; each new point lands beyond every
+        // existing threshold.
+        ArrayList<SimpleGeospatialPoint> points = new ArrayList<SimpleGeospatialPoint>();
+        
+        for(int i = 0; i < 5000; i++) {
+            points.add(new SimpleGeospatialPoint(-80 + (160.0 * i) / 5000, 0));
+        }
+        
+        VPTree<SimpleGeospatialPoint> unbalancedTree = new VPTree<SimpleGeospatialPoint>(8);
+        unbalancedTree.setImbalanceFactor(1);
+        
+        VPTree<SimpleGeospatialPoint> balancedTree = new VPTree<SimpleGeospatialPoint>(8);
+        assertEquals(VPTree.DEFAULT_IMBALANCE_FACTOR, balancedTree.getImbalanceFactor(), 0);
+        
+        for(SimpleGeospatialPoint point : points) {
+            unbalancedTree.add(point);
+            balancedTree.add(point);
+        }
+        
+        assertTrue(this.getHeight(unbalancedTree.getRoot()) > 100);
+        assertTrue(this.getHeight(balancedTree.getRoot()) < 40);
+        
+        this.assertSizesConsistent(balancedTree.getRoot());
+        assertEquals(points.size(), balancedTree.size());
+        assertTrue(balancedTree.containsAll(points));
+        
+        SimpleGeospatialPoint queryPoint = new SimpleGeospatialPoint(12.3, 0.01);
+        assertEquals(unbalancedTree.getNearestNeighbors(queryPoint, 10), balancedTree.getNearestNeighbors(queryPoint, 10));
+    }
+    
+    @Test
+    public void testRemoveAllRebalancesTree() {
+        Random random = new Random(11);
+        ArrayList<SimpleGeospatialPoint> points = RandomPoints.getRandomPoints(random, 5000);
+        
+        VPTree<SimpleGeospatialPoint> tree = new VPTree<SimpleGeospatialPoint>(points, 8);
+        
+        // Strip everything out of the northern hemisphere in two batches and
+        // one point at a time.
+        ArrayList<SimpleGeospatialPoint> northern = new ArrayList<SimpleGeospatialPoint>();
+        ArrayList<SimpleGeospatialPoint> southern = new ArrayList<SimpleGeospatialPoint>();
+        
+        for(SimpleGeospatialPoint point : points) {
+            if(point.getLatitude() > 0) {
+                northern.add(point);
+            } else {
+                southern.add(point);
+            }
+        }
+        
+        int half = northern.size() / 2;
+        tree.removeAll(northern.subList(0, half));
+        
+        for(SimpleGeospatialPoint point : northern.subList(half, northern.size())) {
+            assertTrue(tree.remove(point));
+        }
+        
+        this.assertSizesConsistent(tree.getRoot());
+        assertTrue(this.getWorstImbalance(tree.getRoot()) < 0.8);
+        assertEquals(southern.size(), tree.size());
+        assertTrue(tree.containsAll(southern));
+        
+        // ...and refill it in a batch.
+        tree.addAll(northern);
+        
+        this.assertSizesConsistent(tree.getRoot());
+        assertTrue(this.getWorstImbalance(tree.getRoot()) < 0.8);
+        assertEquals(points.size(), tree.size());
+        assertTrue(tree.containsAll(points));
+    }
+    
+    @Test
+    public void testSizeAndIsEmpty() {
+        Random random = new Random(47);
+        ArrayList<SimpleGeospatialPoint> points = RandomPoints.getRandomPoints(random, 1000);
+        
+        VPTree<SimpleGeospatialPoint> tree = new VPTree<SimpleGeospatialPoint>(points.subList(0, 500), 8);
+        tree.addAll(points.subList(500, points.size()));
+        
+        this.assertSizesConsistent(tree.getRoot());
+        assertEquals(points.size(), tree.size());
+        assertFalse(tree.isEmpty());
+        
+        tree.removeAll(points.subList(0, 900));
+        
+        this.assertSizesConsistent(tree.getRoot());
+        assertEquals(100, tree.size());
+        
+        SimpleGeospatialPoint[] array = tree.toArray(new SimpleGeospatialPoint[0]);
+        assertEquals(100, array.length);
+        assertTrue(points.subList(900, points.size()).containsAll(java.util.Arrays.asList(array)));
+        
+        for(SimpleGeospatialPoint point : points.subList(900, points.size())) {
+            assertFalse(tree.isEmpty());
+            assertTrue(tree.remove(point));
+        }
+        
+        assertEquals(0, tree.size());
+        assertTrue(tree.isEmpty());
+    }
+    
+    @Test
+    public void testCompact() {
+        Random random = new Random(13);
+        ArrayList<SimpleGeospatialPoint> points = RandomPoints.getRandomPoints(random, 2000);
+        
+        // Grow the tree one point at a time, then take some points back out,
+        // so plenty of leaves have spare capacity.
+        VPTree<SimpleGeospatialPoint> tree = new VPTree<SimpleGeospatialPoint>(8);
+        
+        for(SimpleGeospatialPoint point : points) {
+            tree.add(point);
+        }
+        
+        for(SimpleGeospatialPoint point : points.subList(0, 500)) {
+            assertTrue(tree.remove(point));
+        }
+        
+        VPTree<SimpleGeospatialPoint> expectedTree =
+                new VPTree<SimpleGeospatialPoint>(points.subList(500, points.size()), 8);
+        
+        tree.compact();
+        
+        this.assertSizesConsistent(tree.getRoot());
+        assertEquals(expectedTree.size(), tree.size());
+        assertTrue(tree.containsAll(expectedTree));
+        
+        SimpleGeospatialPoint queryPoint = new SimpleGeospatialPoint(-12.3, 45.6);
+        assertEquals(expectedTree.getNearestNeighbors(queryPoint, 10), tree.getNearestNeighbors(queryPoint, 10));
+        
+        // Compacted trees should still accept new points
+        tree.addAll(points.subList(0, 500));
+        assertEquals(points.size(), tree.size());
+        assertTrue(tree.containsAll(points));
+    }
+    
+    @Test
+    public void testGetMemoryStats() {
+        Random random = new Random(19);
+        ArrayList<SimpleGeospatialPoint> points = RandomPoints.getRandomPoints(random, 1000);
+        
+        VPTree<SimpleGeospatialPoint> tree = new VPTree<SimpleGeospatialPoint>(8);
+        tree.addAll(points);
+        
+        MemoryStats stats = tree.getMemoryStats();
+        ArrayList<VPTree<SimpleGeospatialPoint>.VPNode<SimpleGeospatialPoint>> leaves =
+                new ArrayList<VPTree<SimpleGeospatialPoint>.VPNode<SimpleGeospatialPoint>>();
+        tree.getRoot().gatherLeafNodes(leaves);
+        
+        assertEquals(points.size(), stats.getPointCount());
+        assertEquals(leaves.size(), stats.getLeafCount());
+        assertEquals(2 * leaves.size() - 1, stats.getNodeCount());
+        assertEquals(stats.getNodeCount(), stats.getCenterCount());
+        assertTrue(stats.getPointCapacity() >= stats.getPointCount());
+        assertTrue(stats.getEstimatedBytes() > 0);
+        assertEquals(stats.getEstimatedBytes() + 32 * points.size(), stats.getEstimatedBytesIncludingPoints(32));
+        
+        // Compacting should reclaim any spare capacity, but nothing else
+        tree.compact();
+        MemoryStats compactStats = tree.getMemoryStats();
+        
+        assertEquals(stats.getNodeCount(), compactStats.getNodeCount());
+        assertEquals(compactStats.getPointCount(), compactStats.getPointCapacity());
+        assertTrue(compactStats.getEstimatedBytes() <= stats.getEstimatedBytes());
+    }
+    
+    @Test
+    public void testGetNearestNeighborsBestFirst() {
+        Random random = new Random(29);
+        ArrayList<SimpleGeospatialPoint> points = new ArrayList<SimpleGeospatialPoint>();
+        
+        // Clustered points make for lots of nodes with nearby thresholds
+        for(int i = 0; i < 2000; i++) {
+            double latitude = (i % 4) * 20 + random.nextDouble();
+            double longitude = (i % 3) * 60 + random.nextDouble() * 2;
+            
+            points.add(new SimpleGeospatialPoint(latitude, longitude));
+        }
+        
+        VPTree<SimpleGeospatialPoint> tree = new VPTree<SimpleGeospatialPoint>(4);
+        tree.addAll(points);
+        
+        for(int i = 0; i < 100; i++) {
+            SimpleGeospatialPoint queryPoint =
+                    new SimpleGeospatialPoint(random.nextDouble() * 90, random.nextDouble() * 180);
+            
+            for(int maxResults : new int[] { 1, 7, 50 }) {
+                // Best-first and depth-first searches should find exactly the
+                // same neighbors
+                SearchResults<SimpleGeospatialPoint> results =
+                        new SearchResults<SimpleGeospatialPoint>(queryPoint, maxResults);
+                tree.getRoot().getNearestNeighbors(queryPoint, results);
+                
+                assertEquals(results.toSortedList(), tree.getNearestNeighbors(queryPoint, maxResults));
+            }
+        }
+    }
+    
+    @Test
+    public void testCountWithinDistance() {
+        Random random = new Random(43);
+        ArrayList<SimpleGeospatialPoint> points = RandomPoints.getRandomPoints(random, 5000);
+        
+        VPTree<SimpleGeospatialPoint> tree = new VPTree<SimpleGeospatialPoint>(points.subList(0, 3000), 8);
+        
+        // Covering radii have to keep up with points added after the tree was
+        // built, and remain valid as points are removed.
+        tree.addAll(points.subList(3000, points.size()));
+        tree.removeAll(points.subList(0, 1000));
+        
+        for(int i = 0; i < 100; i++) {
+            SimpleGeospatialPoint queryPoint = RandomPoints.getRandomPoint(random);
+            
+            for(double maxDistance : new double[] { 0, 100 * 1000, 2000 * 1000, 8000 * 1000, 20000 * 1000 }) {
+                assertEquals(tree.getAllNeighborsWithinDistance(queryPoint, maxDistance).size(),
+                        tree.countWithinDistance(queryPoint, maxDistance));
+            }
+            
+            double west = random.nextDouble() * 360 - 180;
+            double east = Math.min(180, west + random.nextDouble() * 90);
+            double south = random.nextDouble() * 150 - 90;
+            double north = Math.min(90, south + random.nextDouble() * 60);
+            
+            assertEquals(tree.getAllPointsInBoundingBox(west, east, north, south).size(),
+                    tree.countInBoundingBox(west, east, north, south));
+        }
+        
+        assertEquals(tree.size(), tree.countWithinDistance(new SimpleGeospatialPoint(0, 0), 20100 * 1000));
+    }
+    
+    @Test
+    public void testGetAllPointsInBoundingBox() {
+        Random random = new Random(53);
+        ArrayList<SimpleGeospatialPoint> points = RandomPoints.getRandomPoints(random, 5000);
+        
+        VPTree<SimpleGeospatialPoint> tree = new VPTree<SimpleGeospatialPoint>(points.subList(0, 3000), 8);
+        
+        // Bounding rectangles have to keep up with points added after the tree
+        // was built, and remain valid as points are removed.
+        tree.addAll(points.subList(3000, points.size()));
+        tree.removeAll(points.subList(0, 1000));
+        
+        List<SimpleGeospatialPoint> remainingPoints = points.subList(1000, points.size());
+        
+        for(int i = 0; i < 100; i++) {
+            // Boxes whose western limits are east of their eastern limits span
+            // the antimeridian
+            double west = random.nextDouble() * 360 - 180;
+            double east = random.nextDouble() * 360 - 180;
+            double south = random.nextDouble() * 150 - 90;
+            double north = Math.min(90, south + random.nextDouble() * 60);
+            
+            BoundingBoxSearchCriteria<SimpleGeospatialPoint> box =
+                    new BoundingBoxSearchCriteria<SimpleGeospatialPoint>(west, east, north, south);
+            
+            HashSet<SimpleGeospatialPoint> expected = new HashSet<SimpleGeospatialPoint>();
+            
+            for(SimpleGeospatialPoint point : remainingPoints) {
+                if(box.matches(point)) {
+                    expected.add(point);
+                }
+            }
+            
+            List<SimpleGeospatialPoint> pointsInBox = tree.getAllPointsInBoundingBox(west, east, north, south);
+            
+            assertEquals(expected.size(), pointsInBox.size());
+            assertEquals(expected, new HashSet<SimpleGeospatialPoint>(pointsInBox));
+            assertEquals(expected.size(), tree.countInBoundingBox(west, east, north, south));
+        }
+    }
+    
+    @Test
+    public void testGetNeighborsByDistanceDrainsTree() {
+        Random random = new Random(37);
+        ArrayList<SimpleGeospatialPoint> points = RandomPoints.getRandomPoints(random, 5000);
+        
+        VPTree<SimpleGeospatialPoint> tree = new VPTree<SimpleGeospatialPoint>(8);
+        tree.addAll(points);
+        
+        for(int i = 0; i < 20; i++) {
+            SimpleGeospatialPoint queryPoint = RandomPoints.getRandomPoint(random);
+            
+            // The first page of points should match a nearest-neighbor search,
+            // and draining the iterator should visit every point in the tree
+            // exactly once in order of increasing distance.
+            java.util.Iterator<SimpleGeospatialPoint> neighbors = tree.getNeighborsByDistance(queryPoint);
+            List<SimpleGeospatialPoint> expected = tree.getNearestNeighbors(queryPoint, 100);
+            HashSet<SimpleGeospatialPoint> visitedPoints = new HashSet<SimpleGeospatialPoint>();
+            
+            double previousDistance = 0;
+            
+            while(neighbors.hasNext()) {
+                SimpleGeospatialPoint neighbor = neighbors.next();
+                double distance = queryPoint.getDistanceTo(neighbor);
+                
+                assertTrue(distance >= previousDistance);
+                
+                if(visitedPoints.size() < expected.size()) {
+                    assertEquals(queryPoint.getDistanceTo(expected.get(visitedPoints.size())), distance, 0);
+                }
+                
+                assertTrue(visitedPoints.add(neighbor));
+                previousDistance = distance;
+            }
+            
+            assertEquals(tree.size(), visitedPoints.size());
+            
+            try {
+                neighbors.next();
+                fail("Expected NoSuchElementException after draining the iterator.");
+            } catch(java.util.NoSuchElementException e) {
+                // Expected
+            }
+        }
+    }
+    
+    @Test
+    public void testGetNearestNeighborsBatch() {
+        Random random = new Random(41);
+        ArrayList<SimpleGeospatialPoint> points = RandomPoints.getRandomPoints(random, 5000);
+        
+        double[] latitudes = new double[1500];
+        double[] longitudes = new double[latitudes.length];
+        SimpleGeospatialPoint[] queryPoints = new SimpleGeospatialPoint[latitudes.length];
+        
+        for(int i = 0; i < queryPoints.length; i++) {
+            queryPoints[i] = RandomPoints.getRandomPoint(random);
+            latitudes[i] = queryPoints[i].getLatitude();
+            longitudes[i] = queryPoints[i].getLongitude();
+        }
+        
+        ForkJoinPool pool = new ForkJoinPool(4);
+        
+        try {
+            VPTree<SimpleGeospatialPoint> tree = new VPTree<SimpleGeospatialPoint>(points, 8);
+            VPTree<SimpleGeospatialPoint> parallelTree = new VPTree<SimpleGeospatialPoint>(points, 8, pool);
+            
+            List<List<SimpleGeospatialPoint>> results = tree.getNearestNeighbors(queryPoints, 5);
+            List<List<SimpleGeospatialPoint>> coordinateResults = parallelTree.getNearestNeighbors(latitudes, longitudes, 5);
+            
+            assertEquals(queryPoints.length, results.size());
+            assertEquals(queryPoints.length, coordinateResults.size());
+            
+            for(int i = 0; i < queryPoints.length; i++) {
+                List<SimpleGeospatialPoint> expected = tree.getNearestNeighbors(queryPoints[i], 5);
+                
+                assertEquals(expected, results.get(i));
+                assertEquals(expected, coordinateResults.get(i));
+            }
+            
+            // Small batches are answered on the calling thread
+            assertEquals(tree.getNearestNeighbors(queryPoints[0], 3),
+                    tree.getNearestNeighbors(new SimpleGeospatialPoint[] { queryPoints[0] }, 3).get(0));
+            assertTrue(tree.getNearestNeighbors(new SimpleGeospatialPoint[0], 3).isEmpty());
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    @Test
+    public void testGetNearestNeighborsFromSearchCriteria() {
+        Random random = new Random(23);
+        ArrayList<SimpleGeospatialPoint> points = RandomPoints.getRandomPoints(random, 1000);
+        
+        final VPTree<SimpleGeospatialPoint> tree = new VPTree<SimpleGeospatialPoint>(8);
+        tree.addAll(points);
+        
+        // Searches started by search criteria run while the outer search is
+        // still using its thread's query context; they mustn't disturb it.
+        SearchCriteria<SimpleGeospatialPoint> criteria = new SearchCriteria<SimpleGeospatialPoint>() {
+            @Override
+            public boolean matches(SimpleGeospatialPoint point) {
+                return tree.getNearestNeighbors(point, 3).contains(point);
+            }
+        };
+        
+        SimpleGeospatialPoint queryPoint = new SimpleGeospatialPoint(42.387597, -71.099497);
+        
+        ArrayList<SimpleGeospatialPoint> expected = new ArrayList<SimpleGeospatialPoint>(points);
+        java.util.Collections.sort(expected, new GeospatialDistanceComparator<SimpleGeospatialPoint>(queryPoint));
+        
+        assertEquals(expected.subList(0, 10), tree.getNearestNeighbors(queryPoint, 10, criteria));
+        assertEquals(expected.get(0), tree.getNearestNeighbor(queryPoint, criteria));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetImbalanceFactorTooSmall() {
+        new VPTree<SimpleGeospatialPoint>().setImbalanceFactor(0.5);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetImbalanceFactorTooLarge() {
+        new VPTree<SimpleGeospatialPoint>().setImbalanceFactor(1.01);
+    }
+    
+    private int getHeight(VPTree<SimpleGeospatialPoint>.VPNode<SimpleGeospatialPoint> node) {
+        if(node.isLeafNode()) {
+            return 1;
+        }
+        
+        return 1 + Math.max(this.getHeight(node.getCloserNode()), this.getHeight(node.getFartherNode()));
+    }
+    
+    private int assertSizesConsistent(VPTree<SimpleGeospatialPoint>.VPNode<SimpleGeospatialPoint> node) {
+        int size;
+        
+        if(node.isLeafNode()) {
+            size = node.getPoints().size();
+        } else {
+            size = this.assertSizesConsistent(node.getCloserNode()) + this.assertSizesConsistent(node.getFartherNode());
+        }
+        
+        assertEquals(size, node.size());
+        return size;
+    }
+    
+    private double getWorstImbalance(VPTree<SimpleGeospatialPoint>.VPNode<SimpleGeospatialPoint> node) {
+        // Small nodes are never rebuilt, so don't hold them to any standard
+        if(node.isLeafNode() || node.size() < 4 * 8) {
+            return 0;
+        }
+        
+        double imbalance = (double)Math.max(node.getCloserNode().size(), node.getFartherNode().size()) / node.size();
+        
+        return Math.max(imbalance, Math.max(
+                this.getWorstImbalance(node.getCloserNode()), this.getWorstImbalance(node.getFartherNode())));
+    }
+    
+    private void assertNodesEqual(VPTree<SimpleGeospatialPoint>.VPNode<SimpleGeospatialPoint> expected,
+            VPTree<SimpleGeospatialPoint>.VPNode<SimpleGeospatialPoint> actual) {
+        
+        assertEquals(expected.isLeafNode(), actual.isLeafNode());
+        assertEquals(expected.getCenter(), actual.getCenter());
+        
+        if(expected.isLeafNode()) {
+            assertEquals(new ArrayList<SimpleGeospatialPoint>(expected.getPoints()),
+                    new ArrayList<SimpleGeospatialPoint>(actual.getPoints()));
+        } else {
+            assertEquals(expected.getThreshold(), actual.getThreshold(), 0);
+            
+            this.assertNodesEqual(expected.getCloserNode(), actual.getCloserNode());
+            this.assertNodesEqual(expected.getFartherNode(), actual.getFartherNode());
+        }
+    }
+    
     @Test
     public void testPruneEmptyNode() {
         VPTree<SimpleGeospatialPoint> tree = new VPTree<SimpleGeospatialPoint>(
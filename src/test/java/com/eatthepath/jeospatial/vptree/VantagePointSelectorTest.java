@@ -0,0 +1,65 @@
+package com.eatthepath.jeospatial.vptree;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.eatthepath.jeospatial.util.SimpleGeospatialPoint;
+
+/**
+ * Test suite for the {@link VantagePointSelector} implementations.
+ * 
+ * @author <a href="mailto:jon.chambers@gmail.com">Jon Chambers</a>
+ */
+public class VantagePointSelectorTest {
+    private static SimpleGeospatialPoint[] points;
+    
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        Random random = new Random(11);
+        VantagePointSelectorTest.points = new SimpleGeospatialPoint[200];
+        
+        for(int i = 0; i < points.length; i++) {
+            points[i] = new SimpleGeospatialPoint(random.nextDouble() * 10, random.nextDouble() * 10);
+        }
+    }
+    
+    @Test
+    public void testFirstPointSelector() {
+        assertEquals(17, new FirstPointSelector().selectVantagePoint(points, 17, 150));
+    }
+    
+    @Test
+    public void testFarthestPointSelector() {
+        int index = new FarthestPointSelector().selectVantagePoint(points, 17, 150);
+        
+        assertTrue(index >= 17 && index < 150);
+        
+        for(int i = 17; i < 150; i++) {
+            assertTrue(points[17].getDistanceTo(points[i]) <= points[17].getDistanceTo(points[index]));
+        }
+    }
+    
+    @Test
+    public void testSamplingSelector() {
+        SamplingSelector selector = new SamplingSelector();
+        
+        int index = selector.selectVantagePoint(points, 17, 150);
+        assertTrue(index >= 17 && index < 150);
+        
+        // Selection should be repeatable
+        assertEquals(index, selector.selectVantagePoint(points, 17, 150));
+        assertEquals(index, new SamplingSelector().selectVantagePoint(points, 17, 150));
+        
+        // Tiny ranges should still work
+        assertEquals(17, selector.selectVantagePoint(points, 17, 18));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testSamplingSelectorBadCandidateCount() {
+        new SamplingSelector(0, 10, 0);
+    }
+}
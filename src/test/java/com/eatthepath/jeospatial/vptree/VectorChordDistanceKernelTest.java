@@ -0,0 +1,138 @@
+package com.eatthepath.jeospatial.vptree;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.eatthepath.jeospatial.util.RandomPoints;
+
+/**
+ * Test suite for the Vector API version of {@link ChordDistanceKernel}. This
+ * suite only passes against the versioned classes under
+ * {@code META-INF/versions/17} with the {@code jdk.incubator.vector} module
+ * present, and so runs in its own Surefire execution rather than with the rest
+ * of the tests.
+ *
+ * @author <a href="mailto:jon.chambers@gmail.com">Jon Chambers</a>
+ */
+public class VectorChordDistanceKernelTest {
+    private static final int MAX_LENGTH = 256;
+
+    @Test
+    public void testIsVectorized() {
+        assertTrue(ChordDistanceKernel.isVectorized());
+    }
+
+    @Test
+    public void testGetSquaredChordDistances() {
+        final Random random = new Random(17);
+
+        for(int length = 0; length <= MAX_LENGTH; length++) {
+            final double[] x = new double[length];
+            final double[] y = new double[length];
+            final double[] z = new double[length];
+
+            for(int i = 0; i < length; i++) {
+                final UnitVector vector = new UnitVector(RandomPoints.getRandomPoint(random));
+
+                x[i] = vector.x;
+                y[i] = vector.y;
+                z[i] = vector.z;
+            }
+
+            final UnitVector queryVector = new UnitVector(RandomPoints.getRandomPoint(random));
+
+            for(int fromIndex = 0; fromIndex <= Math.min(length, 9); fromIndex++) {
+                final double[] expected = new double[length];
+                final double[] actual = new double[length];
+
+                ScalarChordDistanceKernel.getSquaredChordDistances(queryVector.x, queryVector.y, queryVector.z,
+                        x, y, z, fromIndex, length, expected);
+
+                ChordDistanceKernel.getSquaredChordDistances(queryVector.x, queryVector.y, queryVector.z,
+                        x, y, z, fromIndex, length, actual);
+
+                for(int i = 0; i < length; i++) {
+                    assertEquals("length " + length + ", fromIndex " + fromIndex + ", index " + i,
+                            Double.doubleToRawLongBits(expected[i]), Double.doubleToRawLongBits(actual[i]));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testGetSquaredChordDistancesFloat() {
+        final Random random = new Random(17);
+
+        for(int length = 0; length <= MAX_LENGTH; length++) {
+            final float[] x = new float[length];
+            final float[] y = new float[length];
+            final float[] z = new float[length];
+
+            for(int i = 0; i < length; i++) {
+                final UnitVector vector = new UnitVector(RandomPoints.getRandomPoint(random));
+
+                x[i] = (float)vector.x;
+                y[i] = (float)vector.y;
+                z[i] = (float)vector.z;
+            }
+
+            final UnitVector queryVector = new UnitVector(RandomPoints.getRandomPoint(random));
+
+            for(int fromIndex = 0; fromIndex <= Math.min(length, 9); fromIndex++) {
+                final double[] expected = new double[length];
+                final double[] actual = new double[length];
+
+                ScalarChordDistanceKernel.getSquaredChordDistances((float)queryVector.x, (float)queryVector.y,
+                        (float)queryVector.z, x, y, z, fromIndex, length, expected);
+
+                ChordDistanceKernel.getSquaredChordDistances((float)queryVector.x, (float)queryVector.y,
+                        (float)queryVector.z, x, y, z, fromIndex, length, actual);
+
+                for(int i = 0; i < length; i++) {
+                    assertEquals("length " + length + ", fromIndex " + fromIndex + ", index " + i,
+                            Double.doubleToRawLongBits(expected[i]), Double.doubleToRawLongBits(actual[i]));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testGetSquaredChordDistancesFixedPoint() {
+        final Random random = new Random(17);
+
+        for(int length = 0; length <= MAX_LENGTH; length++) {
+            final int[] x = new int[length];
+            final int[] y = new int[length];
+            final int[] z = new int[length];
+
+            for(int i = 0; i < length; i++) {
+                final UnitVector vector = new UnitVector(RandomPoints.getRandomPoint(random));
+
+                x[i] = CoordinateEncoding.toFixedPoint(vector.x);
+                y[i] = CoordinateEncoding.toFixedPoint(vector.y);
+                z[i] = CoordinateEncoding.toFixedPoint(vector.z);
+            }
+
+            final UnitVector queryVector = new UnitVector(RandomPoints.getRandomPoint(random));
+
+            for(int fromIndex = 0; fromIndex <= Math.min(length, 9); fromIndex++) {
+                final double[] expected = new double[length];
+                final double[] actual = new double[length];
+
+                ScalarChordDistanceKernel.getSquaredChordDistances(queryVector.x, queryVector.y, queryVector.z,
+                        x, y, z, fromIndex, length, expected);
+
+                ChordDistanceKernel.getSquaredChordDistances(queryVector.x, queryVector.y, queryVector.z,
+                        x, y, z, fromIndex, length, actual);
+
+                for(int i = 0; i < length; i++) {
+                    assertEquals("length " + length + ", fromIndex " + fromIndex + ", index " + i,
+                            Double.doubleToRawLongBits(expected[i]), Double.doubleToRawLongBits(actual[i]));
+                }
+            }
+        }
+    }
+}